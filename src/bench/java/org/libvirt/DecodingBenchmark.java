@@ -0,0 +1,77 @@
+package org.libvirt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.libvirt.jna.virTypedParameter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.sun.jna.Memory;
+
+/**
+ * Measures the decoding of the strings and typed parameters returned by
+ * libvirt, through the public API on the test driver and on a typed
+ * parameter array built in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecodingBenchmark {
+    private Connect conn;
+    private Domain dom;
+    private Memory params;
+    private final TypedParameterList.FieldNames names = new TypedParameterList.FieldNames();
+
+    @Setup
+    public void setUp() throws LibvirtException {
+        conn = new Connect("test:///default", true);
+        dom = conn.domainLookupByName("test");
+
+        params = new Memory(2L * virTypedParameter.SIZE);
+        params.clear();
+        params.setString(virTypedParameter.FIELD_OFFSET, "cputune.vcpu_period");
+        params.setInt(virTypedParameter.TYPE_OFFSET, virTypedParameter.TYPED_PARAM_ULONG);
+        params.setLong(virTypedParameter.VALUE_OFFSET, 100000L);
+        long second = virTypedParameter.SIZE;
+        params.setString(second + virTypedParameter.FIELD_OFFSET, "cputune.vcpu_quota");
+        params.setInt(second + virTypedParameter.TYPE_OFFSET, virTypedParameter.TYPED_PARAM_LONG);
+        params.setLong(second + virTypedParameter.VALUE_OFFSET, -1L);
+    }
+
+    @TearDown
+    public void tearDown() throws LibvirtException {
+        dom.free();
+        conn.close();
+    }
+
+    @Benchmark
+    public String capabilities() throws LibvirtException {
+        return conn.getCapabilities();
+    }
+
+    @Benchmark
+    public String domainXML() throws LibvirtException {
+        return dom.getXMLDesc(0);
+    }
+
+    @Benchmark
+    public SchedParameter[] schedulerParameters() throws LibvirtException {
+        return dom.getSchedulerParameters();
+    }
+
+    @Benchmark
+    public TypedParameterList typedParameters() {
+        return TypedParameterList.decode(params, 2, names);
+    }
+
+    @Benchmark
+    public TypedParameterList typedParametersUncachedNames() {
+        return TypedParameterList.decode(params, 2, new TypedParameterList.FieldNames());
+    }
+}
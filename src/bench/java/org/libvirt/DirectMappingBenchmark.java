@@ -0,0 +1,84 @@
+package org.libvirt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.libvirt.jna.LibvirtDirect;
+import org.libvirt.jna.virDomainInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.libvirt.Library.libvirt;
+
+/**
+ * Compares the interface mapped {@link org.libvirt.jna.Libvirt} bindings
+ * with the direct mapped {@link LibvirtDirect} bindings for the hot calls,
+ * using the test driver so only the binding overhead is measured. The
+ * public API, going through the selected backend, is measured as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DirectMappingBenchmark {
+    private Connect conn;
+    private Domain dom;
+
+    @Setup
+    public void setUp() throws LibvirtException {
+        if (!LibvirtDirect.ENABLED) {
+            throw new IllegalStateException("direct mapping is not available");
+        }
+        conn = new Connect("test:///default", true);
+        dom = conn.domainLookupByName("test");
+    }
+
+    @TearDown
+    public void tearDown() throws LibvirtException {
+        dom.free();
+        conn.close();
+    }
+
+    @Benchmark
+    public int interfaceGetInfo() {
+        virDomainInfo info = new virDomainInfo();
+        libvirt.virDomainGetInfo(dom.vdp, info);
+        return info.nrVirtCpu;
+    }
+
+    @Benchmark
+    public int directGetInfo() {
+        virDomainInfo info = new virDomainInfo();
+        LibvirtDirect.virDomainGetInfo(dom.vdp.getPointer(), info);
+        return info.nrVirtCpu;
+    }
+
+    @Benchmark
+    public DomainInfo publicGetInfo() throws LibvirtException {
+        return dom.getInfo();
+    }
+
+    @Benchmark
+    public int interfaceIsActive() {
+        return libvirt.virDomainIsActive(dom.vdp);
+    }
+
+    @Benchmark
+    public int directIsActive() {
+        return LibvirtDirect.virDomainIsActive(dom.vdp.getPointer());
+    }
+
+    @Benchmark
+    public int interfaceConnectIsAlive() {
+        return libvirt.virConnectIsAlive(conn.vcp);
+    }
+
+    @Benchmark
+    public int directConnectIsAlive() {
+        return LibvirtDirect.virConnectIsAlive(conn.vcp.getPointer());
+    }
+}
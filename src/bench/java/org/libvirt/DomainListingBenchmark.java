@@ -0,0 +1,70 @@
+package org.libvirt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares listing the domains with a single call to listing their IDs and
+ * looking each of them up, on the test driver populated with transient
+ * domains.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DomainListingBenchmark {
+    private static final String XML =
+        "<domain type='test'><name>bench-%d</name><memory>8192</memory>"
+        + "<os><type>hvm</type></os></domain>";
+
+    @Param({"1", "10", "100"})
+    public int domains;
+
+    private Connect conn;
+    private Domain[] created;
+
+    @Setup
+    public void setUp() throws LibvirtException {
+        conn = new Connect("test:///default", false);
+        // the test driver starts with one running domain
+        created = new Domain[domains - 1];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = conn.domainCreateXML(String.format(XML, i), 0);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws LibvirtException {
+        for (Domain d : created) {
+            d.destroy();
+            d.free();
+        }
+        conn.close();
+    }
+
+    @Benchmark
+    public int listAllDomains() throws LibvirtException {
+        Domain[] all = conn.listAllDomains(0);
+        for (Domain d : all) {
+            d.free();
+        }
+        return all.length;
+    }
+
+    @Benchmark
+    public int listThenLookup() throws LibvirtException {
+        int[] ids = conn.listDomains();
+        for (int id : ids) {
+            conn.domainLookupByID(id).free();
+        }
+        return ids.length;
+    }
+}
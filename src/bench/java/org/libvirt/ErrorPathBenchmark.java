@@ -0,0 +1,51 @@
+package org.libvirt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the cost of a failing call, i.e. reading the libvirt error and
+ * throwing a {@link LibvirtException}, against the same call succeeding,
+ * on the test driver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorPathBenchmark {
+    private Connect conn;
+
+    @Setup
+    public void setUp() throws LibvirtException {
+        conn = new Connect("test:///default", true);
+    }
+
+    @TearDown
+    public void tearDown() throws LibvirtException {
+        conn.close();
+    }
+
+    @Benchmark
+    public int lookupFound() throws LibvirtException {
+        Domain d = conn.domainLookupByName("test");
+        int id = d.getID();
+        d.free();
+        return id;
+    }
+
+    @Benchmark
+    public Object lookupMissing() {
+        try {
+            return conn.domainLookupByName("no-such-domain");
+        } catch (LibvirtException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.libvirt;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libvirt.event.DomainEvent;
+import org.libvirt.event.LifecycleListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the delivery of events: the throughput of the
+ * {@link EventDispatcher} queues, and the round trip of lifecycle events
+ * emitted by the test driver through the event loop to a listener.
+ */
+@State(Scope.Benchmark)
+public class EventDispatchBenchmark {
+    private static boolean eventLoopStarted;
+
+    private ExecutorService executor;
+    private EventDispatcher dispatcher;
+    private final AtomicLong delivered = new AtomicLong();
+    private final LifecycleListener sink = new LifecycleListener() {
+            @Override
+            public int onLifecycleChange(final Domain domain, final DomainEvent event) {
+                return 0;
+            }
+        };
+    private final Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                delivered.incrementAndGet();
+            }
+        };
+
+    private Connect conn;
+    private Domain dom;
+    private final Semaphore events = new Semaphore(0);
+    private final LifecycleListener listener = new LifecycleListener() {
+            @Override
+            public int onLifecycleChange(final Domain domain, final DomainEvent event) {
+                events.release();
+                return 0;
+            }
+        };
+
+    private static synchronized void startEventLoop() throws LibvirtException {
+        if (eventLoopStarted) {
+            return;
+        }
+        Library.initEventLoop();
+        Thread t = new Thread("libvirt-event-loop") {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException | InterruptedException e) {
+                        // the benchmark is over
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+        eventLoopStarted = true;
+    }
+
+    @Setup
+    public void setUp() throws LibvirtException {
+        executor = Executors.newSingleThreadExecutor();
+        dispatcher = new EventDispatcher(executor, 1024, EventDispatcher.OverflowPolicy.BLOCK);
+
+        startEventLoop();
+        conn = new Connect("test:///default", false);
+        dom = conn.domainLookupByName("test");
+        conn.addLifecycleListener(listener);
+    }
+
+    @TearDown
+    public void tearDown() throws LibvirtException {
+        conn.removeLifecycleListener(listener);
+        dom.free();
+        conn.close();
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void dispatcherThroughput() {
+        dispatcher.dispatch(sink, delivery);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void lifecycleRoundTrip() throws LibvirtException, InterruptedException {
+        dom.suspend();
+        dom.resume();
+        // suspended and resumed
+        events.acquire(2);
+    }
+}
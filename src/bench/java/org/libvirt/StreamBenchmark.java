@@ -0,0 +1,62 @@
+package org.libvirt;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures reading a stream to its end, with direct and heap buffers of
+ * various sizes. The data is the screenshot of the test driver, which
+ * streams an image installed with libvirt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StreamBenchmark {
+    @Param({"4096", "65536"})
+    public int bufferSize;
+
+    @Param({"true", "false"})
+    public boolean direct;
+
+    private Connect conn;
+    private Domain dom;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() throws LibvirtException {
+        // virDomainScreenshot is refused on read-only connections
+        conn = new Connect("test:///default", false);
+        dom = conn.domainLookupByName("test");
+        buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+
+    @TearDown
+    public void tearDown() throws LibvirtException {
+        dom.free();
+        conn.close();
+    }
+
+    @Benchmark
+    public long screenshot() throws Exception {
+        long total = 0;
+        try (Stream stream = conn.streamNew(0)) {
+            dom.screenshot(stream, 0);
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                total += n;
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+}
@@ -1,9 +1,11 @@
 package org.libvirt;
 
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 //CHECKSTYLE:OFF: AvoidStarImport - Too much events to mention...
 import org.libvirt.event.*;
@@ -11,17 +13,20 @@ import org.libvirt.event.*;
 
 import org.libvirt.jna.*;
 
+import static org.libvirt.Library.backend;
 import static org.libvirt.Library.libvirt;
 import static org.libvirt.Library.getConstant;
 import static org.libvirt.ErrorHandler.processError;
 import static org.libvirt.ErrorHandler.processErrorIfZero;
 import static org.libvirt.BitFlagsHelper.OR;
 
+import com.sun.jna.Callback;
 import com.sun.jna.Memory;
 import com.sun.jna.Native;
 import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
 
 /**
  * The Connect object represents a connection to a local or remote
@@ -32,40 +37,63 @@ import com.sun.jna.ptr.LongByReference;
 public class Connect {
 
     // registered event listeners by DomainEventID
-    private Map<EventListener, RegisteredEventListener>[] eventListeners =
-            makeHashMapArray(DomainEventID.LAST);
-
-    private static final class RegisteredEventListener {
-        public final int callbackId;
-
-        // We need to keep a reference to the callback to prevent it from being GCed
-        @SuppressWarnings("unused")
-        public final Libvirt.VirDomainEventCallback callback;
-
-        RegisteredEventListener(final Libvirt.VirDomainEventCallback callback,
-                                final int callbackId) {
-            this.callback = callback;
-            this.callbackId = callbackId;
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    private static <K, V> HashMap<K, V>[] makeHashMapArray(final int size) {
-        return new HashMap[size];
-    }
+    private final EventRegistry<DomainPointer> eventListeners =
+        new EventRegistry<DomainPointer>(DomainEventID.LAST,
+            (ptr, eventID, cb) -> processError(libvirt.virConnectDomainEventRegisterAny(
+                    Connect.this.vcp, ptr, eventID, (Libvirt.VirDomainEventCallback) cb, null, null)),
+            callbackId -> processError(
+                    libvirt.virConnectDomainEventDeregisterAny(Connect.this.vcp, callbackId)));
+
+    // registered network, storage pool, node device and secret event
+    // listeners by their event ID
+    private final EventRegistry<NetworkPointer> networkEventListeners =
+        new EventRegistry<NetworkPointer>(NetworkEventID.LAST,
+            (ptr, eventID, cb) -> processError(libvirt.virConnectNetworkEventRegisterAny(
+                    Connect.this.vcp, ptr, eventID, (Libvirt.VirNetworkEventCallback) cb, null, null)),
+            callbackId -> processError(
+                    libvirt.virConnectNetworkEventDeregisterAny(Connect.this.vcp, callbackId)));
+    private final EventRegistry<StoragePoolPointer> storagePoolEventListeners =
+        new EventRegistry<StoragePoolPointer>(StoragePoolEventID.LAST,
+            (ptr, eventID, cb) -> processError(libvirt.virConnectStoragePoolEventRegisterAny(
+                    Connect.this.vcp, ptr, eventID, (Libvirt.VirStoragePoolEventCallback) cb, null, null)),
+            callbackId -> processError(
+                    libvirt.virConnectStoragePoolEventDeregisterAny(Connect.this.vcp, callbackId)));
+    private final EventRegistry<DevicePointer> nodeDeviceEventListeners =
+        new EventRegistry<DevicePointer>(NodeDeviceEventID.LAST,
+            (ptr, eventID, cb) -> processError(libvirt.virConnectNodeDeviceEventRegisterAny(
+                    Connect.this.vcp, ptr, eventID, (Libvirt.VirNodeDeviceEventCallback) cb, null, null)),
+            callbackId -> processError(
+                    libvirt.virConnectNodeDeviceEventDeregisterAny(Connect.this.vcp, callbackId)));
+    private final EventRegistry<SecretPointer> secretEventListeners =
+        new EventRegistry<SecretPointer>(SecretEventID.LAST,
+            (ptr, eventID, cb) -> processError(libvirt.virConnectSecretEventRegisterAny(
+                    Connect.this.vcp, ptr, eventID, (Libvirt.VirSecretEventCallback) cb, null, null)),
+            callbackId -> processError(
+                    libvirt.virConnectSecretEventDeregisterAny(Connect.this.vcp, callbackId)));
 
     private class CloseFunc implements Libvirt.VirConnectCloseFunc {
-        final ConnectionCloseListener listener;
+        // the listener registered by the application, if any
+        volatile ConnectionCloseListener listener;
 
-        CloseFunc(final ConnectionCloseListener l) {
-            this.listener = l;
-        }
+        // listeners registered by the bindings themselves
+        final List<ConnectionCloseListener> internal =
+            new CopyOnWriteArrayList<ConnectionCloseListener>();
 
         @Override
         public void callback(final ConnectionPointer vcp, final int reason,
                              final Pointer opaque) {
-            this.listener.onClose(Connect.this,
-                                  getConstant(ConnectionCloseReason.class, reason));
+            ConnectionCloseReason r = getConstant(ConnectionCloseReason.class, reason);
+            ConnectionCloseListener l = this.listener;
+            if (l != null) {
+                l.onClose(Connect.this, r);
+            }
+            for (ConnectionCloseListener i : internal) {
+                i.onClose(Connect.this, r);
+            }
+        }
+
+        boolean isEmpty() {
+            return listener == null && internal.isEmpty();
         }
     }
 
@@ -104,6 +132,42 @@ public class Connect {
         int LAST = 26;
     }
 
+    /**
+     * Network event IDs.
+     */
+    private interface NetworkEventID {
+        int LIFECYCLE = 0;
+        int METADATA_CHANGE = 1;
+        int LAST = 2;
+    }
+
+    /**
+     * Storage pool event IDs.
+     */
+    private interface StoragePoolEventID {
+        int LIFECYCLE = 0;
+        int REFRESH = 1;
+        int LAST = 2;
+    }
+
+    /**
+     * Node device event IDs.
+     */
+    private interface NodeDeviceEventID {
+        int LIFECYCLE = 0;
+        int UPDATE = 1;
+        int LAST = 2;
+    }
+
+    /**
+     * Secret event IDs.
+     */
+    private interface SecretEventID {
+        int LIFECYCLE = 0;
+        int VALUE_CHANGED = 1;
+        int LAST = 2;
+    }
+
     public enum OpenFlags implements BitFlags {
         /** Open a connection in read-only mode */
         READONLY(1),
@@ -141,6 +205,118 @@ public class Connect {
         public static int CONNECT_LIST_DOMAINS_NO_CHECKPOINT = 1 << 15;
     }
 
+    public static final class ConnectListAllNetworksFlags {
+        public static final int CONNECT_LIST_NETWORKS_INACTIVE = 1 << 0;
+        public static final int CONNECT_LIST_NETWORKS_ACTIVE = 1 << 1;
+        public static final int CONNECT_LIST_NETWORKS_PERSISTENT = 1 << 2;
+        public static final int CONNECT_LIST_NETWORKS_TRANSIENT = 1 << 3;
+        public static final int CONNECT_LIST_NETWORKS_AUTOSTART = 1 << 4;
+        public static final int CONNECT_LIST_NETWORKS_NO_AUTOSTART = 1 << 5;
+    }
+
+    public static final class ConnectListAllStoragePoolsFlags {
+        public static final int CONNECT_LIST_STORAGE_POOLS_INACTIVE = 1 << 0;
+        public static final int CONNECT_LIST_STORAGE_POOLS_ACTIVE = 1 << 1;
+        public static final int CONNECT_LIST_STORAGE_POOLS_PERSISTENT = 1 << 2;
+        public static final int CONNECT_LIST_STORAGE_POOLS_TRANSIENT = 1 << 3;
+        public static final int CONNECT_LIST_STORAGE_POOLS_AUTOSTART = 1 << 4;
+        public static final int CONNECT_LIST_STORAGE_POOLS_NO_AUTOSTART = 1 << 5;
+        public static final int CONNECT_LIST_STORAGE_POOLS_DIR = 1 << 6;
+        public static final int CONNECT_LIST_STORAGE_POOLS_FS = 1 << 7;
+        public static final int CONNECT_LIST_STORAGE_POOLS_NETFS = 1 << 8;
+        public static final int CONNECT_LIST_STORAGE_POOLS_LOGICAL = 1 << 9;
+        public static final int CONNECT_LIST_STORAGE_POOLS_DISK = 1 << 10;
+        public static final int CONNECT_LIST_STORAGE_POOLS_ISCSI = 1 << 11;
+        public static final int CONNECT_LIST_STORAGE_POOLS_SCSI = 1 << 12;
+        public static final int CONNECT_LIST_STORAGE_POOLS_MPATH = 1 << 13;
+        public static final int CONNECT_LIST_STORAGE_POOLS_RBD = 1 << 14;
+        public static final int CONNECT_LIST_STORAGE_POOLS_SHEEPDOG = 1 << 15;
+        public static final int CONNECT_LIST_STORAGE_POOLS_GLUSTER = 1 << 16;
+        public static final int CONNECT_LIST_STORAGE_POOLS_ZFS = 1 << 17;
+        public static final int CONNECT_LIST_STORAGE_POOLS_VSTORAGE = 1 << 18;
+        public static final int CONNECT_LIST_STORAGE_POOLS_ISCSI_DIRECT = 1 << 19;
+    }
+
+    public static final class ConnectListAllInterfacesFlags {
+        public static final int CONNECT_LIST_INTERFACES_INACTIVE = 1 << 0;
+        public static final int CONNECT_LIST_INTERFACES_ACTIVE = 1 << 1;
+    }
+
+    public static final class ConnectListAllSecretsFlags {
+        public static final int CONNECT_LIST_SECRETS_EPHEMERAL = 1 << 0;
+        public static final int CONNECT_LIST_SECRETS_NO_EPHEMERAL = 1 << 1;
+        public static final int CONNECT_LIST_SECRETS_PRIVATE = 1 << 2;
+        public static final int CONNECT_LIST_SECRETS_NO_PRIVATE = 1 << 3;
+    }
+
+    public static final class ConnectListAllNodeDevicesFlags {
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_SYSTEM = 1 << 0;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_PCI_DEV = 1 << 1;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_USB_DEV = 1 << 2;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_USB_INTERFACE = 1 << 3;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_NET = 1 << 4;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_SCSI_HOST = 1 << 5;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_SCSI_TARGET = 1 << 6;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_SCSI = 1 << 7;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_STORAGE = 1 << 8;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_FC_HOST = 1 << 9;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_VPORTS = 1 << 10;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_SCSI_GENERIC = 1 << 11;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_DRM = 1 << 12;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_MDEV_TYPES = 1 << 13;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_MDEV = 1 << 14;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_CCW_DEV = 1 << 15;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_CSS_DEV = 1 << 16;
+        public static final int CONNECT_LIST_NODE_DEVICES_CAP_VDPA = 1 << 17;
+        public static final int CONNECT_LIST_NODE_DEVICES_INACTIVE = 1 << 30;
+        public static final int CONNECT_LIST_NODE_DEVICES_ACTIVE = 1 << 31;
+    }
+
+    /**
+     * Groups of statistics to be returned by {@link #getAllDomainStats}
+     */
+    public static final class DomainStatsTypes {
+        /** return domain state */
+        public static final int STATE = 1 << 0;
+        /** return domain CPU info */
+        public static final int CPU_TOTAL = 1 << 1;
+        /** return domain balloon info */
+        public static final int BALLOON = 1 << 2;
+        /** return domain virtual CPU info */
+        public static final int VCPU = 1 << 3;
+        /** return domain interfaces info */
+        public static final int INTERFACE = 1 << 4;
+        /** return domain block info */
+        public static final int BLOCK = 1 << 5;
+        /** return domain perf event info */
+        public static final int PERF = 1 << 6;
+        /** return iothread poll info */
+        public static final int IOTHREAD = 1 << 7;
+        /** return domain memory info */
+        public static final int MEMORY = 1 << 8;
+        /** return domain dirty rate info */
+        public static final int DIRTYRATE = 1 << 9;
+        /** return vm info */
+        public static final int VM = 1 << 10;
+    }
+
+    public static final class GetAllDomainStatsFlags {
+        public static final int ACTIVE = 1 << 0;
+        public static final int INACTIVE = 1 << 1;
+        public static final int PERSISTENT = 1 << 2;
+        public static final int TRANSIENT = 1 << 3;
+        public static final int RUNNING = 1 << 4;
+        public static final int PAUSED = 1 << 5;
+        public static final int SHUTOFF = 1 << 6;
+        public static final int OTHER = 1 << 7;
+        /** report statistics that can be obtained immediately without any blocking */
+        public static final int NOWAIT = 1 << 29;
+        /** include backing chain for block stats */
+        public static final int BACKING = 1 << 30;
+        /** enforce requested stats */
+        public static final int ENFORCE_STATS = 1 << 31;
+    }
+
     /**
      * Get the version of a connection.
      *
@@ -186,6 +362,9 @@ public class Connect {
 
     /**
      * Get the libvirt library version of this connection.
+     * <p>
+     * The version is queried once and then cached until the connection is
+     * closed.
      *
      * @see <a
      *      href="https://libvirt.org/html/libvirt-libvirt.html#virConnectGetLibVersion">Libvirt
@@ -195,9 +374,14 @@ public class Connect {
      *         1,000,000 + minor * 1,000 + release}.
      */
     public long getLibVersion() throws LibvirtException {
-        LongByReference libVer = new LongByReference();
-        processError(libvirt.virConnectGetLibVersion(this.vcp, libVer));
-        return libVer.getValue();
+        long version = libVersion;
+        if (version == 0) {
+            LongByReference libVer = new LongByReference();
+            processError(libvirt.virConnectGetLibVersion(this.vcp, libVer));
+            version = libVer.getValue();
+            libVersion = version;
+        }
+        return version;
     }
 
     /**
@@ -216,6 +400,31 @@ public class Connect {
      */
     protected ConnectionPointer vcp;
 
+    // closes the native connection, also if this object is not closed
+    private final NativeResources.Handle nativeHandle;
+
+    /**
+     * The domain identity map, null unless enabled.
+     */
+    volatile DomainIdentityMap domainIdentityMap;
+
+    /**
+     * The domains passed to event listeners, when the identity map is
+     * disabled.
+     */
+    final EventDomainCache eventDomains = new EventDomainCache(this);
+
+    /**
+     * The dispatcher delivering events, null to deliver them directly.
+     */
+    private volatile EventDispatcher eventDispatcher;
+
+    // the identity of the connection, queried once as it does not change
+    // while the connection is open
+    private volatile String uri;
+    private volatile String type;
+    private volatile long libVersion;
+
     /* (non-Javadoc)
      * @see java.lang.Object#hashCode()
      */
@@ -267,6 +476,26 @@ public class Connect {
      */
     Connect(final ConnectionPointer ptr) {
         vcp = ptr;
+        nativeHandle = register(this, ptr);
+    }
+
+    /**
+     * Registers the native connection, to be closed on the cleaner thread
+     * if this object is not closed; closing a remote connection may block.
+     */
+    private static NativeResources.Handle register(final Connect conn, final ConnectionPointer ptr) {
+        return ptr == null ? null
+            : NativeResources.register(conn, Connect.class, () -> {
+                    // read first, as a connection opened once this one is
+                    // closed may get the same pointer
+                    String uri = FlightRecorder.INSTANCE.connectionURI(ptr);
+                    int ret = libvirt.virConnectClose(ptr);
+                    if (ret == 0) {
+                        // other references keep the connection open otherwise
+                        FlightRecorder.INSTANCE.connectionClosed(ptr, uri);
+                    }
+                    return ret;
+                });
     }
 
     /**
@@ -355,8 +584,10 @@ public class Connect {
         }
 
         vcp = libvirt.virConnectOpenAuth(uri, vAuth, flags);
+        nativeHandle = register(this, vcp);
         // Check for an error
         processError(vcp);
+        FlightRecorder.INSTANCE.connectionOpened(vcp, uri);
     }
 
     /**
@@ -415,19 +646,23 @@ public class Connect {
     public int close() throws LibvirtException {
         int success = 0;
         if (vcp != null) {
-            success = libvirt.virConnectClose(vcp);
+            success = nativeHandle.close();
 
             // if the connection has been closed (i.e. the reference count is
             // down to zero), forget about the registered close function
             if (success == 0) {
                 registeredCloseFunc = null;
             }
+            eventDomains.clear();
 
             // If leave an invalid pointer dangling around JVM crashes and burns
             // if someone tries to call a method on us
             // We rely on the underlying libvirt error handling to detect that
             // it's called with a null virConnectPointer
             vcp = null;
+            uri = null;
+            type = null;
+            libVersion = 0;
         }
         return processError(success);
     }
@@ -443,13 +678,48 @@ public class Connect {
      * @see #unregisterCloseListener
      */
     public void registerCloseListener(final ConnectionCloseListener l) throws LibvirtException {
-        CloseFunc cf = new CloseFunc(l);
+        closeFunc().listener = l;
+    }
+
+    /**
+     * Returns the close function, registering it with libvirt first if
+     * necessary.
+     */
+    private synchronized CloseFunc closeFunc() throws LibvirtException {
+        if (this.registeredCloseFunc == null) {
+            CloseFunc cf = new CloseFunc();
+
+            processError(libvirt.virConnectRegisterCloseCallback(this.vcp,
+                                                                 cf,
+                                                                 null,
+                                                                 null));
+            this.registeredCloseFunc = cf;
+        }
+        return this.registeredCloseFunc;
+    }
+
+    /**
+     * Adds a close listener used internally, independent of the one
+     * registered by the application.
+     */
+    void addInternalCloseListener(final ConnectionCloseListener l) throws LibvirtException {
+        closeFunc().internal.add(l);
+    }
+
+    void removeInternalCloseListener(final ConnectionCloseListener l) throws LibvirtException {
+        CloseFunc cf = this.registeredCloseFunc;
+        if (cf != null) {
+            cf.internal.remove(l);
+            unregisterCloseFuncIfUnused();
+        }
+    }
 
-        processError(libvirt.virConnectRegisterCloseCallback(this.vcp,
-                                                             cf,
-                                                             null,
-                                                             null));
-        this.registeredCloseFunc = cf;
+    private synchronized void unregisterCloseFuncIfUnused() throws LibvirtException {
+        if (this.registeredCloseFunc != null && this.registeredCloseFunc.isEmpty()) {
+            processError(libvirt.virConnectUnregisterCloseCallback(this.vcp,
+                                                                   this.registeredCloseFunc));
+            this.registeredCloseFunc = null;
+        }
     }
 
     /**
@@ -461,10 +731,10 @@ public class Connect {
      * @see #registerCloseListener
      */
     public void unregisterCloseListener() throws LibvirtException {
-        if (this.registeredCloseFunc != null) {
-            processError(libvirt.virConnectUnregisterCloseCallback(this.vcp,
-                                                                   this.registeredCloseFunc));
-            this.registeredCloseFunc = null;
+        CloseFunc cf = this.registeredCloseFunc;
+        if (cf != null) {
+            cf.listener = null;
+            unregisterCloseFuncIfUnused();
         }
     }
 
@@ -528,7 +798,7 @@ public class Connect {
             throws LibvirtException {
         DomainPointer ptr = processError(libvirt.virDomainCreateLinux(vcp, xmlDesc, flags));
 
-        return new Domain(this, ptr);
+        return domain(ptr);
     }
 
     /**
@@ -543,7 +813,7 @@ public class Connect {
     public Domain domainCreateXML(final String xmlDesc, final int flags)
             throws LibvirtException {
         DomainPointer ptr = processError(libvirt.virDomainCreateXML(vcp, xmlDesc, flags));
-        return new Domain(this, ptr);
+        return domain(ptr);
     }
 
     /**
@@ -557,7 +827,7 @@ public class Connect {
      */
     public Domain domainDefineXML(final String xmlDesc) throws LibvirtException {
         DomainPointer ptr = processError(libvirt.virDomainDefineXML(vcp, xmlDesc));
-        return new Domain(this, ptr);
+        return domain(ptr);
     }
 
     /**
@@ -574,45 +844,297 @@ public class Connect {
      */
     private void domainEventDeregister(final int eventID, final EventListener l)
             throws LibvirtException {
-        if (l == null) {
-            return;
+        eventListeners.deregister(eventID, l);
+        forgetIfUnregistered(l);
+    }
+
+    /**
+     * Drops the dispatcher queue of a listener no longer registered for
+     * any event.
+     */
+    private void forgetIfUnregistered(final EventListener l) {
+        EventDispatcher d = eventDispatcher;
+        if (d != null && l != null && !isRegistered(l)) {
+            d.remove(l);
         }
+    }
 
-        Map<EventListener, RegisteredEventListener> handlers = eventListeners[eventID];
+    private boolean isRegistered(final EventListener l) {
+        return eventListeners.contains(l)
+            || networkEventListeners.contains(l)
+            || storagePoolEventListeners.contains(l)
+            || nodeDeviceEventListeners.contains(l)
+            || secretEventListeners.contains(l);
+    }
 
-        if (handlers == null) {
-            return;
-        }
+    /**
+     * Registers a listener for a domain event. Listeners of the same event
+     * and domain share one native callback, created by the factory when
+     * the first of them is registered.
+     */
+    private void domainEventRegister(final Domain domain, final int eventID,
+                                     final EventRegistry.CallbackFactory factory,
+                                     final EventListener l)
+            throws LibvirtException {
+        eventListeners.register(eventID, domain == null ? null : domain.vdp, l, factory);
+    }
 
-        RegisteredEventListener listener = handlers.remove(l);
+    private void networkEventRegister(final Network network, final int eventID,
+                                      final EventRegistry.CallbackFactory factory,
+                                      final EventListener l)
+            throws LibvirtException {
+        networkEventListeners.register(eventID, network == null ? null : network.vnp, l, factory);
+    }
 
-        if (listener != null) {
-            processError(libvirt.virConnectDomainEventDeregisterAny(vcp, listener.callbackId));
-        }
+    private void networkEventDeregister(final int eventID, final EventListener l)
+            throws LibvirtException {
+        networkEventListeners.deregister(eventID, l);
+        forgetIfUnregistered(l);
     }
 
-    private void domainEventRegister(final Domain domain, final int eventID,
-                                     final Libvirt.VirDomainEventCallback cb,
+    private void storagePoolEventRegister(final StoragePool pool, final int eventID,
+                                          final EventRegistry.CallbackFactory factory,
+                                          final EventListener l)
+            throws LibvirtException {
+        storagePoolEventListeners.register(eventID, pool == null ? null : pool.vspp, l, factory);
+    }
+
+    private void storagePoolEventDeregister(final int eventID, final EventListener l)
+            throws LibvirtException {
+        storagePoolEventListeners.deregister(eventID, l);
+        forgetIfUnregistered(l);
+    }
+
+    private void nodeDeviceEventRegister(final Device device, final int eventID,
+                                         final EventRegistry.CallbackFactory factory,
+                                         final EventListener l)
+            throws LibvirtException {
+        nodeDeviceEventListeners.register(eventID, device == null ? null : device.vdp, l, factory);
+    }
+
+    private void nodeDeviceEventDeregister(final int eventID, final EventListener l)
+            throws LibvirtException {
+        nodeDeviceEventListeners.deregister(eventID, l);
+        forgetIfUnregistered(l);
+    }
+
+    private void secretEventRegister(final Secret secret, final int eventID,
+                                     final EventRegistry.CallbackFactory factory,
                                      final EventListener l)
             throws LibvirtException {
-        Map<EventListener, RegisteredEventListener> handlers = eventListeners[eventID];
+        secretEventListeners.register(eventID, secret == null ? null : secret.vsp, l, factory);
+    }
+
+    private void secretEventDeregister(final int eventID, final EventListener l)
+            throws LibvirtException {
+        secretEventListeners.deregister(eventID, l);
+        forgetIfUnregistered(l);
+    }
+
+    /**
+     * Sets the dispatcher delivering the events of this connection to the
+     * listeners.
+     * <p>
+     * By default, and when {@code null} is given, listeners are called
+     * directly on the thread running the event loop.
+     *
+     * @param dispatcher
+     *            the dispatcher, or {@code null}
+     * @see EventDispatcher
+     */
+    public void setEventDispatcher(final EventDispatcher dispatcher) {
+        this.eventDispatcher = dispatcher;
+    }
+
+    /**
+     * @return the dispatcher set with {@link #setEventDispatcher}, or
+     *         {@code null}
+     */
+    public EventDispatcher getEventDispatcher() {
+        return eventDispatcher;
+    }
+
+    /**
+     * Returns a publisher of the domain events of the given types, with a
+     * buffer of 256 events per subscriber, dropping the oldest ones when
+     * it is full.
+     *
+     * @param types
+     *            the event types to publish, at least one
+     * @throws IllegalArgumentException
+     *             if {@code types} is empty
+     * @see #events(Set, int, EventPublisher.Overflow)
+     */
+    public EventPublisher events(final Set<DomainEventRecord.Type> types) {
+        return events(types, 256, EventPublisher.Overflow.DROP_OLDEST);
+    }
+
+    /**
+     * Returns a publisher of the domain events of the given types.
+     * <p>
+     * No native callback is registered until a subscriber subscribes.
+     *
+     * @param types
+     *            the event types to publish, at least one
+     * @param bufferSize
+     *            the number of events buffered per subscriber
+     * @param overflow
+     *            what to do when the buffer of a subscriber is full
+     * @throws IllegalArgumentException
+     *             if {@code types} is empty or {@code bufferSize} is not
+     *             positive
+     * @see EventPublisher
+     */
+    public EventPublisher events(final Set<DomainEventRecord.Type> types, final int bufferSize,
+                                 final EventPublisher.Overflow overflow) {
+        return new EventPublisher(this, types, bufferSize, overflow);
+    }
+
+    /**
+     * Delivers an event to each of the given listeners, which implement the
+     * given listener interface.
+     */
+    private <L extends EventListener> void dispatch(final List<EventListener> listeners,
+                                                    final Class<L> type, final Consumer<L> delivery) {
+        final long received = System.nanoTime();
+        for (EventListener l : listeners) {
+            final L listener = type.cast(l);
+            dispatch(l, () -> {
+                    Object event = FlightRecorder.INSTANCE.beginCallback();
+                    delivery.accept(listener);
+                    if (event != null) {
+                        FlightRecorder.INSTANCE.commitCallback(event, type, received);
+                    }
+                });
+        }
+    }
 
-        if (handlers == null) {
-            handlers = new HashMap<EventListener, RegisteredEventListener>();
-            eventListeners[eventID] = handlers;
-        } else if (handlers.containsKey(l)) {
-            return;
+    /**
+     * Delivers an event to a listener, either directly or through the
+     * event dispatcher.
+     */
+    private void dispatch(final EventListener l, final Runnable delivery) {
+        EventDispatcher d = eventDispatcher;
+        if (d == null) {
+            // a failing listener must not keep the event from the others
+            // sharing the native callback
+            try {
+                delivery.run();
+            } catch (RuntimeException e) {
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        } else {
+            d.dispatch(l, delivery);
         }
+    }
 
-        DomainPointer ptr = domain == null ? null : domain.vdp;
-        int ret =
-                processError(libvirt.virConnectDomainEventRegisterAny(vcp, ptr,
-                                                                      eventID, cb,
-                                                                      null, null));
+    /**
+     * Registers a listener for all domains, by event type. The listener
+     * must implement the listener interface of the type.
+     */
+    void domainEventRegisterByType(final DomainEventRecord.Type type, final EventListener l)
+            throws LibvirtException {
+        switch (type) {
+            case LIFECYCLE:
+                domainEventRegister(null, (LifecycleListener) l);
+                break;
+            case REBOOT:
+                domainEventRegister(null, (RebootListener) l);
+                break;
+            case IO_ERROR:
+                domainEventRegister(null, (IOErrorListener) l);
+                break;
+            case BLOCK_JOB:
+                domainEventRegister(null, (BlockJobListener) l);
+                break;
+            case PM_WAKEUP:
+                domainEventRegister(null, (PMWakeupListener) l);
+                break;
+            case PM_SUSPEND:
+                domainEventRegister(null, (PMSuspendListener) l);
+                break;
+            case AGENT_LIFECYCLE:
+                domainEventRegister(null, (AgentLifecycleListener) l);
+                break;
+            case TUNABLE:
+                tunableEventRegister(null, (TunableListener) l);
+                break;
+            case JOB_COMPLETED:
+                jobCompletedEventRegister(null, (JobCompletedListener) l);
+                break;
+            case MIGRATION_ITERATION:
+                migrationIterationEventRegister(null, (MigrationIterationListener) l);
+                break;
+            case BLOCK_THRESHOLD:
+                blockThresholdEventRegister(null, (BlockThresholdListener) l);
+                break;
+            case METADATA_CHANGE:
+                metadataChangeEventRegister(null, (MetadataChangeListener) l);
+                break;
+            case DEVICE_ADDED:
+                deviceAddedEventRegister(null, (DeviceAddedListener) l);
+                break;
+            case DEVICE_REMOVED:
+                deviceRemovedEventRegister(null, (DeviceRemovedListener) l);
+                break;
+            case BALLOON_CHANGE:
+                balloonChangeEventRegister(null, (BalloonChangeListener) l);
+                break;
+            case MEMORY_FAILURE:
+                memoryFailureEventRegister(null, (MemoryFailureListener) l);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown event type " + type);
+        }
+    }
 
-        // track the handler
-        // Note: it is important that the callback does not get GCed
-        handlers.put(l, new RegisteredEventListener(cb, ret));
+    /**
+     * Removes a listener registered with
+     * {@link #domainEventRegisterByType(DomainEventRecord.Type, EventListener)}.
+     */
+    void domainEventDeregisterByType(final DomainEventRecord.Type type, final EventListener l)
+            throws LibvirtException {
+        domainEventDeregister(domainEventID(type), l);
+    }
+
+    private static int domainEventID(final DomainEventRecord.Type type) {
+        switch (type) {
+            case LIFECYCLE:
+                return DomainEventID.LIFECYCLE;
+            case REBOOT:
+                return DomainEventID.REBOOT;
+            case IO_ERROR:
+                return DomainEventID.IO_ERROR;
+            case BLOCK_JOB:
+                return DomainEventID.BLOCK_JOB_2;
+            case PM_WAKEUP:
+                return DomainEventID.PMWAKEUP;
+            case PM_SUSPEND:
+                return DomainEventID.PMSUSPEND;
+            case AGENT_LIFECYCLE:
+                return DomainEventID.AGENT_LIFECYCLE;
+            case TUNABLE:
+                return DomainEventID.TUNABLE;
+            case JOB_COMPLETED:
+                return DomainEventID.JOB_COMPLETED;
+            case MIGRATION_ITERATION:
+                return DomainEventID.MIGRATION_ITERATION;
+            case BLOCK_THRESHOLD:
+                return DomainEventID.BLOCK_THRESHOLD;
+            case METADATA_CHANGE:
+                return DomainEventID.METADATA_CHANGE;
+            case DEVICE_ADDED:
+                return DomainEventID.DEVICE_ADDED;
+            case DEVICE_REMOVED:
+                return DomainEventID.DEVICE_REMOVED;
+            case BALLOON_CHANGE:
+                return DomainEventID.BALLON_CHANGE;
+            case MEMORY_FAILURE:
+                return DomainEventID.MEMORY_FAILURE;
+            default:
+                throw new IllegalArgumentException("unknown event type " + type);
+        }
     }
 
     void domainEventRegister(final Domain domain, final BlockJobListener cb) throws LibvirtException{
@@ -620,7 +1142,7 @@ public class Connect {
             throw new IllegalArgumentException("BlockCopy callback cannot be null");
         }
 
-        Libvirt.VirConnectDomainEventBlockJobCallback virCB =
+        EventRegistry.CallbackFactory virCB = listeners ->
             new Libvirt.VirConnectDomainEventBlockJobCallback() {
                 @Override
                 public void eventCallback(final ConnectionPointer virConnectPtr,
@@ -632,11 +1154,10 @@ public class Connect {
                     assert vcp.equals(virConnectPtr);
 
                     try {
-                        Domain d = Domain.constructIncRef(Connect.this, virDomainPointer);
-                        cb.onEvent(d,
-                                   diskPath,
-                                   getConstant(BlockJobType.class, type),
-                                   getConstant(BlockJobStatus.class, status));
+                        final Domain d = eventDomain(virDomainPointer);
+                        final BlockJobType t = getConstant(BlockJobType.class, type);
+                        final BlockJobStatus s = getConstant(BlockJobStatus.class, status);
+                        dispatch(listeners, BlockJobListener.class, (BlockJobListener l) -> l.onEvent(d, diskPath, t, s));
                     } catch (LibvirtException e) {
                         throw new RuntimeException("libvirt error in Block Job Callback", e);
                     }
@@ -666,7 +1187,7 @@ public class Connect {
             throw new IllegalArgumentException("IOError callback cannot be null");
         }
 
-        Libvirt.VirConnectDomainEventIOErrorCallback virCB =
+        EventRegistry.CallbackFactory virCB = listeners ->
                 new Libvirt.VirConnectDomainEventIOErrorCallback() {
                 @Override
                 public void eventCallback(final ConnectionPointer virConnectPtr,
@@ -678,11 +1199,9 @@ public class Connect {
                     assert vcp.equals(virConnectPtr);
 
                     try {
-                        Domain d = Domain.constructIncRef(Connect.this, virDomainPointer);
-                        cb.onIOError(d,
-                                     srcPath,
-                                     devAlias,
-                                     getConstant(IOErrorAction.class, action));
+                        final Domain d = eventDomain(virDomainPointer);
+                        final IOErrorAction a = getConstant(IOErrorAction.class, action);
+                        dispatch(listeners, IOErrorListener.class, (IOErrorListener l) -> l.onIOError(d, srcPath, devAlias, a));
                     } catch (LibvirtException e) {
                         throw new RuntimeException("libvirt error in IOError callback", e);
                     }
@@ -713,7 +1232,7 @@ public class Connect {
             throw new IllegalArgumentException("RebootCallback cannot be null");
         }
 
-        Libvirt.VirConnectDomainEventGenericCallback virCB =
+        EventRegistry.CallbackFactory virCB = listeners ->
                 new Libvirt.VirConnectDomainEventGenericCallback() {
                 @Override
                 public void eventCallback(final ConnectionPointer virConnectPtr,
@@ -722,8 +1241,8 @@ public class Connect {
                     assert vcp.equals(virConnectPtr);
 
                     try {
-                        Domain d = Domain.constructIncRef(Connect.this, virDomainPointer);
-                        cb.onReboot(d);
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, RebootListener.class, (RebootListener l) -> l.onReboot(d));
                     } catch (LibvirtException e) {
                         throw new RuntimeException("libvirt error in reboot callback", e);
                     }
@@ -739,7 +1258,7 @@ public class Connect {
             throw new IllegalArgumentException("LifecycleCallback cannot be null");
         }
 
-        Libvirt.VirConnectDomainEventCallback virCB =
+        EventRegistry.CallbackFactory virCB = listeners ->
                 new Libvirt.VirConnectDomainEventCallback() {
                 @Override
                 public int eventCallback(final ConnectionPointer virConnectPtr,
@@ -750,11 +1269,23 @@ public class Connect {
                     assert vcp.equals(virConnectPtr);
 
                     try {
-                        Domain dom = Domain.constructIncRef(Connect.this, virDomainPointer);
+                        final Domain dom = eventDomain(virDomainPointer);
                         DomainEventType type = getConstant(DomainEventType.class, eventCode);
-                        DomainEvent event = new DomainEvent(type, detailCode);
-
-                        cb.onLifecycleChange(dom, event);
+                        final DomainEvent event = new DomainEvent(type, detailCode);
+
+                        if (type == DomainEventType.UNDEFINED) {
+                            DomainIdentityMap identityMap = domainIdentityMap;
+                            if (identityMap != null) {
+                                identityMap.remove(dom);
+                            }
+                            eventDomains.remove(dom);
+                        } else if (type == DomainEventType.STOPPED) {
+                            // its next run has another ID, or, if it is
+                            // transient, it is gone
+                            eventDomains.remove(dom);
+                        }
+
+                        dispatch(listeners, LifecycleListener.class, (LifecycleListener l) -> l.onLifecycleChange(dom, event));
                     } catch (LibvirtException e) {
                         throw new RuntimeException("libvirt error in lifecycle callback", e);
                     }
@@ -774,7 +1305,7 @@ public class Connect {
         if (cb == null)
             throw new IllegalArgumentException("AgentLifecycleCallback cannot be null");
 
-        Libvirt.VirConnectDomainAgentLifecycleEventCallback virCB = new Libvirt.VirConnectDomainAgentLifecycleEventCallback() {
+        EventRegistry.CallbackFactory virCB = listeners -> new Libvirt.VirConnectDomainAgentLifecycleEventCallback() {
             @Override
             public int eventCallback(ConnectionPointer virConnectPtr, DomainPointer virDomainPointer,
                                      final int state,
@@ -783,8 +1314,8 @@ public class Connect {
                 assert vcp.equals(virConnectPtr);
 
                 try {
-                    Domain dom = Domain.constructIncRef(Connect.this, virDomainPointer);
-                    cb.onAgentLifecycleChange(dom, state, reason);
+                    final Domain dom = eventDomain(virDomainPointer);
+                    dispatch(listeners, AgentLifecycleListener.class, (AgentLifecycleListener l) -> l.onAgentLifecycleChange(dom, state, reason));
                 } catch (LibvirtException e) {
                     throw new RuntimeException("libvirt error in  agent lifecycle callback", e);
                 }
@@ -840,7 +1371,7 @@ public class Connect {
             throw new IllegalArgumentException("PMWakeupCallback cannot be null");
         }
 
-        Libvirt.VirDomainEventCallback virCB =
+        EventRegistry.CallbackFactory virCB = listeners ->
             new Libvirt.VirConnectDomainEventPMChangeCallback() {
                 @Override
                 public void eventCallback(final ConnectionPointer virConnectPtr,
@@ -850,8 +1381,9 @@ public class Connect {
                     assert vcp.equals(virConnectPtr);
 
                     try {
-                        Domain d = Domain.constructIncRef(Connect.this, virDomainPointer);
-                        cb.onPMWakeup(d, getConstant(PMWakeupReason.class, reason));
+                        final Domain d = eventDomain(virDomainPointer);
+                        final PMWakeupReason r = getConstant(PMWakeupReason.class, reason);
+                        dispatch(listeners, PMWakeupListener.class, (PMWakeupListener l) -> l.onPMWakeup(d, r));
                     } catch (LibvirtException e) {
                         throw new RuntimeException("libvirt error handling PMWakeup callback", e);
                     }
@@ -867,7 +1399,7 @@ public class Connect {
             throw new IllegalArgumentException("PMSuspendCallback cannot be null");
         }
 
-        Libvirt.VirDomainEventCallback virCB =
+        EventRegistry.CallbackFactory virCB = listeners ->
             new Libvirt.VirConnectDomainEventPMChangeCallback() {
                 @Override
                 public void eventCallback(final ConnectionPointer virConnectPtr,
@@ -877,8 +1409,9 @@ public class Connect {
                     assert vcp.equals(virConnectPtr);
 
                     try {
-                        Domain d = Domain.constructIncRef(Connect.this, virDomainPointer);
-                        cb.onPMSuspend(d, getConstant(PMSuspendReason.class, reason));
+                        final Domain d = eventDomain(virDomainPointer);
+                        final PMSuspendReason r = getConstant(PMSuspendReason.class, reason);
+                        dispatch(listeners, PMSuspendListener.class, (PMSuspendListener l) -> l.onPMSuspend(d, r));
                     } catch (LibvirtException e) {
                         throw new RuntimeException("libvirt error in PMSuspend callback", e);
                     }
@@ -921,7 +1454,7 @@ public class Connect {
      * @since 1.5.2
      */
     public void removePMSuspendListener(final PMSuspendListener l) throws LibvirtException {
-        domainEventDeregister(DomainEventID.PMWAKEUP, l);
+        domainEventDeregister(DomainEventID.PMSUSPEND, l);
     }
 
     /**
@@ -1051,80 +1584,1096 @@ public class Connect {
         domainEventDeregister(DomainEventID.IO_ERROR, l);
     }
 
-    /**
-     * Finds a domain based on the hypervisor ID number.
-     *
-     * @param id
-     *            the hypervisor id
-     * @return the Domain object
-     * @throws LibvirtException
-     */
-    public Domain domainLookupByID(final int id) throws LibvirtException {
-        DomainPointer ptr = processError(libvirt.virDomainLookupByID(vcp, id));
-        return new Domain(this, ptr);
+    void tunableEventRegister(final Domain domain, final TunableListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("TunableCallback cannot be null");
+        }
+
+        final TypedParameterList.FieldNames names = new TypedParameterList.FieldNames();
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventTypedParamsCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final Pointer params,
+                                          final int nparams,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        final TypedParameterList p = TypedParameterList.decode(params, nparams, names);
+                        dispatch(listeners, TunableListener.class, (TunableListener l) -> l.onTunableChange(d, p));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in tunable callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.TUNABLE, virCB, cb);
     }
 
     /**
-     * Looks up a domain based on its name.
+     * Adds the specified listener to receive tunable change events for
+     * domains of this connection.
      *
-     * @param name
-     *            the name of the domain
-     * @return the Domain object
-     * @throws LibvirtException
+     * @param  l   the tunable listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeTunableListener
+     * @see Domain#addTunableListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
      */
-    public Domain domainLookupByName(final String name) throws LibvirtException {
-        DomainPointer ptr = processError(libvirt.virDomainLookupByName(vcp, name));
-        return new Domain(this, ptr);
+    public void addTunableListener(final TunableListener l) throws LibvirtException {
+        tunableEventRegister(null, l);
     }
 
     /**
-     * Looks up a domain based on its UUID in array form. The UUID Array
-     * contains an unpacked representation of the UUID, each int contains only
-     * one byte.
+     * Removes the specified tunable listener so that it no longer
+     * receives tunable change events.
      *
-     * @param uuid
-     *            the uuid as an unpacked int array
-     * @return the Domain object
-     * @throws LibvirtException
+     * @param l    the tunable listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
      */
-    public Domain domainLookupByUUID(final int[] uuid) throws LibvirtException {
-        byte[] uuidBytes = Connect.createUUIDBytes(uuid);
-        DomainPointer ptr = processError(libvirt.virDomainLookupByUUID(vcp, uuidBytes));
-        return new Domain(this, ptr);
+    public void removeTunableListener(final TunableListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.TUNABLE, l);
     }
 
-    /**
-     * Fetch a domain based on its globally unique id
-     *
-     * @param uuid
-     *            a java UUID
-     * @return a new domain object
-     * @throws LibvirtException
-     */
-    public Domain domainLookupByUUID(final UUID uuid) throws LibvirtException {
-        return domainLookupByUUIDString(uuid.toString());
+    void jobCompletedEventRegister(final Domain domain, final JobCompletedListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("JobCompletedCallback cannot be null");
+        }
+
+        final TypedParameterList.FieldNames names = new TypedParameterList.FieldNames();
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventTypedParamsCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final Pointer params,
+                                          final int nparams,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        final TypedParameterList p = TypedParameterList.decode(params, nparams, names);
+                        dispatch(listeners, JobCompletedListener.class, (JobCompletedListener l) -> l.onJobCompleted(d, p));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in job completed callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.JOB_COMPLETED, virCB, cb);
     }
 
     /**
-     * Looks up a domain based on its uuid in String form.
+     * Adds the specified listener to receive job completed events for
+     * domains of this connection.
      *
-     * @param uuid
-     *            the uuid in canonical String representation
-     * @return the Domain object
-     * @throws LibvirtException
+     * @param  l   the job completed listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeJobCompletedListener
+     * @see Domain#addJobCompletedListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
      */
-    public Domain domainLookupByUUIDString(final String uuid) throws LibvirtException {
-        DomainPointer ptr = processError(libvirt.virDomainLookupByUUIDString(vcp, uuid));
-        return new Domain(this, ptr);
+    public void addJobCompletedListener(final JobCompletedListener l) throws LibvirtException {
+        jobCompletedEventRegister(null, l);
     }
 
     /**
-     * Reads a native XML configuration document, and generates generates a
-     * domain configuration file describing the domain. The format of the native
-     * data is hypervisor dependant.
+     * Removes the specified job completed listener so that it no longer
+     * receives job completed events.
      *
-     * @return domain XML as String, or {@code null} on error
-     * @throws LibvirtException
+     * @param l    the job completed listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeJobCompletedListener(final JobCompletedListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.JOB_COMPLETED, l);
+    }
+
+    void migrationIterationEventRegister(final Domain domain, final MigrationIterationListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("MigrationIterationCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventMigrationIterationCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final int iteration,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, MigrationIterationListener.class, (MigrationIterationListener l) -> l.onMigrationIteration(d, iteration));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in migration iteration callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.MIGRATION_ITERATION, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive migration iteration events
+     * for domains of this connection.
+     *
+     * @param  l   the migration iteration listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeMigrationIterationListener
+     * @see Domain#addMigrationIterationListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addMigrationIterationListener(final MigrationIterationListener l) throws LibvirtException {
+        migrationIterationEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified migration iteration listener so that it no
+     * longer receives migration iteration events.
+     *
+     * @param l    the migration iteration listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeMigrationIterationListener(final MigrationIterationListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.MIGRATION_ITERATION, l);
+    }
+
+    void blockThresholdEventRegister(final Domain domain, final BlockThresholdListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("BlockThresholdCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventBlockThresholdCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final String dev,
+                                          final String path,
+                                          final long threshold,
+                                          final long excess,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, BlockThresholdListener.class, (BlockThresholdListener l) -> l.onBlockThreshold(d, dev, path, threshold, excess));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in block threshold callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.BLOCK_THRESHOLD, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive block threshold events for
+     * domains of this connection.
+     *
+     * @param  l   the block threshold listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeBlockThresholdListener
+     * @see Domain#addBlockThresholdListener
+     * @see Domain#setBlockThreshold
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addBlockThresholdListener(final BlockThresholdListener l) throws LibvirtException {
+        blockThresholdEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified block threshold listener so that it no longer
+     * receives block threshold events.
+     *
+     * @param l    the block threshold listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeBlockThresholdListener(final BlockThresholdListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.BLOCK_THRESHOLD, l);
+    }
+
+    void metadataChangeEventRegister(final Domain domain, final MetadataChangeListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("MetadataChangeCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventMetadataChangeCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final int type,
+                                          final String nsuri,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, MetadataChangeListener.class, (MetadataChangeListener l) -> l.onMetadataChange(d, type, nsuri));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in metadata change callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.METADATA_CHANGE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive metadata change events for
+     * domains of this connection.
+     *
+     * @param  l   the metadata change listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeMetadataChangeListener
+     * @see Domain#addMetadataChangeListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addMetadataChangeListener(final MetadataChangeListener l) throws LibvirtException {
+        metadataChangeEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified metadata change listener so that it no longer
+     * receives metadata change events.
+     *
+     * @param l    the metadata change listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeMetadataChangeListener(final MetadataChangeListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.METADATA_CHANGE, l);
+    }
+
+    void deviceAddedEventRegister(final Domain domain, final DeviceAddedListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("DeviceAddedCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventDeviceCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final String devAlias,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, DeviceAddedListener.class, (DeviceAddedListener l) -> l.onDeviceAdded(d, devAlias));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in device added callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.DEVICE_ADDED, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive device added events for
+     * domains of this connection.
+     *
+     * @param  l   the device added listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeDeviceAddedListener
+     * @see Domain#addDeviceAddedListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addDeviceAddedListener(final DeviceAddedListener l) throws LibvirtException {
+        deviceAddedEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified device added listener so that it no longer
+     * receives device added events.
+     *
+     * @param l    the device added listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeDeviceAddedListener(final DeviceAddedListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.DEVICE_ADDED, l);
+    }
+
+    void deviceRemovedEventRegister(final Domain domain, final DeviceRemovedListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("DeviceRemovedCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventDeviceCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final String devAlias,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, DeviceRemovedListener.class, (DeviceRemovedListener l) -> l.onDeviceRemoved(d, devAlias));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in device removed callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.DEVICE_REMOVED, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive device removed events for
+     * domains of this connection.
+     *
+     * @param  l   the device removed listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeDeviceRemovedListener
+     * @see Domain#addDeviceRemovedListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addDeviceRemovedListener(final DeviceRemovedListener l) throws LibvirtException {
+        deviceRemovedEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified device removed listener so that it no longer
+     * receives device removed events.
+     *
+     * @param l    the device removed listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeDeviceRemovedListener(final DeviceRemovedListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.DEVICE_REMOVED, l);
+    }
+
+    void balloonChangeEventRegister(final Domain domain, final BalloonChangeListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("BalloonChangeCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventBalloonChangeCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final long actual,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        dispatch(listeners, BalloonChangeListener.class, (BalloonChangeListener l) -> l.onBalloonChange(d, actual));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in balloon change callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.BALLON_CHANGE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive balloon change events for
+     * domains of this connection.
+     *
+     * @param  l   the balloon change listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeBalloonChangeListener
+     * @see Domain#addBalloonChangeListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addBalloonChangeListener(final BalloonChangeListener l) throws LibvirtException {
+        balloonChangeEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified balloon change listener so that it no longer
+     * receives balloon change events.
+     *
+     * @param l    the balloon change listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeBalloonChangeListener(final BalloonChangeListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.BALLON_CHANGE, l);
+    }
+
+    void memoryFailureEventRegister(final Domain domain, final MemoryFailureListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("MemoryFailureCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectDomainEventMemoryFailureCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DomainPointer virDomainPointer,
+                                          final int recipient,
+                                          final int action,
+                                          final int flags,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Domain d = eventDomain(virDomainPointer);
+                        final MemoryFailureRecipient r = getConstant(MemoryFailureRecipient.class, recipient);
+                        final MemoryFailureAction a = getConstant(MemoryFailureAction.class, action);
+                        dispatch(listeners, MemoryFailureListener.class, (MemoryFailureListener l) -> l.onMemoryFailure(d, r, a, flags));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in memory failure callback", e);
+                    }
+                }
+            };
+
+        domainEventRegister(domain, DomainEventID.MEMORY_FAILURE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive memory failure events for
+     * domains of this connection.
+     *
+     * @param  l   the memory failure listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeMemoryFailureListener
+     * @see Domain#addMemoryFailureListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny">
+        virConnectDomainEventRegisterAny</a>
+     */
+    public void addMemoryFailureListener(final MemoryFailureListener l) throws LibvirtException {
+        memoryFailureEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified memory failure listener so that it no longer
+     * receives memory failure events.
+     *
+     * @param l    the memory failure listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventDeregisterAny">
+        virConnectDomainEventDeregisterAny</a>
+     */
+    public void removeMemoryFailureListener(final MemoryFailureListener l) throws LibvirtException {
+        domainEventDeregister(DomainEventID.MEMORY_FAILURE, l);
+    }
+
+    void networkEventRegister(final Network network, final NetworkLifecycleListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("NetworkLifecycleCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectNetworkEventLifecycleCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final NetworkPointer virNetworkPointer,
+                                          final int event,
+                                          final int detail,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Network n = Network.constructIncRef(Connect.this, virNetworkPointer);
+                        final NetworkEventType t = getConstant(NetworkEventType.class, event);
+                        dispatch(listeners, NetworkLifecycleListener.class, (NetworkLifecycleListener l) -> l.onNetworkLifecycleChange(n, t));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in network lifecycle callback", e);
+                    }
+                }
+            };
+
+        networkEventRegister(network, NetworkEventID.LIFECYCLE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive network lifecycle events for
+     * all networks of this connection.
+     *
+     * @param  l   the network lifecycle listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeNetworkLifecycleListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-network.html#virConnectNetworkEventRegisterAny">
+        virConnectNetworkEventRegisterAny</a>
+     */
+    public void addNetworkLifecycleListener(final NetworkLifecycleListener l) throws LibvirtException {
+        networkEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified network lifecycle listener so that it no longer
+     * receives network lifecycle events.
+     *
+     * @param l    the network lifecycle listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-network.html#virConnectNetworkEventDeregisterAny">
+        virConnectNetworkEventDeregisterAny</a>
+     */
+    public void removeNetworkLifecycleListener(final NetworkLifecycleListener l) throws LibvirtException {
+        networkEventDeregister(NetworkEventID.LIFECYCLE, l);
+    }
+
+    void storagePoolEventRegister(final StoragePool pool, final StoragePoolLifecycleListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("StoragePoolLifecycleCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectStoragePoolEventLifecycleCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final StoragePoolPointer virStoragePoolPointer,
+                                          final int event,
+                                          final int detail,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final StoragePool p = StoragePool.constructIncRef(Connect.this, virStoragePoolPointer);
+                        final StoragePoolEventType t = getConstant(StoragePoolEventType.class, event);
+                        dispatch(listeners, StoragePoolLifecycleListener.class, (StoragePoolLifecycleListener l) -> l.onStoragePoolLifecycleChange(p, t));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in storage pool lifecycle callback", e);
+                    }
+                }
+            };
+
+        storagePoolEventRegister(pool, StoragePoolEventID.LIFECYCLE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive storage pool lifecycle events for
+     * all storage pools of this connection.
+     *
+     * @param  l   the storage pool lifecycle listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeStoragePoolLifecycleListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-storage.html#virConnectStoragePoolEventRegisterAny">
+        virConnectStoragePoolEventRegisterAny</a>
+     */
+    public void addStoragePoolLifecycleListener(final StoragePoolLifecycleListener l) throws LibvirtException {
+        storagePoolEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified storage pool lifecycle listener so that it no longer
+     * receives storage pool lifecycle events.
+     *
+     * @param l    the storage pool lifecycle listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-storage.html#virConnectStoragePoolEventDeregisterAny">
+        virConnectStoragePoolEventDeregisterAny</a>
+     */
+    public void removeStoragePoolLifecycleListener(final StoragePoolLifecycleListener l) throws LibvirtException {
+        storagePoolEventDeregister(StoragePoolEventID.LIFECYCLE, l);
+    }
+
+    void storagePoolEventRegister(final StoragePool pool, final StoragePoolRefreshListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("StoragePoolRefreshCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectStoragePoolEventGenericCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final StoragePoolPointer virStoragePoolPointer,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final StoragePool p = StoragePool.constructIncRef(Connect.this, virStoragePoolPointer);
+                        dispatch(listeners, StoragePoolRefreshListener.class, (StoragePoolRefreshListener l) -> l.onStoragePoolRefresh(p));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in storage pool refresh callback", e);
+                    }
+                }
+            };
+
+        storagePoolEventRegister(pool, StoragePoolEventID.REFRESH, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive storage pool refresh events for
+     * all storage pools of this connection.
+     *
+     * @param  l   the storage pool refresh listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeStoragePoolRefreshListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-storage.html#virConnectStoragePoolEventRegisterAny">
+        virConnectStoragePoolEventRegisterAny</a>
+     */
+    public void addStoragePoolRefreshListener(final StoragePoolRefreshListener l) throws LibvirtException {
+        storagePoolEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified storage pool refresh listener so that it no longer
+     * receives storage pool refresh events.
+     *
+     * @param l    the storage pool refresh listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-storage.html#virConnectStoragePoolEventDeregisterAny">
+        virConnectStoragePoolEventDeregisterAny</a>
+     */
+    public void removeStoragePoolRefreshListener(final StoragePoolRefreshListener l) throws LibvirtException {
+        storagePoolEventDeregister(StoragePoolEventID.REFRESH, l);
+    }
+
+    void nodeDeviceEventRegister(final Device device, final NodeDeviceLifecycleListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("NodeDeviceLifecycleCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectNodeDeviceEventLifecycleCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DevicePointer virDevicePointer,
+                                          final int event,
+                                          final int detail,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Device d = Device.constructIncRef(Connect.this, virDevicePointer);
+                        final NodeDeviceEventType t = getConstant(NodeDeviceEventType.class, event);
+                        dispatch(listeners, NodeDeviceLifecycleListener.class, (NodeDeviceLifecycleListener l) -> l.onNodeDeviceLifecycleChange(d, t));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in node device lifecycle callback", e);
+                    }
+                }
+            };
+
+        nodeDeviceEventRegister(device, NodeDeviceEventID.LIFECYCLE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive node device lifecycle events for
+     * all node devices of this connection.
+     *
+     * @param  l   the node device lifecycle listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeNodeDeviceLifecycleListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-nodedev.html#virConnectNodeDeviceEventRegisterAny">
+        virConnectNodeDeviceEventRegisterAny</a>
+     */
+    public void addNodeDeviceLifecycleListener(final NodeDeviceLifecycleListener l) throws LibvirtException {
+        nodeDeviceEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified node device lifecycle listener so that it no longer
+     * receives node device lifecycle events.
+     *
+     * @param l    the node device lifecycle listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-nodedev.html#virConnectNodeDeviceEventDeregisterAny">
+        virConnectNodeDeviceEventDeregisterAny</a>
+     */
+    public void removeNodeDeviceLifecycleListener(final NodeDeviceLifecycleListener l) throws LibvirtException {
+        nodeDeviceEventDeregister(NodeDeviceEventID.LIFECYCLE, l);
+    }
+
+    void nodeDeviceEventRegister(final Device device, final NodeDeviceUpdateListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("NodeDeviceUpdateCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectNodeDeviceEventGenericCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final DevicePointer virDevicePointer,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Device d = Device.constructIncRef(Connect.this, virDevicePointer);
+                        dispatch(listeners, NodeDeviceUpdateListener.class, (NodeDeviceUpdateListener l) -> l.onNodeDeviceUpdate(d));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in node device update callback", e);
+                    }
+                }
+            };
+
+        nodeDeviceEventRegister(device, NodeDeviceEventID.UPDATE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive node device update events for
+     * all node devices of this connection.
+     *
+     * @param  l   the node device update listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeNodeDeviceUpdateListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-nodedev.html#virConnectNodeDeviceEventRegisterAny">
+        virConnectNodeDeviceEventRegisterAny</a>
+     */
+    public void addNodeDeviceUpdateListener(final NodeDeviceUpdateListener l) throws LibvirtException {
+        nodeDeviceEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified node device update listener so that it no longer
+     * receives node device update events.
+     *
+     * @param l    the node device update listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-nodedev.html#virConnectNodeDeviceEventDeregisterAny">
+        virConnectNodeDeviceEventDeregisterAny</a>
+     */
+    public void removeNodeDeviceUpdateListener(final NodeDeviceUpdateListener l) throws LibvirtException {
+        nodeDeviceEventDeregister(NodeDeviceEventID.UPDATE, l);
+    }
+
+    void secretEventRegister(final Secret secret, final SecretLifecycleListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("SecretLifecycleCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectSecretEventLifecycleCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final SecretPointer virSecretPointer,
+                                          final int event,
+                                          final int detail,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Secret s = Secret.constructIncRef(Connect.this, virSecretPointer);
+                        final SecretEventType t = getConstant(SecretEventType.class, event);
+                        dispatch(listeners, SecretLifecycleListener.class, (SecretLifecycleListener l) -> l.onSecretLifecycleChange(s, t));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in secret lifecycle callback", e);
+                    }
+                }
+            };
+
+        secretEventRegister(secret, SecretEventID.LIFECYCLE, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive secret lifecycle events for
+     * all secrets of this connection.
+     *
+     * @param  l   the secret lifecycle listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeSecretLifecycleListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-secret.html#virConnectSecretEventRegisterAny">
+        virConnectSecretEventRegisterAny</a>
+     */
+    public void addSecretLifecycleListener(final SecretLifecycleListener l) throws LibvirtException {
+        secretEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified secret lifecycle listener so that it no longer
+     * receives secret lifecycle events.
+     *
+     * @param l    the secret lifecycle listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-secret.html#virConnectSecretEventDeregisterAny">
+        virConnectSecretEventDeregisterAny</a>
+     */
+    public void removeSecretLifecycleListener(final SecretLifecycleListener l) throws LibvirtException {
+        secretEventDeregister(SecretEventID.LIFECYCLE, l);
+    }
+
+    void secretEventRegister(final Secret secret, final SecretValueChangedListener cb)
+            throws LibvirtException {
+        if (cb == null) {
+            throw new IllegalArgumentException("SecretValueChangedCallback cannot be null");
+        }
+
+        EventRegistry.CallbackFactory virCB = listeners ->
+            new Libvirt.VirConnectSecretEventGenericCallback() {
+                @Override
+                public void eventCallback(final ConnectionPointer virConnectPtr,
+                                          final SecretPointer virSecretPointer,
+                                          final Pointer opaque) {
+                    assert vcp.equals(virConnectPtr);
+
+                    try {
+                        final Secret s = Secret.constructIncRef(Connect.this, virSecretPointer);
+                        dispatch(listeners, SecretValueChangedListener.class, (SecretValueChangedListener l) -> l.onSecretValueChanged(s));
+                    } catch (LibvirtException e) {
+                        throw new RuntimeException("libvirt error in secret value changed callback", e);
+                    }
+                }
+            };
+
+        secretEventRegister(secret, SecretEventID.VALUE_CHANGED, virCB, cb);
+    }
+
+    /**
+     * Adds the specified listener to receive secret value changed events for
+     * all secrets of this connection.
+     *
+     * @param  l   the secret value changed listener
+     * @throws     LibvirtException on failure
+     *
+     * @see #removeSecretValueChangedListener
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-secret.html#virConnectSecretEventRegisterAny">
+        virConnectSecretEventRegisterAny</a>
+     */
+    public void addSecretValueChangedListener(final SecretValueChangedListener l) throws LibvirtException {
+        secretEventRegister(null, l);
+    }
+
+    /**
+     * Removes the specified secret value changed listener so that it no longer
+     * receives secret value changed events.
+     *
+     * @param l    the secret value changed listener
+     * @throws     LibvirtException
+     *
+     * @see
+     *  <a href="https://libvirt.org/html/libvirt-libvirt-secret.html#virConnectSecretEventDeregisterAny">
+        virConnectSecretEventDeregisterAny</a>
+     */
+    public void removeSecretValueChangedListener(final SecretValueChangedListener l) throws LibvirtException {
+        secretEventDeregister(SecretEventID.VALUE_CHANGED, l);
+    }
+
+    /**
+     * Enables or disables the domain identity map of this connection.
+     * <p>
+     * By default, every lookup and listing creates a new {@link Domain}
+     * object holding its own reference to the native domain, while event
+     * callbacks reuse the object of the previous event of a domain.
+     * With the identity map enabled, a domain maps to a single Domain
+     * instance for as long as the application keeps a reference to it, so
+     * that domains can be compared by identity and their UUID is read only
+     * once. The instance is replaced once the domain has been restarted or
+     * undefined (the latter when a {@link LifecycleListener} is registered
+     * on this connection).
+     * <p>
+     * Note that the instances are shared: calling {@link Domain#free} on
+     * one frees it for every holder.
+     *
+     * @param enabled
+     *            whether to enable the map; disabling it drops the map
+     */
+    public synchronized void setDomainIdentityMapEnabled(final boolean enabled) {
+        if (!enabled) {
+            domainIdentityMap = null;
+        } else if (domainIdentityMap == null) {
+            domainIdentityMap = new DomainIdentityMap(this);
+        }
+    }
+
+    /**
+     * @return whether the domain identity map is enabled
+     * @see #setDomainIdentityMapEnabled
+     */
+    public boolean isDomainIdentityMapEnabled() {
+        return domainIdentityMap != null;
+    }
+
+    /**
+     * Wraps a domain pointer returned by libvirt, taking over its
+     * reference.
+     */
+    Domain domain(final DomainPointer ptr) throws LibvirtException {
+        DomainIdentityMap identityMap = domainIdentityMap;
+        if (identityMap != null) {
+            return identityMap.intern(ptr, true);
+        }
+        return new Domain(this, ptr);
+    }
+
+    /**
+     * Returns the domain of a pointer passed to an event callback, reusing
+     * the instance of an earlier event of the same domain if possible.
+     */
+    Domain eventDomain(final DomainPointer ptr) throws LibvirtException {
+        DomainIdentityMap identityMap = domainIdentityMap;
+        if (identityMap != null) {
+            return identityMap.intern(ptr, false);
+        }
+        return eventDomains.get(ptr);
+    }
+
+    /**
+     * Finds a domain based on the hypervisor ID number.
+     *
+     * @param id
+     *            the hypervisor id
+     * @return the Domain object
+     * @throws LibvirtException
+     */
+    public Domain domainLookupByID(final int id) throws LibvirtException {
+        DomainPointer ptr = processError(libvirt.virDomainLookupByID(vcp, id));
+        return domain(ptr);
+    }
+
+    /**
+     * Looks up a domain based on its name.
+     *
+     * @param name
+     *            the name of the domain
+     * @return the Domain object
+     * @throws LibvirtException
+     */
+    public Domain domainLookupByName(final String name) throws LibvirtException {
+        DomainPointer ptr = processError(libvirt.virDomainLookupByName(vcp, name));
+        return domain(ptr);
+    }
+
+    /**
+     * Looks up a domain based on its UUID in array form. The UUID Array
+     * contains an unpacked representation of the UUID, each int contains only
+     * one byte.
+     *
+     * @param uuid
+     *            the uuid as an unpacked int array
+     * @return the Domain object
+     * @throws LibvirtException
+     */
+    public Domain domainLookupByUUID(final int[] uuid) throws LibvirtException {
+        byte[] uuidBytes = Connect.createUUIDBytes(uuid);
+        DomainPointer ptr = processError(libvirt.virDomainLookupByUUID(vcp, uuidBytes));
+        return domain(ptr);
+    }
+
+    /**
+     * Fetch a domain based on its globally unique id
+     *
+     * @param uuid
+     *            a java UUID
+     * @return a new domain object
+     * @throws LibvirtException
+     */
+    public Domain domainLookupByUUID(final UUID uuid) throws LibvirtException {
+        return domainLookupByUUIDString(uuid.toString());
+    }
+
+    /**
+     * Looks up a domain based on its uuid in String form.
+     *
+     * @param uuid
+     *            the uuid in canonical String representation
+     * @return the Domain object
+     * @throws LibvirtException
+     */
+    public Domain domainLookupByUUIDString(final String uuid) throws LibvirtException {
+        DomainPointer ptr = processError(libvirt.virDomainLookupByUUIDString(vcp, uuid));
+        return domain(ptr);
+    }
+
+    /**
+     * Reads a native XML configuration document, and generates generates a
+     * domain configuration file describing the domain. The format of the native
+     * data is hypervisor dependant.
+     *
+     * @return domain XML as String, or {@code null} on error
+     * @throws LibvirtException
      */
     public String domainXMLFromNative(final String nativeFormat,
                                       final String nativeConfig, final int flags)
@@ -1151,11 +2700,6 @@ public class Connect {
         return processError(returnValue).toString();
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        close();
-    }
-
     /**
      * Talks to a storage backend and attempts to auto-discover the set of
      * available storage pool sources. e.g. For iSCSI this would be a set of
@@ -1308,13 +2852,19 @@ public class Connect {
     }
 
     /**
-     * Gets the name of the Hypervisor software used.
+     * Gets the name of the Hypervisor software used. The name is cached
+     * like the {@link #getURI URI}.
      *
      * @return the name
      * @throws LibvirtException
      */
     public String getType() throws LibvirtException {
-        return processError(libvirt.virConnectGetType(vcp));
+        String t = type;
+        if (t == null) {
+            t = processError(libvirt.virConnectGetType(vcp));
+            type = t;
+        }
+        return t;
     }
 
     /**
@@ -1322,12 +2872,21 @@ public class Connect {
      * same as or similar to the string passed to the
      * virConnectOpen/virConnectOpenReadOnly call, but the driver may make the
      * URI canonical.
+     * <p>
+     * The URI is queried once and then cached until the connection is
+     * closed, so that {@link #equals} and {@link #hashCode} do not cause a
+     * round trip to the daemon.
      *
      * @return the URI
      * @throws LibvirtException
      */
     public String getURI() throws LibvirtException {
-        return processError(libvirt.virConnectGetURI(vcp)).toString();
+        String u = uri;
+        if (u == null) {
+            u = processError(libvirt.virConnectGetURI(vcp)).toString();
+            uri = u;
+        }
+        return u;
     }
 
     /**
@@ -1509,6 +3068,27 @@ public class Connect {
         }
     }
 
+    /**
+     * Gets an array of the devices on this node.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags bitwise-OR of {@link ConnectListAllNodeDevicesFlags}
+     * @return array of Device objects
+     * @throws LibvirtException
+     */
+    public Device[] listAllNodeDevices(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virConnectListAllNodeDevices(vcp, list, flags)));
+        Device[] result = new Device[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new Device(this, new DevicePointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Lists the active domains.
      *
@@ -1538,13 +3118,108 @@ public class Connect {
         Pointer pointer = domainByReference.getValue();
         Domain[] domains = new Domain[domainsCount];
         for (int i = 0; i < domainsCount; i++) {
-            domains[i] = new Domain(this, new DomainPointer(pointer.getPointer(i * Native.POINTER_SIZE)));
+            domains[i] = domain(new DomainPointer(pointer.getPointer(i * Native.POINTER_SIZE)));
         }
         Library.free(pointer);
 
         return domains;
     }
 
+    /**
+     * Queries statistics for all domains on this connection in a single
+     * call.
+     *
+     * @see <a
+     *      href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectGetAllDomainStats">Libvirt
+     *      Documentation</a>
+     * @param stats
+     *            bitwise-OR of {@link DomainStatsTypes}, 0 for all supported
+     *            statistics
+     * @param flags
+     *            bitwise-OR of {@link GetAllDomainStatsFlags}
+     * @return the statistics, one entry per domain
+     * @throws LibvirtException
+     */
+    public DomainStats[] getAllDomainStats(int stats, int flags) throws LibvirtException {
+        PointerByReference retStats = new PointerByReference();
+        int count = processError(libvirt.virConnectGetAllDomainStats(vcp, stats, retStats, flags));
+        return toDomainStats(retStats.getValue(), count);
+    }
+
+    /**
+     * Queries statistics for all domains on this connection in a single
+     * call, decoding them straight into the given table instead of creating
+     * an object per statistic. Passing the same table to every poll reuses
+     * its storage.
+     *
+     * @param stats
+     *            bitwise-OR of {@link DomainStatsTypes}, 0 for all supported
+     *            statistics
+     * @param flags
+     *            bitwise-OR of {@link GetAllDomainStatsFlags}
+     * @param table
+     *            the table to fill, its previous content is replaced
+     * @return the number of domains, i.e. rows of the table
+     * @throws LibvirtException
+     */
+    public int getAllDomainStats(int stats, int flags, DomainStatsTable table) throws LibvirtException {
+        PointerByReference retStats = new PointerByReference();
+        int count = processError(libvirt.virConnectGetAllDomainStats(vcp, stats, retStats, flags));
+        try {
+            table.fill(retStats.getValue(), count);
+        } finally {
+            libvirt.virDomainStatsRecordListFree(retStats.getValue());
+        }
+        return count;
+    }
+
+    /**
+     * Queries statistics for the given domains in a single call.
+     *
+     * @see <a
+     *      href="https://libvirt.org/html/libvirt-libvirt-domain.html#virDomainListGetStats">Libvirt
+     *      Documentation</a>
+     * @param domains
+     *            the domains, which must all belong to this connection
+     * @param stats
+     *            bitwise-OR of {@link DomainStatsTypes}, 0 for all supported
+     *            statistics
+     * @param flags
+     *            bitwise-OR of {@link GetAllDomainStatsFlags}, only
+     *            {@code BACKING}, {@code NOWAIT} and {@code ENFORCE_STATS}
+     *            are supported
+     * @return the statistics, one entry per domain
+     * @throws LibvirtException
+     */
+    public DomainStats[] getDomainStats(Domain[] domains, int stats, int flags) throws LibvirtException {
+        // NULL terminated list of domains
+        Pointer[] doms = new Pointer[domains.length + 1];
+        for (int i = 0; i < domains.length; i++) {
+            doms[i] = domains[i].vdp.getPointer();
+        }
+        PointerByReference retStats = new PointerByReference();
+        int count = processError(libvirt.virDomainListGetStats(doms, stats, retStats, flags));
+        return toDomainStats(retStats.getValue(), count);
+    }
+
+    private DomainStats[] toDomainStats(final Pointer records, final int count)
+            throws LibvirtException {
+        try {
+            DomainStats[] result = new DomainStats[count];
+            for (int i = 0; i < count; i++) {
+                virDomainStatsRecord record =
+                        new virDomainStatsRecord(records.getPointer(i * Native.POINTER_SIZE));
+                record.read();
+                // the record list owns a reference to each domain
+                result[i] = new DomainStats(Domain.constructIncRef(this, record.dom),
+                        TypedParameter.copyFromPointer(record.params, record.nparams));
+            }
+            return result;
+        } finally {
+            libvirt.virDomainStatsRecordListFree(records);
+        }
+    }
+
     /**
      * Provides the list of names of interfaces on this host
      *
@@ -1564,6 +3239,27 @@ public class Connect {
         }
     }
 
+    /**
+     * Gets an array of the interfaces on this host.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags bitwise-OR of {@link ConnectListAllInterfacesFlags}
+     * @return array of Interface objects
+     * @throws LibvirtException
+     */
+    public Interface[] listAllInterfaces(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virConnectListAllInterfaces(vcp, list, flags)));
+        Interface[] result = new Interface[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new Interface(this, new InterfacePointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Lists the names of the network filters
      *
@@ -1583,6 +3279,27 @@ public class Connect {
         }
     }
 
+    /**
+     * Gets an array of the network filters.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags currently unused, pass 0
+     * @return array of NetworkFilter objects
+     * @throws LibvirtException
+     */
+    public NetworkFilter[] listAllNetworkFilters(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virConnectListAllNWFilters(vcp, list, flags)));
+        NetworkFilter[] result = new NetworkFilter[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new NetworkFilter(this, new NetworkFilterPointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Lists the active networks.
      *
@@ -1603,6 +3320,27 @@ public class Connect {
         }
     }
 
+    /**
+     * Gets an array of the networks.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags bitwise-OR of {@link ConnectListAllNetworksFlags}
+     * @return array of Network objects
+     * @throws LibvirtException
+     */
+    public Network[] listAllNetworks(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virConnectListAllNetworks(vcp, list, flags)));
+        Network[] result = new Network[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new Network(this, new NetworkPointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Retrieve the List UUIDs of defined secrets
      *
@@ -1621,6 +3359,27 @@ public class Connect {
         }
     }
 
+    /**
+     * Gets an array of the secrets.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags bitwise-OR of {@link ConnectListAllSecretsFlags}
+     * @return array of Secret objects
+     * @throws LibvirtException
+     */
+    public Secret[] listAllSecrets(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virConnectListAllSecrets(vcp, list, flags)));
+        Secret[] result = new Secret[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new Secret(this, new SecretPointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Provides the list of names of active storage pools.
      *
@@ -1640,6 +3399,27 @@ public class Connect {
         }
     }
 
+    /**
+     * Gets an array of the storage pools.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags bitwise-OR of {@link ConnectListAllStoragePoolsFlags}
+     * @return array of StoragePool objects
+     * @throws LibvirtException
+     */
+    public StoragePool[] listAllStoragePools(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virConnectListAllStoragePools(vcp, list, flags)));
+        StoragePool[] result = new StoragePool[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new StoragePool(this, new StoragePoolPointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Creates and starts a new virtual network. The properties of the network
      * are based on an XML description similar to the one returned by
@@ -2188,7 +3968,7 @@ public class Connect {
      * @return {@code true} if alive, {@code false} otherwise.
      */
     public boolean isAlive() throws LibvirtException {
-        return 1 == processError(libvirt.virConnectIsAlive(vcp));
+        return 1 == processError(backend.virConnectIsAlive(vcp));
     }
 
     /**
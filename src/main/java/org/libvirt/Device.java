@@ -1,5 +1,7 @@
 package org.libvirt;
 
+import org.libvirt.event.NodeDeviceLifecycleListener;
+import org.libvirt.event.NodeDeviceUpdateListener;
 import org.libvirt.jna.CString;
 import org.libvirt.jna.DevicePointer;
 import static org.libvirt.Library.libvirt;
@@ -8,13 +10,16 @@ import static org.libvirt.ErrorHandler.processError;
 /**
  * A device which is attached to a node
  */
-public class Device {
+public class Device implements AutoCloseable {
 
     /**
      * the native virDomainPtr.
      */
     DevicePointer vdp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Domain
      */
@@ -31,6 +36,23 @@ public class Device {
     Device(final Connect virConnect, final DevicePointer vdp) {
         this.virConnect = virConnect;
         this.vdp = vdp;
+        this.nativeHandle = vdp == null ? null
+            : NativeResources.register(this, Device.class, () -> libvirt.virNodeDeviceFree(vdp));
+    }
+
+    /**
+     * Constructs a new Device object increasing the reference count
+     * on the DevicePointer.
+     * <p>
+     * This factory method is mostly useful with callback functions,
+     * since the virNodeDevicePtr passed is only valid for the duration
+     * of execution of the callback.
+     */
+    static Device constructIncRef(final Connect virConnect, final DevicePointer vdp)
+            throws LibvirtException {
+        processError(libvirt.virNodeDeviceRef(vdp));
+
+        return new Device(virConnect, vdp);
     }
 
     /**
@@ -61,11 +83,6 @@ public class Device {
         return processError(libvirt.virNodeDeviceDettach(vdp));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Frees this device object. The running instance is kept alive. The data
      * structure is freed and should not be used thereafter.
@@ -76,13 +93,21 @@ public class Device {
     public int free() throws LibvirtException {
         int success = 0;
         if (vdp != null) {
-            success = processError(libvirt.virNodeDeviceFree(vdp));
+            success = processError(nativeHandle.close());
             vdp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this node device, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Returns the name of the device
      *
@@ -162,4 +187,32 @@ public class Device {
     public int reset() throws LibvirtException {
         return processError(libvirt.virNodeDeviceReset(vdp));
     }
+
+    /**
+     * Adds the specified listener to receive lifecycle events for this
+     * node device.
+     *
+     * @param  l  the lifecycle listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addNodeDeviceLifecycleListener
+     * @see Connect#removeNodeDeviceLifecycleListener
+     */
+    public void addLifecycleListener(final NodeDeviceLifecycleListener l) throws LibvirtException {
+        virConnect.nodeDeviceEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive update events for this
+     * node device.
+     *
+     * @param  l  the update listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addNodeDeviceUpdateListener
+     * @see Connect#removeNodeDeviceUpdateListener
+     */
+    public void addUpdateListener(final NodeDeviceUpdateListener l) throws LibvirtException {
+        virConnect.nodeDeviceEventRegister(this, l);
+    }
 }
@@ -0,0 +1,184 @@
+package org.libvirt;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of direct ByteBuffers.
+ * <p>
+ * Passing a heap buffer to libvirt makes JNA allocate temporary native
+ * memory and copy the data on every call. The stream and peek methods
+ * therefore transfer through direct buffers borrowed from the
+ * {@link #getDefault default pool} when given a heap buffer; callers doing
+ * large transfers can borrow buffers from the pool themselves and pass
+ * them directly.
+ * <p>
+ * Buffers are pooled in power of two size classes. Each class is striped
+ * by thread to reduce contention, every stripe holds a small number of
+ * buffers. Requests larger than the largest class are served with a fresh,
+ * unpooled buffer.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class DirectBufferPool {
+    private static final int MIN_SHIFT = 12; // 4 KiB
+    private static final int DEFAULT_MAX_BUFFER_SIZE = 256 * 1024;
+    private static final int DEFAULT_BUFFERS_PER_STRIPE = 2;
+
+    private static final DirectBufferPool DEFAULT =
+            new DirectBufferPool(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_BUFFERS_PER_STRIPE);
+
+    private final int maxBufferSize;
+    private final int stripes;
+    private final int buffersPerStripe;
+
+    // free buffers, indexed by size class, then stripe * buffersPerStripe + slot
+    private final AtomicReferenceArray<ByteBuffer>[] free;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxBufferSize
+     *            the largest buffer size pooled, rounded up to a power of
+     *            two
+     * @param buffersPerStripe
+     *            the number of buffers kept per size class and stripe
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public DirectBufferPool(final int maxBufferSize, final int buffersPerStripe) {
+        if (maxBufferSize <= 0 || buffersPerStripe <= 0) {
+            throw new IllegalArgumentException("sizes must be positive");
+        }
+        this.maxBufferSize = Math.max(1 << MIN_SHIFT, roundUp(maxBufferSize));
+        this.buffersPerStripe = buffersPerStripe;
+        this.stripes = roundUp(Runtime.getRuntime().availableProcessors());
+        int classes = sizeClass(this.maxBufferSize) + 1;
+        free = new AtomicReferenceArray[classes];
+        for (int i = 0; i < classes; i++) {
+            free[i] = new AtomicReferenceArray<ByteBuffer>(stripes * buffersPerStripe);
+        }
+    }
+
+    /**
+     * @return the pool used internally by the bindings
+     */
+    public static DirectBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    private static int roundUp(final int n) {
+        int highest = Integer.highestOneBit(n);
+        return highest == n ? n : highest << 1;
+    }
+
+    private static int sizeClass(final int capacity) {
+        if (capacity <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    private int stripe() {
+        // spread the thread id, like ConcurrentHashMap does for hash codes
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & (stripes - 1);
+    }
+
+    /**
+     * Borrows a direct buffer of at least the given capacity. The returned
+     * buffer has its position set to 0 and its limit set to
+     * {@code capacity}; its actual capacity may be larger.
+     *
+     * @param capacity
+     *            the minimum capacity
+     * @return the buffer, which should be given back using {@link #release}
+     */
+    public ByteBuffer acquire(final int capacity) {
+        if (capacity > maxBufferSize) {
+            misses.increment();
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        int sizeClass = sizeClass(capacity);
+        AtomicReferenceArray<ByteBuffer> slots = free[sizeClass];
+        int length = slots.length();
+        int start = stripe() * buffersPerStripe;
+        for (int i = 0; i < length; i++) {
+            ByteBuffer buffer = slots.getAndSet((start + i) % length, null);
+            if (buffer != null) {
+                hits.increment();
+                buffer.clear();
+                buffer.limit(capacity);
+                return buffer;
+            }
+        }
+        misses.increment();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+        buffer.limit(capacity);
+        return buffer;
+    }
+
+    /**
+     * Gives a buffer obtained by {@link #acquire} back to the pool. The
+     * buffer must not be used afterwards.
+     *
+     * @param buffer
+     *            the buffer, buffers not fitting a size class are ignored
+     */
+    public void release(final ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (!buffer.isDirect() || capacity > maxBufferSize || capacity != roundUp(capacity)
+                || capacity < 1 << MIN_SHIFT) {
+            return;
+        }
+        AtomicReferenceArray<ByteBuffer> slots = free[sizeClass(capacity)];
+        int length = slots.length();
+        int start = stripe() * buffersPerStripe;
+        for (int i = 0; i < length; i++) {
+            if (slots.compareAndSet((start + i) % length, null, buffer)) {
+                return;
+            }
+        }
+        discards.increment();
+    }
+
+    /**
+     * @return the largest buffer size served from the pool
+     */
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * @return the number of acquisitions served by a pooled buffer
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of acquisitions that had to allocate a new buffer
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of released buffers dropped because the pool was
+     *         full
+     */
+    public long getDiscards() {
+        return discards.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DirectBufferPool[hits=%d, misses=%d, discards=%d]",
+                             getHits(), getMisses(), getDiscards());
+    }
+}
@@ -3,17 +3,27 @@ package org.libvirt;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.PointerByReference;
 import org.libvirt.event.AgentLifecycleListener;
+import org.libvirt.event.BalloonChangeListener;
 import org.libvirt.event.BlockJobListener;
+import org.libvirt.event.BlockThresholdListener;
+import org.libvirt.event.DeviceAddedListener;
+import org.libvirt.event.DeviceRemovedListener;
 import org.libvirt.event.IOErrorListener;
+import org.libvirt.event.JobCompletedListener;
 import org.libvirt.event.LifecycleListener;
+import org.libvirt.event.MemoryFailureListener;
+import org.libvirt.event.MetadataChangeListener;
+import org.libvirt.event.MigrationIterationListener;
 import org.libvirt.event.PMSuspendListener;
 import org.libvirt.event.PMWakeupListener;
 import org.libvirt.event.RebootListener;
+import org.libvirt.event.TunableListener;
 import org.libvirt.jna.CString;
 import org.libvirt.jna.CStringByReference;
 import org.libvirt.jna.DomainCheckpointPointer;
@@ -33,6 +43,7 @@ import org.libvirt.jna.virSchedParameter;
 import org.libvirt.jna.virTypedParameter;
 import org.libvirt.jna.virVcpuInfo;
 
+import static org.libvirt.Library.backend;
 import static org.libvirt.Library.libvirt;
 import static org.libvirt.Library.libvirtQemu;
 import static org.libvirt.ErrorHandler.processError;
@@ -48,7 +59,7 @@ import java.util.stream.Collectors;
 /**
  * A virtual machine defined within libvirt.
  */
-public class Domain {
+public class Domain implements AutoCloseable {
 
     private static int bit(final int i) {
         return 1 << i;
@@ -895,6 +906,13 @@ public class Domain {
     /** the native virDomainPtr. */
     DomainPointer vdp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
+    // whether this object is shared by the event callbacks of its
+    // connection, which makes free a no-op
+    boolean eventShared;
+
     /* (non-Javadoc)
      * @see java.lang.Object#hashCode()
      */
@@ -905,7 +923,7 @@ public class Domain {
         result = prime * result
             + ((virConnect == null) ? 0 : virConnect.hashCode());
         try {
-            result = prime * result + ((vdp == null) ? 0 : Arrays.hashCode(this.getUUID()));
+            result = prime * result + ((vdp == null) ? 0 : uuid().hashCode());
         } catch (LibvirtException e) {
             throw new RuntimeException("libvirt error testing domain equality", e);
         }
@@ -946,7 +964,7 @@ public class Domain {
         }
 
         try {
-            return Arrays.equals(getUUID(), other.getUUID());
+            return uuid().equals(other.uuid());
         } catch (LibvirtException e) {
             throw new RuntimeException("libvirt error testing domain equality", e);
         }
@@ -955,6 +973,9 @@ public class Domain {
     /** The Connect Object that represents the Hypervisor of this Domain */
     private final Connect virConnect;
 
+    /** The UUID, read once as it never changes */
+    volatile UUID uuid;
+
     /**
      * Constructs a Domain object from a known native DomainPointer, and a
      * Connect object.
@@ -969,6 +990,8 @@ public class Domain {
 
         this.virConnect = virConnect;
         this.vdp = vdp;
+        this.nativeHandle = vdp == null ? null
+            : NativeResources.register(this, Domain.class, () -> libvirt.virDomainFree(vdp));
     }
 
     /**
@@ -981,6 +1004,10 @@ public class Domain {
      */
     static Domain constructIncRef(final Connect virConnect, final DomainPointer vdp)
             throws LibvirtException {
+        DomainIdentityMap identityMap = virConnect.domainIdentityMap;
+        if (identityMap != null) {
+            return identityMap.intern(vdp, false);
+        }
         processError(libvirt.virDomainRef(vdp));
 
         return new Domain(virConnect, vdp);
@@ -1134,20 +1161,37 @@ public class Domain {
         SizeT size = new SizeT();
         long currentOffset = offset;
 
-        // older libvirt has a limitation on the size of data
-        // transferred per request in the remote driver. So, split
-        // larger requests into 64K blocks.
-
-        do {
-            final int req = Math.min(65536, buffer.remaining());
+        // heap buffers are transferred through a pooled direct buffer
+        // instead of letting JNA allocate native memory for every block
+        ByteBuffer target = buffer.isDirect() ? buffer : DirectBufferPool.getDefault().acquire(65536);
 
-            size.setValue(req);
-
-            processError(libvirt.virDomainBlockPeek(this.vdp, disk, currentOffset, size, buffer, 0));
-
-            buffer.position(buffer.position() + req);
-            currentOffset += req;
-        } while (buffer.hasRemaining());
+        try {
+            // older libvirt has a limitation on the size of data
+            // transferred per request in the remote driver. So, split
+            // larger requests into 64K blocks.
+
+            do {
+                final int req = Math.min(65536, buffer.remaining());
+
+                size.setValue(req);
+
+                if (target == buffer) {
+                    processError(libvirt.virDomainBlockPeek(this.vdp, disk, currentOffset, size, buffer, 0));
+                    buffer.position(buffer.position() + req);
+                } else {
+                    target.clear();
+                    processError(libvirt.virDomainBlockPeek(this.vdp, disk, currentOffset, size, target, 0));
+                    target.limit(req);
+                    buffer.put(target);
+                }
+
+                currentOffset += req;
+            } while (buffer.hasRemaining());
+        } finally {
+            if (target != buffer) {
+                DirectBufferPool.getDefault().release(target);
+            }
+        }
 
         assert buffer.position() == buffer.limit();
     }
@@ -1169,7 +1213,7 @@ public class Domain {
      */
     public DomainBlockStats blockStats(final String path) throws LibvirtException {
         virDomainBlockStats stats = new virDomainBlockStats();
-        processError(libvirt.virDomainBlockStats(vdp, path, stats, new SizeT(stats.size())));
+        processError(backend.virDomainBlockStats(vdp, path, stats));
         return new DomainBlockStats(stats);
     }
 
@@ -1323,28 +1367,35 @@ public class Domain {
         processError(libvirt.virDomainDetachDeviceFlags(vdp, xmlDesc, flags));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Frees this domain object. The running instance is kept alive. The data
      * structure is freed and should not be used thereafter.
+     * <p>
+     * A domain passed to an event listener may be shared with the listeners
+     * of later events, in which case this method does nothing and the
+     * native handle is released once the object is unreachable.
      *
      * @throws LibvirtException
      * @return number of references left (>= 0)
      */
     public int free() throws LibvirtException {
         int success = 0;
-        if (vdp != null) {
-            success = processError(libvirt.virDomainFree(vdp));
+        if (vdp != null && !eventShared) {
+            success = processError(nativeHandle.close());
             vdp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this domain, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Provides a boolean value indicating whether the domain is configured to
      * be automatically started when the host machine boots.
@@ -1391,10 +1442,27 @@ public class Domain {
      */
     public DomainInfo getInfo() throws LibvirtException {
         virDomainInfo vInfo = new virDomainInfo();
-        processError(libvirt.virDomainGetInfo(vdp, vInfo));
+        processError(backend.virDomainGetInfo(vdp, vInfo));
         return new DomainInfo(vInfo);
     }
 
+    /**
+     * Extract the state of this domain. This is cheaper than
+     * {@link #getInfo} if only the state is needed.
+     *
+     * @see <a
+     *      href="https://libvirt.org/html/libvirt-libvirt-domain.html#virDomainGetState">Libvirt
+     *      Documentation</a>
+     *
+     * @return the state of this domain
+     * @throws LibvirtException
+     */
+    public DomainInfo.DomainState getState() throws LibvirtException {
+        int[] state = new int[1];
+        processError(backend.virDomainGetState(vdp, state, 0));
+        return Library.getConstant(DomainInfo.DomainState.class, state[0]);
+    }
+
     /**
      * Extract information about progress of a background job on a domain. Will
      * return an error if the domain is not active.
@@ -1567,6 +1635,18 @@ public class Domain {
         return Connect.convertUUIDBytes(bytes);
     }
 
+    /**
+     * @return the UUID, cached after the first call
+     */
+    UUID uuid() throws LibvirtException {
+        UUID u = uuid;
+        if (u == null) {
+            u = DomainIdentityMap.uuidOf(vdp);
+            uuid = u;
+        }
+        return u;
+    }
+
     /**
      * Gets the UUID for this domain as string.
      *
@@ -1731,7 +1811,7 @@ public class Domain {
     public DomainInterfaceStats interfaceStats(final String path)
             throws LibvirtException {
         virDomainInterfaceStats stats = new virDomainInterfaceStats();
-        processError(libvirt.virDomainInterfaceStats(vdp, path, stats, new SizeT(stats.size())));
+        processError(backend.virDomainInterfaceStats(vdp, path, stats));
         return new DomainInterfaceStats(stats);
     }
 
@@ -1745,7 +1825,7 @@ public class Domain {
      * @throws LibvirtException
      */
     public int isActive() throws LibvirtException {
-        return processError(libvirt.virDomainIsActive(vdp));
+        return processError(backend.virDomainIsActive(vdp));
     }
 
     /**
@@ -1821,20 +1901,37 @@ public class Domain {
         SizeT size = new SizeT();
         long currentStart = start;
 
-        // older libvirt has a limitation on the size of data
-        // transferred per request in the remote driver. So, split
-        // larger requests into 64K blocks.
-
-        do {
-            final int req = Math.min(65536, buffer.remaining());
-
-            size.setValue(req);
+        // heap buffers are transferred through a pooled direct buffer
+        // instead of letting JNA allocate native memory for every block
+        ByteBuffer target = buffer.isDirect() ? buffer : DirectBufferPool.getDefault().acquire(65536);
 
-            processError(libvirt.virDomainMemoryPeek(this.vdp, currentStart, size, buffer, mode.getValue()));
-
-            buffer.position(buffer.position() + req);
-            currentStart += req;
-        } while (buffer.hasRemaining());
+        try {
+            // older libvirt has a limitation on the size of data
+            // transferred per request in the remote driver. So, split
+            // larger requests into 64K blocks.
+
+            do {
+                final int req = Math.min(65536, buffer.remaining());
+
+                size.setValue(req);
+
+                if (target == buffer) {
+                    processError(libvirt.virDomainMemoryPeek(this.vdp, currentStart, size, buffer, mode.getValue()));
+                    buffer.position(buffer.position() + req);
+                } else {
+                    target.clear();
+                    processError(libvirt.virDomainMemoryPeek(this.vdp, currentStart, size, target, mode.getValue()));
+                    target.limit(req);
+                    buffer.put(target);
+                }
+
+                currentStart += req;
+            } while (buffer.hasRemaining());
+        } finally {
+            if (target != buffer) {
+                DirectBufferPool.getDefault().release(target);
+            }
+        }
 
         assert buffer.position() == buffer.limit();
     }
@@ -1873,7 +1970,7 @@ public class Domain {
             throws LibvirtException {
         virDomainMemoryStats[] stats = new virDomainMemoryStats[number];
         MemoryStatistic[] returnStats = null;
-        int result = processError(libvirt.virDomainMemoryStats(vdp, stats, number, 0));
+        int result = processError(backend.virDomainMemoryStats(vdp, stats, number, 0));
         returnStats = new MemoryStatistic[result];
         for (int x = 0; x < result; x++) {
             returnStats[x] = new MemoryStatistic(stats[x]);
@@ -1956,7 +2053,7 @@ public class Domain {
         DomainPointer newPtr =
             processError(libvirt.virDomainMigrate2(vdp, dconn.vcp, dxml,
                     new NativeLong(flags), dname, uri, new NativeLong(bandwidth)));
-        return new Domain(dconn, newPtr);
+        return dconn.domain(newPtr);
     }
 
     /**
@@ -2009,7 +2106,7 @@ public class Domain {
             throws LibvirtException {
         DomainPointer newPtr = processError(libvirt.virDomainMigrate(vdp, dconn.vcp,
                 new NativeLong(flags), dname, uri, new NativeLong(bandwidth)));
-        return new Domain(dconn, newPtr);
+        return dconn.domain(newPtr);
     }
 
     /**
@@ -2051,7 +2148,7 @@ public class Domain {
         assert params != null : "migrate Typed parameters cannot be null";
         virTypedParameter[] virTypedParameters = generateNativeVirTypedParameters(params);
         DomainPointer newPtr = processError(libvirt.virDomainMigrate3(vdp, dconn.vcp, virTypedParameters, params.length, (int)flags));
-        return new Domain(dconn, newPtr);
+        return dconn.domain(newPtr);
     }
 
     /**
@@ -2092,7 +2189,7 @@ public class Domain {
         assert params != null : "migrate Typed parameters cannot be null";
         virTypedParameter[] virTypedParameters = generateNativeVirTypedParameters(params);
         DomainPointer newPtr = processError(libvirt.virDomainMigrate3(vdp, dconn.vcp, virTypedParameters, params.length, flags));
-        return new Domain(dconn, newPtr);
+        return dconn.domain(newPtr);
     }
 
     /**
@@ -2441,6 +2538,159 @@ public class Domain {
         virConnect.domainEventRegister(this, l);
     }
 
+    /**
+     * Adds the specified listener to receive tunable change events for this
+     * domain.
+     *
+     * @param  l  the tunable change listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addTunableListener
+     * @see Connect#removeTunableListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addTunableListener(final TunableListener l) throws LibvirtException {
+        virConnect.tunableEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive job completed events for this
+     * domain.
+     *
+     * @param  l  the job completed listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addJobCompletedListener
+     * @see Connect#removeJobCompletedListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addJobCompletedListener(final JobCompletedListener l) throws LibvirtException {
+        virConnect.jobCompletedEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive migration iteration events for this
+     * domain.
+     *
+     * @param  l  the migration iteration listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addMigrationIterationListener
+     * @see Connect#removeMigrationIterationListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addMigrationIterationListener(final MigrationIterationListener l) throws LibvirtException {
+        virConnect.migrationIterationEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive block threshold events for this
+     * domain.
+     *
+     * @param  l  the block threshold listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addBlockThresholdListener
+     * @see Connect#removeBlockThresholdListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addBlockThresholdListener(final BlockThresholdListener l) throws LibvirtException {
+        virConnect.blockThresholdEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive metadata change events for this
+     * domain.
+     *
+     * @param  l  the metadata change listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addMetadataChangeListener
+     * @see Connect#removeMetadataChangeListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addMetadataChangeListener(final MetadataChangeListener l) throws LibvirtException {
+        virConnect.metadataChangeEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive device added events for this
+     * domain.
+     *
+     * @param  l  the device added listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addDeviceAddedListener
+     * @see Connect#removeDeviceAddedListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addDeviceAddedListener(final DeviceAddedListener l) throws LibvirtException {
+        virConnect.deviceAddedEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive device removed events for this
+     * domain.
+     *
+     * @param  l  the device removed listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addDeviceRemovedListener
+     * @see Connect#removeDeviceRemovedListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addDeviceRemovedListener(final DeviceRemovedListener l) throws LibvirtException {
+        virConnect.deviceRemovedEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive balloon change events for this
+     * domain.
+     *
+     * @param  l  the balloon change listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addBalloonChangeListener
+     * @see Connect#removeBalloonChangeListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addBalloonChangeListener(final BalloonChangeListener l) throws LibvirtException {
+        virConnect.balloonChangeEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive memory failure events for this
+     * domain.
+     *
+     * @param  l  the memory failure listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addMemoryFailureListener
+     * @see Connect#removeMemoryFailureListener
+     * @see <a
+     *       href="https://libvirt.org/html/libvirt-libvirt-domain.html#virConnectDomainEventRegisterAny"
+     *      >virConnectDomainEventRegisterAny</a>
+     */
+    public void addMemoryFailureListener(final MemoryFailureListener l) throws LibvirtException {
+        virConnect.memoryFailureEventRegister(this, l);
+    }
+
     /**
      * Reset a domain immediately without any guest OS shutdown.
      */
@@ -2498,6 +2748,26 @@ public class Domain {
         processError(libvirt.virDomainSetAutostart(vdp, autoValue));
     }
 
+    /**
+     * Sets the write threshold of a block device. Once more than
+     * {@code threshold} bytes of the device have been allocated, a
+     * block threshold event is emitted and the threshold is cleared.
+     *
+     * @param dev
+     *            the name of the device, e.g. "vda", or "vda[3]" for an
+     *            element of its backing chain
+     * @param threshold
+     *            the threshold in bytes, 0 to disable it
+     * @throws LibvirtException
+     * @see #addBlockThresholdListener
+     * @see <a
+     *      href="https://libvirt.org/html/libvirt-libvirt-domain.html#virDomainSetBlockThreshold">Libvirt
+     *      Documentation</a>
+     */
+    public void setBlockThreshold(final String dev, final long threshold) throws LibvirtException {
+        processError(libvirt.virDomainSetBlockThreshold(vdp, dev, threshold, 0));
+    }
+
     /**
      * * Dynamically change the maximum amount of physical memory allocated to a
      * domain. This function requires privileged access to the hypervisor.
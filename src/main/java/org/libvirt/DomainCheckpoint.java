@@ -14,7 +14,7 @@ import com.sun.jna.Native;
 
 import static org.libvirt.ErrorHandler.processError;
 
-public class DomainCheckpoint {
+public class DomainCheckpoint implements AutoCloseable {
 
     private static int bit(final int i) {
         return 1 << i;
@@ -74,6 +74,9 @@ public class DomainCheckpoint {
      */
     DomainCheckpointPointer vdcp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Domain Checkpoint
      */
@@ -92,6 +95,8 @@ public class DomainCheckpoint {
     public DomainCheckpoint(final Connect virConnect,
                             final DomainCheckpointPointer vdcp) {
         this.vdcp = vdcp;
+        this.nativeHandle = vdcp == null ? null
+            : NativeResources.register(this, DomainCheckpoint.class, () -> libvirt.virDomainCheckpointFree(vdcp));
         this.virConnect = virConnect;
     }
 
@@ -115,11 +120,6 @@ public class DomainCheckpoint {
         return success;
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Frees this domaincheckpoint object. The running instance is kept alive. The data
      * structure is freed and should not be used thereafter.
@@ -130,13 +130,21 @@ public class DomainCheckpoint {
     public int free() throws LibvirtException {
         int success = 0;
         if (vdcp != null) {
-            success = processError(libvirt.virDomainCheckpointFree(vdcp));
+            success = processError(nativeHandle.close());
             vdcp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this checkpoint, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Fetches an XML document describing attributes of the domain checkpoint, without
      * security-sensitive data.
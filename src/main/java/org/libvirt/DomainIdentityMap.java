@@ -0,0 +1,122 @@
+package org.libvirt;
+
+import static org.libvirt.Library.libvirt;
+import static org.libvirt.ErrorHandler.processError;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.libvirt.jna.DomainPointer;
+import org.libvirt.jna.Libvirt;
+
+/**
+ * Maps the domains of a connection to a single {@link Domain} instance per
+ * domain, keyed by UUID.
+ * <p>
+ * Instances are only weakly referenced, a domain no longer used by the
+ * application is dropped from the map and freed as usual. An entry is
+ * replaced when its instance has been {@link Domain#free freed} or when the
+ * domain has been restarted since, as the ID of a running domain is part of
+ * its handle.
+ *
+ * @see Connect#setDomainIdentityMapEnabled
+ */
+final class DomainIdentityMap {
+    private static final class Entry extends WeakReference<Domain> {
+        final UUID uuid;
+
+        Entry(final Domain domain, final UUID uuid, final ReferenceQueue<Domain> queue) {
+            super(domain, queue);
+            this.uuid = uuid;
+        }
+    }
+
+    private final Connect connect;
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<UUID, Entry>();
+    private final ReferenceQueue<Domain> queue = new ReferenceQueue<Domain>();
+
+    DomainIdentityMap(final Connect connect) {
+        this.connect = connect;
+    }
+
+    /**
+     * Returns the instance for the domain of the given handle.
+     *
+     * @param ptr
+     *            the native handle
+     * @param owned
+     *            whether the caller owns a reference to {@code ptr}, as is
+     *            the case for the pointers returned by the lookup functions;
+     *            it is released if an existing instance is returned. A
+     *            handle passed to an event callback is not owned; a reference
+     *            is added if it is kept.
+     */
+    Domain intern(final DomainPointer ptr, final boolean owned) throws LibvirtException {
+        expunge();
+        UUID uuid = uuidOf(ptr);
+        int id = libvirt.virDomainGetID(ptr);
+        Domain created = null;
+        for (;;) {
+            Entry entry = entries.get(uuid);
+            Domain known = entry == null ? null : entry.get();
+            if (known != null && known.vdp != null && libvirt.virDomainGetID(known.vdp) == id) {
+                if (created != null) {
+                    // lost the race, release the reference of the new instance
+                    created.free();
+                } else if (owned) {
+                    processError(libvirt.virDomainFree(ptr));
+                }
+                return known;
+            }
+            if (created == null) {
+                if (!owned) {
+                    processError(libvirt.virDomainRef(ptr));
+                }
+                created = new Domain(connect, ptr);
+                created.uuid = uuid;
+            }
+            Entry replacement = new Entry(created, uuid, queue);
+            if (entry == null ? entries.putIfAbsent(uuid, replacement) == null
+                    : entries.replace(uuid, entry, replacement)) {
+                return created;
+            }
+            // another thread changed the entry in the meantime
+        }
+    }
+
+    /**
+     * Removes the given domain, e.g. after it has been undefined.
+     */
+    void remove(final Domain domain) throws LibvirtException {
+        Entry entry = entries.get(domain.uuid());
+        if (entry != null && entry.get() == domain) {
+            entries.remove(entry.uuid, entry);
+        }
+    }
+
+    int size() {
+        expunge();
+        return entries.size();
+    }
+
+    private void expunge() {
+        Entry entry;
+        while ((entry = (Entry) queue.poll()) != null) {
+            entries.remove(entry.uuid, entry);
+        }
+    }
+
+    static UUID uuidOf(final DomainPointer ptr) throws LibvirtException {
+        byte[] bytes = new byte[Libvirt.VIR_UUID_BUFLEN];
+        processError(libvirt.virDomainGetUUID(ptr, bytes));
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < 8; i++) {
+            hi = (hi << 8) | (bytes[i] & 0xff);
+            lo = (lo << 8) | (bytes[i + 8] & 0xff);
+        }
+        return new UUID(hi, lo);
+    }
+}
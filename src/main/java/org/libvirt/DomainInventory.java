@@ -0,0 +1,494 @@
+package org.libvirt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.libvirt.event.ConnectionCloseListener;
+import org.libvirt.event.ConnectionCloseReason;
+import org.libvirt.event.DomainEvent;
+import org.libvirt.event.DomainEventType;
+import org.libvirt.event.LifecycleListener;
+import org.libvirt.event.MetadataChangeListener;
+
+/**
+ * A local mirror of the domains of a connection, kept current by events.
+ * <p>
+ * Creating an inventory loads all domains and their state with a single
+ * bulk stats call and registers a {@link LifecycleListener} and a
+ * {@link MetadataChangeListener} on the connection. From then on, lookups by
+ * UUID, name or ID and state filtered views are served locally; only a
+ * lifecycle event causes a query, for the state of the domain concerned.
+ * The title and description of a domain are loaded when first asked for,
+ * and again after a metadata change event. Device and tunable events are
+ * not followed, as they change nothing tracked here.
+ * <p>
+ * Events are only delivered while an event loop is running, see
+ * {@link Library#initEventLoop}. If an event could not be processed, the
+ * inventory reports itself as {@link #isStale stale} and reloads on the next
+ * lookup. When the connection is closed, e.g. because the daemon went away,
+ * the inventory cannot reload: it keeps serving the last known state and
+ * {@link #isStale} returns {@code true} until it is {@link #rebind rebound}
+ * to a new connection, which reloads it.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see Connect#getAllDomainStats(int, int)
+ */
+public final class DomainInventory {
+    /**
+     * A snapshot of a domain. Its title and description are loaded on
+     * first use.
+     */
+    public static final class Entry {
+        private final Domain domain;
+        private final UUID uuid;
+        private final String name;
+        private final int id;
+        private final DomainInfo.DomainState state;
+        private volatile String title;
+        private volatile boolean titleLoaded;
+        private volatile String description;
+        private volatile boolean descriptionLoaded;
+
+        Entry(final Domain domain, final UUID uuid, final String name, final int id,
+              final DomainInfo.DomainState state) {
+            this.domain = domain;
+            this.uuid = uuid;
+            this.name = name;
+            this.id = id;
+            this.state = state;
+        }
+
+        /**
+         * Takes over the metadata loaded by a previous snapshot of the
+         * domain, except the given type, which has changed.
+         *
+         * @param changed
+         *            the changed {@link Domain.MetadataType}, -1 for none
+         */
+        Entry keepMetadata(final Entry old, final int changed) {
+            if (old.titleLoaded && changed != Domain.MetadataType.TITLE) {
+                title = old.title;
+                titleLoaded = true;
+            }
+            if (old.descriptionLoaded && changed != Domain.MetadataType.DESCRIPTION) {
+                description = old.description;
+                descriptionLoaded = true;
+            }
+            return this;
+        }
+
+        public Domain getDomain() {
+            return domain;
+        }
+
+        public UUID getUUID() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the hypervisor ID, -1 if the domain is not running
+         */
+        public int getID() {
+            return id;
+        }
+
+        public DomainInfo.DomainState getState() {
+            return state;
+        }
+
+        /**
+         * @return the title of the domain, null if it has none
+         * @throws LibvirtException
+         *             if it had to be loaded and that failed
+         */
+        public String getTitle() throws LibvirtException {
+            if (!titleLoaded) {
+                title = metadata(domain, Domain.MetadataType.TITLE);
+                titleLoaded = true;
+            }
+            return title;
+        }
+
+        /**
+         * @return the description of the domain, null if it has none
+         * @throws LibvirtException
+         *             if it had to be loaded and that failed
+         */
+        public String getDescription() throws LibvirtException {
+            if (!descriptionLoaded) {
+                description = metadata(domain, Domain.MetadataType.DESCRIPTION);
+                descriptionLoaded = true;
+            }
+            return description;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + uuid + ", " + state + ")";
+        }
+    }
+
+    private volatile Connect conn;
+
+    private final ConcurrentHashMap<UUID, Entry> byUUID = new ConcurrentHashMap<UUID, Entry>();
+    private final ConcurrentHashMap<String, Entry> byName = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentHashMap<Integer, Entry> byID = new ConcurrentHashMap<Integer, Entry>();
+
+    // serializes loading and binding, which call libvirt; the monitor of
+    // this object only guards the indexes, so that events are not held up
+    // by a reload
+    private final Object loadLock = new Object();
+
+    // the domains changed by events while a reload is in progress, guarded
+    // by this
+    private Set<UUID> changedDuringLoad;
+
+    private volatile boolean stale;
+    private volatile boolean closed;
+
+    private final LifecycleListener lifecycleListener = new LifecycleListener() {
+            @Override
+            public int onLifecycleChange(final Domain domain, final DomainEvent event) {
+                update(domain, event.getType());
+                return 0;
+            }
+        };
+
+    private final MetadataChangeListener metadataListener = new MetadataChangeListener() {
+            @Override
+            public void onMetadataChange(final Domain domain, final int type, final String nsuri) {
+                if (type != Domain.MetadataType.ELEMENT) {
+                    invalidateMetadata(domain, type);
+                }
+            }
+        };
+
+    private final ConnectionCloseListener closeListener = new ConnectionCloseListener() {
+            @Override
+            public void onClose(final Connect c, final ConnectionCloseReason reason) {
+                stale = true;
+            }
+        };
+
+    /**
+     * Creates an inventory of the domains of the given connection.
+     *
+     * @param conn
+     *            the connection
+     * @throws LibvirtException
+     */
+    public DomainInventory(final Connect conn) throws LibvirtException {
+        this.conn = conn;
+        bind(conn);
+        try {
+            resync();
+        } catch (LibvirtException e) {
+            unbind(conn);
+            throw e;
+        }
+    }
+
+    private void bind(final Connect c) throws LibvirtException {
+        c.addLifecycleListener(lifecycleListener);
+        try {
+            c.addMetadataChangeListener(metadataListener);
+            c.addInternalCloseListener(closeListener);
+        } catch (LibvirtException e) {
+            unbind(c);
+            throw e;
+        }
+    }
+
+    private void unbind(final Connect c) {
+        try {
+            c.removeInternalCloseListener(closeListener);
+            c.removeMetadataChangeListener(metadataListener);
+            c.removeLifecycleListener(lifecycleListener);
+        } catch (LibvirtException e) {
+            // the connection is gone, and so are its callbacks
+        }
+    }
+
+    /**
+     * Follows the events of another connection to the same hypervisor,
+     * e.g. after the previous one has been closed, and reloads all domains.
+     *
+     * @param newConn
+     *            the connection to follow from now on
+     * @throws LibvirtException
+     *             if the new connection could not be used, in which case
+     *             the inventory stays stale
+     */
+    public void rebind(final Connect newConn) throws LibvirtException {
+        synchronized (loadLock) {
+            Connect old = this.conn;
+            if (!closed) {
+                unbind(old);
+            }
+            stale = true;
+            closed = true;
+            this.conn = newConn;
+            bind(newConn);
+            closed = false;
+            resync();
+        }
+    }
+
+    /**
+     * Stops following the events of the connection. The inventory keeps its
+     * content but is no longer updated.
+     *
+     * @throws LibvirtException
+     */
+    public void close() throws LibvirtException {
+        synchronized (loadLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            stale = true;
+            conn.removeInternalCloseListener(closeListener);
+            conn.removeMetadataChangeListener(metadataListener);
+            conn.removeLifecycleListener(lifecycleListener);
+        }
+    }
+
+    /**
+     * Reloads all domains. The new snapshot is built without blocking
+     * lookups and event processing, and then replaces the previous one,
+     * except for the domains changed by events in the meantime.
+     *
+     * @throws LibvirtException
+     */
+    public void resync() throws LibvirtException {
+        synchronized (loadLock) {
+            stale = false;
+            Set<UUID> changed = new HashSet<UUID>();
+            synchronized (this) {
+                changedDuringLoad = changed;
+            }
+            try {
+                List<Entry> loaded = load();
+                synchronized (this) {
+                    Set<UUID> seen = new HashSet<UUID>();
+                    for (Entry entry : loaded) {
+                        seen.add(entry.uuid);
+                        if (!changed.contains(entry.uuid)) {
+                            Entry old = byUUID.get(entry.uuid);
+                            put(old == null ? entry : entry.keepMetadata(old, -1));
+                        }
+                    }
+                    for (UUID uuid : byUUID.keySet()) {
+                        if (!seen.contains(uuid) && !changed.contains(uuid)) {
+                            remove(uuid);
+                        }
+                    }
+                }
+            } catch (LibvirtException e) {
+                stale = true;
+                throw e;
+            } finally {
+                synchronized (this) {
+                    changedDuringLoad = null;
+                }
+            }
+        }
+    }
+
+    private List<Entry> load() throws LibvirtException {
+        DomainStats[] stats = conn.getAllDomainStats(Connect.DomainStatsTypes.STATE, 0);
+        List<Entry> entries = new ArrayList<Entry>(stats.length);
+        for (DomainStats s : stats) {
+            TypedParameter state = s.get("state.state");
+            DomainInfo.DomainState st = state instanceof TypedIntParameter
+                ? Library.getConstant(DomainInfo.DomainState.class, ((TypedIntParameter) state).value)
+                : s.domain.getState();
+            entries.add(new Entry(s.domain, s.domain.uuid(), s.domain.getName(), s.domain.getID(), st));
+        }
+        return entries;
+    }
+
+    private static String metadata(final Domain domain, final int type) throws LibvirtException {
+        try {
+            return domain.getMetadata(type, null, 0);
+        } catch (LibvirtException e) {
+            if (e.getError().getCode() == Error.ErrorNumber.VIR_ERR_NO_DOMAIN_METADATA) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether events may have been missed since the last load, or
+     *         the connection has been closed since
+     */
+    public boolean isStale() {
+        return stale || conn.vcp == null;
+    }
+
+    private void resyncIfStale() {
+        if (stale && !closed) {
+            try {
+                if (conn.vcp != null) {
+                    resync();
+                }
+            } catch (LibvirtException e) {
+                // keep serving the last known state
+            }
+        }
+    }
+
+    private void update(final Domain domain, final DomainEventType type) {
+        try {
+            UUID uuid = domain.uuid();
+            DomainInfo.DomainState state;
+            try {
+                state = domain.getState();
+            } catch (LibvirtException e) {
+                if (e.getError().getCode() == Error.ErrorNumber.VIR_ERR_NO_DOMAIN) {
+                    // a transient domain has stopped
+                    synchronized (this) {
+                        changed(uuid);
+                        remove(uuid);
+                    }
+                    return;
+                }
+                throw e;
+            }
+            Entry entry = new Entry(domain, uuid, domain.getName(), domain.getID(), state);
+            synchronized (this) {
+                changed(uuid);
+                Entry old = byUUID.get(uuid);
+                if (type == DomainEventType.UNDEFINED && state == DomainInfo.DomainState.VIR_DOMAIN_SHUTOFF) {
+                    remove(uuid);
+                } else if (old == null || type == DomainEventType.DEFINED) {
+                    // new or redefined, its metadata may have changed
+                    put(entry);
+                } else {
+                    put(entry.keepMetadata(old, -1));
+                }
+            }
+        } catch (LibvirtException e) {
+            stale = true;
+        }
+    }
+
+    private void invalidateMetadata(final Domain domain, final int type) {
+        try {
+            UUID uuid = domain.uuid();
+            synchronized (this) {
+                Entry old = byUUID.get(uuid);
+                if (old == null) {
+                    // not known yet, the lifecycle event will add it
+                    return;
+                }
+                changed(uuid);
+                put(new Entry(old.domain, uuid, old.name, old.id, old.state).keepMetadata(old, type));
+            }
+        } catch (LibvirtException e) {
+            stale = true;
+        }
+    }
+
+    // callers hold the lock
+    private void changed(final UUID uuid) {
+        if (changedDuringLoad != null) {
+            changedDuringLoad.add(uuid);
+        }
+    }
+
+    // callers hold the lock
+    private void put(final Entry entry) {
+        Entry old = byUUID.put(entry.uuid, entry);
+        if (old != null) {
+            unindex(old);
+        }
+        if (entry.name != null) {
+            byName.put(entry.name, entry);
+        }
+        if (entry.id != -1) {
+            byID.put(entry.id, entry);
+        }
+    }
+
+    private void unindex(final Entry old) {
+        if (old.name != null) {
+            byName.remove(old.name, old);
+        }
+        byID.remove(old.id, old);
+    }
+
+    // callers hold the lock
+    private void remove(final UUID uuid) {
+        Entry old = byUUID.remove(uuid);
+        if (old != null) {
+            unindex(old);
+        }
+    }
+
+    /**
+     * @return the domain with the given UUID, or null if there is none
+     */
+    public Entry get(final UUID uuid) {
+        resyncIfStale();
+        return byUUID.get(uuid);
+    }
+
+    /**
+     * @return the domain with the given name, or null if there is none
+     */
+    public Entry getByName(final String name) {
+        resyncIfStale();
+        return byName.get(name);
+    }
+
+    /**
+     * @return the running domain with the given ID, or null if there is none
+     */
+    public Entry getByID(final int id) {
+        resyncIfStale();
+        return byID.get(id);
+    }
+
+    /**
+     * @return an unmodifiable view of all domains
+     */
+    public Collection<Entry> getAll() {
+        resyncIfStale();
+        return Collections.unmodifiableCollection(byUUID.values());
+    }
+
+    /**
+     * @return the domains currently in the given state
+     */
+    public List<Entry> getAll(final DomainInfo.DomainState state) {
+        resyncIfStale();
+        List<Entry> result = new ArrayList<Entry>();
+        for (Entry e : byUUID.values()) {
+            if (e.state == state) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of domains
+     */
+    public int size() {
+        resyncIfStale();
+        return byUUID.size();
+    }
+}
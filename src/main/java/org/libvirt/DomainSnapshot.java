@@ -4,7 +4,7 @@ import org.libvirt.jna.DomainSnapshotPointer;
 import static org.libvirt.Library.libvirt;
 import static org.libvirt.ErrorHandler.processError;
 
-public class DomainSnapshot {
+public class DomainSnapshot implements AutoCloseable {
 
     private static int bit(final int i) {
         return 1 << i;
@@ -25,6 +25,9 @@ public class DomainSnapshot {
      */
     DomainSnapshotPointer vdsp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Domain Snapshot
      */
@@ -33,6 +36,8 @@ public class DomainSnapshot {
     public DomainSnapshot(final Connect virConnect,
                           final DomainSnapshotPointer vdsp) {
         this.vdsp = vdsp;
+        this.nativeHandle = vdsp == null ? null
+            : NativeResources.register(this, DomainSnapshot.class, () -> libvirt.virDomainSnapshotFree(vdsp));
         this.virConnect = virConnect;
     }
 
@@ -56,11 +61,6 @@ public class DomainSnapshot {
         return success;
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Release the domain snapshot handle. The underlying snapshot continues to
      * exist.
@@ -71,13 +71,21 @@ public class DomainSnapshot {
     public int free() throws LibvirtException {
         int success = 0;
         if (vdsp != null) {
-            success = processError(libvirt.virDomainSnapshotFree(vdsp));
+            success = processError(nativeHandle.close());
             vdsp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this snapshot, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Fetches an XML document describing attributes of the snapshot, without security-sensitive data.
      *
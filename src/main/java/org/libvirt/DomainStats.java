@@ -0,0 +1,40 @@
+package org.libvirt;
+
+/**
+ * Statistics of a single domain as returned by the bulk stats APIs.
+ *
+ * @see Connect#getAllDomainStats
+ * @see Connect#getDomainStats
+ */
+public class DomainStats {
+    /**
+     * The domain the statistics belong to
+     */
+    public Domain domain;
+
+    /**
+     * The statistics, named e.g. "state.state", "cpu.time" or "block.0.rd.bytes"
+     */
+    public TypedParameter[] params;
+
+    public DomainStats(Domain domain, TypedParameter[] params) {
+        this.domain = domain;
+        this.params = params;
+    }
+
+    /**
+     * Looks up a statistic by its field name.
+     *
+     * @param field
+     *            the name of the statistic
+     * @return the parameter or {@code null} if it is not present
+     */
+    public TypedParameter get(final String field) {
+        for (TypedParameter p : params) {
+            if (p != null && field.equals(p.field)) {
+                return p;
+            }
+        }
+        return null;
+    }
+}
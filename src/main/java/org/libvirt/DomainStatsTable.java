@@ -0,0 +1,370 @@
+package org.libvirt;
+
+import static org.libvirt.Library.libvirt;
+import static org.libvirt.ErrorHandler.processError;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.libvirt.jna.DomainPointer;
+import org.libvirt.jna.Libvirt;
+import org.libvirt.jna.virDomainStatsRecord;
+import org.libvirt.jna.virTypedParameter;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Columnar, reusable container for the result of the bulk domain stats
+ * APIs.
+ * <p>
+ * Unlike {@link Connect#getAllDomainStats(int, int)}, which creates a
+ * {@link TypedParameter} per statistic, filling a table reads the native
+ * records directly into primitive arrays. Every distinct field name (e.g.
+ * "block.0.rd.bytes") is interned once into a column; a row is a domain. When
+ * the same table is passed to subsequent polls, arrays and field names are
+ * reused so that a poll cycle allocates next to nothing, except for string
+ * valued statistics.
+ * <p>
+ * Integer, unsigned, long, unsigned long and boolean values are stored as
+ * {@code long} (unsigned values are not sign extended for {@code uint},
+ * {@code ulong} values use the full 64 bits), doubles as {@code double}.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @see Connect#getAllDomainStats(int, int, DomainStatsTable)
+ */
+public final class DomainStatsTable {
+    private static final int INITIAL_ROWS = 16;
+    private static final int INITIAL_COLUMNS = 64;
+    private static final int FIELD_LENGTH = Libvirt.VIR_TYPED_PARAM_FIELD_LENGTH;
+
+    // field name dictionary: open addressing hash of column index + 1
+    private int[] slots = new int[INITIAL_COLUMNS * 2];
+    private int[] hashes = new int[INITIAL_COLUMNS];
+    private byte[][] names = new byte[INITIAL_COLUMNS][];
+    private String[] columnNames = new String[INITIAL_COLUMNS];
+    private int[] columnTypes = new int[INITIAL_COLUMNS];
+    private int columns;
+
+    // cells, indexed [column][row]
+    private long[][] longs = new long[INITIAL_COLUMNS][];
+    private double[][] doubles = new double[INITIAL_COLUMNS][];
+    private String[][] strings = new String[INITIAL_COLUMNS][];
+    private int[][] stamps = new int[INITIAL_COLUMNS][];
+
+    private long[] uuidHigh = new long[INITIAL_ROWS];
+    private long[] uuidLow = new long[INITIAL_ROWS];
+    private int rowCapacity = INITIAL_ROWS;
+    private int rows;
+
+    // incremented on every fill, a cell is present if its stamp matches
+    private int generation;
+
+    private final byte[] fieldScratch = new byte[FIELD_LENGTH];
+    private final byte[] uuidScratch = new byte[Libvirt.VIR_UUID_BUFLEN];
+    private final DomainPointer domScratch = new DomainPointer();
+
+    /**
+     * Replaces the content of this table with the given native record list.
+     * The list is not freed.
+     */
+    void fill(final Pointer records, final int count) throws LibvirtException {
+        if (++generation == 0) {
+            // wrapped around, make sure no stale cell looks current
+            for (int c = 0; c < columns; c++) {
+                Arrays.fill(stamps[c], 0);
+            }
+            generation = 1;
+        }
+        rows = 0;
+        ensureRows(count);
+        for (int i = 0; i < count; i++) {
+            Pointer record = records.getPointer((long) i * Native.POINTER_SIZE);
+            readUUID(record.getPointer(virDomainStatsRecord.DOM_OFFSET), i);
+            Pointer params = record.getPointer(virDomainStatsRecord.PARAMS_OFFSET);
+            int nparams = record.getInt(virDomainStatsRecord.NPARAMS_OFFSET);
+            for (int j = 0; j < nparams; j++) {
+                readParameter(params, (long) j * virTypedParameter.SIZE, i);
+            }
+            rows++;
+        }
+    }
+
+    private void readUUID(final Pointer dom, final int row) throws LibvirtException {
+        domScratch.setPointer(dom);
+        processError(libvirt.virDomainGetUUID(domScratch, uuidScratch));
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < 8; i++) {
+            hi = (hi << 8) | (uuidScratch[i] & 0xff);
+            lo = (lo << 8) | (uuidScratch[i + 8] & 0xff);
+        }
+        uuidHigh[row] = hi;
+        uuidLow[row] = lo;
+    }
+
+    private void readParameter(final Pointer params, final long offset, final int row) {
+        int type = params.getInt(offset + virTypedParameter.TYPE_OFFSET);
+        params.read(offset + virTypedParameter.FIELD_OFFSET, fieldScratch, 0, FIELD_LENGTH);
+        int col = column(fieldScratch, type);
+        long value = offset + virTypedParameter.VALUE_OFFSET;
+        switch (type) {
+            case virTypedParameter.TYPED_PARAM_INT:
+                longs[col][row] = params.getInt(value);
+                break;
+            case virTypedParameter.TYPED_PARAM_UINT:
+                longs[col][row] = params.getInt(value) & 0xffffffffL;
+                break;
+            case virTypedParameter.TYPED_PARAM_LONG:
+            case virTypedParameter.TYPED_PARAM_ULONG:
+                longs[col][row] = params.getLong(value);
+                break;
+            case virTypedParameter.TYPED_PARAM_DOUBLE:
+                doubles[col][row] = params.getDouble(value);
+                break;
+            case virTypedParameter.TYPED_PARAM_BOOLEAN:
+                longs[col][row] = params.getByte(value) != 0 ? 1 : 0;
+                break;
+            case virTypedParameter.TYPED_PARAM_STRING:
+                Pointer s = params.getPointer(value);
+                strings[col][row] = s == null ? null : s.getString(0, StandardCharsets.UTF_8.name());
+                break;
+            default:
+                // Unknown type: nothing to do.
+                return;
+        }
+        stamps[col][row] = generation;
+    }
+
+    /**
+     * Finds or interns the column for the NUL terminated name in the given
+     * buffer.
+     */
+    private int column(final byte[] name, final int type) {
+        int length = 0;
+        int hash = 0x811c9dc5;
+        while (length < name.length && name[length] != 0) {
+            hash = (hash ^ name[length]) * 0x01000193;
+            length++;
+        }
+        int mask = slots.length - 1;
+        for (int i = hash & mask;; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return addColumn(name, length, hash, type);
+            }
+            int col = slot - 1;
+            if (hashes[col] == hash && equals(names[col], name, length)) {
+                if (columnTypes[col] != type) {
+                    retype(col, type);
+                }
+                return col;
+            }
+        }
+    }
+
+    private static boolean equals(final byte[] known, final byte[] name, final int length) {
+        if (known.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (known[i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addColumn(final byte[] name, final int length, final int hash, final int type) {
+        if (columns == names.length) {
+            growColumns();
+        }
+        int col = columns++;
+        names[col] = Arrays.copyOf(name, length);
+        hashes[col] = hash;
+        columnNames[col] = new String(names[col], StandardCharsets.UTF_8);
+        stamps[col] = new int[rowCapacity];
+        retype(col, type);
+        insertSlot(col);
+        return col;
+    }
+
+    private void retype(final int col, final int type) {
+        columnTypes[col] = type;
+        if (type == virTypedParameter.TYPED_PARAM_DOUBLE) {
+            if (doubles[col] == null) {
+                doubles[col] = new double[rowCapacity];
+            }
+        } else if (type == virTypedParameter.TYPED_PARAM_STRING) {
+            if (strings[col] == null) {
+                strings[col] = new String[rowCapacity];
+            }
+        } else if (longs[col] == null) {
+            longs[col] = new long[rowCapacity];
+        }
+    }
+
+    private void insertSlot(final int col) {
+        int mask = slots.length - 1;
+        int i = hashes[col] & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = col + 1;
+    }
+
+    private void growColumns() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        columnNames = Arrays.copyOf(columnNames, capacity);
+        columnTypes = Arrays.copyOf(columnTypes, capacity);
+        longs = Arrays.copyOf(longs, capacity);
+        doubles = Arrays.copyOf(doubles, capacity);
+        strings = Arrays.copyOf(strings, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+        slots = new int[capacity * 2];
+        for (int c = 0; c < columns; c++) {
+            insertSlot(c);
+        }
+    }
+
+    private void ensureRows(final int count) {
+        if (count <= rowCapacity) {
+            return;
+        }
+        int capacity = Math.max(count, rowCapacity * 2);
+        uuidHigh = Arrays.copyOf(uuidHigh, capacity);
+        uuidLow = Arrays.copyOf(uuidLow, capacity);
+        for (int c = 0; c < columns; c++) {
+            stamps[c] = Arrays.copyOf(stamps[c], capacity);
+            if (longs[c] != null) {
+                longs[c] = Arrays.copyOf(longs[c], capacity);
+            }
+            if (doubles[c] != null) {
+                doubles[c] = Arrays.copyOf(doubles[c], capacity);
+            }
+            if (strings[c] != null) {
+                strings[c] = Arrays.copyOf(strings[c], capacity);
+            }
+        }
+        rowCapacity = capacity;
+    }
+
+    /**
+     * @return the number of domains in the last fill
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @return the number of distinct fields seen so far; columns are never
+     *         removed, so indices stay valid across fills
+     */
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * Looks up the column of a field.
+     *
+     * @param field
+     *            the name of the statistic, e.g. "cpu.time"
+     * @return the column index or -1 if this field has never been seen
+     */
+    public int getColumn(final String field) {
+        for (int c = 0; c < columns; c++) {
+            if (columnNames[c].equals(field)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public String getColumnName(final int column) {
+        return columnNames[column];
+    }
+
+    /**
+     * @return the type of the column, as one of the typed parameter
+     *         constants, e.g. {@link TypedParameter#getType}
+     */
+    public int getColumnType(final int column) {
+        return columnTypes[column];
+    }
+
+    public UUID getUUID(final int row) {
+        return new UUID(uuidHigh[row], uuidLow[row]);
+    }
+
+    public long getUUIDMostSignificantBits(final int row) {
+        return uuidHigh[row];
+    }
+
+    public long getUUIDLeastSignificantBits(final int row) {
+        return uuidLow[row];
+    }
+
+    /**
+     * Looks up the row of a domain.
+     *
+     * @return the row index or -1 if the domain was not part of the last fill
+     */
+    public int getRow(final UUID uuid) {
+        long hi = uuid.getMostSignificantBits();
+        long lo = uuid.getLeastSignificantBits();
+        for (int r = 0; r < rows; r++) {
+            if (uuidHigh[r] == hi && uuidLow[r] == lo) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the domain in the given row reported a value for the
+     *         given column in the last fill
+     */
+    public boolean isPresent(final int row, final int column) {
+        return row < rows && stamps[column][row] == generation;
+    }
+
+    /**
+     * Gets an integral or boolean value.
+     *
+     * @return the value, or {@code defaultValue} if it is not present
+     */
+    public long getLong(final int row, final int column, final long defaultValue) {
+        if (!isPresent(row, column) || longs[column] == null) {
+            return defaultValue;
+        }
+        return longs[column][row];
+    }
+
+    /**
+     * Gets a double value.
+     *
+     * @return the value, or {@code defaultValue} if it is not present
+     */
+    public double getDouble(final int row, final int column, final double defaultValue) {
+        if (!isPresent(row, column) || doubles[column] == null) {
+            return defaultValue;
+        }
+        return doubles[column][row];
+    }
+
+    /**
+     * Gets a string value.
+     *
+     * @return the value, or {@code null} if it is not present
+     */
+    public String getString(final int row, final int column) {
+        if (!isPresent(row, column) || strings[column] == null) {
+            return null;
+        }
+        return strings[column][row];
+    }
+}
@@ -0,0 +1,315 @@
+package org.libvirt;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.libvirt.event.EventListener;
+
+/**
+ * Delivers events to listeners off the libvirt event loop thread.
+ * <p>
+ * By default, listeners are invoked directly by the native callback, on
+ * the thread running the event loop; a slow listener then delays every
+ * other event and the keepalive handling of all connections. Once a
+ * dispatcher is set with {@link Connect#setEventDispatcher}, the callback
+ * only appends a small record to a bounded queue and returns. Every
+ * listener has its own queue, drained in order by a task running on the
+ * dispatcher's executor, so each listener sees its events in the order
+ * libvirt emitted them, while different listeners run concurrently.
+ * <p>
+ * The queues are lock-free multi-producer, single-consumer ring buffers.
+ * When the queue of a listener is full, the {@link OverflowPolicy}
+ * decides what happens to a new event.
+ * <p>
+ * The domain passed to a listener holds its own reference, so it stays
+ * valid after the native callback has returned.
+ * <p>
+ * This class is thread-safe; a single dispatcher can be shared by many
+ * connections.
+ */
+public final class EventDispatcher {
+    /**
+     * What to do with an event when the queue of its listener is full.
+     */
+    public enum OverflowPolicy {
+        /** drop the event and count it as discarded */
+        DISCARD,
+
+        /** deliver the event on the event loop thread, out of order */
+        CALLER_RUNS,
+
+        /** wait on the event loop thread until there is space */
+        BLOCK
+    }
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ConcurrentHashMap<EventListener, Lane> lanes =
+        new ConcurrentHashMap<EventListener, Lane>();
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Creates a dispatcher with queues of 1024 events, discarding on
+     * overflow, delivering on a pool of daemon threads.
+     */
+    public EventDispatcher() {
+        this(newDaemonPool(), DEFAULT_CAPACITY, OverflowPolicy.DISCARD);
+    }
+
+    /**
+     * Creates a dispatcher.
+     *
+     * @param executor
+     *            the executor running the listeners, e.g. a thread pool or,
+     *            on recent Java versions, a virtual thread per task executor
+     * @param capacity
+     *            the number of events queued per listener, rounded up to a
+     *            power of two
+     * @param overflowPolicy
+     *            what to do when the queue of a listener is full
+     */
+    public EventDispatcher(final Executor executor, final int capacity,
+                           final OverflowPolicy overflowPolicy) {
+        if (executor == null || overflowPolicy == null) {
+            throw new IllegalArgumentException("executor and overflow policy must not be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.executor = executor;
+        int c = Integer.highestOneBit(capacity);
+        this.capacity = c == capacity ? c : c << 1;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    private static ExecutorService newDaemonPool() {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(r, "libvirt-event-dispatch-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+
+    /**
+     * Queues the delivery of an event to a listener.
+     */
+    void dispatch(final EventListener listener, final Runnable delivery) {
+        Lane lane = lanes.get(listener);
+        if (lane == null) {
+            Lane created = new Lane(capacity);
+            lane = lanes.putIfAbsent(listener, created);
+            if (lane == null) {
+                lane = created;
+            }
+        }
+        Record record = new Record(delivery, System.nanoTime());
+        while (!lane.offer(record)) {
+            switch (overflowPolicy) {
+                case DISCARD:
+                    discarded.increment();
+                    return;
+                case CALLER_RUNS:
+                    callerRuns.increment();
+                    deliver(record);
+                    return;
+                default:
+                    lane.schedule();
+                    LockSupport.parkNanos(10000L);
+            }
+        }
+        lane.schedule();
+    }
+
+    /**
+     * Forgets the queue of a listener that has been removed. Events already
+     * queued are still delivered.
+     */
+    void remove(final EventListener listener) {
+        lanes.remove(listener);
+    }
+
+    private void deliver(final Record record) {
+        try {
+            record.delivery.run();
+        } catch (Throwable e) {
+            // also errors, which would leave the lane scheduled forever
+            failures.increment();
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+        long latency = System.nanoTime() - record.enqueued;
+        delivered.increment();
+        totalLatency.add(latency);
+        long max;
+        while (latency > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, latency)) {
+            // retry
+        }
+    }
+
+    private static final class Record {
+        final Runnable delivery;
+        final long enqueued;
+
+        Record(final Runnable delivery, final long enqueued) {
+            this.delivery = delivery;
+            this.enqueued = enqueued;
+        }
+    }
+
+    /**
+     * The queue of a single listener: a bounded ring buffer written by any
+     * number of threads and drained by at most one task at a time.
+     */
+    private final class Lane implements Runnable {
+        private final AtomicReferenceArray<Record> slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Lane(final int capacity) {
+            slots = new AtomicReferenceArray<Record>(capacity);
+            mask = capacity - 1;
+        }
+
+        boolean offer(final Record record) {
+            long t;
+            do {
+                t = tail.get();
+                if (t - head >= slots.length()) {
+                    return false;
+                }
+            } while (!tail.compareAndSet(t, t + 1));
+            slots.lazySet((int) t & mask, record);
+            return true;
+        }
+
+        int size() {
+            return (int) (tail.get() - head);
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // e.g. the executor has been shut down: drain the queue
+                    // on the calling thread, which also clears the flag
+                    callerRuns.increment();
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (;;) {
+                long h = head;
+                while (h != tail.get()) {
+                    int index = (int) h & mask;
+                    Record record = slots.get(index);
+                    if (record == null) {
+                        // claimed, but not yet written by the producer
+                        Thread.yield();
+                        continue;
+                    }
+                    slots.lazySet(index, null);
+                    head = ++h;
+                    deliver(record);
+                }
+                scheduled.set(false);
+                if (h == tail.get() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of events queued and not yet delivered
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes.values()) {
+            depth += lane.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return the number of events delivered
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return the number of events dropped because a queue was full
+     */
+    public long getDiscarded() {
+        return discarded.sum();
+    }
+
+    /**
+     * @return the number of times events were delivered on the event loop
+     *         thread because a queue was full or the executor rejected the
+     *         task draining it
+     */
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * @return the number of listener invocations that threw an exception
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the mean time between queuing an event and the listener
+     *         returning, in nanoseconds
+     */
+    public long getMeanLatencyNanos() {
+        long n = delivered.sum();
+        return n == 0 ? 0 : totalLatency.sum() / n;
+    }
+
+    /**
+     * @return the longest time between queuing an event and the listener
+     *         returning, in nanoseconds
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatency.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EventDispatcher[depth=%d, delivered=%d, discarded=%d, meanLatency=%dns]",
+                             getQueueDepth(), getDelivered(), getDiscarded(), getMeanLatencyNanos());
+    }
+}
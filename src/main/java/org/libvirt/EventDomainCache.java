@@ -0,0 +1,131 @@
+package org.libvirt;
+
+import static org.libvirt.Library.libvirt;
+import static org.libvirt.ErrorHandler.processError;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.libvirt.jna.DomainPointer;
+
+/**
+ * The domains passed to the event listeners of a connection, by UUID.
+ * <p>
+ * The pointer given to an event callback is only valid during the
+ * callback. Wrapping it in a new {@link Domain} takes a reference, which
+ * is only released once the object has been garbage collected, so a burst
+ * of events costs a native call, an object tracked by the cleaner and a
+ * delayed free per event. Instead, the first event of a domain creates a
+ * referenced Domain, which later events of the domain reuse as long as it
+ * has not been restarted, i.e. its ID is unchanged. The ID of
+ * the cached domain is kept with it, so that an event costs two calls
+ * reading the handle, for its UUID and ID.
+ * <p>
+ * The cache holds its domains strongly, so that they are reused even if
+ * no listener keeps them, and is bounded: the least recently used domain
+ * is dropped, not freed, when it is full. A domain is also dropped when it
+ * stops, as it gets a new ID when started again, and a transient domain is
+ * gone. Since the instances are shared, {@link Domain#free} does nothing
+ * on them; a dropped domain is released once no listener keeps it.
+ */
+final class EventDomainCache {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final class Cached {
+        final Domain domain;
+        final int id;
+
+        Cached(final Domain domain, final int id) {
+            this.domain = domain;
+            this.id = id;
+        }
+    }
+
+    private final Connect connect;
+
+    // guarded by this
+    private final LinkedHashMap<UUID, Cached> domains;
+
+    private long hits;
+    private long misses;
+
+    EventDomainCache(final Connect connect) {
+        this(connect, DEFAULT_CAPACITY);
+    }
+
+    EventDomainCache(final Connect connect, final int capacity) {
+        this.connect = connect;
+        this.domains = new LinkedHashMap<UUID, Cached>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<UUID, Cached> eldest) {
+                    return size() > capacity;
+                }
+            };
+    }
+
+    /**
+     * Returns the domain of a pointer passed to an event callback; the
+     * pointer is not owned by the caller.
+     */
+    Domain get(final DomainPointer ptr) throws LibvirtException {
+        UUID uuid = DomainIdentityMap.uuidOf(ptr);
+        int id = libvirt.virDomainGetID(ptr);
+        synchronized (this) {
+            Cached known = domains.get(uuid);
+            if (known != null && known.id == id) {
+                hits++;
+                return known.domain;
+            }
+            misses++;
+        }
+        processError(libvirt.virDomainRef(ptr));
+        Domain domain = new Domain(connect, ptr);
+        domain.uuid = uuid;
+        domain.eventShared = true;
+        synchronized (this) {
+            domains.put(uuid, new Cached(domain, id));
+        }
+        return domain;
+    }
+
+    /**
+     * Removes the given domain, e.g. after it has been stopped or
+     * undefined.
+     */
+    synchronized void remove(final Domain domain) throws LibvirtException {
+        UUID uuid = domain.uuid();
+        Cached known = domains.get(uuid);
+        if (known != null && known.domain == domain) {
+            domains.remove(uuid);
+        }
+    }
+
+    /**
+     * Drops all domains, e.g. when the connection is closed. They are
+     * freed once no longer referenced.
+     */
+    synchronized void clear() {
+        domains.clear();
+    }
+
+    synchronized int size() {
+        return domains.size();
+    }
+
+    /**
+     * @return the number of events which reused a domain
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of events which created a domain
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,559 @@
+package org.libvirt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libvirt.event.AgentLifecycleListener;
+import org.libvirt.event.BalloonChangeListener;
+import org.libvirt.event.BlockJobListener;
+import org.libvirt.event.BlockJobStatus;
+import org.libvirt.event.BlockJobType;
+import org.libvirt.event.BlockThresholdListener;
+import org.libvirt.event.ConnectionCloseListener;
+import org.libvirt.event.ConnectionCloseReason;
+import org.libvirt.event.DeviceAddedListener;
+import org.libvirt.event.DeviceRemovedListener;
+import org.libvirt.event.DomainEvent;
+import org.libvirt.event.DomainEventRecord;
+import org.libvirt.event.Flow;
+import org.libvirt.event.IOErrorAction;
+import org.libvirt.event.IOErrorListener;
+import org.libvirt.event.JobCompletedListener;
+import org.libvirt.event.LifecycleListener;
+import org.libvirt.event.MemoryFailureAction;
+import org.libvirt.event.MemoryFailureListener;
+import org.libvirt.event.MemoryFailureRecipient;
+import org.libvirt.event.MetadataChangeListener;
+import org.libvirt.event.MigrationIterationListener;
+import org.libvirt.event.PMSuspendListener;
+import org.libvirt.event.PMSuspendReason;
+import org.libvirt.event.PMWakeupListener;
+import org.libvirt.event.PMWakeupReason;
+import org.libvirt.event.RebootListener;
+import org.libvirt.event.TunableListener;
+
+/**
+ * Publishes the domain events of a connection to reactive subscribers.
+ * <p>
+ * The native callbacks for the selected event types are registered when
+ * the first subscriber subscribes and deregistered when the last one
+ * cancels. Every subscriber has a bounded buffer of events it has not
+ * requested yet; when the buffer is full, the {@link Overflow} policy
+ * decides which event is dropped. A subscriber that lags thus never
+ * delays the event loop, nor the other subscribers.
+ * <p>
+ * Events are delivered on the thread invoking the listeners, i.e. the
+ * event loop thread, unless an {@link EventDispatcher} is set on the
+ * connection. When the connection is closed, every subscriber is
+ * completed.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see Connect#events
+ */
+public final class EventPublisher implements Flow.Publisher<DomainEventRecord> {
+    /**
+     * What to do with an event when the buffer of a subscriber is full.
+     */
+    public enum Overflow {
+        /** drop the new event */
+        DROP_NEWEST,
+
+        /** drop the oldest buffered event */
+        DROP_OLDEST,
+
+        /**
+         * replace the buffered event of the same type for the same domain,
+         * if any, otherwise drop the oldest buffered event
+         */
+        COALESCE
+    }
+
+    private static final String FLOW_PUBLISHER = "org.libvirt.FlowPublisher";
+
+    private static final Flow.Subscription EMPTY = new Flow.Subscription() {
+            @Override
+            public void request(final long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+    private final Connect conn;
+    private final Set<DomainEventRecord.Type> types;
+    private final int bufferSize;
+    private final Overflow overflow;
+
+    private final CopyOnWriteArrayList<Sub> subscribers = new CopyOnWriteArrayList<Sub>();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // guarded by this
+    private boolean registered;
+    private boolean closed;
+
+    private final Relay relay = new Relay();
+
+    private final ConnectionCloseListener closeListener = new ConnectionCloseListener() {
+            @Override
+            public void onClose(final Connect c, final ConnectionCloseReason reason) {
+                complete();
+            }
+        };
+
+    EventPublisher(final Connect conn, final Set<DomainEventRecord.Type> types,
+                   final int bufferSize, final Overflow overflow) {
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("types cannot be empty");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        if (overflow == null) {
+            throw new IllegalArgumentException("overflow cannot be null");
+        }
+        this.conn = conn;
+        this.types = Collections.unmodifiableSet(EnumSet.copyOf(types));
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Adds a subscriber. If the native callbacks cannot be registered, the
+     * subscriber receives {@link Flow.Subscriber#onError onError} with the
+     * {@link LibvirtException}.
+     */
+    @Override
+    public void subscribe(final Flow.Subscriber<? super DomainEventRecord> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber cannot be null");
+        }
+        Sub sub = new Sub(subscriber);
+        LibvirtException failure = null;
+        boolean added = false;
+        synchronized (this) {
+            if (!closed) {
+                try {
+                    if (!registered) {
+                        register();
+                    }
+                    subscribers.add(sub);
+                    added = true;
+                } catch (LibvirtException e) {
+                    failure = e;
+                }
+            }
+        }
+        if (added) {
+            sub.start();
+        } else {
+            subscriber.onSubscribe(EMPTY);
+            if (failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Returns this publisher as a {@code java.util.concurrent.Flow.Publisher},
+     * forwarding every call. The adapter is implemented in the Java 9 part
+     * of the multi-release jar, as the bindings still run on Java 8:
+     *
+     * <pre>
+     * {@code
+     * java.util.concurrent.Flow.Publisher<DomainEventRecord> p = conn.events(types).toFlowPublisher();
+     * }</pre>
+     *
+     * @param <P>
+     *            {@code java.util.concurrent.Flow.Publisher<DomainEventRecord>}
+     * @return the adapter
+     * @throws UnsupportedOperationException
+     *             when not running on Java 9 or later from the multi-release
+     *             jar
+     */
+    @SuppressWarnings("unchecked")
+    public <P> P toFlowPublisher() {
+        try {
+            return (P) Class.forName(FLOW_PUBLISHER).getDeclaredConstructor(EventPublisher.class).newInstance(this);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("java.util.concurrent.Flow is not available", e);
+        }
+    }
+
+    /**
+     * @return the event types published
+     */
+    public Set<DomainEventRecord.Type> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return the number of current subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return the number of events dropped because a subscriber's buffer
+     *         was full, summed over all subscribers
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void register() throws LibvirtException {
+        List<DomainEventRecord.Type> done = new ArrayList<DomainEventRecord.Type>();
+        try {
+            conn.addInternalCloseListener(closeListener);
+            for (DomainEventRecord.Type type : types) {
+                conn.domainEventRegisterByType(type, relay);
+                done.add(type);
+            }
+        } catch (LibvirtException e) {
+            for (DomainEventRecord.Type type : done) {
+                deregister(type);
+            }
+            conn.removeInternalCloseListener(closeListener);
+            throw e;
+        }
+        registered = true;
+    }
+
+    private void deregister() {
+        registered = false;
+        for (DomainEventRecord.Type type : types) {
+            deregister(type);
+        }
+        try {
+            conn.removeInternalCloseListener(closeListener);
+        } catch (LibvirtException e) {
+            // the connection is gone
+        }
+    }
+
+    private void deregister(final DomainEventRecord.Type type) {
+        try {
+            conn.domainEventDeregisterByType(type, relay);
+        } catch (LibvirtException e) {
+            // the connection is gone, and the callback with it
+        }
+    }
+
+    private synchronized void remove(final Sub sub) {
+        if (subscribers.remove(sub) && subscribers.isEmpty() && registered) {
+            deregister();
+        }
+    }
+
+    private void complete() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (registered) {
+                deregister();
+            }
+        }
+        for (Sub sub : subscribers) {
+            sub.complete();
+        }
+        subscribers.clear();
+    }
+
+    private void publish(final DomainEventRecord record) {
+        for (Sub sub : subscribers) {
+            sub.offer(record);
+        }
+    }
+
+    /**
+     * The subscription of a single subscriber.
+     * <p>
+     * Items are only passed to the subscriber by the thread that moved
+     * {@code wip} away from 0; other threads increment it, telling that
+     * thread to look again.
+     */
+    private final class Sub implements Flow.Subscription {
+        private final Flow.Subscriber<? super DomainEventRecord> subscriber;
+
+        // guarded by this
+        private final ArrayDeque<DomainEventRecord> queue = new ArrayDeque<DomainEventRecord>();
+
+        private final AtomicLong requested = new AtomicLong();
+
+        // starts at 1 so that nothing is delivered before onSubscribe
+        private final AtomicInteger wip = new AtomicInteger(1);
+
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        Sub(final Flow.Subscriber<? super DomainEventRecord> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            drainLoop();
+        }
+
+        void offer(final DomainEventRecord record) {
+            if (cancelled || done) {
+                return;
+            }
+            synchronized (this) {
+                if (queue.size() >= bufferSize) {
+                    dropped.incrementAndGet();
+                    switch (overflow) {
+                        case DROP_NEWEST:
+                            return;
+                        case COALESCE:
+                            if (!replace(record)) {
+                                queue.pollFirst();
+                                queue.addLast(record);
+                            }
+                            break;
+                        default:
+                            queue.pollFirst();
+                            queue.addLast(record);
+                    }
+                } else {
+                    queue.addLast(record);
+                }
+            }
+            drain();
+        }
+
+        /**
+         * Removes the buffered event of the same type for the same domain
+         * and appends the given one.
+         */
+        private boolean replace(final DomainEventRecord record) {
+            for (Iterator<DomainEventRecord> it = queue.iterator(); it.hasNext();) {
+                DomainEventRecord queued = it.next();
+                if (queued.getType() == record.getType()
+                    && queued.getDomain().equals(record.getDomain())) {
+                    it.remove();
+                    queue.addLast(record);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void complete() {
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive request: " + n);
+                done = true;
+            } else {
+                long r;
+                long u;
+                do {
+                    r = requested.get();
+                    u = r + n;
+                    if (u < 0) {
+                        u = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(r, u));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                remove(this);
+                drain();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                drainLoop();
+            }
+        }
+
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    clear();
+                } else {
+                    deliver();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            long r = requested.get();
+            long emitted = 0;
+            while (!cancelled) {
+                Throwable e = error;
+                if (e != null) {
+                    terminate(e);
+                    return;
+                }
+                DomainEventRecord record = null;
+                if (emitted != r) {
+                    synchronized (this) {
+                        record = queue.pollFirst();
+                    }
+                }
+                if (record == null) {
+                    boolean empty;
+                    synchronized (this) {
+                        empty = queue.isEmpty();
+                    }
+                    if (done && empty) {
+                        terminate(null);
+                    }
+                    break;
+                }
+                try {
+                    subscriber.onNext(record);
+                } catch (RuntimeException ex) {
+                    cancel();
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                    return;
+                }
+                emitted++;
+            }
+            if (emitted != 0 && r != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        private void terminate(final Throwable e) {
+            cancelled = true;
+            remove(this);
+            clear();
+            if (e == null) {
+                subscriber.onComplete();
+            } else {
+                subscriber.onError(e);
+            }
+        }
+
+        private synchronized void clear() {
+            queue.clear();
+        }
+    }
+
+    /**
+     * The listener registered for every published event type, turning
+     * events into records.
+     */
+    private final class Relay implements LifecycleListener, RebootListener, IOErrorListener,
+        BlockJobListener, PMWakeupListener, PMSuspendListener, AgentLifecycleListener,
+        TunableListener, JobCompletedListener, MigrationIterationListener,
+        BlockThresholdListener, MetadataChangeListener, DeviceAddedListener,
+        DeviceRemovedListener, BalloonChangeListener, MemoryFailureListener {
+
+        @Override
+        public int onLifecycleChange(final Domain domain, final DomainEvent event) {
+            publish(new DomainEventRecord.Lifecycle(domain, event));
+            return 0;
+        }
+
+        @Override
+        public void onReboot(final Domain domain) {
+            publish(new DomainEventRecord.Reboot(domain));
+        }
+
+        @Override
+        public void onIOError(final Domain domain, final String srcPath, final String devAlias,
+                              final IOErrorAction action) {
+            publish(new DomainEventRecord.IOError(domain, srcPath, devAlias, action));
+        }
+
+        @Override
+        public void onEvent(final Domain domain, final String diskPath, final BlockJobType type,
+                            final BlockJobStatus status) {
+            publish(new DomainEventRecord.BlockJob(domain, diskPath, type, status));
+        }
+
+        @Override
+        public void onPMWakeup(final Domain domain, final PMWakeupReason reason) {
+            publish(new DomainEventRecord.PMWakeup(domain, reason));
+        }
+
+        @Override
+        public void onPMSuspend(final Domain domain, final PMSuspendReason reason) {
+            publish(new DomainEventRecord.PMSuspend(domain, reason));
+        }
+
+        @Override
+        public void onAgentLifecycleChange(final Domain domain, final int state, final int reason) {
+            publish(new DomainEventRecord.AgentLifecycle(domain, state, reason));
+        }
+
+        @Override
+        public void onTunableChange(final Domain domain, final TypedParameterList params) {
+            publish(new DomainEventRecord.Tunable(domain, params));
+        }
+
+        @Override
+        public void onJobCompleted(final Domain domain, final TypedParameterList stats) {
+            publish(new DomainEventRecord.JobCompleted(domain, stats));
+        }
+
+        @Override
+        public void onMigrationIteration(final Domain domain, final int iteration) {
+            publish(new DomainEventRecord.MigrationIteration(domain, iteration));
+        }
+
+        @Override
+        public void onBlockThreshold(final Domain domain, final String dev, final String path,
+                                     final long threshold, final long excess) {
+            publish(new DomainEventRecord.BlockThreshold(domain, dev, path, threshold, excess));
+        }
+
+        @Override
+        public void onMetadataChange(final Domain domain, final int type, final String nsuri) {
+            publish(new DomainEventRecord.MetadataChange(domain, type, nsuri));
+        }
+
+        @Override
+        public void onDeviceAdded(final Domain domain, final String devAlias) {
+            publish(new DomainEventRecord.DeviceAdded(domain, devAlias));
+        }
+
+        @Override
+        public void onDeviceRemoved(final Domain domain, final String devAlias) {
+            publish(new DomainEventRecord.DeviceRemoved(domain, devAlias));
+        }
+
+        @Override
+        public void onBalloonChange(final Domain domain, final long actual) {
+            publish(new DomainEventRecord.BalloonChange(domain, actual));
+        }
+
+        @Override
+        public void onMemoryFailure(final Domain domain, final MemoryFailureRecipient recipient,
+                                    final MemoryFailureAction action, final int flags) {
+            publish(new DomainEventRecord.MemoryFailure(domain, recipient, action, flags));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.libvirt;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.libvirt.event.EventListener;
+
+import com.sun.jna.Callback;
+import com.sun.jna.PointerType;
+
+/**
+ * The event listeners of a connection for one kind of object, e.g.
+ * domains, by event ID.
+ * <p>
+ * Listeners registered for the same event and the same object, or for the
+ * same event and all objects, share a single native callback, which calls
+ * each of them in turn. Adding a listener to an event already having a
+ * callback for its object does not call into libvirt, and the callback is
+ * only deregistered once its last listener has been removed.
+ * <p>
+ * The listener lists are copy-on-write, so the native callbacks read them
+ * without locking. Registration and deregistration are serialized, which
+ * keeps the native registrations in step with the lists; they can be
+ * called from any thread.
+ *
+ * @param <P> the type of the object pointers
+ */
+final class EventRegistry<P extends PointerType> {
+    /**
+     * Registers a native callback.
+     */
+    interface Registrar<P> {
+        /**
+         * @param target
+         *            the object, or {@code null} for all objects
+         * @return the callback ID
+         */
+        int register(P target, int eventID, Callback cb) throws LibvirtException;
+    }
+
+    /**
+     * Deregisters a native callback.
+     */
+    interface Deregistrar {
+        void deregister(int callbackId) throws LibvirtException;
+    }
+
+    /**
+     * Creates the native callback of an event, delivering it to the
+     * listeners in the given list.
+     */
+    interface CallbackFactory {
+        Callback create(List<EventListener> listeners);
+    }
+
+    // the key of the callbacks for all objects
+    private static final Object ALL = new Object();
+
+    private static final class Hub {
+        final Object key;
+        final CopyOnWriteArrayList<EventListener> listeners =
+            new CopyOnWriteArrayList<EventListener>();
+
+        // We need to keep a reference to the callback to prevent it from being GCed
+        Callback callback;
+        int callbackId;
+
+        Hub(final Object key) {
+            this.key = key;
+        }
+    }
+
+    private final Registrar<P> registrar;
+    private final Deregistrar deregistrar;
+
+    // by event ID, the callbacks by object and the callback of each listener
+    private final Map<Object, Hub>[] hubs;
+    private final Map<EventListener, Hub>[] members;
+
+    private int callbackCount;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    EventRegistry(final int eventCount, final Registrar<P> registrar, final Deregistrar deregistrar) {
+        this.registrar = registrar;
+        this.deregistrar = deregistrar;
+        this.hubs = new Map[eventCount];
+        this.members = new Map[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            hubs[i] = new HashMap<Object, Hub>();
+            members[i] = new HashMap<EventListener, Hub>();
+        }
+    }
+
+    /**
+     * Adds a listener, registering a native callback created by the factory
+     * if there is none yet for the event and the target. A listener is only
+     * added once per event, whatever the target.
+     *
+     * @param target
+     *            the object, or {@code null} for all objects
+     * @return whether the listener was added
+     */
+    synchronized boolean register(final int eventID, final P target, final EventListener l,
+                                  final CallbackFactory factory) throws LibvirtException {
+        if (members[eventID].containsKey(l)) {
+            return false;
+        }
+
+        Object key = target == null ? ALL : target;
+        Hub hub = hubs[eventID].get(key);
+
+        if (hub == null) {
+            hub = new Hub(key);
+            Callback cb = factory.create(hub.listeners);
+            hub.callbackId = registrar.register(target, eventID, cb);
+            hub.callback = cb;
+            hubs[eventID].put(key, hub);
+            callbackCount++;
+        }
+        hub.listeners.add(l);
+        members[eventID].put(l, hub);
+        return true;
+    }
+
+    /**
+     * Removes a listener, deregistering the native callback it used if no
+     * other listener uses it.
+     *
+     * @return whether the listener was registered for the event
+     */
+    synchronized boolean deregister(final int eventID, final EventListener l) throws LibvirtException {
+        Hub hub = l == null ? null : members[eventID].remove(l);
+
+        if (hub == null) {
+            return false;
+        }
+        hub.listeners.remove(l);
+        if (hub.listeners.isEmpty()) {
+            hubs[eventID].remove(hub.key);
+            callbackCount--;
+            deregistrar.deregister(hub.callbackId);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the listener is registered for any event
+     */
+    synchronized boolean contains(final EventListener l) {
+        for (Map<EventListener, Hub> m : members) {
+            if (m.containsKey(l)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of native callbacks registered
+     */
+    synchronized int getCallbackCount() {
+        return callbackCount;
+    }
+}
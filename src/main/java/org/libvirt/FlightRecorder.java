@@ -0,0 +1,110 @@
+package org.libvirt;
+
+import org.libvirt.jna.ConnectionPointer;
+
+/**
+ * Emits JDK Flight Recorder events for libvirt calls, event callbacks and
+ * stream I/O.
+ * <p>
+ * The events are implemented in the Java 11 part of the multi-release jar,
+ * where jdk.jfr is available, and loaded at startup when available;
+ * otherwise this no-op implementation is used. The begin methods return {@code null}
+ * unless the event is enabled in a running recording, in which case the
+ * matching commit method must be called with the returned event.
+ * <p>
+ * Event callbacks and stream I/O are always traced when JFR is available.
+ * Libvirt calls are traced by the instrumentation of
+ * {@link NativeCallMetrics}, which is only installed when the system
+ * property {@code org.libvirt.jfr} (or {@code org.libvirt.metrics}) is
+ * {@code true}.
+ */
+class FlightRecorder {
+    private static final String JFR_RECORDER = "org.libvirt.JfrFlightRecorder";
+
+    static final FlightRecorder INSTANCE = load();
+
+    private static FlightRecorder load() {
+        try {
+            return (FlightRecorder) Class.forName(JFR_RECORDER).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // not running on Java 11+, not from the multi-release jar or
+            // without the jdk.jfr module
+            return new FlightRecorder();
+        }
+    }
+
+    /**
+     * @return whether the events are emitted, when enabled in a recording
+     */
+    boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Remembers the URI of a connection, reported by the events of the calls
+     * made on it.
+     */
+    void connectionOpened(final ConnectionPointer vcp, final String uri) {
+    }
+
+    /**
+     * @return the URI remembered for a connection, null if none
+     */
+    String connectionURI(final ConnectionPointer vcp) {
+        return null;
+    }
+
+    /**
+     * Forgets the URI of a connection whose last reference has been closed,
+     * unless the pointer has been reused for a connection to another URI.
+     */
+    void connectionClosed(final ConnectionPointer vcp, final String uri) {
+    }
+
+    Object beginNativeCall() {
+        return null;
+    }
+
+    /**
+     * @param target
+     *            the first argument of the call, if any
+     * @param result
+     *            the value returned, or for objects 0 and -1 if
+     *            {@code null} was returned
+     * @param error
+     *            the error the call failed with, or {@code null}
+     */
+    void commitNativeCall(final Object event, final String function, final Object target,
+                          final long result, final Error.ErrorNumber error) {
+    }
+
+    Object beginCallback() {
+        return null;
+    }
+
+    /**
+     * @param listenerType
+     *            the listener interface of the event
+     * @param received
+     *            the {@link System#nanoTime} of the native callback
+     */
+    void commitCallback(final Object event, final Class<?> listenerType, final long received) {
+    }
+
+    Object beginStreamIO() {
+        return null;
+    }
+
+    /**
+     * @param send
+     *            whether data was sent rather than received
+     * @param result
+     *            the value returned by libvirt, i.e. the number of bytes
+     *            transferred if positive
+     * @param wouldBlock
+     *            the number of transfers of the stream which would have
+     *            blocked so far
+     */
+    void commitStreamIO(final Object event, final boolean send, final int result, final long wouldBlock) {
+    }
+}
@@ -0,0 +1,127 @@
+package org.libvirt;
+
+import static org.libvirt.NativeCallMetrics.recordResult;
+import static org.libvirt.NativeCallMetrics.stats;
+
+import java.nio.ByteBuffer;
+
+import org.libvirt.jna.ConnectionPointer;
+import org.libvirt.jna.DomainPointer;
+import org.libvirt.jna.NativeBackend;
+import org.libvirt.jna.StreamPointer;
+import org.libvirt.jna.virDomainBlockStats;
+import org.libvirt.jna.virDomainInfo;
+import org.libvirt.jna.virDomainInterfaceStats;
+import org.libvirt.jna.virDomainMemoryStats;
+
+/**
+ * Wraps a backend not going through the {@link org.libvirt.jna.Libvirt}
+ * interface, i.e. the direct or panama one, to record its calls in the
+ * {@link NativeCallMetrics} and the flight recorder.
+ */
+final class InstrumentedBackend extends NativeBackend {
+    private final NativeBackend backend;
+
+    private final NativeCallMetrics.Stats connectIsAlive = stats("virConnectIsAlive");
+    private final NativeCallMetrics.Stats domainBlockStats = stats("virDomainBlockStats");
+    private final NativeCallMetrics.Stats domainGetInfo = stats("virDomainGetInfo");
+    private final NativeCallMetrics.Stats domainGetState = stats("virDomainGetState");
+    private final NativeCallMetrics.Stats domainInterfaceStats = stats("virDomainInterfaceStats");
+    private final NativeCallMetrics.Stats domainIsActive = stats("virDomainIsActive");
+    private final NativeCallMetrics.Stats domainMemoryStats = stats("virDomainMemoryStats");
+    private final NativeCallMetrics.Stats streamRecv = stats("virStreamRecv");
+    private final NativeCallMetrics.Stats streamSend = stats("virStreamSend");
+
+    InstrumentedBackend(final NativeBackend backend) {
+        this.backend = backend;
+    }
+
+    @Override
+    public String getName() {
+        return backend.getName();
+    }
+
+    @Override
+    public int virConnectIsAlive(final ConnectionPointer virConnectPtr) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virConnectIsAlive(virConnectPtr);
+        recordResult(connectIsAlive, event, virConnectPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virDomainBlockStats(final DomainPointer virDomainPtr, final String path,
+                                   final virDomainBlockStats stats) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virDomainBlockStats(virDomainPtr, path, stats);
+        recordResult(domainBlockStats, event, virDomainPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virDomainGetInfo(final DomainPointer virDomainPtr, final virDomainInfo vInfo) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virDomainGetInfo(virDomainPtr, vInfo);
+        recordResult(domainGetInfo, event, virDomainPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virDomainGetState(final DomainPointer virDomainPtr, final int[] state, final int flags) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virDomainGetState(virDomainPtr, state, flags);
+        recordResult(domainGetState, event, virDomainPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virDomainInterfaceStats(final DomainPointer virDomainPtr, final String path,
+                                       final virDomainInterfaceStats stats) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virDomainInterfaceStats(virDomainPtr, path, stats);
+        recordResult(domainInterfaceStats, event, virDomainPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virDomainIsActive(final DomainPointer virDomainPtr) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virDomainIsActive(virDomainPtr);
+        recordResult(domainIsActive, event, virDomainPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virDomainMemoryStats(final DomainPointer virDomainPtr,
+                                    final virDomainMemoryStats[] stats, final int nrStats, final int flags) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virDomainMemoryStats(virDomainPtr, stats, nrStats, flags);
+        recordResult(domainMemoryStats, event, virDomainPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virStreamRecv(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virStreamRecv(virStreamPtr, data);
+        recordResult(streamRecv, event, virStreamPtr, start, ret);
+        return ret;
+    }
+
+    @Override
+    public int virStreamSend(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        Object event = FlightRecorder.INSTANCE.beginNativeCall();
+        long start = System.nanoTime();
+        int ret = backend.virStreamSend(virStreamPtr, data);
+        recordResult(streamSend, event, virStreamPtr, start, ret);
+        return ret;
+    }
+}
@@ -7,7 +7,7 @@ import static org.libvirt.ErrorHandler.processError;
 /**
  * A device which is attached to a node
  */
-public class Interface {
+public class Interface implements AutoCloseable {
 
     /**
      * Get XML Flag: dump inactive interface information
@@ -19,6 +19,9 @@ public class Interface {
      */
     InterfacePointer vip;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Interface
      */
@@ -36,6 +39,8 @@ public class Interface {
     Interface(final Connect virConnect, final InterfacePointer vip) {
         this.virConnect = virConnect;
         this.vip = vip;
+        this.nativeHandle = vip == null ? null
+            : NativeResources.register(this, Interface.class, () -> libvirt.virInterfaceFree(vip));
     }
 
     /**
@@ -72,11 +77,6 @@ public class Interface {
         return processError(libvirt.virInterfaceDestroy(vip, 0));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Frees this interface object. The running instance is kept alive. The data
      * structure is freed and should not be used thereafter.
@@ -87,13 +87,21 @@ public class Interface {
     public int free() throws LibvirtException {
         int success = 0;
         if (vip != null) {
-            success = processError(libvirt.virInterfaceFree(vip));
+            success = processError(nativeHandle.close());
             vip = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this interface, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Returns the mac string of the interface
      *
@@ -0,0 +1,555 @@
+package org.libvirt;
+
+import static org.libvirt.Library.libvirt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.libvirt.jna.CLibrary;
+import org.libvirt.jna.Libvirt;
+import org.libvirt.jna.virError;
+
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+/**
+ * An event loop implemented in Java, registered with libvirt through
+ * virEventRegisterImpl.
+ * <p>
+ * Unlike the default implementation registered by
+ * {@link Library#initEventLoop}, the file handles and timers libvirt
+ * registers are kept in Java and the loop is driven by the application:
+ * either by calling {@link #run} in a thread, or from an existing loop.
+ * {@link #wakeup} and {@link #stop} interrupt a waiting loop right away
+ * through a self-pipe; no extra timer is needed.
+ * <p>
+ * To drive it from an existing loop, wait in that loop for the
+ * {@link #getWatchedFileDescriptors watched file descriptors} and the
+ * {@link #getWakeupFileDescriptor wakeup pipe} to become ready, at most
+ * until the {@link #getNextTimeout next timer} is due, and then call
+ * {@code runOnce(0)}. The wakeup pipe becomes readable whenever libvirt
+ * changes the handles or timers, after which the loop has to fetch them
+ * again.
+ * <p>
+ * One loop serves all connections of the process. As with the default
+ * implementation, it must be registered before the first connection is
+ * opened, and it cannot be unregistered.
+ *
+ * @see Library#runEventLoop
+ */
+public final class JavaEventLoop {
+    // virEventHandleType
+    private static final int HANDLE_READABLE = 1;
+    private static final int HANDLE_WRITABLE = 2;
+    private static final int HANDLE_ERROR = 4;
+    private static final int HANDLE_HANGUP = 8;
+
+    private static final int POLLFD_SIZE = 8;
+
+    private static JavaEventLoop instance;
+
+    private static final class Handle {
+        final int watch;
+        final int fd;
+        volatile int events;
+        final Function cb;
+        final Pointer opaque;
+        final Pointer ff;
+        volatile boolean deleted;
+
+        Handle(final int watch, final int fd, final int events, final Pointer cb,
+               final Pointer opaque, final Pointer ff) {
+            this.watch = watch;
+            this.fd = fd;
+            this.events = events;
+            this.cb = Function.getFunction(cb);
+            this.opaque = opaque;
+            this.ff = ff;
+        }
+    }
+
+    private static final class Timeout {
+        final int timer;
+        // in milliseconds, -1 if disabled
+        volatile int interval;
+        volatile long deadline;
+        final Function cb;
+        final Pointer opaque;
+        final Pointer ff;
+        volatile boolean deleted;
+
+        Timeout(final int timer, final int interval, final Pointer cb, final Pointer opaque,
+                final Pointer ff) {
+            this.timer = timer;
+            this.cb = Function.getFunction(cb);
+            this.opaque = opaque;
+            this.ff = ff;
+            schedule(interval);
+        }
+
+        void schedule(final int ms) {
+            interval = ms;
+            deadline = System.nanoTime() + ms * 1000000L;
+        }
+    }
+
+    private final CLibrary c = CLibrary.INSTANCE;
+
+    // guarded by this
+    private final Map<Integer, Handle> handles = new LinkedHashMap<Integer, Handle>();
+    private final Map<Integer, Timeout> timeouts = new LinkedHashMap<Integer, Timeout>();
+    private final List<Pointer[]> pendingFrees = new ArrayList<Pointer[]>();
+    private int nextWatch = 1;
+    private int nextTimer = 1;
+
+    private final int wakeupRead;
+    private final int wakeupWrite;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final byte[] wakeupByte = new byte[1];
+    private volatile boolean running;
+    private final ReentrantLock runLock = new ReentrantLock();
+
+    private Memory pollfds = new Memory(POLLFD_SIZE * 16);
+    private Handle[] polled = new Handle[16];
+
+    // the callbacks passed to libvirt, referenced for as long as the
+    // process runs
+    final Libvirt.VirEventAddHandleFunc addHandle = new Libvirt.VirEventAddHandleFunc() {
+            @Override
+            public int addHandle(final int fd, final int events, final Pointer cb,
+                                 final Pointer opaque, final Pointer ff) {
+                int watch;
+                synchronized (JavaEventLoop.this) {
+                    watch = nextWatch++;
+                    handles.put(watch, new Handle(watch, fd, events, cb, opaque, ff));
+                }
+                wakeup();
+                return watch;
+            }
+        };
+
+    final Libvirt.VirEventUpdateHandleFunc updateHandle = new Libvirt.VirEventUpdateHandleFunc() {
+            @Override
+            public void updateHandle(final int watch, final int events) {
+                Handle h;
+                synchronized (JavaEventLoop.this) {
+                    h = handles.get(watch);
+                }
+                if (h != null) {
+                    h.events = events;
+                    wakeup();
+                }
+            }
+        };
+
+    final Libvirt.VirEventRemoveHandleFunc removeHandle = new Libvirt.VirEventRemoveHandleFunc() {
+            @Override
+            public int removeHandle(final int watch) {
+                synchronized (JavaEventLoop.this) {
+                    Handle h = handles.remove(watch);
+                    if (h == null) {
+                        return -1;
+                    }
+                    h.deleted = true;
+                    // the free function must not be called from here, as
+                    // the caller may hold locks it takes
+                    if (h.ff != null) {
+                        pendingFrees.add(new Pointer[] {h.ff, h.opaque});
+                    }
+                }
+                wakeup();
+                return 0;
+            }
+        };
+
+    final Libvirt.VirEventAddTimeoutFunc addTimeout = new Libvirt.VirEventAddTimeoutFunc() {
+            @Override
+            public int addTimeout(final int timeout, final Pointer cb, final Pointer opaque,
+                                  final Pointer ff) {
+                int timer;
+                synchronized (JavaEventLoop.this) {
+                    timer = nextTimer++;
+                    timeouts.put(timer, new Timeout(timer, timeout, cb, opaque, ff));
+                }
+                wakeup();
+                return timer;
+            }
+        };
+
+    final Libvirt.VirEventUpdateTimeoutFunc updateTimeout = new Libvirt.VirEventUpdateTimeoutFunc() {
+            @Override
+            public void updateTimeout(final int timer, final int timeout) {
+                Timeout t;
+                synchronized (JavaEventLoop.this) {
+                    t = timeouts.get(timer);
+                }
+                if (t != null) {
+                    t.schedule(timeout);
+                    wakeup();
+                }
+            }
+        };
+
+    final Libvirt.VirEventRemoveTimeoutFunc removeTimeout = new Libvirt.VirEventRemoveTimeoutFunc() {
+            @Override
+            public int removeTimeout(final int timer) {
+                synchronized (JavaEventLoop.this) {
+                    Timeout t = timeouts.remove(timer);
+                    if (t == null) {
+                        return -1;
+                    }
+                    t.deleted = true;
+                    if (t.ff != null) {
+                        pendingFrees.add(new Pointer[] {t.ff, t.opaque});
+                    }
+                }
+                wakeup();
+                return 0;
+            }
+        };
+
+    // not registered, unless by register()
+    JavaEventLoop() throws LibvirtException {
+        int[] fds = new int[2];
+        if (c.pipe(fds) != 0) {
+            throw systemError("could not create the wakeup pipe", Native.getLastError());
+        }
+        wakeupRead = fds[0];
+        wakeupWrite = fds[1];
+        try {
+            // not inherited by child processes, and never blocking
+            for (int fd : fds) {
+                setFlag(fd, CLibrary.F_GETFD, CLibrary.F_SETFD, CLibrary.FD_CLOEXEC);
+                setFlag(fd, CLibrary.F_GETFL, CLibrary.F_SETFL, CLibrary.O_NONBLOCK);
+            }
+        } catch (LibvirtException e) {
+            c.close(wakeupRead);
+            c.close(wakeupWrite);
+            throw e;
+        }
+    }
+
+    private void setFlag(final int fd, final int get, final int set, final int flag)
+            throws LibvirtException {
+        int flags = c.fcntl(fd, get);
+        if (flags < 0 || c.fcntl(fd, set, flags | flag) < 0) {
+            throw systemError("could not set up the wakeup pipe", Native.getLastError());
+        }
+    }
+
+    /**
+     * Registers the Java event loop with libvirt. Subsequent calls return
+     * the same instance.
+     * <p>
+     * Note: You must call this function <em>before</em> connecting to
+     *       the hypervisor, and instead of {@link Library#initEventLoop}.
+     *
+     * @return the event loop
+     * @throws LibvirtException
+     */
+    public static synchronized JavaEventLoop register() throws LibvirtException {
+        if (instance == null) {
+            JavaEventLoop loop = new JavaEventLoop();
+            libvirt.virEventRegisterImpl(loop.addHandle, loop.updateHandle, loop.removeHandle,
+                                         loop.addTimeout, loop.updateTimeout, loop.removeTimeout);
+            instance = loop;
+        }
+        return instance;
+    }
+
+    /**
+     * @return the registered loop, or {@code null}
+     */
+    static synchronized JavaEventLoop getInstance() {
+        return instance;
+    }
+
+    /**
+     * Runs one iteration: waits until a file handle is ready, a timer is
+     * due, the loop is woken up or the given time has passed, and then
+     * invokes the callbacks concerned.
+     * <p>
+     * Only one thread at a time may run the loop.
+     *
+     * @param timeoutMillis
+     *            the maximum time to wait, 0 to only handle what is ready
+     *            now, -1 to wait without a limit
+     * @return the number of callbacks invoked
+     * @throws LibvirtException
+     *             if polling failed
+     */
+    public int runOnce(final int timeoutMillis) throws LibvirtException {
+        if (!runLock.tryLock()) {
+            throw new IllegalStateException("the event loop is already run by another thread");
+        }
+        try {
+            int n = preparePoll();
+            int timeout = pollTimeout(timeoutMillis);
+            // the monitor is not held while waiting, so that libvirt can
+            // modify the handles and timers from other threads
+            int ready = c.poll(pollfds, new NativeLong(n), timeout);
+            if (ready < 0) {
+                int errno = Native.getLastError();
+                if (errno != CLibrary.EINTR) {
+                    throw systemError("poll failed", errno);
+                }
+                ready = 0;
+            }
+            int dispatched = 0;
+            if (ready > 0) {
+                dispatched += dispatchHandles(n);
+            }
+            dispatched += dispatchTimeouts();
+            runPendingFrees();
+            return dispatched;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the loop until {@link #stop} is called.
+     *
+     * @throws LibvirtException
+     *             if polling failed
+     * @throws InterruptedException
+     *             if this thread was interrupted
+     */
+    public void run() throws LibvirtException, InterruptedException {
+        running = true;
+        while (running) {
+            runOnce(-1);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Makes {@link #run} return after the current iteration.
+     */
+    public void stop() {
+        running = false;
+        wakeup();
+    }
+
+    /**
+     * Interrupts a waiting {@link #runOnce}.
+     */
+    public void wakeup() {
+        // at most one byte is in the pipe at any time, so neither side
+        // can block
+        if (wakeupPending.compareAndSet(false, true)) {
+            c.write(wakeupWrite, new byte[] {1}, new NativeLong(1));
+        }
+    }
+
+    /**
+     * @return the read end of the wakeup pipe, which becomes readable when
+     *         the loop is woken up, including when libvirt changes the
+     *         handles or timers; it is drained by {@link #runOnce}
+     */
+    public int getWakeupFileDescriptor() {
+        return wakeupRead;
+    }
+
+    /**
+     * @return the file descriptors watched by libvirt, mapped to the
+     *         poll(2) events, {@code POLLIN} and {@code POLLOUT}, it waits
+     *         for; a descriptor watched for no event is left out
+     */
+    public synchronized Map<Integer, Integer> getWatchedFileDescriptors() {
+        Map<Integer, Integer> fds = new LinkedHashMap<Integer, Integer>();
+        for (Handle h : handles.values()) {
+            int events = toPollEvents(h.events);
+            if (events != 0) {
+                Integer known = fds.get(h.fd);
+                fds.put(h.fd, known == null ? events : known | events);
+            }
+        }
+        return fds;
+    }
+
+    /**
+     * @return the time in milliseconds until the next timer is due, 0 if
+     *         one is due already, -1 if no timer is enabled
+     */
+    public int getNextTimeout() {
+        return pollTimeout(-1);
+    }
+
+    /**
+     * Fills the pollfd array: the wakeup pipe first, then the handles.
+     *
+     * @return the number of entries
+     */
+    private int preparePoll() {
+        synchronized (this) {
+            int n = handles.size() + 1;
+            if (polled.length < n) {
+                polled = new Handle[Integer.highestOneBit(n) << 1];
+                pollfds = new Memory((long) POLLFD_SIZE * polled.length);
+            }
+            pollfds.setInt(0, wakeupRead);
+            pollfds.setShort(4, CLibrary.POLLIN);
+            pollfds.setShort(6, (short) 0);
+            int i = 1;
+            for (Handle h : handles.values()) {
+                long offset = (long) i * POLLFD_SIZE;
+                pollfds.setInt(offset, h.fd);
+                pollfds.setShort(offset + 4, toPollEvents(h.events));
+                pollfds.setShort(offset + 6, (short) 0);
+                polled[i++] = h;
+            }
+            return n;
+        }
+    }
+
+    private int pollTimeout(final int timeoutMillis) {
+        long timeout = timeoutMillis < 0 ? Long.MAX_VALUE : timeoutMillis;
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (Timeout t : timeouts.values()) {
+                if (t.interval >= 0) {
+                    long ms = Math.max(0, (t.deadline - now + 999999) / 1000000);
+                    timeout = Math.min(timeout, ms);
+                }
+            }
+        }
+        return timeout == Long.MAX_VALUE ? -1 : (int) Math.min(timeout, Integer.MAX_VALUE);
+    }
+
+    private int dispatchHandles(final int n) {
+        int dispatched = 0;
+        short wakeupEvents = pollfds.getShort(6);
+        if (wakeupEvents != 0) {
+            c.read(wakeupRead, wakeupByte, new NativeLong(1));
+            wakeupPending.set(false);
+        }
+        for (int i = 1; i < n; i++) {
+            Handle h = polled[i];
+            polled[i] = null;
+            short revents = pollfds.getShort((long) i * POLLFD_SIZE + 6);
+            // a handle removed by an earlier callback of this iteration
+            // must not be invoked anymore
+            if (revents == 0 || h.deleted) {
+                continue;
+            }
+            try {
+                h.cb.invokeVoid(new Object[] {h.watch, h.fd, fromPollEvents(revents), h.opaque});
+            } catch (RuntimeException e) {
+                uncaught(e);
+            }
+            dispatched++;
+        }
+        return dispatched;
+    }
+
+    private int dispatchTimeouts() {
+        List<Timeout> due = new ArrayList<Timeout>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (Timeout t : timeouts.values()) {
+                if (t.interval >= 0 && t.deadline - now <= 0) {
+                    t.deadline = now + t.interval * 1000000L;
+                    due.add(t);
+                }
+            }
+        }
+        int dispatched = 0;
+        for (Timeout t : due) {
+            if (t.deleted) {
+                continue;
+            }
+            try {
+                t.cb.invokeVoid(new Object[] {t.timer, t.opaque});
+            } catch (RuntimeException e) {
+                uncaught(e);
+            }
+            dispatched++;
+        }
+        return dispatched;
+    }
+
+    private void runPendingFrees() {
+        List<Pointer[]> frees;
+        synchronized (this) {
+            if (pendingFrees.isEmpty()) {
+                return;
+            }
+            frees = new ArrayList<Pointer[]>(pendingFrees);
+            pendingFrees.clear();
+        }
+        for (Pointer[] f : frees) {
+            try {
+                Function.getFunction(f[0]).invokeVoid(new Object[] {f[1]});
+            } catch (RuntimeException e) {
+                uncaught(e);
+            }
+        }
+    }
+
+    private static LibvirtException systemError(final String message, final int errno) {
+        virError error = new virError();
+        error.code = Error.ErrorNumber.VIR_ERR_SYSTEM_ERROR.ordinal();
+        error.domain = Error.ErrorDomain.VIR_FROM_EVENT.ordinal();
+        error.level = Error.ErrorLevel.VIR_ERR_ERROR.ordinal();
+        error.message = message + ", errno " + errno;
+        error.int1 = errno;
+        return new LibvirtException(new Error(error));
+    }
+
+    private static void uncaught(final RuntimeException e) {
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, e);
+    }
+
+    private static short toPollEvents(final int events) {
+        int poll = 0;
+        if ((events & HANDLE_READABLE) != 0) {
+            poll |= CLibrary.POLLIN;
+        }
+        if ((events & HANDLE_WRITABLE) != 0) {
+            poll |= CLibrary.POLLOUT;
+        }
+        return (short) poll;
+    }
+
+    private static int fromPollEvents(final short revents) {
+        int events = 0;
+        if ((revents & CLibrary.POLLIN) != 0) {
+            events |= HANDLE_READABLE;
+        }
+        if ((revents & CLibrary.POLLOUT) != 0) {
+            events |= HANDLE_WRITABLE;
+        }
+        if ((revents & (CLibrary.POLLERR | CLibrary.POLLNVAL)) != 0) {
+            events |= HANDLE_ERROR;
+        }
+        if ((revents & CLibrary.POLLHUP) != 0) {
+            events |= HANDLE_HANGUP;
+        }
+        return events;
+    }
+
+    /**
+     * @return the number of file handles registered by libvirt
+     */
+    public synchronized int getHandleCount() {
+        return handles.size();
+    }
+
+    /**
+     * @return the number of timers registered by libvirt
+     */
+    public synchronized int getTimeoutCount() {
+        return timeouts.size();
+    }
+}
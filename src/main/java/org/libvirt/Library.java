@@ -2,6 +2,7 @@ package org.libvirt;
 
 import org.libvirt.jna.Libvirt;
 import org.libvirt.jna.LibvirtQemu;
+import org.libvirt.jna.NativeBackend;
 import org.libvirt.jna.Libvirt.VirEventTimeoutCallback;
 import org.libvirt.jna.CString;
 import static org.libvirt.ErrorHandler.processError;
@@ -9,6 +10,7 @@ import static org.libvirt.ErrorHandler.processError;
 import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.LongByReference;
+import com.sun.jna.ptr.PointerByReference;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,28 +37,54 @@ public final class Library {
 
     static final Libvirt libvirt;
     static final LibvirtQemu libvirtQemu;
+    static final NativeBackend backend;
 
     // an empty string array constant
     // prefer this over creating empty arrays dynamically.
     static final String[] NO_STRINGS = {};
 
+    private static final Pointer[] NO_POINTERS = {};
+
     // Load the native part
     static {
-        libvirt = Libvirt.INSTANCE;
+        libvirt = NativeCallMetrics.isInstrumented()
+            ? NativeCallMetrics.instrument(Libvirt.class, Libvirt.INSTANCE)
+            : Libvirt.INSTANCE;
         try {
             processError(libvirt.virInitialize());
         } catch (Exception e) {
             e.printStackTrace();
         }
         try {
-            libvirtQemu = getVersion() > 9010 ? LibvirtQemu.INSTANCE : null;
+            if (getVersion() <= 9010) {
+                libvirtQemu = null;
+            } else if (NativeCallMetrics.isInstrumented()) {
+                libvirtQemu = NativeCallMetrics.instrument(LibvirtQemu.class, LibvirtQemu.INSTANCE);
+            } else {
+                libvirtQemu = LibvirtQemu.INSTANCE;
+            }
         } catch (LibvirtException e) {
             throw new RuntimeException("libvirt error get version", e);
         }
+        NativeBackend selected = NativeBackend.select(libvirt);
+        // the jna backend calls the instrumented interface already
+        backend = NativeCallMetrics.isInstrumented() && !"jna".equals(selected.getName())
+            ? new InstrumentedBackend(selected)
+            : selected;
     }
 
     private Library() {}
 
+    /**
+     * Returns the name of the backend used for the most frequent calls,
+     * one of "panama", "direct" or "jna".
+     *
+     * @see NativeBackend
+     */
+    public static String getNativeBackend() {
+        return backend.getName();
+    }
+
     /**
      * Returns the version of the native libvirt library.
      *
@@ -102,6 +130,28 @@ public final class Library {
         }
     }
 
+    /**
+     * Reads the array of object pointers returned by one of the
+     * virConnectListAll* functions and frees the array. The objects
+     * themselves are owned by the caller afterwards.
+     *
+     * @param list
+     *            the array as filled in by libvirt
+     * @param count
+     *            the (checked) return value of the call
+     */
+    static Pointer[] toPointerArray(final PointerByReference list, final int count) {
+        Pointer array = list.getValue();
+        if (array == null) {
+            return NO_POINTERS;
+        }
+        try {
+            return array.getPointerArray(0, count);
+        } finally {
+            free(array);
+        }
+    }
+
     /**
      * Initialize the event loop.
      *
@@ -114,6 +164,10 @@ public final class Library {
      * <p>
      * Note: You must call this function <em>before</em> connecting to
      *       the hypervisor.
+     * <p>
+     * When the {@link JavaEventLoop} has been registered, this method does
+     * nothing; {@link #processEvent}, {@link #runEventLoop} and
+     * {@link #stopEventLoop} then drive that loop.
      *
      * @throws LibvirtException on failure
      *
@@ -121,6 +175,9 @@ public final class Library {
      * @see #runLoop
      */
     public static void initEventLoop() throws LibvirtException {
+        if (JavaEventLoop.getInstance() != null) {
+            return;
+        }
         if (timerID.get() == -1) {
             processError(libvirt.virEventRegisterDefaultImpl());
 
@@ -152,6 +209,11 @@ public final class Library {
      * @see #initEventLoop()
      */
     public static void processEvent() throws LibvirtException {
+        JavaEventLoop loop = JavaEventLoop.getInstance();
+        if (loop != null) {
+            loop.runOnce(-1);
+            return;
+        }
         processError(libvirt.virEventRunDefaultImpl());
     }
 
@@ -188,6 +250,11 @@ public final class Library {
      */
     public static void stopEventLoop() throws LibvirtException {
         if (runLoop.getAndSet(false)) {
+            JavaEventLoop loop = JavaEventLoop.getInstance();
+            if (loop != null) {
+                loop.wakeup();
+                return;
+            }
             // fire the timer immediately
             int timer = timerID.get();
             if (timer >= 0) {
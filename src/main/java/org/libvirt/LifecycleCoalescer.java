@@ -0,0 +1,241 @@
+package org.libvirt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libvirt.event.DomainEvent;
+import org.libvirt.event.DomainEventRecord;
+import org.libvirt.event.LifecycleBatchListener;
+import org.libvirt.event.LifecycleListener;
+
+/**
+ * Collects lifecycle events over a time window and delivers them as a
+ * single batch.
+ * <p>
+ * When many domains change state at once, e.g. when a host boots or
+ * domains are started in bulk, a {@link LifecycleListener} is called for
+ * every transition. A coalescer is registered as the lifecycle listener
+ * instead: the first event starts a window, and when the window ends, the
+ * {@link LifecycleBatchListener} receives the events of the window at once.
+ * Within a window, a later event of a domain supersedes the earlier ones,
+ * so that a batch holds the latest transition of each domain only.
+ * <p>
+ * Usage:
+ * <pre>{@code
+ * LifecycleCoalescer coalescer = new LifecycleCoalescer(100, TimeUnit.MILLISECONDS, batchListener);
+ * conn.addLifecycleListener(coalescer);
+ * ...
+ * conn.removeLifecycleListener(coalescer);
+ * coalescer.close();
+ * }</pre>
+ * <p>
+ * Batches are delivered one at a time, in order, on the thread of the
+ * scheduler. This class is thread-safe.
+ */
+public final class LifecycleCoalescer implements LifecycleListener {
+    private final long windowNanos;
+    private final LifecycleBatchListener listener;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownScheduler;
+
+    // guarded by this
+    private LinkedHashMap<Domain, DomainEventRecord.Lifecycle> pending =
+        new LinkedHashMap<Domain, DomainEventRecord.Lifecycle>();
+    private boolean closed;
+    // the number of the current window, and its pending delivery
+    private long window;
+    private ScheduledFuture<?> timer;
+
+    // serializes the deliveries, should the scheduler have several threads
+    private final Object deliveryLock = new Object();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Creates a coalescer with its own scheduler thread, stopped by
+     * {@link #close}.
+     *
+     * @param window
+     *            the time between the first event of a batch and its
+     *            delivery
+     * @param unit
+     *            the unit of {@code window}
+     * @param listener
+     *            the listener receiving the batches
+     */
+    public LifecycleCoalescer(final long window, final TimeUnit unit,
+                              final LifecycleBatchListener listener) {
+        this(window, unit, listener, newDaemonScheduler(), true);
+    }
+
+    /**
+     * Creates a coalescer delivering batches on the given scheduler, which
+     * is not shut down by {@link #close}.
+     *
+     * @param window
+     *            the time between the first event of a batch and its
+     *            delivery
+     * @param unit
+     *            the unit of {@code window}
+     * @param listener
+     *            the listener receiving the batches
+     * @param scheduler
+     *            the scheduler running the deliveries
+     */
+    public LifecycleCoalescer(final long window, final TimeUnit unit,
+                              final LifecycleBatchListener listener,
+                              final ScheduledExecutorService scheduler) {
+        this(window, unit, listener, scheduler, false);
+    }
+
+    private LifecycleCoalescer(final long window, final TimeUnit unit,
+                               final LifecycleBatchListener listener,
+                               final ScheduledExecutorService scheduler,
+                               final boolean ownScheduler) {
+        if (listener == null || unit == null) {
+            throw new IllegalArgumentException("listener and unit must not be null");
+        }
+        if (window < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        this.windowNanos = unit.toNanos(window);
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+    }
+
+    private static ScheduledExecutorService newDaemonScheduler() {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread t = new Thread(r, "libvirt-event-coalesce-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+
+    @Override
+    public int onLifecycleChange(final Domain domain, final DomainEvent event) {
+        received.incrementAndGet();
+        boolean rejected = false;
+        synchronized (this) {
+            if (closed) {
+                return 0;
+            }
+            // remove first, so that the domain moves to the end
+            if (pending.remove(domain) != null) {
+                coalesced.incrementAndGet();
+            }
+            pending.put(domain, new DomainEventRecord.Lifecycle(domain, event));
+            if (timer == null) {
+                final long w = window;
+                try {
+                    timer = scheduler.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                flush(w);
+                            }
+                        }, windowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // the scheduler has been shut down
+                    rejected = true;
+                }
+            }
+        }
+        if (rejected) {
+            flush();
+        }
+        return 0;
+    }
+
+    /**
+     * Delivers the events collected so far without waiting for the end of
+     * the window.
+     */
+    public void flush() {
+        flush(-1);
+    }
+
+    /**
+     * @param expected
+     *            the window to deliver, or -1 for the current one; a timer
+     *            firing after its window was flushed delivers nothing
+     */
+    private void flush(final long expected) {
+        synchronized (deliveryLock) {
+            List<DomainEventRecord.Lifecycle> batch;
+            synchronized (this) {
+                if (pending.isEmpty() || expected >= 0 && expected != window) {
+                    return;
+                }
+                batch = new ArrayList<DomainEventRecord.Lifecycle>(pending.values());
+                pending = new LinkedHashMap<Domain, DomainEventRecord.Lifecycle>();
+                window++;
+                if (timer != null) {
+                    timer.cancel(false);
+                    timer = null;
+                }
+            }
+            batches.incrementAndGet();
+            try {
+                listener.onLifecycleBatch(batch);
+            } catch (RuntimeException e) {
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        }
+    }
+
+    /**
+     * Delivers the pending events and stops accepting new ones. The
+     * coalescer must also be removed from the connection or domain it was
+     * added to.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * @return the number of events received
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return the number of events superseded by a later event of the same
+     *         domain, and thus not delivered
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of batches delivered
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+}
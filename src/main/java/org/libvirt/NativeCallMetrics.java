@@ -0,0 +1,444 @@
+package org.libvirt;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.libvirt.jna.Libvirt;
+import org.libvirt.jna.virError;
+
+/**
+ * Metrics of the calls made into libvirt: per function, the number of
+ * calls, the number of errors by {@link Error.ErrorNumber} and a
+ * {@link LatencyHistogram}.
+ * <p>
+ * The metrics are disabled by default and enabled by setting the system
+ * property {@code org.libvirt.metrics} to {@code true} before the library is
+ * loaded. When disabled, the bindings call libvirt directly and nothing is
+ * recorded, so that they cost nothing. When enabled, the calls go through
+ * a proxy of the {@link Libvirt} interface, and through a wrapper of the
+ * direct or panama backend, which time every call and, when it returned
+ * an error, read its code.
+ * <p>
+ * The metrics are exposed by the static methods of this class, through JMX
+ * as the {@link NativeCallsMXBean} {@code org.libvirt:type=NativeCalls},
+ * and to the {@link NativeCallRecorder}s, which receive each call.
+ * <p>
+ * Setting the system property {@code org.libvirt.jfr} to {@code true}
+ * installs the same instrumentation to emit an {@code org.libvirt.NativeCall}
+ * flight recorder event per call, when running on Java 11 or later. The
+ * calls are then recorded as well, and the metrics and recorders receive
+ * them even if {@code org.libvirt.metrics} is not set; only the JMX bean
+ * and the recorders found by the {@link java.util.ServiceLoader} require
+ * it.
+ */
+public final class NativeCallMetrics {
+    private static final boolean ENABLED = Boolean.getBoolean("org.libvirt.metrics");
+
+    // whether the calls are traced in flight recordings
+    private static final boolean TRACED =
+        Boolean.getBoolean("org.libvirt.jfr") && FlightRecorder.INSTANCE.isAvailable();
+
+    private static final Error.ErrorNumber[] ERROR_NUMBERS = Error.ErrorNumber.values();
+
+    /**
+     * The metrics of one libvirt function.
+     */
+    public static final class Stats {
+        private final String function;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicLongArray errorsByCode = new AtomicLongArray(ERROR_NUMBERS.length);
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Stats(final String function) {
+            this.function = function;
+        }
+
+        void record(final long nanos, final Error.ErrorNumber error) {
+            calls.increment();
+            latency.record(nanos);
+            if (error != null) {
+                errors.increment();
+                errorsByCode.incrementAndGet(error.ordinal());
+            }
+        }
+
+        void reset() {
+            calls.reset();
+            errors.reset();
+            for (int i = 0; i < ERROR_NUMBERS.length; i++) {
+                errorsByCode.set(i, 0);
+            }
+            latency.reset();
+        }
+
+        /**
+         * @return the name of the libvirt function
+         */
+        public String getFunction() {
+            return function;
+        }
+
+        /**
+         * @return the number of calls
+         */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * @return the number of failed calls
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * @return the number of calls failed with the given error
+         */
+        public long getErrors(final Error.ErrorNumber code) {
+            return errorsByCode.get(code.ordinal());
+        }
+
+        /**
+         * @return the number of failed calls by error, without the errors
+         *         which did not occur
+         */
+        public Map<Error.ErrorNumber, Long> getErrorCounts() {
+            Map<Error.ErrorNumber, Long> counts = new TreeMap<Error.ErrorNumber, Long>();
+            for (Error.ErrorNumber code : ERROR_NUMBERS) {
+                long n = errorsByCode.get(code.ordinal());
+                if (n != 0) {
+                    counts.put(code, n);
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * @return the durations of the calls, failed or not
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Stats> STATS = new ConcurrentHashMap<String, Stats>();
+
+    private static final CopyOnWriteArrayList<NativeCallRecorder> RECORDERS =
+        new CopyOnWriteArrayList<NativeCallRecorder>();
+
+    static {
+        if (ENABLED) {
+            for (NativeCallRecorder r : ServiceLoader.load(NativeCallRecorder.class)) {
+                RECORDERS.add(r);
+            }
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new MXBean(), new ObjectName("org.libvirt:type=NativeCalls"));
+            } catch (JMException e) {
+                // e.g. already registered by another class loader
+            }
+        }
+    }
+
+    private NativeCallMetrics() {
+    }
+
+    /**
+     * @return whether the metrics were enabled by {@code org.libvirt.metrics};
+     *         calls are also recorded when traced for the flight recorder
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return whether the bindings are to be instrumented, for the metrics
+     *         or for the flight recorder
+     */
+    static boolean isInstrumented() {
+        return ENABLED || TRACED;
+    }
+
+    /**
+     * Adds a recorder receiving every subsequent call; has no effect unless
+     * the bindings are instrumented, i.e. the metrics are enabled or the
+     * calls are traced for the flight recorder.
+     */
+    public static void addRecorder(final NativeCallRecorder recorder) {
+        RECORDERS.addIfAbsent(recorder);
+    }
+
+    /**
+     * Removes a recorder.
+     */
+    public static void removeRecorder(final NativeCallRecorder recorder) {
+        RECORDERS.remove(recorder);
+    }
+
+    /**
+     * @return the names of the functions called so far, sorted
+     */
+    public static Set<String> getFunctions() {
+        Set<String> names = new TreeSet<String>();
+        for (Stats s : STATS.values()) {
+            if (s.getCalls() != 0) {
+                names.add(s.function);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @param function
+     *            the name of a libvirt function, e.g. "virDomainGetInfo"
+     * @return the metrics of the function, or {@code null} if it was never
+     *         called
+     */
+    public static Stats getStats(final String function) {
+        return STATS.get(function);
+    }
+
+    /**
+     * Clears all metrics.
+     */
+    public static void reset() {
+        for (Stats s : STATS.values()) {
+            s.reset();
+        }
+    }
+
+    static Stats stats(final String function) {
+        Stats s = STATS.get(function);
+        if (s == null) {
+            Stats created = new Stats(function);
+            s = STATS.putIfAbsent(function, created);
+            if (s == null) {
+                s = created;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Records a call which returns -1 on error.
+     *
+     * @param event
+     *            the flight recorder event begun before the call, if any
+     * @param target
+     *            the first argument of the call
+     * @param start
+     *            the {@link System#nanoTime} before the call
+     */
+    static void recordResult(final Stats stats, final Object event, final Object target,
+                             final long start, final int result) {
+        long nanos = System.nanoTime() - start;
+        record(stats, event, target, nanos, result, result == -1 ? lastError() : null);
+    }
+
+    private static void record(final Stats stats, final Object event, final Object target,
+                               final long nanos, final long result, final Error.ErrorNumber error) {
+        if (event != null) {
+            FlightRecorder.INSTANCE.commitNativeCall(event, stats.function, target, result, error);
+        }
+        record(stats, nanos, error);
+    }
+
+    static void record(final Stats stats, final long nanos, final Error.ErrorNumber error) {
+        stats.record(nanos, error);
+        for (NativeCallRecorder r : RECORDERS) {
+            try {
+                r.record(stats.function, nanos, error);
+            } catch (RuntimeException e) {
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the code of the last error of the current thread, without
+     * recording it as a call.
+     */
+    private static Error.ErrorNumber lastError() {
+        virError vError = Libvirt.INSTANCE.virGetLastError();
+        return vError == null ? null : Error.ErrorNumber.wrap(vError.code);
+    }
+
+    /**
+     * Wraps the bindings of a library interface into a proxy recording each
+     * call. A call fails if it returns -1 or {@code null} and has set an
+     * error. The functions handling the errors are not recorded.
+     *
+     * @param type
+     *            the library interface, e.g. {@link Libvirt}
+     * @param target
+     *            the bindings to call
+     * @return the proxy
+     */
+    static <T> T instrument(final Class<T> type, final T target) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                                                new Instrumentation(target)));
+    }
+
+    private static final class Instrumentation implements InvocationHandler {
+        private final Object target;
+
+        // the handler itself marks the methods not recorded
+        private final ConcurrentHashMap<Method, Object> methods = new ConcurrentHashMap<Method, Object>();
+
+        Instrumentation(final Object target) {
+            this.target = target;
+        }
+
+        private Object statsOf(final Method method) {
+            Object s = methods.get(method);
+            if (s == null) {
+                String name = method.getName();
+                if (method.getDeclaringClass() == Object.class
+                        || name.endsWith("LastError") || name.endsWith("ErrorFunc")
+                        || "virFreeError".equals(name) || "virResetError".equals(name)) {
+                    s = this;
+                } else {
+                    s = stats(name);
+                }
+                methods.put(method, s);
+            }
+            return s;
+        }
+
+        private Object call(final Method method, final Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            Object s = statsOf(method);
+            if (s == this) {
+                return call(method, args);
+            }
+            Stats stats = (Stats) s;
+            Object target = args == null || args.length == 0 ? null : args[0];
+            Object event = FlightRecorder.INSTANCE.beginNativeCall();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(method, args);
+            } catch (Throwable t) {
+                record(stats, event, target, System.nanoTime() - start, -1, Error.ErrorNumber.VIR_ERR_UNKNOWN);
+                throw t;
+            }
+            long nanos = System.nanoTime() - start;
+            Class<?> returnType = method.getReturnType();
+            long code;
+            if (returnType == int.class || returnType == long.class) {
+                code = ((Number) result).longValue();
+            } else {
+                code = !returnType.isPrimitive() && result == null ? -1 : 0;
+            }
+            record(stats, event, target, nanos, code, code == -1 ? lastError() : null);
+            return result;
+        }
+    }
+
+    private static final class MXBean implements NativeCallsMXBean {
+        private interface Metric {
+            long of(Stats s);
+        }
+
+        private static Map<String, Long> collect(final Metric metric) {
+            Map<String, Long> values = new TreeMap<String, Long>();
+            for (Stats s : STATS.values()) {
+                if (s.getCalls() != 0) {
+                    values.put(s.function, metric.of(s));
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public long getCalls() {
+            long n = 0;
+            for (Stats s : STATS.values()) {
+                n += s.getCalls();
+            }
+            return n;
+        }
+
+        @Override
+        public long getErrors() {
+            long n = 0;
+            for (Stats s : STATS.values()) {
+                n += s.getErrors();
+            }
+            return n;
+        }
+
+        @Override
+        public Map<String, Long> getCallCounts() {
+            return collect(s -> s.getCalls());
+        }
+
+        @Override
+        public Map<String, Long> getErrorCounts() {
+            return collect(s -> s.getErrors());
+        }
+
+        @Override
+        public Map<String, Long> getErrorCountsByCode() {
+            Map<String, Long> counts = new TreeMap<String, Long>();
+            for (Stats s : STATS.values()) {
+                for (Map.Entry<Error.ErrorNumber, Long> e : s.getErrorCounts().entrySet()) {
+                    Long n = counts.get(e.getKey().name());
+                    counts.put(e.getKey().name(), n == null ? e.getValue() : n + e.getValue());
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getMeanLatencyNanos() {
+            return collect(s -> (long) s.latency.getMean());
+        }
+
+        @Override
+        public Map<String, Long> getMedianLatencyNanos() {
+            return collect(s -> s.latency.getValueAtPercentile(50));
+        }
+
+        @Override
+        public Map<String, Long> getP99LatencyNanos() {
+            return collect(s -> s.latency.getValueAtPercentile(99));
+        }
+
+        @Override
+        public Map<String, Long> getMaxLatencyNanos() {
+            return collect(s -> s.latency.getMax());
+        }
+
+        @Override
+        public void reset() {
+            NativeCallMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.libvirt;
+
+/**
+ * Receives the libvirt calls made by the bindings, when native call
+ * metrics are enabled, e.g. to feed them into a metrics library.
+ * <p>
+ * Recorders are added with {@link NativeCallMetrics#addRecorder}, or
+ * discovered through the {@link java.util.ServiceLoader} as providers of
+ * this interface when the metrics are enabled.
+ * <p>
+ * A recorder is called on the thread which made the call, right after it
+ * returned, so it must be thread-safe, must not block and must not call
+ * into libvirt.
+ *
+ * @see NativeCallMetrics
+ */
+public interface NativeCallRecorder {
+    /**
+     * Records a call.
+     *
+     * @param function
+     *            the name of the libvirt function, e.g. "virDomainGetInfo"
+     * @param nanos
+     *            the duration of the call
+     * @param error
+     *            the error the call failed with, or {@code null} if it
+     *            succeeded
+     */
+    void record(String function, long nanos, Error.ErrorNumber error);
+}
@@ -0,0 +1,38 @@
+package org.libvirt;
+
+import java.util.Map;
+
+/**
+ * The management interface of the native call metrics, registered as
+ * {@code org.libvirt:type=NativeCalls} when they are enabled. The maps are
+ * keyed by libvirt function name, except {@link #getErrorCountsByCode}.
+ *
+ * @see NativeCallMetrics
+ */
+public interface NativeCallsMXBean {
+    long getCalls();
+
+    long getErrors();
+
+    Map<String, Long> getCallCounts();
+
+    Map<String, Long> getErrorCounts();
+
+    /**
+     * @return the number of errors by {@link Error.ErrorNumber} name
+     */
+    Map<String, Long> getErrorCountsByCode();
+
+    Map<String, Long> getMeanLatencyNanos();
+
+    Map<String, Long> getMedianLatencyNanos();
+
+    Map<String, Long> getP99LatencyNanos();
+
+    Map<String, Long> getMaxLatencyNanos();
+
+    /**
+     * Clears all metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,188 @@
+package org.libvirt;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the native handles held by the objects of the bindings, e.g. the
+ * virDomainPtr of a {@link Domain}.
+ * <p>
+ * A handle is released when its object is freed or closed. An object that
+ * becomes unreachable without having been freed leaks its handle until the
+ * garbage collector finds it; the handle is then released on a dedicated
+ * cleaner thread, so that a slow release, e.g. closing a remote
+ * connection, delays neither the garbage collector nor other cleanups.
+ * Such handles are counted as reclaimed: a growing count points to objects
+ * the application forgot to free.
+ * <p>
+ * This replaces finalizers, which keep every object alive for an extra
+ * garbage collection cycle and run on the shared finalizer thread.
+ */
+public final class NativeResources {
+    /**
+     * Releases a native handle, returning the result of the libvirt call.
+     */
+    interface Release {
+        int release();
+    }
+
+    /**
+     * The registration of a native handle. The release action must not
+     * refer to the object owning the handle, or it never becomes
+     * unreachable.
+     */
+    static final class Handle extends PhantomReference<Object> {
+        private final Class<?> type;
+        private final Release release;
+        private final Release reclaim;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Handle(final Object owner, final Class<?> type, final Release release, final Release reclaim) {
+            super(owner, QUEUE);
+            this.type = type;
+            this.release = release;
+            this.reclaim = reclaim;
+        }
+
+        /**
+         * Releases the handle, unless already done.
+         *
+         * @return the result of the libvirt call, 0 if already released
+         */
+        int close() {
+            if (!released.compareAndSet(false, true)) {
+                return 0;
+            }
+            HANDLES.remove(this);
+            CLOSED.increment();
+            return release.release();
+        }
+
+        /**
+         * @return whether the handle has been released or reclaimed
+         */
+        boolean isReleased() {
+            return released.get();
+        }
+
+        void reclaim() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            HANDLES.remove(this);
+            RECLAIMED.increment();
+            reclaimed(type).increment();
+            try {
+                reclaim.release();
+            } catch (RuntimeException e) {
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        }
+    }
+
+    private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+
+    // keeps the handles reachable until released
+    private static final Set<Handle> HANDLES = ConcurrentHashMap.newKeySet();
+
+    private static final LongAdder CLOSED = new LongAdder();
+    private static final LongAdder RECLAIMED = new LongAdder();
+    private static final ConcurrentHashMap<Class<?>, LongAdder> RECLAIMED_BY_TYPE =
+        new ConcurrentHashMap<Class<?>, LongAdder>();
+
+    static {
+        Thread t = new Thread("libvirt-cleaner") {
+                @Override
+                public void run() {
+                    for (;;) {
+                        try {
+                            ((Handle) QUEUE.remove()).reclaim();
+                        } catch (InterruptedException e) {
+                            // keep going, the thread is a daemon
+                        }
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private NativeResources() {
+    }
+
+    /**
+     * Registers the native handle of an object.
+     *
+     * @param owner
+     *            the object holding the handle
+     * @param type
+     *            the type the handle is counted as
+     * @param release
+     *            releases the handle
+     */
+    static Handle register(final Object owner, final Class<?> type, final Release release) {
+        return register(owner, type, release, release);
+    }
+
+    /**
+     * Registers the native handle of an object, with a distinct action for
+     * handles reclaimed from unreachable objects.
+     */
+    static Handle register(final Object owner, final Class<?> type, final Release release,
+                           final Release reclaim) {
+        Handle handle = new Handle(owner, type, release, reclaim);
+        HANDLES.add(handle);
+        return handle;
+    }
+
+    private static LongAdder reclaimed(final Class<?> type) {
+        LongAdder count = RECLAIMED_BY_TYPE.get(type);
+        if (count == null) {
+            LongAdder created = new LongAdder();
+            count = RECLAIMED_BY_TYPE.putIfAbsent(type, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of handles neither freed nor reclaimed yet
+     */
+    public static int getOpenHandles() {
+        return HANDLES.size();
+    }
+
+    /**
+     * @return the number of handles released by freeing or closing their
+     *         object
+     */
+    public static long getClosedHandles() {
+        return CLOSED.sum();
+    }
+
+    /**
+     * @return the number of handles released after their object became
+     *         unreachable, i.e. leaked until then
+     */
+    public static long getReclaimedHandles() {
+        return RECLAIMED.sum();
+    }
+
+    /**
+     * @param type
+     *            a class of the bindings, e.g. {@code Domain.class}
+     * @return the number of handles of the given type released after their
+     *         object became unreachable
+     */
+    public static long getReclaimedHandles(final Class<?> type) {
+        LongAdder count = RECLAIMED_BY_TYPE.get(type);
+        return count == null ? 0 : count.sum();
+    }
+}
@@ -1,5 +1,6 @@
 package org.libvirt;
 
+import org.libvirt.event.NetworkLifecycleListener;
 import org.libvirt.jna.Libvirt;
 import org.libvirt.jna.NetworkPointer;
 import static org.libvirt.Library.libvirt;
@@ -11,7 +12,7 @@ import com.sun.jna.ptr.IntByReference;
 /**
  * A network object defined by libvirt.
  */
-public class Network {
+public class Network implements AutoCloseable {
 
     public static final class IP_Addr_Type {
         public static final int IP_ADDR_TYPE_IPV4 = 0;
@@ -23,6 +24,9 @@ public class Network {
      */
     NetworkPointer vnp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Network
      */
@@ -39,6 +43,23 @@ public class Network {
     Network(final Connect virConnect, final NetworkPointer vnp) {
         this.virConnect = virConnect;
         this.vnp = vnp;
+        this.nativeHandle = vnp == null ? null
+            : NativeResources.register(this, Network.class, () -> libvirt.virNetworkFree(vnp));
+    }
+
+    /**
+     * Constructs a new Network object increasing the reference count
+     * on the NetworkPointer.
+     * <p>
+     * This factory method is mostly useful with callback functions,
+     * since the virNetworkPtr passed is only valid for the duration of
+     * execution of the callback.
+     */
+    static Network constructIncRef(final Connect virConnect, final NetworkPointer vnp)
+            throws LibvirtException {
+        processError(libvirt.virNetworkRef(vnp));
+
+        return new Network(virConnect, vnp);
     }
 
     /**
@@ -63,11 +84,6 @@ public class Network {
         processError(libvirt.virNetworkDestroy(vnp));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Frees this network object. The running instance is kept alive. The object
      * becomes invalid and should not be used thereafter if the call does not
@@ -79,13 +95,21 @@ public class Network {
     public int free() throws LibvirtException {
         int success = 0;
         if (vnp != null) {
-            success = processError(libvirt.virNetworkFree(vnp));
+            success = processError(nativeHandle.close());
             vnp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this network, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Provides a boolean value indicating whether this network is configured to
      * be automatically started when the host machine boots.
@@ -218,4 +242,17 @@ public class Network {
         processError(libvirt.virNetworkUndefine(vnp));
     }
 
+    /**
+     * Adds the specified listener to receive lifecycle events for this
+     * network.
+     *
+     * @param  l  the lifecycle listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addNetworkLifecycleListener
+     * @see Connect#removeNetworkLifecycleListener
+     */
+    public void addLifecycleListener(final NetworkLifecycleListener l) throws LibvirtException {
+        virConnect.networkEventRegister(this, l);
+    }
 }
@@ -7,12 +7,15 @@ import static org.libvirt.ErrorHandler.processError;
 
 import com.sun.jna.Native;
 
-public class NetworkFilter {
+public class NetworkFilter implements AutoCloseable {
     /**
      * the native virNWFilterPtr.
      */
     NetworkFilterPointer nfp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Filter
      */
@@ -20,14 +23,11 @@ public class NetworkFilter {
 
     public NetworkFilter(final Connect virConnect, final NetworkFilterPointer nfp) {
         this.nfp = nfp;
+        this.nativeHandle = nfp == null ? null
+            : NativeResources.register(this, NetworkFilter.class, () -> libvirt.virNWFilterFree(nfp));
         this.virConnect = virConnect;
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Release the network filter handle. The underlying snapshot continues to
      * exist.
@@ -38,13 +38,21 @@ public class NetworkFilter {
     public int free() throws LibvirtException {
         int success = 0;
         if (nfp != null) {
-            success = processError(libvirt.virNWFilterFree(nfp));
+            success = processError(nativeHandle.close());
             nfp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this network filter, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Gets the public name for this network filter
      *
@@ -1,5 +1,7 @@
 package org.libvirt;
 
+import org.libvirt.event.SecretLifecycleListener;
+import org.libvirt.event.SecretValueChangedListener;
 import org.libvirt.jna.Libvirt;
 import org.libvirt.jna.SecretPointer;
 import org.libvirt.jna.SizeT;
@@ -15,13 +17,16 @@ import java.nio.ByteBuffer;
 /**
  * A secret defined by libvirt
  */
-public class Secret {
+public class Secret implements AutoCloseable {
 
     /**
      * the native virSecretPtr.
      */
     SecretPointer vsp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Domain
      */
@@ -30,11 +35,23 @@ public class Secret {
     Secret(final Connect virConnect, final SecretPointer vsp) {
         this.virConnect = virConnect;
         this.vsp = vsp;
+        this.nativeHandle = vsp == null ? null
+            : NativeResources.register(this, Secret.class, () -> libvirt.virSecretFree(vsp));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
+    /**
+     * Constructs a new Secret object increasing the reference count
+     * on the SecretPointer.
+     * <p>
+     * This factory method is mostly useful with callback functions,
+     * since the virSecretPtr passed is only valid for the duration of
+     * execution of the callback.
+     */
+    static Secret constructIncRef(final Connect virConnect, final SecretPointer vsp)
+            throws LibvirtException {
+        processError(libvirt.virSecretRef(vsp));
+
+        return new Secret(virConnect, vsp);
     }
 
     /**
@@ -46,13 +63,21 @@ public class Secret {
     public int free() throws LibvirtException {
         int success = 0;
         if (vsp != null) {
-            success = processError(libvirt.virSecretFree(vsp));
+            success = processError(nativeHandle.close());
             vsp = null;
         }
 
         return success;
     }
 
+    /**
+     * Frees this secret, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Get the unique identifier of the object with which this secret is to be
      * used.
@@ -170,4 +195,32 @@ public class Secret {
     public int undefine() throws LibvirtException {
         return processError(libvirt.virSecretUndefine(vsp));
     }
+
+    /**
+     * Adds the specified listener to receive lifecycle events for this
+     * secret.
+     *
+     * @param  l  the lifecycle listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addSecretLifecycleListener
+     * @see Connect#removeSecretLifecycleListener
+     */
+    public void addLifecycleListener(final SecretLifecycleListener l) throws LibvirtException {
+        virConnect.secretEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive value changed events for this
+     * secret.
+     *
+     * @param  l  the value changed listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addSecretValueChangedListener
+     * @see Connect#removeSecretValueChangedListener
+     */
+    public void addValueChangedListener(final SecretValueChangedListener l) throws LibvirtException {
+        virConnect.secretEventRegister(this, l);
+    }
 }
@@ -1,5 +1,7 @@
 package org.libvirt;
 
+import org.libvirt.event.StoragePoolLifecycleListener;
+import org.libvirt.event.StoragePoolRefreshListener;
 import org.libvirt.jna.CString;
 import org.libvirt.jna.Libvirt;
 import org.libvirt.jna.StoragePoolPointer;
@@ -9,12 +11,14 @@ import static org.libvirt.Library.libvirt;
 import static org.libvirt.ErrorHandler.processError;
 
 import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
 
 /**
  * A collection of storage
  */
-public class StoragePool {
+public class StoragePool implements AutoCloseable {
 
     static final class BuildFlags {
         /**
@@ -54,6 +58,9 @@ public class StoragePool {
      */
     protected StoragePoolPointer vspp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The VirConnect Object that represents the Hypervisor of this Domain
      */
@@ -72,6 +79,23 @@ public class StoragePool {
     StoragePool(final Connect virConnect, final StoragePoolPointer vspp) {
         this.virConnect = virConnect;
         this.vspp = vspp;
+        this.nativeHandle = vspp == null ? null
+            : NativeResources.register(this, StoragePool.class, () -> libvirt.virStoragePoolFree(vspp));
+    }
+
+    /**
+     * Constructs a new StoragePool object increasing the reference count
+     * on the StoragePoolPointer.
+     * <p>
+     * This factory method is mostly useful with callback functions,
+     * since the virStoragePoolPtr passed is only valid for the duration
+     * of execution of the callback.
+     */
+    static StoragePool constructIncRef(final Connect virConnect, final StoragePoolPointer vspp)
+            throws LibvirtException {
+        processError(libvirt.virStoragePoolRef(vspp));
+
+        return new StoragePool(virConnect, vspp);
     }
 
     /**
@@ -115,11 +139,6 @@ public class StoragePool {
         processError(libvirt.virStoragePoolDestroy(vspp));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Free a storage pool object, releasing all memory associated with it. Does
      * not change the state of the pool on the host.
@@ -130,12 +149,20 @@ public class StoragePool {
     public int free() throws LibvirtException {
         int success = 0;
         if (vspp != null) {
-            success = processError(libvirt.virStoragePoolFree(vspp));
+            success = processError(nativeHandle.close());
             vspp = null;
         }
         return success;
     }
 
+    /**
+     * Frees this storage pool, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Fetches the value of the autostart flag, which determines whether the
      * pool is automatically started at boot time
@@ -264,6 +291,27 @@ public class StoragePool {
         }
     }
 
+    /**
+     * Gets an array of the storage volumes within this pool.
+     * <p>
+     * Unlike the name based listing, this takes a single call and returns
+     * the objects directly.
+     *
+     * @param flags currently unused, pass 0
+     * @return array of StorageVol objects
+     * @throws LibvirtException
+     */
+    public StorageVol[] listAllVolumes(final int flags) throws LibvirtException {
+        PointerByReference list = new PointerByReference();
+        Pointer[] ptrs = Library.toPointerArray(list,
+                processError(libvirt.virStoragePoolListAllVolumes(vspp, list, flags)));
+        StorageVol[] result = new StorageVol[ptrs.length];
+        for (int i = 0; i < ptrs.length; i++) {
+            result[i] = new StorageVol(virConnect, new StorageVolPointer(ptrs[i]));
+        }
+        return result;
+    }
+
     /**
      * Fetch the number of storage volumes within a pool
      *
@@ -366,4 +414,31 @@ public class StoragePool {
         processError(libvirt.virStoragePoolUndefine(vspp));
     }
 
+    /**
+     * Adds the specified listener to receive lifecycle events for this
+     * storage pool.
+     *
+     * @param  l  the lifecycle listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addStoragePoolLifecycleListener
+     * @see Connect#removeStoragePoolLifecycleListener
+     */
+    public void addLifecycleListener(final StoragePoolLifecycleListener l) throws LibvirtException {
+        virConnect.storagePoolEventRegister(this, l);
+    }
+
+    /**
+     * Adds the specified listener to receive refresh events for this
+     * storage pool.
+     *
+     * @param  l  the refresh listener
+     * @throws    LibvirtException on failure
+     *
+     * @see Connect#addStoragePoolRefreshListener
+     * @see Connect#removeStoragePoolRefreshListener
+     */
+    public void addRefreshListener(final StoragePoolRefreshListener l) throws LibvirtException {
+        virConnect.storagePoolEventRegister(this, l);
+    }
 }
@@ -1,15 +1,30 @@
 package org.libvirt;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.libvirt.jna.CLibrary;
 import org.libvirt.jna.StoragePoolPointer;
 import org.libvirt.jna.StorageVolPointer;
 import org.libvirt.jna.virStorageVolInfo;
 import static org.libvirt.Library.libvirt;
 import static org.libvirt.ErrorHandler.processError;
 
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+
 /**
  * An acutal storage bucket.
  */
-public class StorageVol {
+public class StorageVol implements AutoCloseable {
+
+    /**
+     * Size of the buffer used by the sparse transfer methods
+     */
+    static final int SPARSE_BUFFER_SIZE = 256 * 1024;
 
     static final class DeleteFlags {
         /**
@@ -69,6 +84,9 @@ public class StorageVol {
      */
     StorageVolPointer vsvp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The VirConnect Object that represents the Hypervisor of this Domain
      */
@@ -87,6 +105,8 @@ public class StorageVol {
     StorageVol(final Connect virConnect, final StorageVolPointer vsvp) {
         this.virConnect = virConnect;
         this.vsvp = vsvp;
+        this.nativeHandle = vsvp == null ? null
+            : NativeResources.register(this, StorageVol.class, () -> libvirt.virStorageVolFree(vsvp));
     }
 
     /**
@@ -100,11 +120,6 @@ public class StorageVol {
         processError(libvirt.virStorageVolDelete(vsvp, flags));
     }
 
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
-    }
-
     /**
      * Release the storage volume handle. The underlying storage volume contains
      * to exist
@@ -115,12 +130,20 @@ public class StorageVol {
     public int free() throws LibvirtException {
         int success = 0;
         if (vsvp != null) {
-            success = processError(libvirt.virStorageVolFree(vsvp));
+            success = processError(nativeHandle.close());
             vsvp = null;
         }
         return success;
     }
 
+    /**
+     * Frees this storage volume, see {@link #free}.
+     */
+    @Override
+    public void close() throws LibvirtException {
+        free();
+    }
+
     /**
      * Provides the connection object associated with a storage volume. The
      * reference counter on the connection is not increased by this call.
@@ -261,4 +284,272 @@ public class StorageVol {
         stream.markReadable();
         processError(libvirt.virStorageVolDownload(vsvp, stream.getVsp(), offset, length, flags));
     }
+
+    /**
+     * Downloads the content of the volume into a local file, preserving
+     * holes. Holes reported by the sparse stream are skipped instead of
+     * written, so they remain holes in the target file.
+     * <p>
+     * Data is written starting at the current position of {@code target},
+     * which is advanced past the downloaded range.
+     *
+     * @param target the file to write to
+     * @param offset position in the volume to start reading from
+     * @param length limit on amount of data to download, 0 for all
+     * @return the number of data (i.e. non-hole) bytes transferred
+     * @throws LibvirtException
+     * @throws IOException if writing to the target fails
+     */
+    public long downloadSparse(final FileChannel target, final long offset, final long length)
+            throws LibvirtException, IOException {
+        Stream stream = virConnect.streamNew(0);
+        ByteBuffer buffer = DirectBufferPool.getDefault().acquire(SPARSE_BUFFER_SIZE);
+        try {
+            download(stream, offset, length, DownloadFlags.SPARSE_STREAM);
+            long transferred = receiveSparse(sparse(stream), buffer, target);
+            stream.finish();
+            return transferred;
+        } catch (LibvirtException | IOException | RuntimeException e) {
+            try {
+                stream.abort();
+            } catch (LibvirtException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } finally {
+            stream.free();
+            DirectBufferPool.getDefault().release(buffer);
+        }
+    }
+
+    /**
+     * Uploads a local file to the volume, preserving holes. Blocks of
+     * zeros are sent as holes.
+     * <p>
+     * Data is read starting at the current position of {@code source}, up
+     * to its end or {@code length} bytes.
+     *
+     * @param source the file to read from
+     * @param offset position in the volume to start writing to
+     * @param length limit on amount of data to upload, 0 for all
+     * @return the number of data (i.e. non-hole) bytes transferred
+     * @throws LibvirtException
+     * @throws IOException if reading from the source fails
+     */
+    public long uploadSparse(final FileChannel source, final long offset, final long length)
+            throws LibvirtException, IOException {
+        return uploadSparse(source, -1, offset, length);
+    }
+
+    /**
+     * Uploads a local file to the volume, preserving holes. Holes of the
+     * file are found using {@code SEEK_DATA}/{@code SEEK_HOLE} where
+     * supported (Linux and FreeBSD); additionally, blocks of zeros are sent
+     * as holes.
+     *
+     * @param source the file to read from
+     * @param offset position in the volume to start writing to
+     * @param length limit on amount of data to upload, 0 for all
+     * @return the number of data (i.e. non-hole) bytes transferred
+     * @throws LibvirtException
+     * @throws IOException if reading from the source fails
+     */
+    public long uploadSparse(final Path source, final long offset, final long length)
+            throws LibvirtException, IOException {
+        int fd = -1;
+        if ((Platform.isLinux() || Platform.isFreeBSD()) && Platform.is64Bit()) {
+            fd = CLibrary.INSTANCE.open(source.toString(), CLibrary.O_RDONLY);
+        }
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            return uploadSparse(channel, fd, offset, length);
+        } finally {
+            if (fd >= 0) {
+                CLibrary.INSTANCE.close(fd);
+            }
+        }
+    }
+
+    private long uploadSparse(final FileChannel source, final int fd, final long offset, final long length)
+            throws LibvirtException, IOException {
+        long pos = source.position();
+        long end = length == 0 ? source.size() : Math.min(source.size(), pos + length);
+        Stream stream = virConnect.streamNew(0);
+        ByteBuffer buffer = DirectBufferPool.getDefault().acquire(SPARSE_BUFFER_SIZE);
+        try {
+            upload(stream, offset, length, UploadFlags.SPARSE_STREAM);
+            long transferred = sendSparse(sparse(stream), buffer, source, fd, pos, end);
+            stream.finish();
+            source.position(end);
+            return transferred;
+        } catch (LibvirtException | IOException | RuntimeException e) {
+            try {
+                stream.abort();
+            } catch (LibvirtException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } finally {
+            stream.free();
+            DirectBufferPool.getDefault().release(buffer);
+        }
+    }
+
+    /**
+     * The operations of a sparse stream used by the transfer loops.
+     */
+    interface SparseStream {
+        /**
+         * @return the number of bytes received, 0 at the end of the stream
+         *         or -3 at a hole
+         */
+        int receive(ByteBuffer buffer) throws LibvirtException;
+
+        /**
+         * @return the length of the hole skipped
+         */
+        long receiveHole() throws LibvirtException;
+
+        int send(ByteBuffer buffer) throws LibvirtException;
+
+        void sendHole(long length) throws LibvirtException;
+    }
+
+    private static SparseStream sparse(final Stream stream) {
+        return new SparseStream() {
+            @Override
+            public int receive(final ByteBuffer buffer) throws LibvirtException {
+                return stream.receive(buffer, Stream.RecvFlags.STOP_AT_HOLE);
+            }
+
+            @Override
+            public long receiveHole() throws LibvirtException {
+                return stream.receiveHole(0);
+            }
+
+            @Override
+            public int send(final ByteBuffer buffer) throws LibvirtException {
+                return stream.send(buffer);
+            }
+
+            @Override
+            public void sendHole(final long length) throws LibvirtException {
+                stream.sendHole(length, 0);
+            }
+        };
+    }
+
+    /**
+     * Writes the data received from a sparse stream to a file, starting at
+     * its position, skipping the holes. The position is advanced past the
+     * data and holes received, and the file extended to it.
+     *
+     * @return the number of data bytes written
+     */
+    static long receiveSparse(final SparseStream stream, final ByteBuffer buffer, final FileChannel target)
+            throws LibvirtException, IOException {
+        long pos = target.position();
+        long transferred = 0;
+        for (;;) {
+            buffer.clear();
+            int n = stream.receive(buffer);
+            if (n == 0) {
+                break;
+            }
+            if (n == -3) {
+                pos += stream.receiveHole();
+                continue;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                pos += target.write(buffer, pos);
+            }
+            transferred += n;
+        }
+        if (target.size() < pos) {
+            // trailing hole, extend the file to its full size
+            target.write(ByteBuffer.allocate(1), pos - 1);
+        }
+        target.position(pos);
+        return transferred;
+    }
+
+    /**
+     * Sends the range {@code [pos, end)} of a file to a sparse stream,
+     * sending its holes and blocks of zeros as holes.
+     *
+     * @param fd
+     *            the descriptor of the file to find its holes, or -1
+     * @return the number of data bytes sent
+     */
+    static long sendSparse(final SparseStream stream, final ByteBuffer buffer, final FileChannel source,
+                           final int fd, final long start, final long end)
+            throws LibvirtException, IOException {
+        long pos = start;
+        long transferred = 0;
+        while (pos < end) {
+            long dataStart = seek(fd, pos, CLibrary.SEEK_DATA, end);
+            if (dataStart > pos) {
+                stream.sendHole(dataStart - pos);
+                pos = dataStart;
+                continue;
+            }
+            long dataEnd = seek(fd, pos, CLibrary.SEEK_HOLE, end);
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), dataEnd - pos));
+            while (buffer.hasRemaining()) {
+                if (source.read(buffer, pos + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of file");
+                }
+            }
+            buffer.flip();
+            int n = buffer.remaining();
+            if (isZero(buffer)) {
+                stream.sendHole(n);
+            } else {
+                while (buffer.hasRemaining()) {
+                    stream.send(buffer);
+                }
+                transferred += n;
+            }
+            pos += n;
+        }
+        return transferred;
+    }
+
+    /**
+     * Finds the next data region or hole at or after {@code pos}.
+     *
+     * @return the offset found, {@code pos} for data or {@code end} for a
+     *         hole if {@code fd} is not valid or seeking is not supported
+     */
+    private static long seek(final int fd, final long pos, final int whence, final long end) {
+        if (fd < 0) {
+            return whence == CLibrary.SEEK_DATA ? pos : end;
+        }
+        long ret = CLibrary.INSTANCE.lseek(fd, pos, whence);
+        if (ret < 0) {
+            // ENXIO: no more data after pos
+            if (whence == CLibrary.SEEK_DATA && Native.getLastError() == CLibrary.ENXIO) {
+                return end;
+            }
+            return whence == CLibrary.SEEK_DATA ? pos : end;
+        }
+        return Math.min(ret, end);
+    }
+
+    private static boolean isZero(final ByteBuffer buffer) {
+        int i = buffer.position();
+        int limit = buffer.limit();
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,434 @@
+package org.libvirt;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfers the content of a storage volume from or to a local file using
+ * several streams in parallel.
+ * <p>
+ * The requested range is split into fixed size ranges, which are claimed
+ * by {@link #setParallelism parallelism} workers, each transferring one
+ * range at a time over its own {@link Stream} and writing or reading it at
+ * the matching position of the local {@link FileChannel}. A range failing
+ * is retried up to {@link #setRetries retries} times; a download resumes
+ * where it stopped, an upload restarts the range. Once a range has failed
+ * for good, the other workers complete their current range and the
+ * transfer fails; the local file is never closed by the transfer.
+ * <p>
+ * All streams of a single connection share its RPC channel. To spread the
+ * load over multiple channels, pass additional connections to the same
+ * host with {@link #setConnections}; workers are assigned to connections
+ * round robin and look up the volume by its key.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * {@code
+ * StorageVolTransfer transfer = new StorageVolTransfer(vol);
+ * transfer.setParallelism(8);
+ * try (FileChannel out = FileChannel.open(path, CREATE, WRITE)) {
+ *     transfer.download(out, 0, 0);
+ * }}</pre>
+ */
+public class StorageVolTransfer {
+    private static final long DEFAULT_RANGE_SIZE = 64L * 1024 * 1024;
+
+    private final StorageVol volume;
+    private Connect[] connections;
+    private int parallelism = 4;
+    private long rangeSize = DEFAULT_RANGE_SIZE;
+    private int retries = 2;
+    private ExecutorService executor;
+
+    /**
+     * Creates a transfer for the given volume.
+     *
+     * @param volume
+     *            the volume to transfer
+     */
+    public StorageVolTransfer(final StorageVol volume) {
+        this.volume = volume;
+        this.connections = new Connect[] {volume.virConnect};
+    }
+
+    /**
+     * Sets the number of streams used concurrently, 4 by default.
+     */
+    public void setParallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the size of the ranges the transfer is split into, 64 MiB by
+     * default.
+     */
+    public void setRangeSize(final long rangeSize) {
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("range size must be positive");
+        }
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Sets how often a failed range is retried, 2 by default.
+     */
+    public void setRetries(final int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+        this.retries = retries;
+    }
+
+    /**
+     * Sets the executor running the workers. By default, a thread pool is
+     * created for every transfer.
+     */
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets additional connections to the host of the volume. The
+     * connection of the volume is always used.
+     */
+    public void setConnections(final Connect... additional) {
+        Connect[] all = new Connect[additional.length + 1];
+        all[0] = volume.virConnect;
+        System.arraycopy(additional, 0, all, 1, additional.length);
+        this.connections = all;
+    }
+
+    /**
+     * Downloads the volume into a local file.
+     * <p>
+     * Byte {@code offset + i} of the volume is written to position
+     * {@code target.position() + i} of the file; the position of the channel
+     * is not changed.
+     *
+     * @param target
+     *            the file to write to
+     * @param offset
+     *            position in the volume to start reading from
+     * @param length
+     *            amount of data to download, 0 for everything up to the
+     *            capacity of the volume
+     * @return the number of bytes transferred
+     * @throws LibvirtException
+     * @throws IOException
+     *             if writing to the file failed
+     */
+    public long download(final FileChannel target, final long offset, final long length)
+            throws LibvirtException, IOException {
+        long total = length == 0 ? volume.getInfo().capacity - offset : length;
+        return run(target, target.position(), offset, total, false);
+    }
+
+    /**
+     * Uploads a local file to the volume.
+     * <p>
+     * Position {@code source.position() + i} of the file is written to byte
+     * {@code offset + i} of the volume; the position of the channel is not
+     * changed.
+     *
+     * @param source
+     *            the file to read from
+     * @param offset
+     *            position in the volume to start writing to
+     * @param length
+     *            amount of data to upload, 0 for everything up to the end
+     *            of the file
+     * @return the number of bytes transferred
+     * @throws LibvirtException
+     * @throws IOException
+     *             if reading from the file failed
+     */
+    public long upload(final FileChannel source, final long offset, final long length)
+            throws LibvirtException, IOException {
+        long total = length == 0 ? source.size() - source.position() : length;
+        return run(source, source.position(), offset, total, true);
+    }
+
+    private long run(final FileChannel file, final long filePosition, final long offset,
+                     final long total, final boolean upload)
+            throws LibvirtException, IOException {
+        if (total <= 0) {
+            return 0;
+        }
+        final long ranges = (total + rangeSize - 1) / rangeSize;
+        final int workers = (int) Math.min(parallelism, ranges);
+        final AtomicLong nextRange = new AtomicLong();
+        final AtomicLong transferred = new AtomicLong();
+        ExecutorService exec = executor != null ? executor : Executors.newFixedThreadPool(workers);
+        List<Future<Void>> futures = new ArrayList<>(workers);
+        try {
+            for (int w = 0; w < workers; w++) {
+                final Connect conn = connections[w % connections.length];
+                futures.add(exec.submit(() -> {
+                        try {
+                            RangeSource source = source(conn);
+                            long range;
+                            while ((range = nextRange.getAndIncrement()) < ranges) {
+                                long start = range * rangeSize;
+                                long size = Math.min(rangeSize, total - start);
+                                transferRange(source, file, filePosition + start, offset + start, size, upload);
+                                transferred.addAndGet(size);
+                            }
+                            return null;
+                        } catch (Exception | java.lang.Error e) {
+                            // stop the other workers from claiming new ranges
+                            nextRange.set(ranges);
+                            throw e;
+                        }
+                    }));
+            }
+        } catch (RejectedExecutionException e) {
+            nextRange.set(ranges);
+            throw e;
+        } finally {
+            if (exec != executor) {
+                // workers are never interrupted, as an interrupted FileChannel
+                // operation would close the channel of the caller
+                exec.shutdown();
+            }
+        }
+
+        // wait for every worker, so that none uses the file after returning
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<Void> f : futures) {
+            for (;;) {
+                try {
+                    f.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // let the workers complete their current range only
+                    nextRange.set(ranges);
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+                throw new InterruptedIOException("interrupted while transferring");
+            }
+        }
+        if (failure instanceof LibvirtException) {
+            throw (LibvirtException) failure;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof java.lang.Error) {
+            throw (java.lang.Error) failure;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return transferred.get();
+    }
+
+    /**
+     * The streams of the volume used by one worker.
+     */
+    interface RangeSource {
+        /**
+         * Starts a transfer of {@code length} bytes at {@code offset} of the
+         * volume.
+         */
+        RangeStream open(long offset, long length, boolean upload) throws LibvirtException;
+    }
+
+    /**
+     * The operations of a stream used to transfer a range.
+     */
+    interface RangeStream {
+        /**
+         * @return the number of bytes received, 0 at the end of the stream
+         */
+        int receive(ByteBuffer buffer) throws LibvirtException;
+
+        int send(ByteBuffer buffer) throws LibvirtException;
+
+        void finish() throws LibvirtException;
+
+        void abort() throws LibvirtException;
+
+        void free() throws LibvirtException;
+    }
+
+    /**
+     * Returns the streams of the volume on the given connection, looking
+     * the volume up by its key on an additional connection.
+     */
+    RangeSource source(final Connect conn) throws LibvirtException {
+        final StorageVol vol = conn == volume.virConnect ? volume : conn.storageVolLookupByKey(volume.getKey());
+        return new RangeSource() {
+            @Override
+            public RangeStream open(final long offset, final long length, final boolean upload)
+                    throws LibvirtException {
+                final Stream stream = vol.virConnect.streamNew(0);
+                try {
+                    if (upload) {
+                        vol.upload(stream, offset, length, 0);
+                    } else {
+                        vol.download(stream, offset, length, 0);
+                    }
+                } catch (LibvirtException | RuntimeException e) {
+                    stream.free();
+                    throw e;
+                }
+                return new RangeStream() {
+                    @Override
+                    public int receive(final ByteBuffer buffer) throws LibvirtException {
+                        return stream.receive(buffer);
+                    }
+
+                    @Override
+                    public int send(final ByteBuffer buffer) throws LibvirtException {
+                        return stream.send(buffer);
+                    }
+
+                    @Override
+                    public void finish() throws LibvirtException {
+                        stream.finish();
+                    }
+
+                    @Override
+                    public void abort() throws LibvirtException {
+                        stream.abort();
+                    }
+
+                    @Override
+                    public void free() throws LibvirtException {
+                        stream.free();
+                    }
+                };
+            }
+        };
+    }
+
+    private void transferRange(final RangeSource source, final FileChannel file, final long filePosition,
+                               final long volOffset, final long size, final boolean upload)
+            throws LibvirtException, IOException {
+        // bytes of the range downloaded so far
+        long[] done = new long[1];
+        for (int attempt = 0;; attempt++) {
+            try {
+                if (upload) {
+                    uploadRange(source, file, filePosition, volOffset, size);
+                } else {
+                    downloadRange(source, file, filePosition, volOffset, size, done);
+                }
+                return;
+            } catch (ClosedChannelException e) {
+                // the file is unusable, retrying cannot succeed
+                throw e;
+            } catch (LibvirtException | IOException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Downloads the part of the range not done yet.
+     *
+     * @param done
+     *            the number of bytes of the range already written, updated
+     *            as data is written so that a retry can resume
+     */
+    private static void downloadRange(final RangeSource source, final FileChannel file,
+                                      final long filePosition, final long volOffset, final long size,
+                                      final long[] done)
+            throws LibvirtException, IOException {
+        RangeStream stream = source.open(volOffset + done[0], size - done[0], false);
+        ByteBuffer buffer = DirectBufferPool.getDefault().acquire(StorageVol.SPARSE_BUFFER_SIZE);
+        try {
+            while (done[0] < size) {
+                buffer.clear();
+                int n = stream.receive(buffer);
+                if (n == 0) {
+                    throw new IOException("unexpected end of stream at volume offset " + (volOffset + done[0]));
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    file.write(buffer, filePosition + done[0] + buffer.position());
+                }
+                done[0] += n;
+            }
+            stream.finish();
+        } catch (LibvirtException | IOException | RuntimeException e) {
+            abort(stream, e);
+            throw e;
+        } finally {
+            stream.free();
+            DirectBufferPool.getDefault().release(buffer);
+        }
+    }
+
+    private static void uploadRange(final RangeSource source, final FileChannel file,
+                                    final long filePosition, final long volOffset, final long size)
+            throws LibvirtException, IOException {
+        RangeStream stream = source.open(volOffset, size, true);
+        ByteBuffer buffer = DirectBufferPool.getDefault().acquire(StorageVol.SPARSE_BUFFER_SIZE);
+        try {
+            long done = 0;
+            while (done < size) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - done));
+                while (buffer.hasRemaining()) {
+                    if (file.read(buffer, filePosition + done + buffer.position()) < 0) {
+                        throw new IOException("unexpected end of file at " + (filePosition + done));
+                    }
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    stream.send(buffer);
+                }
+                done += buffer.limit();
+            }
+            stream.finish();
+        } catch (LibvirtException | IOException | RuntimeException e) {
+            abort(stream, e);
+            throw e;
+        } finally {
+            stream.free();
+            DirectBufferPool.getDefault().release(buffer);
+        }
+    }
+
+    private static void abort(final RangeStream stream, final Exception e) {
+        try {
+            stream.abort();
+        } catch (LibvirtException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+    }
+}
@@ -3,17 +3,34 @@ package org.libvirt;
 import java.io.IOException;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadPendingException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.WritePendingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.libvirt.jna.Libvirt;
 import org.libvirt.jna.SizeT;
 import org.libvirt.jna.StreamPointer;
+import static org.libvirt.Library.backend;
 import static org.libvirt.Library.libvirt;
 import static org.libvirt.ErrorHandler.processError;
 
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.LongByReference;
+
 /**
  * The Stream class is used to transfer data between a libvirt daemon
  * and a client.
@@ -39,16 +56,50 @@ import static org.libvirt.ErrorHandler.processError;
  * convert it using the {@link java.nio.channels.Channels#newInputStream
  *  Channels.newInputStream} and {@link java.nio.channels.Channels#newOutputStream
  *  Channels.newOutputStream} respectively.
+ * <p>
+ * A stream created with {@link #VIR_STREAM_NONBLOCK} never blocks:
+ * {@link #read} returns 0 and {@link #write} returns the number of bytes
+ * written so far if the operation would block. {@link #readAsync} and
+ * {@link #writeAsync}, or the channel returned by
+ * {@link #asAsynchronousChannel}, complete once the stream becomes ready,
+ * driven by stream events. This requires a running event loop, see
+ * {@link Library#initEventLoop}. Completion happens on the event loop
+ * thread, so dependent actions should not block.
  */
 public class Stream implements ByteChannel {
 
     public static final int VIR_STREAM_NONBLOCK = 1;
 
+    /**
+     * Events of a stream, see {@link #addCallback}
+     */
+    public static final class EventType {
+        /** data is available for reading */
+        public static final int READABLE = 1 << 0;
+        /** space is available for writing */
+        public static final int WRITABLE = 1 << 1;
+        /** an I/O error occurred */
+        public static final int ERROR = 1 << 2;
+        /** the remote end closed the stream */
+        public static final int HANGUP = 1 << 3;
+    }
+
+    public static final class RecvFlags {
+        /**
+         * Stop receiving at a hole of a sparse stream, see
+         * {@link Stream#receive(byte[], int)}
+         */
+        public static final int STOP_AT_HOLE = 1;
+    }
+
     /**
      * the native virStreamPtr.
      */
     private StreamPointer vsp;
 
+    // releases the native handle, also if this object is not freed
+    private final NativeResources.Handle nativeHandle;
+
     /**
      * The Connect Object that represents the Hypervisor of this Domain
      */
@@ -74,6 +125,59 @@ public class Stream implements ByteChannel {
      */
     private int state = CLOSED;
 
+    // the number of transfers which would have blocked, for the flight recorder
+    private long wouldBlock;
+
+    /**
+     * A read or write waiting for the stream to become ready.
+     */
+    private static final class PendingIO {
+        final ByteBuffer buffer;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        int result;
+        Throwable failure;
+
+        PendingIO(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Completes the futures of finished operations. Their dependent
+         * stages run in the calling thread, so asyncLock must not be held.
+         */
+        static void completeAll(final List<PendingIO> done) {
+            for (PendingIO io : done) {
+                if (io.failure != null) {
+                    io.future.completeExceptionally(io.failure);
+                } else {
+                    io.future.complete(io.result);
+                }
+            }
+        }
+    }
+
+    // guards the pending operations and the monitored events
+    private final Object asyncLock = new Object();
+    private PendingIO pendingRead;
+    private PendingIO pendingWrite;
+    private int watchedEvents;
+
+    /* The registered event callback, referenced here so that it is not
+     * garbage collected while libvirt may still call it.
+     */
+    private Libvirt.VirStreamEventCallback eventCallback;
+
+    // whether a callback is registered, shared with the reclaim action
+    private final AtomicBoolean callbackRegistered;
+
+    private final Libvirt.VirStreamEventCallback asyncCallback = new Libvirt.VirStreamEventCallback() {
+            @Override
+            public void eventCallback(final StreamPointer virStreamPointer, final int events,
+                                      final Pointer opaque) {
+                onAsyncEvent(events);
+            }
+        };
+
     void markReadable() {
         assert !isWritable()
             : "A Stream cannot be readable and writable at the same time";
@@ -107,6 +211,19 @@ public class Stream implements ByteChannel {
     Stream(final Connect virConnect, final StreamPointer vsp) {
         this.virConnect = virConnect;
         this.vsp = vsp;
+        final AtomicBoolean registered = new AtomicBoolean();
+        this.callbackRegistered = registered;
+        // an unreachable stream may still have its event callback registered
+        // and be transferring data; the callback must be removed and the
+        // transfer aborted before the stream can be freed
+        this.nativeHandle = vsp == null ? null
+            : NativeResources.register(this, Stream.class, () -> libvirt.virStreamFree(vsp), () -> {
+                    if (registered.get()) {
+                        libvirt.virStreamEventRemoveCallback(vsp);
+                    }
+                    libvirt.virStreamAbort(vsp);
+                    return libvirt.virStreamFree(vsp);
+                });
     }
 
     /**
@@ -137,12 +254,10 @@ public class Stream implements ByteChannel {
      */
     public int addCallback(final int events, final Libvirt.VirStreamEventCallback cb)
             throws LibvirtException {
-        return processError(libvirt.virStreamEventAddCallback(vsp, events, cb, null, null));
-    }
-
-    @Override
-    protected void finalize() throws LibvirtException {
-        free();
+        int ret = processError(libvirt.virStreamEventAddCallback(vsp, events, cb, null, null));
+        eventCallback = cb;
+        callbackRegistered.set(true);
+        return ret;
     }
 
     /**
@@ -169,7 +284,10 @@ public class Stream implements ByteChannel {
         int success = 0;
         if (vsp != null) {
             closeStream();
-            success = processError(libvirt.virStreamFree(vsp));
+            if (eventCallback != null) {
+                removeCallback();
+            }
+            success = processError(nativeHandle.close());
             vsp = null;
         }
 
@@ -193,11 +311,85 @@ public class Stream implements ByteChannel {
     }
 
     protected int receive(final ByteBuffer buffer) throws LibvirtException {
-        int returnValue = processError(libvirt.virStreamRecv(vsp, buffer, new SizeT(buffer.remaining())));
-        buffer.position(buffer.position() + returnValue);
+        if (!buffer.isDirect()) {
+            return receiveThroughPool(buffer, -1);
+        }
+        Object event = FlightRecorder.INSTANCE.beginStreamIO();
+        int returnValue = traced(event, false, backend.virStreamRecv(vsp, buffer));
+        if (returnValue > 0) {
+            buffer.position(buffer.position() + returnValue);
+        }
+        return returnValue;
+    }
+
+    /**
+     * Receives data from the stream into the buffer provided, with extra
+     * flags. With {@link RecvFlags#STOP_AT_HOLE} on a sparse stream, this
+     * stops before a hole and returns -3 if the stream is positioned at one;
+     * the hole must then be skipped using {@link #receiveHole}.
+     *
+     * @see <a href="https://libvirt.org/html/libvirt-libvirt-stream.html#virStreamRecvFlags">Libvirt
+     *      Documentation</a>
+     * @param data
+     *            buffer to put the data into
+     * @param flags
+     *            see {@link RecvFlags}
+     * @return the number of bytes read, 0 at the end of the stream, -2 if
+     *         no data is available on a non-blocking stream, -3 at a hole
+     * @throws LibvirtException
+     */
+    public int receive(final byte[] data, final int flags) throws LibvirtException {
+        return receive(ByteBuffer.wrap(data), flags);
+    }
+
+    protected int receive(final ByteBuffer buffer, final int flags) throws LibvirtException {
+        if (!buffer.isDirect()) {
+            return receiveThroughPool(buffer, flags);
+        }
+        Object event = FlightRecorder.INSTANCE.beginStreamIO();
+        int returnValue = traced(event, false,
+                                 libvirt.virStreamRecvFlags(vsp, buffer, new SizeT(buffer.remaining()), flags));
+        if (returnValue > 0) {
+            buffer.position(buffer.position() + returnValue);
+        }
         return returnValue;
     }
 
+    /**
+     * Skips the hole the stream is currently positioned at. May only be
+     * called on a sparse stream, after {@link #receive(byte[], int)}
+     * returned -3.
+     *
+     * @see <a href="https://libvirt.org/html/libvirt-libvirt-stream.html#virStreamRecvHole">Libvirt
+     *      Documentation</a>
+     * @param flags
+     *            extra flags; not used yet, so callers should always pass 0
+     * @return the size of the hole in bytes
+     * @throws LibvirtException
+     */
+    public long receiveHole(final int flags) throws LibvirtException {
+        LongByReference length = new LongByReference();
+        processError(libvirt.virStreamRecvHole(vsp, length, flags));
+        return length.getValue();
+    }
+
+    /**
+     * Sends a hole of the given size over a sparse stream, instead of
+     * sending that many zero bytes.
+     *
+     * @see <a href="https://libvirt.org/html/libvirt-libvirt-stream.html#virStreamSendHole">Libvirt
+     *      Documentation</a>
+     * @param length
+     *            the size of the hole in bytes
+     * @param flags
+     *            extra flags; not used yet, so callers should always pass 0
+     * @return <em>ignore</em> (always 0)
+     * @throws LibvirtException
+     */
+    public int sendHole(final long length, final int flags) throws LibvirtException {
+        return processError(libvirt.virStreamSendHole(vsp, length, flags));
+    }
+
     @Override
     public int read(final ByteBuffer buffer) throws IOException {
         if (!isOpen()) {
@@ -221,7 +413,8 @@ public class Stream implements ByteChannel {
                 return -1;
 
             case -2:
-                throw new UnsupportedOperationException("non-blocking I/O stream not yet supported");
+                // non-blocking stream, no data available yet
+                return 0;
 
             default:
                 return ret;
@@ -248,7 +441,8 @@ public class Stream implements ByteChannel {
                 int ret = send(buffer);
 
                 if (ret == -2) {
-                    throw new UnsupportedOperationException("non-blocking I/O stream not yet supported");
+                    // non-blocking stream, the buffer is full
+                    break;
                 }
             }
             return buffer.position() - pos;
@@ -258,6 +452,7 @@ public class Stream implements ByteChannel {
     }
 
     protected void closeStream() throws LibvirtException {
+        failPending(new AsynchronousCloseException());
         if (isOpen() && !isEOF()) {
             if (isWritable()) {
                 finish();
@@ -296,6 +491,50 @@ public class Stream implements ByteChannel {
         return processError(libvirt.virStreamRecvAll(vsp, handler, null));
     }
 
+    /**
+     * Receives the entire stream into the given channel. Each chunk is
+     * written straight from the native buffer libvirt passes to the sink
+     * callback, without copying it into a Java array.
+     * <p>
+     * The channel must be in blocking mode. The stream is finished on
+     * success and aborted on failure.
+     *
+     * @see <a href="https://libvirt.org/html/libvirt-libvirt.html#virStreamRecvAll">virStreamRecvAll</a>
+     * @param channel
+     *            the channel to write the data to
+     * @return the number of bytes transferred
+     * @throws LibvirtException
+     * @throws IOException
+     *             if writing to the channel failed
+     */
+    public long receiveAll(final WritableByteChannel channel)
+            throws LibvirtException, IOException {
+        final long[] transferred = new long[1];
+        final Exception[] failure = new Exception[1];
+        Libvirt.VirStreamSinkFunc sink = new Libvirt.VirStreamSinkFunc() {
+                @Override
+                public int sinkCallback(final StreamPointer virStreamPtr, final Pointer data,
+                                        final NativeLong nbytes, final Pointer opaque) {
+                    ByteBuffer buffer = data.getByteBuffer(0, nbytes.longValue());
+                    try {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // an escaping exception would return 0, i.e. no
+                        // progress, and make libvirt call the sink forever
+                        failure[0] = e;
+                        return -1;
+                    }
+                    transferred[0] += nbytes.longValue();
+                    return nbytes.intValue();
+                }
+            };
+        int ret = libvirt.virStreamRecvAll(vsp, sink, null);
+        completeAll(ret, failure[0]);
+        return transferred[0];
+    }
+
     /**
      * Remove an event callback from the stream
      *
@@ -304,7 +543,13 @@ public class Stream implements ByteChannel {
      * @throws LibvirtException
      */
     public int removeCallback() throws LibvirtException {
-        return processError(libvirt.virStreamEventRemoveCallback(vsp));
+        int ret = processError(libvirt.virStreamEventRemoveCallback(vsp));
+        eventCallback = null;
+        callbackRegistered.set(false);
+        synchronized (asyncLock) {
+            watchedEvents = 0;
+        }
+        return ret;
     }
 
     /**
@@ -321,12 +566,75 @@ public class Stream implements ByteChannel {
     }
 
     protected int send(final ByteBuffer buffer) throws LibvirtException {
-        SizeT size = new SizeT(buffer.remaining());
-        int returnValue = processError(libvirt.virStreamSend(vsp, buffer, size));
-        buffer.position(buffer.position() + returnValue);
+        if (!buffer.isDirect()) {
+            return sendThroughPool(buffer);
+        }
+        Object event = FlightRecorder.INSTANCE.beginStreamIO();
+        int returnValue = traced(event, true, backend.virStreamSend(vsp, buffer));
+        if (returnValue > 0) {
+            buffer.position(buffer.position() + returnValue);
+        }
         return returnValue;
     }
 
+    /**
+     * Counts the transfers which would block and commits the flight
+     * recorder event of a transfer, before checking its result.
+     */
+    private int traced(final Object event, final boolean send, final int result) throws LibvirtException {
+        if (result == -2) {
+            wouldBlock++;
+        }
+        if (event != null) {
+            FlightRecorder.INSTANCE.commitStreamIO(event, send, result, wouldBlock);
+        }
+        return processError(result);
+    }
+
+    /**
+     * Receives into a heap buffer through a pooled direct buffer, which
+     * saves JNA from allocating temporary native memory for every call.
+     *
+     * @param flags
+     *            the flags for virStreamRecvFlags, or -1 for virStreamRecv
+     */
+    private int receiveThroughPool(final ByteBuffer buffer, final int flags) throws LibvirtException {
+        DirectBufferPool pool = DirectBufferPool.getDefault();
+        ByteBuffer direct = pool.acquire(Math.min(buffer.remaining(), pool.getMaxBufferSize()));
+        try {
+            int returnValue = flags == -1 ? receive(direct) : receive(direct, flags);
+            if (returnValue > 0) {
+                direct.flip();
+                buffer.put(direct);
+            }
+            return returnValue;
+        } finally {
+            pool.release(direct);
+        }
+    }
+
+    /**
+     * Sends from a heap buffer through a pooled direct buffer, which saves
+     * JNA from allocating temporary native memory for every call.
+     */
+    private int sendThroughPool(final ByteBuffer buffer) throws LibvirtException {
+        DirectBufferPool pool = DirectBufferPool.getDefault();
+        ByteBuffer direct = pool.acquire(Math.min(buffer.remaining(), pool.getMaxBufferSize()));
+        try {
+            ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(chunk.position() + direct.remaining());
+            direct.put(chunk);
+            direct.flip();
+            int returnValue = send(direct);
+            if (returnValue > 0) {
+                buffer.position(buffer.position() + returnValue);
+            }
+            return returnValue;
+        } finally {
+            pool.release(direct);
+        }
+    }
+
     /**
      * Batch send method
      *
@@ -343,6 +651,76 @@ public class Stream implements ByteChannel {
         return processError(libvirt.virStreamSendAll(vsp, handler, null));
     }
 
+    /**
+     * Sends the entire content of the given channel. Each chunk is read
+     * straight into the native buffer libvirt passes to the source callback,
+     * without copying it through a Java array.
+     * <p>
+     * The channel must be in blocking mode. The stream is finished on
+     * success and aborted on failure.
+     *
+     * @see <a
+     *      href="https://libvirt.org/html/libvirt-libvirt.html#virStreamSendAll">Libvirt
+     *      Documentation</a>
+     * @param channel
+     *            the channel to read the data from
+     * @return the number of bytes transferred
+     * @throws LibvirtException
+     * @throws IOException
+     *             if reading from the channel failed
+     */
+    public long sendAll(final ReadableByteChannel channel)
+            throws LibvirtException, IOException {
+        final long[] transferred = new long[1];
+        final Exception[] failure = new Exception[1];
+        Libvirt.VirStreamSourceFunc source = new Libvirt.VirStreamSourceFunc() {
+                @Override
+                public int sourceCallback(final StreamPointer virStreamPtr, final Pointer data,
+                                          final NativeLong nbytes, final Pointer opaque) {
+                    ByteBuffer buffer = data.getByteBuffer(0, nbytes.longValue());
+                    try {
+                        int n;
+                        do {
+                            n = channel.read(buffer);
+                        } while (n == 0 && buffer.hasRemaining());
+                        if (n < 0) {
+                            // end of input
+                            return 0;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // an escaping exception would return 0, which
+                        // libvirt takes for the end of the input
+                        failure[0] = e;
+                        return -1;
+                    }
+                    transferred[0] += buffer.position();
+                    return buffer.position();
+                }
+            };
+        int ret = libvirt.virStreamSendAll(vsp, source, null);
+        completeAll(ret, failure[0]);
+        return transferred[0];
+    }
+
+    /**
+     * Updates the state after virStreamRecvAll or virStreamSendAll, which
+     * finish the stream on success and abort it on failure.
+     */
+    private void completeAll(final int ret, final Exception failure)
+            throws LibvirtException, IOException {
+        if (ret < 0) {
+            this.state = CLOSED;
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            processError(ret);
+        }
+        markEOF();
+    }
+
     /**
      * Changes the set of events to monitor for a stream.
      *
@@ -355,4 +733,219 @@ public class Stream implements ByteChannel {
     public int updateCallback(final int events) throws LibvirtException {
         return processError(libvirt.virStreamEventUpdateCallback(vsp, events));
     }
+
+    /**
+     * Reads a sequence of bytes from this stream into the given buffer
+     * without blocking the calling thread.
+     * <p>
+     * The stream should have been created with {@link #VIR_STREAM_NONBLOCK}
+     * and an event loop must be running. Only one read may be outstanding
+     * at a time. The event callback of the stream is used internally, so
+     * {@link #addCallback} must not be used together with this method.
+     *
+     * @param buffer
+     *            the buffer to read into
+     * @return a future completed with the number of bytes read, or -1 at
+     *         the end of the stream
+     * @throws ReadPendingException
+     *             if a read is already outstanding
+     */
+    public CompletableFuture<Integer> readAsync(final ByteBuffer buffer) {
+        PendingIO io = new PendingIO(buffer);
+        List<PendingIO> done;
+        synchronized (asyncLock) {
+            if (pendingRead != null) {
+                throw new ReadPendingException();
+            }
+            pendingRead = io;
+            done = tryPending();
+        }
+        PendingIO.completeAll(done);
+        return io.future;
+    }
+
+    /**
+     * Writes a sequence of bytes from the given buffer to this stream
+     * without blocking the calling thread.
+     * <p>
+     * The stream should have been created with {@link #VIR_STREAM_NONBLOCK}
+     * and an event loop must be running. Only one write may be outstanding
+     * at a time. As with {@link AsynchronousByteChannel#write}, the future
+     * completes as soon as some bytes have been written, the buffer may
+     * still have remaining bytes.
+     *
+     * @param buffer
+     *            the buffer to write
+     * @return a future completed with the number of bytes written
+     * @throws WritePendingException
+     *             if a write is already outstanding
+     */
+    public CompletableFuture<Integer> writeAsync(final ByteBuffer buffer) {
+        PendingIO io = new PendingIO(buffer);
+        List<PendingIO> done;
+        synchronized (asyncLock) {
+            if (pendingWrite != null) {
+                throw new WritePendingException();
+            }
+            pendingWrite = io;
+            done = tryPending();
+        }
+        PendingIO.completeAll(done);
+        return io.future;
+    }
+
+    /**
+     * Returns an asynchronous view of this stream, backed by
+     * {@link #readAsync} and {@link #writeAsync}. Closing the channel
+     * closes this stream.
+     *
+     * @return the channel
+     */
+    public AsynchronousByteChannel asAsynchronousChannel() {
+        return new AsynchronousByteChannel() {
+            @Override
+            public <A> void read(final ByteBuffer dst, final A attachment,
+                                 final CompletionHandler<Integer, ? super A> handler) {
+                complete(readAsync(dst), attachment, handler);
+            }
+
+            @Override
+            public Future<Integer> read(final ByteBuffer dst) {
+                return readAsync(dst);
+            }
+
+            @Override
+            public <A> void write(final ByteBuffer src, final A attachment,
+                                  final CompletionHandler<Integer, ? super A> handler) {
+                complete(writeAsync(src), attachment, handler);
+            }
+
+            @Override
+            public Future<Integer> write(final ByteBuffer src) {
+                return writeAsync(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return Stream.this.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                Stream.this.close();
+            }
+        };
+    }
+
+    private static <A> void complete(final CompletableFuture<Integer> future, final A attachment,
+                                     final CompletionHandler<Integer, ? super A> handler) {
+        future.whenComplete((n, e) -> {
+                if (e == null) {
+                    handler.completed(n, attachment);
+                } else {
+                    handler.failed(e, attachment);
+                }
+            });
+    }
+
+    private void onAsyncEvent(final int events) {
+        List<PendingIO> done;
+        synchronized (asyncLock) {
+            done = tryPending();
+        }
+        PendingIO.completeAll(done);
+    }
+
+    /**
+     * Attempts the pending operations and adjusts the monitored events.
+     * Must be called with asyncLock held.
+     *
+     * @return the operations finished, to be completed once the lock has
+     *         been released
+     */
+    private List<PendingIO> tryPending() {
+        List<PendingIO> done = new ArrayList<>(2);
+        if (pendingRead != null) {
+            PendingIO io = pendingRead;
+            try {
+                int n = read(io.buffer);
+                if (n != 0 || !io.buffer.hasRemaining()) {
+                    pendingRead = null;
+                    io.result = n;
+                    done.add(io);
+                }
+            } catch (IOException | RuntimeException e) {
+                pendingRead = null;
+                io.failure = e;
+                done.add(io);
+            }
+        }
+        if (pendingWrite != null) {
+            PendingIO io = pendingWrite;
+            try {
+                int n = write(io.buffer);
+                if (n != 0 || !io.buffer.hasRemaining()) {
+                    pendingWrite = null;
+                    io.result = n;
+                    done.add(io);
+                }
+            } catch (IOException | RuntimeException e) {
+                pendingWrite = null;
+                io.failure = e;
+                done.add(io);
+            }
+        }
+        try {
+            watch();
+        } catch (LibvirtException e) {
+            for (PendingIO io : new PendingIO[] {pendingRead, pendingWrite}) {
+                if (io != null) {
+                    io.failure = e;
+                    done.add(io);
+                }
+            }
+            pendingRead = null;
+            pendingWrite = null;
+        }
+        return done;
+    }
+
+    /**
+     * Registers for the events needed by the pending operations.
+     */
+    private void watch() throws LibvirtException {
+        int events = 0;
+        if (pendingRead != null) {
+            events |= EventType.READABLE | EventType.ERROR | EventType.HANGUP;
+        }
+        if (pendingWrite != null) {
+            events |= EventType.WRITABLE | EventType.ERROR | EventType.HANGUP;
+        }
+        if (events == watchedEvents) {
+            return;
+        }
+        if (eventCallback == null) {
+            addCallback(events, asyncCallback);
+        } else {
+            updateCallback(events);
+        }
+        watchedEvents = events;
+    }
+
+    private void failPending(final Throwable cause) {
+        PendingIO read;
+        PendingIO write;
+        synchronized (asyncLock) {
+            read = pendingRead;
+            write = pendingWrite;
+            pendingRead = null;
+            pendingWrite = null;
+        }
+        if (read != null) {
+            read.future.completeExceptionally(cause);
+        }
+        if (write != null) {
+            write.future.completeExceptionally(cause);
+        }
+    }
 }
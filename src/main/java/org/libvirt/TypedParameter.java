@@ -130,6 +130,19 @@ public abstract class TypedParameter {
     }
 
     public static TypedParameter[] fromPointer(Pointer ptr, int n) {
+        if (n == 0) {
+            return EMPTY;
+        }
+        TypedParameter[] stats = copyFromPointer(ptr, n);
+        Libvirt.INSTANCE.virTypedParamsFree(ptr, n);
+        return stats;
+    }
+
+    /**
+     * Copies {@code n} native typed parameters into Java objects without
+     * releasing the native memory, which remains owned by the caller.
+     */
+    static TypedParameter[] copyFromPointer(Pointer ptr, int n) {
         if (n == 0) {
             return EMPTY;
         }
@@ -140,7 +153,6 @@ public abstract class TypedParameter {
         for (int i = 0; i < n; i++) {
             stats[i] = TypedParameter.create(params[i]);
         }
-        Libvirt.INSTANCE.virTypedParamsFree(ptr, n);
         return stats;
     }
 }
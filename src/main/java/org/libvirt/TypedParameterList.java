@@ -0,0 +1,330 @@
+package org.libvirt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.libvirt.jna.Libvirt;
+import org.libvirt.jna.virTypedParameter;
+
+import com.sun.jna.Pointer;
+
+/**
+ * An immutable list of typed parameters, as passed to event listeners.
+ * <p>
+ * Unlike {@link TypedParameter#fromPointer}, decoding does not create an
+ * object per parameter: values are copied into primitive arrays and field
+ * names are interned per event registration, so that an event allocates a
+ * fixed number of objects regardless of the number of parameters, except
+ * for string valued parameters.
+ * <p>
+ * Integer, unsigned, long, unsigned long and boolean values are read with
+ * {@link #getLong}, doubles with {@link #getDouble}. Unsigned values are not
+ * sign extended for {@code uint}; {@code ulong} values use the full 64 bits.
+ */
+public final class TypedParameterList {
+    private static final int FIELD_LENGTH = Libvirt.VIR_TYPED_PARAM_FIELD_LENGTH;
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final String[] fields;
+    private final int[] types;
+    // doubles are stored as their raw bits
+    private final long[] values;
+    private final String[] strings;
+
+    private TypedParameterList(final String[] fields, final int[] types, final long[] values,
+                               final String[] strings) {
+        this.fields = fields;
+        this.types = types;
+        this.values = values;
+        this.strings = strings;
+    }
+
+    /**
+     * Copies a native parameter array. The array is not freed.
+     *
+     * @param names
+     *            the field names known so far, owned by the caller
+     */
+    static TypedParameterList decode(final Pointer params, final int nparams, final FieldNames names) {
+        int n = params == null ? 0 : nparams;
+        String[] fields = new String[n];
+        int[] types = new int[n];
+        long[] values = new long[n];
+        String[] strings = NO_STRINGS;
+        for (int i = 0; i < n; i++) {
+            long offset = (long) i * virTypedParameter.SIZE;
+            long value = offset + virTypedParameter.VALUE_OFFSET;
+            fields[i] = names.read(params, offset + virTypedParameter.FIELD_OFFSET);
+            types[i] = params.getInt(offset + virTypedParameter.TYPE_OFFSET);
+            switch (types[i]) {
+                case virTypedParameter.TYPED_PARAM_INT:
+                    values[i] = params.getInt(value);
+                    break;
+                case virTypedParameter.TYPED_PARAM_UINT:
+                    values[i] = params.getInt(value) & 0xffffffffL;
+                    break;
+                case virTypedParameter.TYPED_PARAM_LONG:
+                case virTypedParameter.TYPED_PARAM_ULONG:
+                    values[i] = params.getLong(value);
+                    break;
+                case virTypedParameter.TYPED_PARAM_DOUBLE:
+                    values[i] = Double.doubleToRawLongBits(params.getDouble(value));
+                    break;
+                case virTypedParameter.TYPED_PARAM_BOOLEAN:
+                    values[i] = params.getByte(value) != 0 ? 1 : 0;
+                    break;
+                case virTypedParameter.TYPED_PARAM_STRING:
+                    if (strings == NO_STRINGS) {
+                        strings = new String[n];
+                    }
+                    Pointer s = params.getPointer(value);
+                    strings[i] = s == null ? null : s.getString(0, StandardCharsets.UTF_8.name());
+                    break;
+                default:
+                    // Unknown type: nothing to do.
+            }
+        }
+        return new TypedParameterList(fields, types, values, strings);
+    }
+
+    /**
+     * Interns field names by their native bytes, so that a name seen
+     * before is not decoded again.
+     * <p>
+     * Instances are not thread-safe; each event registration has its own.
+     */
+    static final class FieldNames {
+        private final byte[] scratch = new byte[FIELD_LENGTH];
+        private int[] slots = new int[32];
+        private int[] hashes = new int[16];
+        private byte[][] bytes = new byte[16][];
+        private String[] names = new String[16];
+        private int count;
+
+        String read(final Pointer p, final long offset) {
+            p.read(offset, scratch, 0, FIELD_LENGTH);
+            int length = 0;
+            int hash = 0x811c9dc5;
+            while (length < FIELD_LENGTH && scratch[length] != 0) {
+                hash = (hash ^ scratch[length]) * 0x01000193;
+                length++;
+            }
+            int mask = slots.length - 1;
+            for (int i = hash & mask;; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) {
+                    return add(length, hash);
+                }
+                int n = slot - 1;
+                if (hashes[n] == hash && equals(bytes[n], length)) {
+                    return names[n];
+                }
+            }
+        }
+
+        private boolean equals(final byte[] known, final int length) {
+            if (known.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (known[i] != scratch[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String add(final int length, final int hash) {
+            if (count == names.length) {
+                int capacity = count * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                bytes = Arrays.copyOf(bytes, capacity);
+                names = Arrays.copyOf(names, capacity);
+                slots = new int[capacity * 2];
+                for (int n = 0; n < count; n++) {
+                    insert(n);
+                }
+            }
+            int n = count++;
+            bytes[n] = Arrays.copyOf(scratch, length);
+            hashes[n] = hash;
+            names[n] = new String(bytes[n], StandardCharsets.UTF_8);
+            insert(n);
+            return names[n];
+        }
+
+        private void insert(final int n) {
+            int mask = slots.length - 1;
+            int i = hashes[n] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = n + 1;
+        }
+    }
+
+    /**
+     * @return the number of parameters
+     */
+    public int size() {
+        return fields.length;
+    }
+
+    /**
+     * @return the name of parameter {@code i}
+     */
+    public String getField(final int i) {
+        return fields[i];
+    }
+
+    /**
+     * @return the type of parameter {@code i}, as returned by
+     *         {@link TypedParameter#getType}
+     */
+    public int getType(final int i) {
+        return types[i];
+    }
+
+    /**
+     * @return the index of the parameter with the given name, or -1
+     */
+    public int indexOf(final String field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether there is a parameter with the given name
+     */
+    public boolean contains(final String field) {
+        return indexOf(field) >= 0;
+    }
+
+    /**
+     * @return the value of parameter {@code i} as a long, 0 for strings
+     */
+    public long getLong(final int i) {
+        if (types[i] == virTypedParameter.TYPED_PARAM_DOUBLE) {
+            return (long) Double.longBitsToDouble(values[i]);
+        }
+        return values[i];
+    }
+
+    /**
+     * @return the value of parameter {@code i} as a double, 0 for strings
+     */
+    public double getDouble(final int i) {
+        switch (types[i]) {
+            case virTypedParameter.TYPED_PARAM_DOUBLE:
+                return Double.longBitsToDouble(values[i]);
+            case virTypedParameter.TYPED_PARAM_ULONG:
+                long v = values[i];
+                return v >= 0 ? v : (v >>> 1) * 2.0 + (v & 1);
+            default:
+                return values[i];
+        }
+    }
+
+    /**
+     * @return the value of parameter {@code i} as a boolean
+     */
+    public boolean getBoolean(final int i) {
+        return values[i] != 0;
+    }
+
+    /**
+     * @return the value of parameter {@code i} if it is a string,
+     *         {@code null} otherwise
+     */
+    public String getString(final int i) {
+        return strings == NO_STRINGS ? null : strings[i];
+    }
+
+    /**
+     * @return the value of the named parameter as a long, or
+     *         {@code defaultValue} if there is no such parameter
+     */
+    public long getLong(final String field, final long defaultValue) {
+        int i = indexOf(field);
+        return i < 0 ? defaultValue : getLong(i);
+    }
+
+    /**
+     * @return the value of the named parameter as a double, or
+     *         {@code defaultValue} if there is no such parameter
+     */
+    public double getDouble(final String field, final double defaultValue) {
+        int i = indexOf(field);
+        return i < 0 ? defaultValue : getDouble(i);
+    }
+
+    /**
+     * @return the value of the named string parameter, or {@code null}
+     */
+    public String getString(final String field) {
+        int i = indexOf(field);
+        return i < 0 ? null : getString(i);
+    }
+
+    /**
+     * Converts this list into TypedParameter objects.
+     */
+    public TypedParameter[] toArray() {
+        TypedParameter[] result = new TypedParameter[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            TypedParameter p;
+            switch (types[i]) {
+                case virTypedParameter.TYPED_PARAM_INT:
+                    p = new TypedIntParameter((int) values[i]);
+                    break;
+                case virTypedParameter.TYPED_PARAM_UINT:
+                    p = new TypedUintParameter((int) values[i]);
+                    break;
+                case virTypedParameter.TYPED_PARAM_LONG:
+                    p = new TypedLongParameter(values[i]);
+                    break;
+                case virTypedParameter.TYPED_PARAM_ULONG:
+                    p = new TypedUlongParameter(values[i]);
+                    break;
+                case virTypedParameter.TYPED_PARAM_DOUBLE:
+                    p = new TypedDoubleParameter(Double.longBitsToDouble(values[i]));
+                    break;
+                case virTypedParameter.TYPED_PARAM_BOOLEAN:
+                    p = new TypedBooleanParameter(values[i] != 0);
+                    break;
+                default:
+                    p = new TypedStringParameter(getString(i));
+            }
+            p.field = fields[i];
+            result[i] = p;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(fields[i]).append('=');
+            if (types[i] == virTypedParameter.TYPED_PARAM_STRING) {
+                sb.append(getString(i));
+            } else if (types[i] == virTypedParameter.TYPED_PARAM_DOUBLE) {
+                sb.append(getDouble(i));
+            } else if (types[i] == virTypedParameter.TYPED_PARAM_ULONG) {
+                sb.append(Long.toUnsignedString(values[i]));
+            } else if (types[i] == virTypedParameter.TYPED_PARAM_BOOLEAN) {
+                sb.append(getBoolean(i));
+            } else {
+                sb.append(values[i]);
+            }
+        }
+        return sb.append(']').toString();
+    }
+}
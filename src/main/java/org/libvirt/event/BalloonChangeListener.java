@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving balloon change events on a domain.
+ */
+public interface BalloonChangeListener extends EventListener {
+    /**
+     * This method gets called when the memory balloon of a domain has
+     * changed size.
+     *
+     * @param domain  the domain whose balloon changed
+     * @param actual  the new current memory of the domain, in KiB
+     */
+    void onBalloonChange(Domain domain, long actual);
+}
@@ -0,0 +1,21 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving block threshold events on a domain.
+ */
+public interface BlockThresholdListener extends EventListener {
+    /**
+     * This method gets called when the write threshold set on a block
+     * device of a domain has been exceeded.
+     *
+     * @param domain     the domain owning the device
+     * @param dev        the name of the device, e.g. "vda" or "vda[3]"
+     * @param path       the path of the source of the device, may be
+     *                   {@code null}
+     * @param threshold  the threshold that was exceeded, in bytes
+     * @param excess     the number of bytes written beyond the threshold
+     */
+    void onBlockThreshold(Domain domain, String dev, String path, long threshold, long excess);
+}
@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving device added events on a domain.
+ */
+public interface DeviceAddedListener extends EventListener {
+    /**
+     * This method gets called when a device has been attached to a
+     * running domain.
+     *
+     * @param domain    the domain the device was added to
+     * @param devAlias  the alias of the device
+     */
+    void onDeviceAdded(Domain domain, String devAlias);
+}
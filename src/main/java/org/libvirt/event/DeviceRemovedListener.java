@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving device removed events on a domain.
+ */
+public interface DeviceRemovedListener extends EventListener {
+    /**
+     * This method gets called when the guest has released a device
+     * detached from a running domain.
+     *
+     * @param domain    the domain the device was removed from
+     * @param devAlias  the alias of the device
+     */
+    void onDeviceRemoved(Domain domain, String devAlias);
+}
@@ -0,0 +1,367 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+import org.libvirt.TypedParameterList;
+
+/**
+ * An immutable domain event, as published by
+ * {@link org.libvirt.EventPublisher}.
+ * <p>
+ * There is a subclass per event type, carrying the arguments the
+ * matching listener method receives.
+ */
+public abstract class DomainEventRecord {
+    /**
+     * The event types, each matching a listener interface.
+     */
+    public enum Type {
+        /** see {@link LifecycleListener} */
+        LIFECYCLE,
+
+        /** see {@link RebootListener} */
+        REBOOT,
+
+        /** see {@link IOErrorListener} */
+        IO_ERROR,
+
+        /** see {@link BlockJobListener} */
+        BLOCK_JOB,
+
+        /** see {@link PMWakeupListener} */
+        PM_WAKEUP,
+
+        /** see {@link PMSuspendListener} */
+        PM_SUSPEND,
+
+        /** see {@link AgentLifecycleListener} */
+        AGENT_LIFECYCLE,
+
+        /** see {@link TunableListener} */
+        TUNABLE,
+
+        /** see {@link JobCompletedListener} */
+        JOB_COMPLETED,
+
+        /** see {@link MigrationIterationListener} */
+        MIGRATION_ITERATION,
+
+        /** see {@link BlockThresholdListener} */
+        BLOCK_THRESHOLD,
+
+        /** see {@link MetadataChangeListener} */
+        METADATA_CHANGE,
+
+        /** see {@link DeviceAddedListener} */
+        DEVICE_ADDED,
+
+        /** see {@link DeviceRemovedListener} */
+        DEVICE_REMOVED,
+
+        /** see {@link BalloonChangeListener} */
+        BALLOON_CHANGE,
+
+        /** see {@link MemoryFailureListener} */
+        MEMORY_FAILURE
+    }
+
+    private final Type type;
+    private final Domain domain;
+
+    DomainEventRecord(final Type type, final Domain domain) {
+        this.type = type;
+        this.domain = domain;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the domain the event occurred on
+     */
+    public Domain getDomain() {
+        return domain;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + domain + "]";
+    }
+
+    public static final class Lifecycle extends DomainEventRecord {
+        private final DomainEvent event;
+
+        public Lifecycle(final Domain domain, final DomainEvent event) {
+            super(Type.LIFECYCLE, domain);
+            this.event = event;
+        }
+
+        public DomainEvent getEvent() {
+            return event;
+        }
+    }
+
+    public static final class Reboot extends DomainEventRecord {
+        public Reboot(final Domain domain) {
+            super(Type.REBOOT, domain);
+        }
+    }
+
+    public static final class IOError extends DomainEventRecord {
+        private final String srcPath;
+        private final String devAlias;
+        private final IOErrorAction action;
+
+        public IOError(final Domain domain, final String srcPath, final String devAlias,
+                       final IOErrorAction action) {
+            super(Type.IO_ERROR, domain);
+            this.srcPath = srcPath;
+            this.devAlias = devAlias;
+            this.action = action;
+        }
+
+        public String getSrcPath() {
+            return srcPath;
+        }
+
+        public String getDevAlias() {
+            return devAlias;
+        }
+
+        public IOErrorAction getAction() {
+            return action;
+        }
+    }
+
+    public static final class BlockJob extends DomainEventRecord {
+        private final String diskPath;
+        private final BlockJobType jobType;
+        private final BlockJobStatus status;
+
+        public BlockJob(final Domain domain, final String diskPath, final BlockJobType jobType,
+                        final BlockJobStatus status) {
+            super(Type.BLOCK_JOB, domain);
+            this.diskPath = diskPath;
+            this.jobType = jobType;
+            this.status = status;
+        }
+
+        public String getDiskPath() {
+            return diskPath;
+        }
+
+        public BlockJobType getJobType() {
+            return jobType;
+        }
+
+        public BlockJobStatus getStatus() {
+            return status;
+        }
+    }
+
+    public static final class PMWakeup extends DomainEventRecord {
+        private final PMWakeupReason reason;
+
+        public PMWakeup(final Domain domain, final PMWakeupReason reason) {
+            super(Type.PM_WAKEUP, domain);
+            this.reason = reason;
+        }
+
+        public PMWakeupReason getReason() {
+            return reason;
+        }
+    }
+
+    public static final class PMSuspend extends DomainEventRecord {
+        private final PMSuspendReason reason;
+
+        public PMSuspend(final Domain domain, final PMSuspendReason reason) {
+            super(Type.PM_SUSPEND, domain);
+            this.reason = reason;
+        }
+
+        public PMSuspendReason getReason() {
+            return reason;
+        }
+    }
+
+    public static final class AgentLifecycle extends DomainEventRecord {
+        private final int state;
+        private final int reason;
+
+        public AgentLifecycle(final Domain domain, final int state, final int reason) {
+            super(Type.AGENT_LIFECYCLE, domain);
+            this.state = state;
+            this.reason = reason;
+        }
+
+        public int getState() {
+            return state;
+        }
+
+        public int getReason() {
+            return reason;
+        }
+    }
+
+    public static final class Tunable extends DomainEventRecord {
+        private final TypedParameterList params;
+
+        public Tunable(final Domain domain, final TypedParameterList params) {
+            super(Type.TUNABLE, domain);
+            this.params = params;
+        }
+
+        public TypedParameterList getParams() {
+            return params;
+        }
+    }
+
+    public static final class JobCompleted extends DomainEventRecord {
+        private final TypedParameterList stats;
+
+        public JobCompleted(final Domain domain, final TypedParameterList stats) {
+            super(Type.JOB_COMPLETED, domain);
+            this.stats = stats;
+        }
+
+        public TypedParameterList getStats() {
+            return stats;
+        }
+    }
+
+    public static final class MigrationIteration extends DomainEventRecord {
+        private final int iteration;
+
+        public MigrationIteration(final Domain domain, final int iteration) {
+            super(Type.MIGRATION_ITERATION, domain);
+            this.iteration = iteration;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+    }
+
+    public static final class BlockThreshold extends DomainEventRecord {
+        private final String dev;
+        private final String path;
+        private final long threshold;
+        private final long excess;
+
+        public BlockThreshold(final Domain domain, final String dev, final String path,
+                              final long threshold, final long excess) {
+            super(Type.BLOCK_THRESHOLD, domain);
+            this.dev = dev;
+            this.path = path;
+            this.threshold = threshold;
+            this.excess = excess;
+        }
+
+        public String getDev() {
+            return dev;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getThreshold() {
+            return threshold;
+        }
+
+        public long getExcess() {
+            return excess;
+        }
+    }
+
+    public static final class MetadataChange extends DomainEventRecord {
+        private final int metadataType;
+        private final String nsuri;
+
+        public MetadataChange(final Domain domain, final int metadataType, final String nsuri) {
+            super(Type.METADATA_CHANGE, domain);
+            this.metadataType = metadataType;
+            this.nsuri = nsuri;
+        }
+
+        /**
+         * @return the kind of metadata, see {@link Domain.MetadataType}
+         */
+        public int getMetadataType() {
+            return metadataType;
+        }
+
+        public String getNsuri() {
+            return nsuri;
+        }
+    }
+
+    public static final class DeviceAdded extends DomainEventRecord {
+        private final String devAlias;
+
+        public DeviceAdded(final Domain domain, final String devAlias) {
+            super(Type.DEVICE_ADDED, domain);
+            this.devAlias = devAlias;
+        }
+
+        public String getDevAlias() {
+            return devAlias;
+        }
+    }
+
+    public static final class DeviceRemoved extends DomainEventRecord {
+        private final String devAlias;
+
+        public DeviceRemoved(final Domain domain, final String devAlias) {
+            super(Type.DEVICE_REMOVED, domain);
+            this.devAlias = devAlias;
+        }
+
+        public String getDevAlias() {
+            return devAlias;
+        }
+    }
+
+    public static final class BalloonChange extends DomainEventRecord {
+        private final long actual;
+
+        public BalloonChange(final Domain domain, final long actual) {
+            super(Type.BALLOON_CHANGE, domain);
+            this.actual = actual;
+        }
+
+        /**
+         * @return the new current memory of the domain, in KiB
+         */
+        public long getActual() {
+            return actual;
+        }
+    }
+
+    public static final class MemoryFailure extends DomainEventRecord {
+        private final MemoryFailureRecipient recipient;
+        private final MemoryFailureAction action;
+        private final int flags;
+
+        public MemoryFailure(final Domain domain, final MemoryFailureRecipient recipient,
+                             final MemoryFailureAction action, final int flags) {
+            super(Type.MEMORY_FAILURE, domain);
+            this.recipient = recipient;
+            this.action = action;
+            this.flags = flags;
+        }
+
+        public MemoryFailureRecipient getRecipient() {
+            return recipient;
+        }
+
+        public MemoryFailureAction getAction() {
+            return action;
+        }
+
+        public int getFlags() {
+            return flags;
+        }
+    }
+}
@@ -2,6 +2,16 @@ package org.libvirt.event;
 
 /**
  * Base interface implemented by every event listener.
+ * <p>
+ * Unless the domain identity map of the connection is enabled, the
+ * {@link org.libvirt.Domain} passed to a domain event listener is the
+ * same object for all events of that domain, until the domain stops or
+ * is undefined, and it is shared by all listeners of the connection.
+ * Listeners may keep it; calling {@link org.libvirt.Domain#free free} on
+ * it has no effect, its native handle is released once it is no longer
+ * referenced.
+ *
+ * @see org.libvirt.Connect#setDomainIdentityMapEnabled
  */
 public interface EventListener {
 }
@@ -0,0 +1,78 @@
+package org.libvirt.event;
+
+/**
+ * The interfaces of a reactive stream with demand-driven flow control.
+ * <p>
+ * These mirror {@code java.util.concurrent.Flow} and the Reactive Streams
+ * specification, which they follow, method for method. They are defined
+ * here because the bindings still run on Java 8; adapting a publisher to
+ * {@code java.util.concurrent.Flow} or to another Reactive Streams library
+ * only requires forwarding each call, as
+ * {@link org.libvirt.EventPublisher#toFlowPublisher} does.
+ */
+public final class Flow {
+    private Flow() {
+    }
+
+    /**
+     * A producer of items received by subscribers, in the amount they
+     * request.
+     *
+     * @param <T> the type of the items
+     */
+    public interface Publisher<T> {
+        /**
+         * Adds the given subscriber. {@link Subscriber#onSubscribe} is
+         * called before any other method of the subscriber.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items. The methods of a subscriber are never called
+     * concurrently.
+     *
+     * @param <T> the type of the items
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called once, before any other method, with the subscription used
+         * to request items.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item, never more often than requested.
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the publisher failed; no other method is called
+         * afterwards.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when no more items will be published; no other method is
+         * called afterwards.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one of its subscribers.
+     */
+    public interface Subscription {
+        /**
+         * Adds {@code n} to the number of items the subscriber is ready to
+         * receive. A non-positive {@code n} fails the subscription.
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of items, possibly after some already under
+         * way.
+         */
+        void cancel();
+    }
+}
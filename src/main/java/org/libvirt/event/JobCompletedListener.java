@@ -0,0 +1,19 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+import org.libvirt.TypedParameterList;
+
+/**
+ * Interface for receiving job completed events on a domain.
+ */
+public interface JobCompletedListener extends EventListener {
+    /**
+     * This method gets called when a job, e.g. a migration, of a domain
+     * has completed.
+     *
+     * @param domain  the domain the job ran on
+     * @param stats   the statistics of the completed job, as returned by
+     *                {@link Domain#getJobStats} with the COMPLETED flag
+     */
+    void onJobCompleted(Domain domain, TypedParameterList stats);
+}
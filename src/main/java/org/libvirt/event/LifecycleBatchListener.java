@@ -0,0 +1,19 @@
+package org.libvirt.event;
+
+import java.util.List;
+
+/**
+ * Interface for receiving domain lifecycle events in batches.
+ *
+ * @see org.libvirt.LifecycleCoalescer
+ */
+public interface LifecycleBatchListener extends EventListener {
+    /**
+     * Called with the events of a batch window, at most one per domain, in
+     * the order of their latest occurrence.
+     *
+     * @param events
+     *            the events, never empty
+     */
+    void onLifecycleBatch(List<DomainEventRecord.Lifecycle> events);
+}
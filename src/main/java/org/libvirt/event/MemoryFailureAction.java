@@ -0,0 +1,41 @@
+package org.libvirt.event;
+
+public enum MemoryFailureAction {
+    /**
+     * The failure was ignored.
+     */
+    IGNORE(0),
+
+    /**
+     * The failure was injected into the guest.
+     */
+    INJECT(1),
+
+    /**
+     * The failure is fatal, the hypervisor will exit.
+     */
+    FATAL(2),
+
+    /**
+     * The guest will be reset.
+     */
+    RESET(3),
+
+    /**
+     * An unknown action was taken.
+     */
+    UNKNOWN(4);
+
+    private final int value;
+
+    MemoryFailureAction(final int val) {
+        this.value = val;
+    }
+
+    private static final MemoryFailureAction[] VALS = MemoryFailureAction.values();
+
+    static {
+        // must be the last constant
+        assert UNKNOWN.value == VALS.length - 1;
+    }
+}
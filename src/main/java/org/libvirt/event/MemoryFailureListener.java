@@ -0,0 +1,27 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving memory failure events on a domain.
+ */
+public interface MemoryFailureListener extends EventListener {
+    /** the failure has to be handled before execution continues */
+    int ACTION_REQUIRED = 1;
+
+    /** the failure occurred while handling a previous failure */
+    int RECURSIVE = 2;
+
+    /**
+     * This method gets called when a hardware memory error affecting a
+     * domain has been detected.
+     *
+     * @param domain     the domain affected
+     * @param recipient  whom the failure was reported to
+     * @param action     the action taken
+     * @param flags      a bitwise-OR of {@link #ACTION_REQUIRED} and
+     *                   {@link #RECURSIVE}
+     */
+    void onMemoryFailure(Domain domain, MemoryFailureRecipient recipient,
+                         MemoryFailureAction action, int flags);
+}
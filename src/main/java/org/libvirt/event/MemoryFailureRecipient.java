@@ -0,0 +1,31 @@
+package org.libvirt.event;
+
+public enum MemoryFailureRecipient {
+    /**
+     * The memory failure was handled by the hypervisor.
+     */
+    HYPERVISOR(0),
+
+    /**
+     * The memory failure was passed on to the guest.
+     */
+    GUEST(1),
+
+    /**
+     * An unknown recipient.
+     */
+    UNKNOWN(2);
+
+    private final int value;
+
+    MemoryFailureRecipient(final int val) {
+        this.value = val;
+    }
+
+    private static final MemoryFailureRecipient[] VALS = MemoryFailureRecipient.values();
+
+    static {
+        // must be the last constant
+        assert UNKNOWN.value == VALS.length - 1;
+    }
+}
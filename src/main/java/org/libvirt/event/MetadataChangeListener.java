@@ -0,0 +1,19 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving metadata change events on a domain.
+ */
+public interface MetadataChangeListener extends EventListener {
+    /**
+     * This method gets called when the metadata of a domain has changed.
+     *
+     * @param domain  the domain whose metadata changed
+     * @param type    the kind of metadata, see {@link Domain.MetadataType}
+     * @param nsuri   the XML namespace of the element if {@code type} is
+     *                {@link Domain.MetadataType#ELEMENT}, {@code null}
+     *                otherwise
+     */
+    void onMetadataChange(Domain domain, int type, String nsuri);
+}
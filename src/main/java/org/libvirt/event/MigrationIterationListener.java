@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+
+/**
+ * Interface for receiving migration iteration events on a domain.
+ */
+public interface MigrationIterationListener extends EventListener {
+    /**
+     * This method gets called when a new iteration over the memory of
+     * a domain being migrated starts.
+     *
+     * @param domain     the domain being migrated
+     * @param iteration  the number of the iteration, starting at 1
+     */
+    void onMigrationIteration(Domain domain, int iteration);
+}
@@ -0,0 +1,22 @@
+package org.libvirt.event;
+
+/**
+ * Enum constants representing the type of event occurred on
+ * a network
+ */
+public enum NetworkEventType {
+    /** A network was defined */
+    DEFINED,
+
+    /** A network was undefined */
+    UNDEFINED,
+
+    /** A network was started */
+    STARTED,
+
+    /** A network was stopped */
+    STOPPED,
+
+    /** An unknown event */
+    UNKNOWN
+}
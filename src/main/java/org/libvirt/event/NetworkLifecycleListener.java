@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Network;
+
+/**
+ * Interface for receiving lifecycle events occurring on a network.
+ */
+public interface NetworkLifecycleListener extends EventListener {
+    /**
+     * This method gets called when a network has been defined,
+     * undefined, started or stopped.
+     *
+     * @param network  the network on which the event occurred
+     * @param event    the type of event
+     */
+    void onNetworkLifecycleChange(Network network, NetworkEventType event);
+}
@@ -0,0 +1,22 @@
+package org.libvirt.event;
+
+/**
+ * Enum constants representing the type of event occurred on
+ * a node device
+ */
+public enum NodeDeviceEventType {
+    /** A node device was created */
+    CREATED,
+
+    /** A node device was deleted */
+    DELETED,
+
+    /** A node device was defined */
+    DEFINED,
+
+    /** A node device was undefined */
+    UNDEFINED,
+
+    /** An unknown event */
+    UNKNOWN
+}
@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Device;
+
+/**
+ * Interface for receiving lifecycle events occurring on a node device.
+ */
+public interface NodeDeviceLifecycleListener extends EventListener {
+    /**
+     * This method gets called when a node device has been created,
+     * deleted, defined or undefined.
+     *
+     * @param device  the node device on which the event occurred
+     * @param event   the type of event
+     */
+    void onNodeDeviceLifecycleChange(Device device, NodeDeviceEventType event);
+}
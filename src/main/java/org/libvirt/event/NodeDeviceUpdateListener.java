@@ -0,0 +1,16 @@
+package org.libvirt.event;
+
+import org.libvirt.Device;
+
+/**
+ * Interface for receiving update events on a node device.
+ */
+public interface NodeDeviceUpdateListener extends EventListener {
+    /**
+     * This method gets called when the configuration of a node device
+     * has changed.
+     *
+     * @param device  the node device that was updated
+     */
+    void onNodeDeviceUpdate(Device device);
+}
@@ -0,0 +1,16 @@
+package org.libvirt.event;
+
+/**
+ * Enum constants representing the type of event occurred on
+ * a secret
+ */
+public enum SecretEventType {
+    /** A secret was defined */
+    DEFINED,
+
+    /** A secret was undefined */
+    UNDEFINED,
+
+    /** An unknown event */
+    UNKNOWN
+}
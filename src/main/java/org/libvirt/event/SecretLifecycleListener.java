@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.Secret;
+
+/**
+ * Interface for receiving lifecycle events occurring on a secret.
+ */
+public interface SecretLifecycleListener extends EventListener {
+    /**
+     * This method gets called when a secret has been defined or
+     * undefined.
+     *
+     * @param secret  the secret on which the event occurred
+     * @param event   the type of event
+     */
+    void onSecretLifecycleChange(Secret secret, SecretEventType event);
+}
@@ -0,0 +1,15 @@
+package org.libvirt.event;
+
+import org.libvirt.Secret;
+
+/**
+ * Interface for receiving value changed events on a secret.
+ */
+public interface SecretValueChangedListener extends EventListener {
+    /**
+     * This method gets called when the value of a secret has been set.
+     *
+     * @param secret  the secret whose value changed
+     */
+    void onSecretValueChanged(Secret secret);
+}
@@ -0,0 +1,28 @@
+package org.libvirt.event;
+
+/**
+ * Enum constants representing the type of event occurred on
+ * a storage pool
+ */
+public enum StoragePoolEventType {
+    /** A storage pool was defined */
+    DEFINED,
+
+    /** A storage pool was undefined */
+    UNDEFINED,
+
+    /** A storage pool was started */
+    STARTED,
+
+    /** A storage pool was stopped */
+    STOPPED,
+
+    /** A storage pool was built */
+    CREATED,
+
+    /** A storage pool was deleted */
+    DELETED,
+
+    /** An unknown event */
+    UNKNOWN
+}
@@ -0,0 +1,17 @@
+package org.libvirt.event;
+
+import org.libvirt.StoragePool;
+
+/**
+ * Interface for receiving lifecycle events occurring on a storage pool.
+ */
+public interface StoragePoolLifecycleListener extends EventListener {
+    /**
+     * This method gets called when a storage pool has been defined,
+     * undefined, started, stopped, built or deleted.
+     *
+     * @param pool   the storage pool on which the event occurred
+     * @param event  the type of event
+     */
+    void onStoragePoolLifecycleChange(StoragePool pool, StoragePoolEventType event);
+}
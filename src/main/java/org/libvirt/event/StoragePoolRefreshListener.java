@@ -0,0 +1,16 @@
+package org.libvirt.event;
+
+import org.libvirt.StoragePool;
+
+/**
+ * Interface for receiving refresh events on a storage pool.
+ */
+public interface StoragePoolRefreshListener extends EventListener {
+    /**
+     * This method gets called when a storage pool has been refreshed,
+     * so that its list of volumes may have changed.
+     *
+     * @param pool  the storage pool that was refreshed
+     */
+    void onStoragePoolRefresh(StoragePool pool);
+}
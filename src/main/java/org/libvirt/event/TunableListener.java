@@ -0,0 +1,18 @@
+package org.libvirt.event;
+
+import org.libvirt.Domain;
+import org.libvirt.TypedParameterList;
+
+/**
+ * Interface for receiving tunable change events on a domain, e.g. a
+ * changed CPU pinning or block I/O tuning.
+ */
+public interface TunableListener extends EventListener {
+    /**
+     * This method gets called when tunables of a domain have changed.
+     *
+     * @param domain  the domain whose tunables changed
+     * @param params  the changed tunables, e.g. "cputune.vcpupin0"
+     */
+    void onTunableChange(Domain domain, TypedParameterList params);
+}
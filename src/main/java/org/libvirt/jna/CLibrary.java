@@ -0,0 +1,66 @@
+package org.libvirt.jna;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+
+/**
+ * The few C library functions needed next to libvirt, exposed via JNA.
+ */
+public interface CLibrary extends Library {
+    CLibrary INSTANCE =
+            (CLibrary) Native.loadLibrary(Platform.C_LIBRARY_NAME, CLibrary.class);
+
+    // Constants we need
+    int O_RDONLY = 0;
+    int ENXIO = 6;
+    /**
+     * lseek whence for the next data region, Linux and FreeBSD only
+     */
+    int SEEK_DATA = 3;
+    /**
+     * lseek whence for the next hole, Linux and FreeBSD only
+     */
+    int SEEK_HOLE = 4;
+
+    /**
+     * poll events, the values are the same on Linux, the BSDs and macOS
+     */
+    short POLLIN = 0x1;
+    short POLLOUT = 0x4;
+    short POLLERR = 0x8;
+    short POLLHUP = 0x10;
+    short POLLNVAL = 0x20;
+    int EINTR = 4;
+
+    /**
+     * fcntl commands and flags, the values are the same on Linux, the BSDs
+     * and macOS, except for O_NONBLOCK
+     */
+    int F_GETFD = 1;
+    int F_SETFD = 2;
+    int F_GETFL = 3;
+    int F_SETFL = 4;
+    int FD_CLOEXEC = 1;
+    int O_NONBLOCK = !Platform.isLinux() ? 0x4
+        : Platform.isMIPS() ? 0x80 : Platform.isSPARC() ? 0x4000 : 0x800;
+
+    int open(String path, int flags);
+    int close(int fd);
+    int pipe(int[] fds);
+    int fcntl(int fd, int cmd, Object... args);
+    NativeLong read(int fd, byte[] buf, NativeLong count);
+    NativeLong write(int fd, byte[] buf, NativeLong count);
+    /**
+     * @param fds
+     *            array of {@code struct pollfd}, 8 bytes each: int fd,
+     *            short events, short revents
+     */
+    int poll(Pointer fds, NativeLong nfds, int timeout);
+    /**
+     * Only usable where off_t is 64 bit
+     */
+    long lseek(int fd, long offset, int whence);
+}
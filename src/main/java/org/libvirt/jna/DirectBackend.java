@@ -0,0 +1,93 @@
+package org.libvirt.jna;
+
+import java.nio.ByteBuffer;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * Backend calling the direct mapped {@link LibvirtDirect} bindings.
+ * <p>
+ * Heap buffers cannot be passed to direct mapped functions without
+ * copying, so stream I/O on them uses the interface mapping.
+ */
+public class DirectBackend extends JnaBackend {
+    public DirectBackend(final Libvirt libvirt) {
+        super(libvirt);
+    }
+
+    @Override
+    public String getName() {
+        return "direct";
+    }
+
+    @Override
+    public int virConnectIsAlive(final ConnectionPointer virConnectPtr) {
+        return LibvirtDirect.virConnectIsAlive(virConnectPtr.getPointer());
+    }
+
+    @Override
+    public int virDomainBlockStats(final DomainPointer virDomainPtr, final String path,
+                                   final virDomainBlockStats stats) {
+        return LibvirtDirect.virDomainBlockStats(virDomainPtr.getPointer(), path, stats,
+                                                 new SizeT(stats.size()));
+    }
+
+    @Override
+    public int virDomainGetInfo(final DomainPointer virDomainPtr, final virDomainInfo vInfo) {
+        return LibvirtDirect.virDomainGetInfo(virDomainPtr.getPointer(), vInfo);
+    }
+
+    @Override
+    public int virDomainGetState(final DomainPointer virDomainPtr, final int[] state, final int flags) {
+        return LibvirtDirect.virDomainGetState(virDomainPtr.getPointer(), state, null, flags);
+    }
+
+    @Override
+    public int virDomainInterfaceStats(final DomainPointer virDomainPtr, final String path,
+                                       final virDomainInterfaceStats stats) {
+        return LibvirtDirect.virDomainInterfaceStats(virDomainPtr.getPointer(), path, stats,
+                                                     new SizeT(stats.size()));
+    }
+
+    @Override
+    public int virDomainIsActive(final DomainPointer virDomainPtr) {
+        return LibvirtDirect.virDomainIsActive(virDomainPtr.getPointer());
+    }
+
+    @Override
+    public int virDomainMemoryStats(final DomainPointer virDomainPtr,
+                                    final virDomainMemoryStats[] stats, final int nrStats, final int flags) {
+        if (nrStats == 0) {
+            return super.virDomainMemoryStats(virDomainPtr, stats, nrStats, flags);
+        }
+        // contiguous array, read back only the entries filled in
+        virDomainMemoryStats first = new virDomainMemoryStats();
+        virDomainMemoryStats[] array = (virDomainMemoryStats[]) first.toArray(nrStats);
+        int ret = LibvirtDirect.virDomainMemoryStats(virDomainPtr.getPointer(), first.getPointer(),
+                                                     nrStats, flags);
+        for (int i = 0; i < ret; i++) {
+            array[i].read();
+            stats[i] = array[i];
+        }
+        return ret;
+    }
+
+    @Override
+    public int virStreamRecv(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        if (!data.isDirect()) {
+            return super.virStreamRecv(virStreamPtr, data);
+        }
+        Pointer ptr = Native.getDirectBufferPointer(data).share(data.position());
+        return LibvirtDirect.virStreamRecv(virStreamPtr.getPointer(), ptr, new SizeT(data.remaining()));
+    }
+
+    @Override
+    public int virStreamSend(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        if (!data.isDirect()) {
+            return super.virStreamSend(virStreamPtr, data);
+        }
+        Pointer ptr = Native.getDirectBufferPointer(data).share(data.position());
+        return LibvirtDirect.virStreamSend(virStreamPtr.getPointer(), ptr, new SizeT(data.remaining()));
+    }
+}
@@ -1,9 +1,18 @@
 package org.libvirt.jna;
 
+import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 
 /**
  * Pointer class to provide type safety to the jna interface.
  */
 public class InterfacePointer extends PointerType {
+
+    public InterfacePointer() {
+    }
+
+    public InterfacePointer(Pointer p) {
+        super(p);
+    }
+
 }
@@ -0,0 +1,72 @@
+package org.libvirt.jna;
+
+import java.nio.ByteBuffer;
+
+import com.sun.jna.ptr.IntByReference;
+
+/**
+ * Backend calling the interface mapped {@link Libvirt} bindings.
+ */
+public class JnaBackend extends NativeBackend {
+    private final Libvirt libvirt;
+
+    public JnaBackend(final Libvirt libvirt) {
+        this.libvirt = libvirt;
+    }
+
+    @Override
+    public String getName() {
+        return "jna";
+    }
+
+    @Override
+    public int virConnectIsAlive(final ConnectionPointer virConnectPtr) {
+        return libvirt.virConnectIsAlive(virConnectPtr);
+    }
+
+    @Override
+    public int virDomainBlockStats(final DomainPointer virDomainPtr, final String path,
+                                   final virDomainBlockStats stats) {
+        return libvirt.virDomainBlockStats(virDomainPtr, path, stats, new SizeT(stats.size()));
+    }
+
+    @Override
+    public int virDomainGetInfo(final DomainPointer virDomainPtr, final virDomainInfo vInfo) {
+        return libvirt.virDomainGetInfo(virDomainPtr, vInfo);
+    }
+
+    @Override
+    public int virDomainGetState(final DomainPointer virDomainPtr, final int[] state, final int flags) {
+        IntByReference stateRef = new IntByReference();
+        int ret = libvirt.virDomainGetState(virDomainPtr, stateRef, null, flags);
+        state[0] = stateRef.getValue();
+        return ret;
+    }
+
+    @Override
+    public int virDomainInterfaceStats(final DomainPointer virDomainPtr, final String path,
+                                       final virDomainInterfaceStats stats) {
+        return libvirt.virDomainInterfaceStats(virDomainPtr, path, stats, new SizeT(stats.size()));
+    }
+
+    @Override
+    public int virDomainIsActive(final DomainPointer virDomainPtr) {
+        return libvirt.virDomainIsActive(virDomainPtr);
+    }
+
+    @Override
+    public int virDomainMemoryStats(final DomainPointer virDomainPtr,
+                                    final virDomainMemoryStats[] stats, final int nrStats, final int flags) {
+        return libvirt.virDomainMemoryStats(virDomainPtr, stats, nrStats, flags);
+    }
+
+    @Override
+    public int virStreamRecv(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        return libvirt.virStreamRecv(virStreamPtr, data, new SizeT(data.remaining()));
+    }
+
+    @Override
+    public int virStreamSend(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        return libvirt.virStreamSend(virStreamPtr, data, new SizeT(data.remaining()));
+    }
+}
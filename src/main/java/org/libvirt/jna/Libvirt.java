@@ -25,16 +25,12 @@ import java.util.List;
  * virDefaultErrorFunc
  *
  * LIBVIRT_0_5.0
- * virEventRegisterImpl
  * virConnectDomainEventRegister
  * virConnectDomainEventDeregister
  *
  * LIBVIRT_0.6.0
  * virConnectRef
- * virNetworkRef
- * virStoragePoolRef
  * virStorageVolRef
- * virNodeDeviceRef
  *
  * LIBVIRT_0.6.1
  * virFreeError
@@ -43,9 +39,6 @@ import java.util.List;
  * LIBVIRT_0.6.4
  * virInterfaceRef
  *
- * LIBVIRT_0.7.1
- * virSecretRef
- *
  * LIBVIRT_0.7.2
  * virStreamRef
  *
@@ -127,6 +120,122 @@ public interface Libvirt extends Library {
                            int reason, Pointer opaque);
     }
 
+    // Tunable and JobCompleted pass a typed parameter array, freed by
+    // libvirt once the callback returns.
+    interface VirConnectDomainEventTypedParamsCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           Pointer params, int nparams,
+                           Pointer opaque);
+    }
+
+    interface VirConnectDomainEventMigrationIterationCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           int iteration, Pointer opaque);
+    }
+
+    interface VirConnectDomainEventBlockThresholdCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           String dev,
+                           String path,
+                           long threshold,
+                           long excess,
+                           Pointer opaque);
+    }
+
+    interface VirConnectDomainEventMetadataChangeCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           int type, String nsuri,
+                           Pointer opaque);
+    }
+
+    // DeviceAdded and DeviceRemoved have the same callback interface.
+    interface VirConnectDomainEventDeviceCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           String devAlias, Pointer opaque);
+    }
+
+    interface VirConnectDomainEventBalloonChangeCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           long actual, Pointer opaque);
+    }
+
+    interface VirConnectDomainEventMemoryFailureCallback extends VirDomainEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DomainPointer virDomainPointer,
+                           int recipient,
+                           int action,
+                           int flags,
+                           Pointer opaque);
+    }
+
+    /**
+     * Network, storage pool, node device and secret event callbacks,
+     * registered with the matching virConnect*EventRegisterAny function.
+     */
+    interface VirNetworkEventCallback extends Callback {}
+
+    interface VirConnectNetworkEventLifecycleCallback extends VirNetworkEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           NetworkPointer virNetworkPointer,
+                           int event,
+                           int detail,
+                           Pointer opaque);
+    }
+
+    interface VirStoragePoolEventCallback extends Callback {}
+
+    interface VirConnectStoragePoolEventLifecycleCallback extends VirStoragePoolEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           StoragePoolPointer virStoragePoolPointer,
+                           int event,
+                           int detail,
+                           Pointer opaque);
+    }
+
+    interface VirConnectStoragePoolEventGenericCallback extends VirStoragePoolEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           StoragePoolPointer virStoragePoolPointer,
+                           Pointer opaque);
+    }
+
+    interface VirNodeDeviceEventCallback extends Callback {}
+
+    interface VirConnectNodeDeviceEventLifecycleCallback extends VirNodeDeviceEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DevicePointer virDevicePointer,
+                           int event,
+                           int detail,
+                           Pointer opaque);
+    }
+
+    interface VirConnectNodeDeviceEventGenericCallback extends VirNodeDeviceEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           DevicePointer virDevicePointer,
+                           Pointer opaque);
+    }
+
+    interface VirSecretEventCallback extends Callback {}
+
+    interface VirConnectSecretEventLifecycleCallback extends VirSecretEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           SecretPointer virSecretPointer,
+                           int event,
+                           int detail,
+                           Pointer opaque);
+    }
+
+    interface VirConnectSecretEventGenericCallback extends VirSecretEventCallback {
+        void eventCallback(ConnectionPointer virConnectPtr,
+                           SecretPointer virSecretPointer,
+                           Pointer opaque);
+    }
+
     /**
      * Error callback
      */
@@ -134,16 +243,23 @@ public interface Libvirt extends Library {
         void errorCallback(Pointer userData, virError error);
     }
 
+    // Stream callbacks
+
     /**
-     * Stream callbacks
+     * Consumes {@code nbytes} bytes of binary data at {@code data}. The
+     * memory is only valid during the call.
      */
     interface VirStreamSinkFunc extends Callback {
-        int sinkCallback(StreamPointer virStreamPtr, String data,
+        int sinkCallback(StreamPointer virStreamPtr, Pointer data,
                          NativeLong nbytes, Pointer opaque);
     }
 
+    /**
+     * Fills up to {@code nbytes} bytes of binary data at {@code data} and
+     * returns the number of bytes filled, 0 at the end or -1 on error.
+     */
     interface VirStreamSourceFunc extends Callback {
-        int sourceCallback(StreamPointer virStreamPtr, String data,
+        int sourceCallback(StreamPointer virStreamPtr, Pointer data,
                            NativeLong nbytes, Pointer opaque);
     }
 
@@ -165,6 +281,36 @@ public interface Libvirt extends Library {
         void tick(int timerID, Pointer opaque);
     }
 
+    /*
+     * Event loop implementation callbacks, see virEventRegisterImpl.
+     *
+     * The callback and free function arguments are native function
+     * pointers, to be invoked with com.sun.jna.Function.
+     */
+    interface VirEventAddHandleFunc extends Callback {
+        int addHandle(int fd, int events, Pointer cb, Pointer opaque, Pointer ff);
+    }
+
+    interface VirEventUpdateHandleFunc extends Callback {
+        void updateHandle(int watch, int events);
+    }
+
+    interface VirEventRemoveHandleFunc extends Callback {
+        int removeHandle(int watch);
+    }
+
+    interface VirEventAddTimeoutFunc extends Callback {
+        int addTimeout(int timeout, Pointer cb, Pointer opaque, Pointer ff);
+    }
+
+    interface VirEventUpdateTimeoutFunc extends Callback {
+        void updateTimeout(int timer, int timeout);
+    }
+
+    interface VirEventRemoveTimeoutFunc extends Callback {
+        int removeTimeout(int timer);
+    }
+
     Libvirt INSTANCE =
             (Libvirt) Native.loadLibrary(Platform.isWindows() ? "virt-0" : "virt", Libvirt.class);
 
@@ -233,6 +379,24 @@ public interface Libvirt extends Library {
                                           VirConnectCloseFunc cb);
 
     int virConnectDomainEventDeregisterAny(ConnectionPointer virConnectPtr, int callbackID);
+
+    // Register Network, Storage Pool, Node Device and Secret Event Callbacks
+    int virConnectNetworkEventRegisterAny(ConnectionPointer virConnectPtr,
+            NetworkPointer virNetworkPtr, int eventID, VirNetworkEventCallback cb,
+            Pointer opaque, Libvirt.VirFreeCallback freecb);
+    int virConnectNetworkEventDeregisterAny(ConnectionPointer virConnectPtr, int callbackID);
+    int virConnectStoragePoolEventRegisterAny(ConnectionPointer virConnectPtr,
+            StoragePoolPointer virStoragePoolPtr, int eventID, VirStoragePoolEventCallback cb,
+            Pointer opaque, Libvirt.VirFreeCallback freecb);
+    int virConnectStoragePoolEventDeregisterAny(ConnectionPointer virConnectPtr, int callbackID);
+    int virConnectNodeDeviceEventRegisterAny(ConnectionPointer virConnectPtr,
+            DevicePointer virDevicePtr, int eventID, VirNodeDeviceEventCallback cb,
+            Pointer opaque, Libvirt.VirFreeCallback freecb);
+    int virConnectNodeDeviceEventDeregisterAny(ConnectionPointer virConnectPtr, int callbackID);
+    int virConnectSecretEventRegisterAny(ConnectionPointer virConnectPtr,
+            SecretPointer virSecretPtr, int eventID, VirSecretEventCallback cb,
+            Pointer opaque, Libvirt.VirFreeCallback freecb);
+    int virConnectSecretEventDeregisterAny(ConnectionPointer virConnectPtr, int callbackID);
     void virConnSetErrorFunc(ConnectionPointer virConnectPtr, Pointer userData,
                              VirErrorCallback callback);
     int virConnectIsAlive(ConnectionPointer virConnectPtr);
@@ -262,6 +426,20 @@ public interface Libvirt extends Library {
                               int[] ids, int maxnames);
     int virConnectListAllDomains(ConnectionPointer virConnectPtr,
                                  DomainByReference domains, int flags);
+    int virConnectGetAllDomainStats(ConnectionPointer virConnectPtr, int stats,
+                                    PointerByReference retStats, int flags);
+    int virConnectListAllInterfaces(ConnectionPointer virConnectPtr,
+                                    PointerByReference ifaces, int flags);
+    int virConnectListAllNetworks(ConnectionPointer virConnectPtr,
+                                  PointerByReference nets, int flags);
+    int virConnectListAllNodeDevices(ConnectionPointer virConnectPtr,
+                                     PointerByReference devices, int flags);
+    int virConnectListAllNWFilters(ConnectionPointer virConnectPtr,
+                                   PointerByReference filters, int flags);
+    int virConnectListAllSecrets(ConnectionPointer virConnectPtr,
+                                 PointerByReference secrets, int flags);
+    int virConnectListAllStoragePools(ConnectionPointer virConnectPtr,
+                                      PointerByReference pools, int flags);
     int virConnectListInterfaces(ConnectionPointer virConnectPtr,
                                  CString[] name, int maxNames);
     int virConnectListNetworks(ConnectionPointer virConnectPtr,
@@ -318,6 +496,12 @@ public interface Libvirt extends Library {
     // Event loop functions.
     int virEventRegisterDefaultImpl();
     int virEventRunDefaultImpl();
+    void virEventRegisterImpl(VirEventAddHandleFunc addHandle,
+                              VirEventUpdateHandleFunc updateHandle,
+                              VirEventRemoveHandleFunc removeHandle,
+                              VirEventAddTimeoutFunc addTimeout,
+                              VirEventUpdateTimeoutFunc updateTimeout,
+                              VirEventRemoveTimeoutFunc removeTimeout);
 
     // Domain functions
     int virDomainAbortJob(DomainPointer virDomainPtr);
@@ -359,7 +543,10 @@ public interface Libvirt extends Library {
     int virDomainGetBlockJobInfo(DomainPointer virDomainPtr, String disk, virDomainBlockJobInfo info, int flags);
     int virDomainGetID(DomainPointer virDomainPtr);
     int virDomainGetInfo(DomainPointer virDomainPtr, virDomainInfo vInfo);
+    int virDomainGetState(DomainPointer virDomainPtr, IntByReference state, IntByReference reason, int flags);
     int virDomainGetJobInfo(DomainPointer virDomainPtr, virDomainJobInfo vInfo);
+    int virDomainListGetStats(Pointer[] doms, int stats, PointerByReference retStats, int flags);
+    void virDomainStatsRecordListFree(Pointer stats);
     int virDomainGetJobStats(DomainPointer virDomainPtr, IntByReference type, PointerByReference params,
                              IntByReference nparams, int flags);
     NativeLong virDomainGetMaxMemory(DomainPointer virDomainPtr);
@@ -457,6 +644,7 @@ public interface Libvirt extends Library {
     CString virDomainScreenshot(DomainPointer virDomainPtr,
                                 StreamPointer virStreamPtr, int screen, int flags);
     int virDomainSetAutostart(DomainPointer virDomainPtr, int autoStart);
+    int virDomainSetBlockThreshold(DomainPointer virDomainPtr, String dev, long threshold, int flags);
     int virDomainSetMaxMemory(DomainPointer virDomainPtr, NativeLong maxMemory);
     int virDomainSetMemory(DomainPointer virDomainPtr, NativeLong maxMemory);
     int virDomainSetMemoryFlags(DomainPointer virDomainPtr, NativeLong maxMemory, int flags);
@@ -479,6 +667,7 @@ public interface Libvirt extends Library {
     NetworkPointer virNetworkDefineXML(ConnectionPointer virConnectPtr, String xmlDesc);
     int virNetworkDestroy(NetworkPointer virConnectPtr);
     int virNetworkFree(NetworkPointer virConnectPtr);
+    int virNetworkRef(NetworkPointer virNetworkPtr);
     int virNetworkGetAutostart(NetworkPointer virNetworkPtr, IntByReference value);
     CString virNetworkGetBridgeName(NetworkPointer virNetworkPtr);
     String virNetworkGetName(NetworkPointer virNetworkPtr);
@@ -515,6 +704,7 @@ public interface Libvirt extends Library {
                               CString[] names, int maxNames);
     CString virNodeDeviceGetXMLDesc(DevicePointer virDevicePointer, int flags);
     int virNodeDeviceFree(DevicePointer virDevicePointer);
+    int virNodeDeviceRef(DevicePointer virDevicePointer);
     int virNodeDeviceDettach(DevicePointer virDevicePointer);
     int virNodeDeviceReAttach(DevicePointer virDevicePointer);
     int virNodeDeviceReset(DevicePointer virDevicePointer);
@@ -532,6 +722,7 @@ public interface Libvirt extends Library {
     int virStoragePoolDelete(StoragePoolPointer storagePoolPtr, int flags);
     int virStoragePoolDestroy(StoragePoolPointer storagePoolPtr);
     int virStoragePoolFree(StoragePoolPointer storagePoolPtr);
+    int virStoragePoolRef(StoragePoolPointer storagePoolPtr);
     int virStoragePoolGetAutostart(StoragePoolPointer storagePoolPtr, IntByReference value);
     int virStoragePoolGetInfo(StoragePoolPointer storagePoolPtr, virStoragePoolInfo info);
     String virStoragePoolGetName(StoragePoolPointer storagePoolPtr);
@@ -540,6 +731,8 @@ public interface Libvirt extends Library {
     CString virStoragePoolGetXMLDesc(StoragePoolPointer storagePoolPtr, int flags);
     int virStoragePoolListVolumes(StoragePoolPointer storagePoolPtr,
                                   CString[] names, int maxnames);
+    int virStoragePoolListAllVolumes(StoragePoolPointer storagePoolPtr,
+                                     PointerByReference vols, int flags);
     int virStoragePoolIsActive(StoragePoolPointer storagePoolPtr);
     int virStoragePoolIsPersistent(StoragePoolPointer storagePoolPtr);
     StoragePoolPointer virStoragePoolLookupByName(ConnectionPointer virConnectPtr,
@@ -600,6 +793,7 @@ public interface Libvirt extends Library {
 
     // Secret Methods
     int virSecretFree(SecretPointer virSecretPtr);
+    int virSecretRef(SecretPointer virSecretPtr);
     SecretPointer virSecretDefineXML(ConnectionPointer virConnectPtr,
                                      String xml, int flags);
     int virSecretGetUUID(SecretPointer virSecretPtr, byte[] uuidString);
@@ -635,6 +829,9 @@ public interface Libvirt extends Library {
     int virStreamSendAll(StreamPointer virStreamPtr,
                          Libvirt.VirStreamSourceFunc handler, Pointer opaque);
     int virStreamRecv(StreamPointer virStreamPtr, ByteBuffer data, SizeT length);
+    int virStreamRecvFlags(StreamPointer virStreamPtr, ByteBuffer data, SizeT length, int flags);
+    int virStreamRecvHole(StreamPointer virStreamPtr, LongByReference length, int flags);
+    int virStreamSendHole(StreamPointer virStreamPtr, long length, int flags);
     int virStreamRecvAll(StreamPointer virStreamPtr,
                          Libvirt.VirStreamSinkFunc handler, Pointer opaque);
 
@@ -0,0 +1,54 @@
+package org.libvirt.jna;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+
+/**
+ * Direct mapped bindings for the libvirt calls made most frequently,
+ * e.g. when polling the statistics of many domains.
+ * <p>
+ * In contrast to the interface mapping of {@link Libvirt}, which dispatches
+ * every call through a reflective proxy, these methods are bound with
+ * {@link Native#register} and invoked as plain JNI calls. Most arguments
+ * are primitives, {@link Pointer}s and {@link com.sun.jna.Structure}s,
+ * which JNA passes without conversion. Two still cost a conversion per
+ * call. A {@link SizeT} is {@link com.sun.jna.NativeMapped}, so it stays
+ * portable to platforms where {@code size_t} is not 64 bit. A
+ * {@link String} path is encoded into temporary native memory.
+ *
+ * @see DirectBackend
+ */
+public final class LibvirtDirect {
+    /**
+     * Whether the direct mapped bindings could be registered
+     */
+    public static final boolean ENABLED;
+
+    static {
+        boolean enabled = false;
+        try {
+            Native.register(LibvirtDirect.class,
+                    NativeLibrary.getInstance(Platform.isWindows() ? "virt-0" : "virt"));
+            enabled = true;
+        } catch (UnsatisfiedLinkError e) {
+            // fall back to the interface mapping
+        }
+        ENABLED = enabled;
+    }
+
+    private LibvirtDirect() {}
+
+    public static native int virConnectIsAlive(Pointer virConnectPtr);
+    public static native int virDomainBlockStats(Pointer virDomainPtr, String path,
+                                                 virDomainBlockStats stats, SizeT size);
+    public static native int virDomainGetInfo(Pointer virDomainPtr, virDomainInfo vInfo);
+    public static native int virDomainGetState(Pointer virDomainPtr, int[] state, int[] reason, int flags);
+    public static native int virDomainInterfaceStats(Pointer virDomainPtr, String path,
+                                                     virDomainInterfaceStats stats, SizeT size);
+    public static native int virDomainIsActive(Pointer virDomainPtr);
+    public static native int virDomainMemoryStats(Pointer virDomainPtr, Pointer stats, int nrStats, int flags);
+    public static native int virStreamRecv(Pointer virStreamPtr, Pointer data, SizeT length);
+    public static native int virStreamSend(Pointer virStreamPtr, Pointer data, SizeT size);
+}
@@ -0,0 +1,111 @@
+package org.libvirt.jna;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of the libvirt calls made most frequently, e.g. when
+ * polling the statistics of many domains or transferring stream data.
+ * <p>
+ * The backend is chosen once at startup by {@link #select}. Available
+ * backends:
+ * <ul>
+ * <li>{@code direct}: the direct mapped {@link LibvirtDirect} bindings,
+ * the default when they could be registered</li>
+ * <li>{@code jna}: the interface mapped {@link Libvirt} bindings, the
+ * default otherwise</li>
+ * <li>{@code panama}: the Foreign Function &amp; Memory API, only present
+ * when running on Java 22 or later from the multi-release jar. Its native
+ * calls are restricted methods, so the application should be run with
+ * {@code --enable-native-access=ALL-UNNAMED} to avoid warnings.</li>
+ * </ul>
+ * The system property {@code org.libvirt.jna.backend} may name another
+ * backend; an unavailable {@code panama} backend falls back to
+ * {@code direct}, and an unavailable {@code direct} one to {@code jna}.
+ * When it is not set, the older property {@code org.libvirt.jna.direct}
+ * is honored instead: {@code false} selects {@code jna}.
+ * <p>
+ * All methods follow the libvirt signatures, except that the size of the
+ * stats structures and of the stream buffers is implied.
+ */
+public abstract class NativeBackend {
+    private static final String PANAMA_BACKEND = "org.libvirt.jna.PanamaBackend";
+
+    /**
+     * @return the name of this backend, e.g. "jna"
+     */
+    public abstract String getName();
+
+    public abstract int virConnectIsAlive(ConnectionPointer virConnectPtr);
+
+    public abstract int virDomainBlockStats(DomainPointer virDomainPtr, String path,
+                                            virDomainBlockStats stats);
+
+    public abstract int virDomainGetInfo(DomainPointer virDomainPtr, virDomainInfo vInfo);
+
+    /**
+     * @param state
+     *            array of at least one element receiving the state
+     */
+    public abstract int virDomainGetState(DomainPointer virDomainPtr, int[] state, int flags);
+
+    public abstract int virDomainInterfaceStats(DomainPointer virDomainPtr, String path,
+                                                virDomainInterfaceStats stats);
+
+    public abstract int virDomainIsActive(DomainPointer virDomainPtr);
+
+    public abstract int virDomainMemoryStats(DomainPointer virDomainPtr,
+                                             virDomainMemoryStats[] stats, int nrStats, int flags);
+
+    /**
+     * Receives at most {@code data.remaining()} bytes into {@code data},
+     * starting at its position. The position is not updated.
+     */
+    public abstract int virStreamRecv(StreamPointer virStreamPtr, ByteBuffer data);
+
+    /**
+     * Sends the remaining bytes of {@code data}, starting at its position.
+     * The position is not updated.
+     */
+    public abstract int virStreamSend(StreamPointer virStreamPtr, ByteBuffer data);
+
+    /**
+     * Chooses the backend to use, as configured by the system properties.
+     *
+     * @param libvirt
+     *            the interface mapped bindings
+     * @return the backend
+     */
+    public static NativeBackend select(final Libvirt libvirt) {
+        String name = System.getProperty("org.libvirt.jna.backend");
+        if (name == null) {
+            String direct = System.getProperty("org.libvirt.jna.direct");
+            name = "false".equals(direct) ? "jna" : "direct";
+        }
+        return select(name, libvirt);
+    }
+
+    /**
+     * Returns the named backend, or the next available one.
+     *
+     * @param name
+     *            "panama", "direct" or "jna"
+     * @param libvirt
+     *            the interface mapped bindings
+     * @return the backend
+     */
+    public static NativeBackend select(final String name, final Libvirt libvirt) {
+        String n = name;
+        if ("panama".equals(n)) {
+            try {
+                return (NativeBackend) Class.forName(PANAMA_BACKEND).getConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                // not running on Java 22+ or not from the multi-release jar
+                n = "direct";
+            }
+        }
+        if ("direct".equals(n) && LibvirtDirect.ENABLED) {
+            return new DirectBackend(libvirt);
+        }
+        return new JnaBackend(libvirt);
+    }
+}
@@ -1,6 +1,15 @@
 package org.libvirt.jna;
 
+import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 
 public class NetworkFilterPointer extends PointerType {
+
+    public NetworkFilterPointer() {
+    }
+
+    public NetworkFilterPointer(Pointer p) {
+        super(p);
+    }
+
 }
@@ -1,9 +1,18 @@
 package org.libvirt.jna;
 
+import com.sun.jna.Pointer;
 import com.sun.jna.PointerType;
 
 /**
  * Pointer class to provide type safety to the jna interface.
  */
 public class NetworkPointer extends PointerType {
+
+    public NetworkPointer() {
+    }
+
+    public NetworkPointer(Pointer p) {
+        super(p);
+    }
+
 }
@@ -0,0 +1,47 @@
+package org.libvirt.jna;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JNA mapping for the virDomainStatsRecord structure
+ */
+public class virDomainStatsRecord extends Structure {
+    public DomainPointer dom;
+    public Pointer params;
+    public int nparams;
+
+    /**
+     * Native layout, for reading records without creating a Structure per
+     * element.
+     */
+    public static final int DOM_OFFSET;
+    public static final int PARAMS_OFFSET;
+    public static final int NPARAMS_OFFSET;
+
+    public virDomainStatsRecord() {
+        super();
+    }
+
+    public virDomainStatsRecord(Pointer p) {
+        super(p);
+    }
+
+    private static final List<String> FIELDS = Arrays.asList(
+        "dom", "params", "nparams");
+
+    static {
+        virDomainStatsRecord layout = new virDomainStatsRecord();
+        DOM_OFFSET = layout.fieldOffset("dom");
+        PARAMS_OFFSET = layout.fieldOffset("params");
+        NPARAMS_OFFSET = layout.fieldOffset("nparams");
+    }
+
+    @Override
+    protected List<String> getFieldOrder() {
+        return FIELDS;
+    }
+}
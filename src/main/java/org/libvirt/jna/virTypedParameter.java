@@ -21,6 +21,15 @@ public class virTypedParameter extends Structure {
     public static final int TYPED_PARAM_BOOLEAN = 6;
     public static final int TYPED_PARAM_STRING = 7;
 
+    /**
+     * Native layout, for reading parameter arrays without creating a
+     * Structure per element.
+     */
+    public static final int FIELD_OFFSET = 0;
+    public static final int TYPE_OFFSET;
+    public static final int VALUE_OFFSET;
+    public static final int SIZE;
+
     public byte[] field = new byte[Libvirt.VIR_TYPED_PARAM_FIELD_LENGTH];
     public int type;
     public virTypedParameterValue value;
@@ -44,6 +53,13 @@ public class virTypedParameter extends Structure {
     private static final List<String> FIELDS = Arrays.asList(
         "field", "type", "value");
 
+    static {
+        virTypedParameter layout = new virTypedParameter();
+        TYPE_OFFSET = layout.fieldOffset("type");
+        VALUE_OFFSET = layout.fieldOffset("value");
+        SIZE = layout.size();
+    }
+
     @Override
     protected List<String> getFieldOrder() {
         return FIELDS;
@@ -0,0 +1,171 @@
+package org.libvirt;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import org.libvirt.jna.ConnectionPointer;
+
+import com.sun.jna.Pointer;
+
+/**
+ * The JDK Flight Recorder events of the bindings, see
+ * {@link FlightRecorder}.
+ */
+final class JfrFlightRecorder extends FlightRecorder {
+    @Name("org.libvirt.NativeCall")
+    @Label("Libvirt Call")
+    @Category("Libvirt")
+    @Description("A call into the libvirt library")
+    static final class NativeCallEvent extends Event {
+        @Label("Function")
+        String function;
+
+        @Label("Connection URI")
+        String uri;
+
+        @Label("Result")
+        long result;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("org.libvirt.Callback")
+    @Label("Libvirt Event Delivery")
+    @Category("Libvirt")
+    @Description("The delivery of a libvirt event to a listener")
+    static final class CallbackEvent extends Event {
+        @Label("Listener Type")
+        Class<?> listenerType;
+
+        @Label("Dispatch Latency")
+        @Description("The time between the native callback and the delivery to the listener")
+        @Timespan
+        long dispatchLatency;
+    }
+
+    @Name("org.libvirt.StreamIO")
+    @Label("Libvirt Stream I/O")
+    @Category("Libvirt")
+    @Description("A transfer of data through a libvirt stream")
+    static final class StreamIOEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Result")
+        int result;
+
+        @Label("Would Block Count")
+        @Description("The number of transfers of the stream which would have blocked so far")
+        long wouldBlockCount;
+    }
+
+    private final ConcurrentHashMap<Pointer, String> uris = new ConcurrentHashMap<>();
+
+    @Override
+    boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    void connectionOpened(final ConnectionPointer vcp, final String uri) {
+        if (vcp != null && uri != null) {
+            uris.put(vcp.getPointer(), uri);
+        }
+    }
+
+    @Override
+    String connectionURI(final ConnectionPointer vcp) {
+        return vcp == null ? null : uris.get(vcp.getPointer());
+    }
+
+    @Override
+    void connectionClosed(final ConnectionPointer vcp, final String uri) {
+        if (vcp != null && uri != null) {
+            uris.remove(vcp.getPointer(), uri);
+        }
+    }
+
+    @Override
+    Object beginNativeCall() {
+        NativeCallEvent event = new NativeCallEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void commitNativeCall(final Object e, final String function, final Object target,
+                          final long result, final Error.ErrorNumber error) {
+        NativeCallEvent event = (NativeCallEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.function = function;
+            if (target instanceof ConnectionPointer) {
+                event.uri = uris.get(((ConnectionPointer) target).getPointer());
+            }
+            event.result = result;
+            event.error = error == null ? null : error.name();
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginCallback() {
+        CallbackEvent event = new CallbackEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        event.dispatchLatency = System.nanoTime();
+        return event;
+    }
+
+    @Override
+    void commitCallback(final Object e, final Class<?> listenerType, final long received) {
+        CallbackEvent event = (CallbackEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.listenerType = listenerType;
+            // the delivery start was kept in the field by beginCallback
+            event.dispatchLatency -= received;
+            event.commit();
+        }
+    }
+
+    @Override
+    Object beginStreamIO() {
+        StreamIOEvent event = new StreamIOEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void commitStreamIO(final Object e, final boolean send, final int result, final long wouldBlock) {
+        StreamIOEvent event = (StreamIOEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = send ? "send" : "receive";
+            event.bytes = Math.max(result, 0);
+            event.result = result;
+            event.wouldBlockCount = wouldBlock;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.libvirt.jna;
+
+import static java.lang.foreign.MemoryLayout.PathElement.groupElement;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_SHORT;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.PointerType;
+
+/**
+ * Backend calling libvirt through the Foreign Function &amp; Memory API.
+ * <p>
+ * The libvirt structures are described as {@link MemoryLayout}s, so the
+ * results are plain memory reads at precomputed offsets instead of
+ * reflective {@link com.sun.jna.Structure} reads. The arguments and results
+ * are placed in native memory kept by each thread, so a call allocates no
+ * native memory. The library itself is still
+ * located by JNA, which keeps the library name resolution in one place.
+ * <p>
+ * Only LP64 platforms are supported, i.e. where {@code long} and
+ * {@code size_t} are 64 bit; elsewhere the constructor fails and
+ * {@link NativeBackend#select} falls back to JNA. Stream I/O on heap buffers
+ * uses the interface mapping, as heap memory cannot be passed to native
+ * code.
+ */
+public class PanamaBackend extends JnaBackend {
+    static final StructLayout DOMAIN_INFO = MemoryLayout.structLayout(
+            JAVA_BYTE.withName("state"),
+            MemoryLayout.paddingLayout(7),
+            JAVA_LONG.withName("maxMem"),
+            JAVA_LONG.withName("memory"),
+            JAVA_SHORT.withName("nrVirtCpu"),
+            MemoryLayout.paddingLayout(6),
+            JAVA_LONG.withName("cpuTime"));
+
+    static final StructLayout DOMAIN_BLOCK_STATS = MemoryLayout.structLayout(
+            JAVA_LONG.withName("rd_req"),
+            JAVA_LONG.withName("rd_bytes"),
+            JAVA_LONG.withName("wr_req"),
+            JAVA_LONG.withName("wr_bytes"),
+            JAVA_LONG.withName("errs"));
+
+    static final StructLayout DOMAIN_INTERFACE_STATS = MemoryLayout.structLayout(
+            JAVA_LONG.withName("rx_bytes"),
+            JAVA_LONG.withName("rx_packets"),
+            JAVA_LONG.withName("rx_errs"),
+            JAVA_LONG.withName("rx_drop"),
+            JAVA_LONG.withName("tx_bytes"),
+            JAVA_LONG.withName("tx_packets"),
+            JAVA_LONG.withName("tx_errs"),
+            JAVA_LONG.withName("tx_drop"));
+
+    static final StructLayout DOMAIN_MEMORY_STAT = MemoryLayout.structLayout(
+            JAVA_INT.withName("tag"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("val"));
+
+    private static final long INFO_STATE = offset(DOMAIN_INFO, "state");
+    private static final long INFO_MAX_MEM = offset(DOMAIN_INFO, "maxMem");
+    private static final long INFO_MEMORY = offset(DOMAIN_INFO, "memory");
+    private static final long INFO_NR_VIRT_CPU = offset(DOMAIN_INFO, "nrVirtCpu");
+    private static final long INFO_CPU_TIME = offset(DOMAIN_INFO, "cpuTime");
+
+    private static final long BLOCK_RD_REQ = offset(DOMAIN_BLOCK_STATS, "rd_req");
+    private static final long BLOCK_RD_BYTES = offset(DOMAIN_BLOCK_STATS, "rd_bytes");
+    private static final long BLOCK_WR_REQ = offset(DOMAIN_BLOCK_STATS, "wr_req");
+    private static final long BLOCK_WR_BYTES = offset(DOMAIN_BLOCK_STATS, "wr_bytes");
+    private static final long BLOCK_ERRS = offset(DOMAIN_BLOCK_STATS, "errs");
+
+    private static final long IF_RX_BYTES = offset(DOMAIN_INTERFACE_STATS, "rx_bytes");
+    private static final long IF_RX_PACKETS = offset(DOMAIN_INTERFACE_STATS, "rx_packets");
+    private static final long IF_RX_ERRS = offset(DOMAIN_INTERFACE_STATS, "rx_errs");
+    private static final long IF_RX_DROP = offset(DOMAIN_INTERFACE_STATS, "rx_drop");
+    private static final long IF_TX_BYTES = offset(DOMAIN_INTERFACE_STATS, "tx_bytes");
+    private static final long IF_TX_PACKETS = offset(DOMAIN_INTERFACE_STATS, "tx_packets");
+    private static final long IF_TX_ERRS = offset(DOMAIN_INTERFACE_STATS, "tx_errs");
+    private static final long IF_TX_DROP = offset(DOMAIN_INTERFACE_STATS, "tx_drop");
+
+    private static final long MEMORY_STAT_TAG = offset(DOMAIN_MEMORY_STAT, "tag");
+    private static final long MEMORY_STAT_VAL = offset(DOMAIN_MEMORY_STAT, "val");
+
+    private static final long SCRATCH_SIZE = 1024;
+
+    // native memory of the current thread for the arguments and results
+    // of a call, released with the thread
+    private static final ThreadLocal<MemorySegment> SCRATCH = new ThreadLocal<>();
+
+    private final MethodHandle connectIsAlive;
+    private final MethodHandle domainBlockStats;
+    private final MethodHandle domainGetInfo;
+    private final MethodHandle domainGetState;
+    private final MethodHandle domainInterfaceStats;
+    private final MethodHandle domainIsActive;
+    private final MethodHandle domainMemoryStats;
+    private final MethodHandle streamRecv;
+    private final MethodHandle streamSend;
+
+    public PanamaBackend() {
+        super(Libvirt.INSTANCE);
+        if (Platform.isWindows() || ADDRESS.byteSize() != 8) {
+            throw new UnsupportedOperationException("only LP64 platforms are supported");
+        }
+        NativeLibrary lib = NativeLibrary.getInstance("virt");
+        Linker linker = Linker.nativeLinker();
+        FunctionDescriptor ptrToInt = FunctionDescriptor.of(JAVA_INT, ADDRESS);
+        FunctionDescriptor stats = FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, JAVA_LONG);
+        FunctionDescriptor io = FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_LONG);
+
+        connectIsAlive = downcall(linker, lib, "virConnectIsAlive", ptrToInt);
+        domainBlockStats = downcall(linker, lib, "virDomainBlockStats", stats);
+        domainGetInfo = downcall(linker, lib, "virDomainGetInfo",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS));
+        domainGetState = downcall(linker, lib, "virDomainGetState",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, ADDRESS, JAVA_INT));
+        domainInterfaceStats = downcall(linker, lib, "virDomainInterfaceStats", stats);
+        domainIsActive = downcall(linker, lib, "virDomainIsActive", ptrToInt);
+        domainMemoryStats = downcall(linker, lib, "virDomainMemoryStats",
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT));
+        streamRecv = downcall(linker, lib, "virStreamRecv", io);
+        streamSend = downcall(linker, lib, "virStreamSend", io);
+    }
+
+    private static MethodHandle downcall(final Linker linker, final NativeLibrary lib,
+                                         final String name, final FunctionDescriptor descriptor) {
+        long address = Pointer.nativeValue(lib.getFunction(name));
+        return linker.downcallHandle(MemorySegment.ofAddress(address), descriptor);
+    }
+
+    private static MemorySegment segment(final PointerType ptr) {
+        return MemorySegment.ofAddress(Pointer.nativeValue(ptr.getPointer()));
+    }
+
+    private static long offset(final StructLayout layout, final String name) {
+        return layout.byteOffset(groupElement(name));
+    }
+
+    /**
+     * Returns the native memory of the current thread, of at least the given
+     * size. Calls do not nest, so it is never used twice at a time.
+     */
+    private static MemorySegment scratch(final long size) {
+        MemorySegment s = SCRATCH.get();
+        if (s == null || s.byteSize() < size) {
+            s = Arena.ofAuto().allocate(Math.max(size, SCRATCH_SIZE), 8);
+            SCRATCH.set(s);
+        }
+        return s;
+    }
+
+    /**
+     * @return the maximum size of a string encoded as a NUL terminated
+     *         UTF-8 string
+     */
+    private static long stringSize(final String str) {
+        return 3L * str.length() + 1;
+    }
+
+    private static IllegalStateException rethrow(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    @Override
+    public String getName() {
+        return "panama";
+    }
+
+    @Override
+    public int virConnectIsAlive(final ConnectionPointer virConnectPtr) {
+        try {
+            return (int) connectIsAlive.invokeExact(segment(virConnectPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virDomainBlockStats(final DomainPointer virDomainPtr, final String path,
+                                   final virDomainBlockStats stats) {
+        long size = DOMAIN_BLOCK_STATS.byteSize();
+        MemorySegment s = scratch(size + stringSize(path));
+        s.setString(size, path);
+        try {
+            int ret = (int) domainBlockStats.invokeExact(segment(virDomainPtr), s.asSlice(size), s, size);
+            stats.rd_req = s.get(JAVA_LONG, BLOCK_RD_REQ);
+            stats.rd_bytes = s.get(JAVA_LONG, BLOCK_RD_BYTES);
+            stats.wr_req = s.get(JAVA_LONG, BLOCK_WR_REQ);
+            stats.wr_bytes = s.get(JAVA_LONG, BLOCK_WR_BYTES);
+            stats.errs = s.get(JAVA_LONG, BLOCK_ERRS);
+            return ret;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virDomainGetInfo(final DomainPointer virDomainPtr, final virDomainInfo vInfo) {
+        MemorySegment s = scratch(DOMAIN_INFO.byteSize());
+        try {
+            int ret = (int) domainGetInfo.invokeExact(segment(virDomainPtr), s);
+            vInfo.state = s.get(JAVA_BYTE, INFO_STATE);
+            vInfo.maxMem = new com.sun.jna.NativeLong(s.get(JAVA_LONG, INFO_MAX_MEM));
+            vInfo.memory = new com.sun.jna.NativeLong(s.get(JAVA_LONG, INFO_MEMORY));
+            vInfo.nrVirtCpu = s.get(JAVA_SHORT, INFO_NR_VIRT_CPU);
+            vInfo.cpuTime = s.get(JAVA_LONG, INFO_CPU_TIME);
+            return ret;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virDomainGetState(final DomainPointer virDomainPtr, final int[] state, final int flags) {
+        MemorySegment s = scratch(JAVA_INT.byteSize());
+        try {
+            int ret = (int) domainGetState.invokeExact(segment(virDomainPtr), s, MemorySegment.NULL, flags);
+            state[0] = s.get(JAVA_INT, 0);
+            return ret;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virDomainInterfaceStats(final DomainPointer virDomainPtr, final String path,
+                                       final virDomainInterfaceStats stats) {
+        long size = DOMAIN_INTERFACE_STATS.byteSize();
+        MemorySegment s = scratch(size + stringSize(path));
+        s.setString(size, path);
+        try {
+            int ret = (int) domainInterfaceStats.invokeExact(segment(virDomainPtr), s.asSlice(size), s, size);
+            stats.rx_bytes = s.get(JAVA_LONG, IF_RX_BYTES);
+            stats.rx_packets = s.get(JAVA_LONG, IF_RX_PACKETS);
+            stats.rx_errs = s.get(JAVA_LONG, IF_RX_ERRS);
+            stats.rx_drop = s.get(JAVA_LONG, IF_RX_DROP);
+            stats.tx_bytes = s.get(JAVA_LONG, IF_TX_BYTES);
+            stats.tx_packets = s.get(JAVA_LONG, IF_TX_PACKETS);
+            stats.tx_errs = s.get(JAVA_LONG, IF_TX_ERRS);
+            stats.tx_drop = s.get(JAVA_LONG, IF_TX_DROP);
+            return ret;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virDomainIsActive(final DomainPointer virDomainPtr) {
+        try {
+            return (int) domainIsActive.invokeExact(segment(virDomainPtr));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virDomainMemoryStats(final DomainPointer virDomainPtr,
+                                    final virDomainMemoryStats[] stats, final int nrStats, final int flags) {
+        long size = DOMAIN_MEMORY_STAT.byteSize();
+        MemorySegment s = scratch(size * Math.max(nrStats, 1));
+        try {
+            int ret = (int) domainMemoryStats.invokeExact(segment(virDomainPtr), s, nrStats, flags);
+            for (int i = 0; i < ret; i++) {
+                virDomainMemoryStats stat = new virDomainMemoryStats();
+                stat.tag = s.get(JAVA_INT, i * size + MEMORY_STAT_TAG);
+                stat.val = s.get(JAVA_LONG, i * size + MEMORY_STAT_VAL);
+                stats[i] = stat;
+            }
+            return ret;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virStreamRecv(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        if (!data.isDirect()) {
+            return super.virStreamRecv(virStreamPtr, data);
+        }
+        try {
+            return (int) streamRecv.invokeExact(segment(virStreamPtr), MemorySegment.ofBuffer(data),
+                                                (long) data.remaining());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int virStreamSend(final StreamPointer virStreamPtr, final ByteBuffer data) {
+        if (!data.isDirect()) {
+            return super.virStreamSend(virStreamPtr, data);
+        }
+        try {
+            return (int) streamSend.invokeExact(segment(virStreamPtr), MemorySegment.ofBuffer(data),
+                                                (long) data.remaining());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+}
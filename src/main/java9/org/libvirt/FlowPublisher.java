@@ -0,0 +1,55 @@
+package org.libvirt;
+
+import java.util.concurrent.Flow;
+
+import org.libvirt.event.DomainEventRecord;
+
+/**
+ * Adapts an {@link EventPublisher} to {@link Flow.Publisher}, see
+ * {@link EventPublisher#toFlowPublisher}.
+ */
+final class FlowPublisher implements Flow.Publisher<DomainEventRecord> {
+    private final EventPublisher publisher;
+
+    FlowPublisher(final EventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super DomainEventRecord> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber cannot be null");
+        }
+        publisher.subscribe(new org.libvirt.event.Flow.Subscriber<DomainEventRecord>() {
+                @Override
+                public void onSubscribe(final org.libvirt.event.Flow.Subscription subscription) {
+                    subscriber.onSubscribe(new Flow.Subscription() {
+                            @Override
+                            public void request(final long n) {
+                                subscription.request(n);
+                            }
+
+                            @Override
+                            public void cancel() {
+                                subscription.cancel();
+                            }
+                        });
+                }
+
+                @Override
+                public void onNext(final DomainEventRecord item) {
+                    subscriber.onNext(item);
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                    subscriber.onError(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    subscriber.onComplete();
+                }
+            });
+    }
+}
@@ -0,0 +1,34 @@
+package org.libvirt;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the pool of direct buffers.
+ */
+public class TestDirectBufferPool extends TestCase {
+    public void testDirectBufferPool() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(64 * 1024, 1);
+        ByteBuffer b1 = pool.acquire(5000);
+        assertTrue(b1.isDirect());
+        assertEquals(8192, b1.capacity());
+        assertEquals(5000, b1.limit());
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getMisses());
+
+        pool.release(b1);
+        ByteBuffer b2 = pool.acquire(8000);
+        assertSame(b1, b2);
+        assertEquals(0, b2.position());
+        assertEquals(8000, b2.limit());
+        assertEquals(1, pool.getHits());
+
+        // larger than the largest size class, never pooled
+        ByteBuffer big = pool.acquire(100 * 1024);
+        assertEquals(2, pool.getMisses());
+        pool.release(big);
+        pool.acquire(100 * 1024);
+        assertEquals(3, pool.getMisses());
+    }
+}
@@ -0,0 +1,135 @@
+package org.libvirt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.libvirt.event.EventListener;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the delivery of events through an {@link EventDispatcher}.
+ */
+public class TestEventDispatcher extends TestCase {
+    public void testEventDispatcher() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            EventDispatcher dispatcher =
+                new EventDispatcher(executor, 64, EventDispatcher.OverflowPolicy.BLOCK);
+            final int producers = 4;
+            final int events = 10000;
+            final EventListener[] listeners = { new EventListener() {}, new EventListener() {} };
+            final int[][] last = new int[listeners.length][producers];
+            final AtomicInteger outOfOrder = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(listeners.length * producers * events);
+
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                final int producer = p;
+                threads[p] = new Thread(() -> {
+                        for (int i = 1; i <= events; i++) {
+                            for (int l = 0; l < listeners.length; l++) {
+                                final int seq = i;
+                                final int listener = l;
+                                dispatcher.dispatch(listeners[l], () -> {
+                                        // a listener is never called concurrently
+                                        if (last[listener][producer] != seq - 1) {
+                                            outOfOrder.incrementAndGet();
+                                        }
+                                        last[listener][producer] = seq;
+                                        done.countDown();
+                                    });
+                            }
+                        }
+                    });
+                threads[p].start();
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(0, outOfOrder.get());
+            // the count is updated after the last listener has returned
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (dispatcher.getDelivered() < listeners.length * producers * events
+                   && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(listeners.length * producers * events, dispatcher.getDelivered());
+            assertEquals(0, dispatcher.getDiscarded());
+            assertEquals(0, dispatcher.getQueueDepth());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testEventDispatcherDiscard() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    // never runs anything
+                }
+            }, 4, EventDispatcher.OverflowPolicy.DISCARD);
+        EventListener l = new EventListener() {};
+        for (int i = 0; i < 10; i++) {
+            dispatcher.dispatch(l, () -> { });
+        }
+        assertEquals(4, dispatcher.getQueueDepth());
+        assertEquals(6, dispatcher.getDiscarded());
+    }
+
+    public void testEventDispatcherRejected() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    throw new RejectedExecutionException("shut down");
+                }
+            }, 4, EventDispatcher.OverflowPolicy.DISCARD);
+        EventListener l = new EventListener() {};
+        final List<Integer> seen = new ArrayList<Integer>();
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            dispatcher.dispatch(l, () -> seen.add(n));
+        }
+        assertEquals("delivered in order on the calling thread",
+                     Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), seen);
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(10, dispatcher.getDelivered());
+        assertEquals(0, dispatcher.getDiscarded());
+    }
+
+    public void testEventDispatcherListenerError() throws Exception {
+        final List<Throwable> uncaught = new ArrayList<Throwable>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r);
+                t.setUncaughtExceptionHandler((thread, e) -> {
+                        synchronized (uncaught) {
+                            uncaught.add(e);
+                        }
+                    });
+                return t;
+            });
+        try {
+            EventDispatcher dispatcher = new EventDispatcher(executor, 4, EventDispatcher.OverflowPolicy.DISCARD);
+            EventListener l = new EventListener() {};
+            final CountDownLatch next = new CountDownLatch(1);
+            dispatcher.dispatch(l, () -> {
+                    throw new AssertionError("listener failed");
+                });
+            dispatcher.dispatch(l, () -> next.countDown());
+            assertTrue("later events are still delivered", next.await(10, TimeUnit.SECONDS));
+            synchronized (uncaught) {
+                assertEquals(1, uncaught.size());
+                assertTrue(uncaught.get(0) instanceof AssertionError);
+            }
+            assertEquals(1, dispatcher.getFailures());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
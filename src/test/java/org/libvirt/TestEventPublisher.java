@@ -0,0 +1,34 @@
+package org.libvirt;
+
+import java.util.EnumSet;
+
+import org.libvirt.event.DomainEventRecord;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the {@link EventPublisher} not requiring a connection.
+ */
+public class TestEventPublisher extends TestCase {
+    public void testFlowPublisher() throws Exception {
+        EventPublisher publisher = new EventPublisher(null, EnumSet.of(DomainEventRecord.Type.LIFECYCLE),
+                                                      1, EventPublisher.Overflow.DROP_NEWEST);
+        Object adapter;
+        try {
+            adapter = publisher.toFlowPublisher();
+        } catch (UnsupportedOperationException e) {
+            // Java 8, or not running from the multi-release jar
+            return;
+        }
+        assertTrue(Class.forName("java.util.concurrent.Flow$Publisher").isInstance(adapter));
+    }
+
+    public void testEventPublisherEmptyTypes() throws Exception {
+        try {
+            new EventPublisher(null, EnumSet.noneOf(DomainEventRecord.Type.class),
+                               1, EventPublisher.Overflow.DROP_NEWEST);
+            fail("IllegalArgumentException expected for a publisher of no events");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
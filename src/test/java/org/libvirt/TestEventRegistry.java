@@ -0,0 +1,57 @@
+package org.libvirt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.libvirt.event.EventListener;
+import org.libvirt.jna.DomainPointer;
+
+import com.sun.jna.Callback;
+import com.sun.jna.Pointer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the sharing of native event callbacks.
+ */
+public class TestEventRegistry extends TestCase {
+    public void testEventRegistrySharesCallbacks() throws Exception {
+        final AtomicInteger registered = new AtomicInteger();
+        final AtomicInteger deregistered = new AtomicInteger();
+        EventRegistry<DomainPointer> registry = new EventRegistry<DomainPointer>(2,
+            (ptr, eventID, cb) -> registered.incrementAndGet(),
+            callbackId -> deregistered.incrementAndGet());
+        final List<List<EventListener>> lists = new ArrayList<List<EventListener>>();
+        EventRegistry.CallbackFactory factory = listeners -> {
+            lists.add(listeners);
+            return new Callback() {};
+        };
+        EventListener l1 = new EventListener() {};
+        EventListener l2 = new EventListener() {};
+        EventListener l3 = new EventListener() {};
+        DomainPointer dom = new DomainPointer(new Pointer(42));
+
+        assertTrue(registry.register(0, null, l1, factory));
+        assertTrue(registry.register(0, null, l2, factory));
+        assertFalse(registry.register(0, dom, l2, factory));
+        assertTrue(registry.register(0, dom, l3, factory));
+        assertTrue(registry.register(1, null, l1, factory));
+        assertEquals(3, registered.get());
+        assertEquals(3, registry.getCallbackCount());
+        assertEquals(Arrays.asList(l1, l2), lists.get(0));
+
+        assertTrue(registry.deregister(0, l1));
+        assertFalse(registry.deregister(0, l1));
+        assertEquals(0, deregistered.get());
+        assertEquals(Arrays.asList(l2), lists.get(0));
+        assertTrue(registry.contains(l1));
+
+        assertTrue(registry.deregister(1, l1));
+        assertTrue(registry.deregister(0, l2));
+        assertEquals(2, deregistered.get());
+        assertFalse(registry.contains(l1));
+        assertEquals(1, registry.getCallbackCount());
+    }
+}
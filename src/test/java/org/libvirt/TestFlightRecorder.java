@@ -0,0 +1,63 @@
+package org.libvirt;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.libvirt.jna.ConnectionPointer;
+
+import com.sun.jna.Pointer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the flight recorder events, run when jdk.jfr is available.
+ */
+public class TestFlightRecorder extends TestCase {
+    public void testFlightRecorder() throws Exception {
+        FlightRecorder recorder = FlightRecorder.INSTANCE;
+        if (!recorder.isAvailable()) {
+            assertNull(recorder.beginNativeCall());
+            assertNull(recorder.beginCallback());
+            assertNull(recorder.beginStreamIO());
+            return;
+        }
+        // a pointer reused for a connection to another URI keeps it
+        ConnectionPointer vcp = new ConnectionPointer();
+        vcp.setPointer(new Pointer(0x1234));
+        recorder.connectionOpened(vcp, "test:///second");
+        recorder.connectionClosed(vcp, "test:///first");
+        assertEquals("test:///second", recorder.connectionURI(vcp));
+        recorder.connectionClosed(vcp, "test:///second");
+        assertNull(recorder.connectionURI(vcp));
+
+        // jdk.jfr is used by reflection, as the tests are built for Java 8
+        Class<?> recordingType = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingType.getConstructor().newInstance();
+        Path file = Files.createTempFile("libvirt", ".jfr");
+        try {
+            recordingType.getMethod("enable", String.class).invoke(recording, "org.libvirt.StreamIO");
+            recordingType.getMethod("start").invoke(recording);
+            Object event = recorder.beginStreamIO();
+            assertNotNull("the event is enabled in the recording", event);
+            recorder.commitStreamIO(event, true, 1024, 0);
+            recordingType.getMethod("stop").invoke(recording);
+            recordingType.getMethod("dump", Path.class).invoke(recording, file);
+
+            List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class).invoke(null, file);
+            int found = 0;
+            for (Object e : events) {
+                Object type = e.getClass().getMethod("getEventType").invoke(e);
+                if ("org.libvirt.StreamIO".equals(type.getClass().getMethod("getName").invoke(type))) {
+                    assertEquals(1024L, e.getClass().getMethod("getLong", String.class).invoke(e, "bytes"));
+                    found++;
+                }
+            }
+            assertEquals(1, found);
+        } finally {
+            recordingType.getMethod("close").invoke(recording);
+            Files.delete(file);
+        }
+    }
+}
@@ -3,14 +3,30 @@ package org.libvirt;
 import org.libvirt.Domain.CheckpointListFlags;
 import org.libvirt.event.*;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
@@ -66,6 +82,25 @@ public final class TestJavaBindings extends TestCase {
         assertTrue("conn.isSecure", conn.isSecure() == 1);
     }
 
+    public void testConnectionIdentityCache() throws Exception {
+        assertSame("conn.getURI() cached", conn.getURI(), conn.getURI());
+        assertSame("conn.getType() cached", conn.getType(), conn.getType());
+        Connect other = new Connect("test:///default", true);
+        try {
+            assertEquals(conn, other);
+            assertEquals(conn.hashCode(), other.hashCode());
+        } finally {
+            other.close();
+        }
+        LibvirtException virException = null;
+        try {
+            other.getURI();
+        } catch (LibvirtException e) {
+            virException = e;
+        }
+        assertNotNull("cache dropped on close", virException);
+    }
+
     /*
      * Excercise the listCapabilities method of the Device class.
      */
@@ -161,6 +196,9 @@ public final class TestJavaBindings extends TestCase {
         assertTrue("Domain1 should be persistent", dom1.isPersistent() == 1);
         assertTrue("Domain1 should not be active", dom1.isActive() == 0);
         assertTrue("Domain2 should be active", dom2.isActive() == 1);
+        assertEquals("Domain1 state", DomainInfo.DomainState.VIR_DOMAIN_SHUTOFF, dom1.getState());
+        assertEquals("Domain2 state", DomainInfo.DomainState.VIR_DOMAIN_RUNNING, dom2.getState());
+        assertEquals("Domain2 state from info", dom2.getState(), dom2.getInfo().state);
         this.validateDomainData(dom2);
         this.validateDomainData(conn.domainLookupByName("createst"));
         this.validateDomainData(conn.domainLookupByUUID(UUIDArray));
@@ -266,6 +304,22 @@ public final class TestJavaBindings extends TestCase {
         assertTrue("Domain2 should be active", defaultPool.isActive() == 1);
     }
 
+    public void testListAll() throws Exception {
+        StoragePool[] pools = conn.listAllStoragePools(Connect.ConnectListAllStoragePoolsFlags.CONNECT_LIST_STORAGE_POOLS_ACTIVE);
+        assertEquals("active pools", conn.numOfStoragePools(), pools.length);
+        assertEquals("default-pool", pools[0].getName());
+        assertEquals("volumes", pools[0].numOfVolumes(), pools[0].listAllVolumes(0).length);
+
+        Network[] networks = conn.listAllNetworks(0);
+        assertEquals("networks", conn.numOfNetworks() + conn.numOfDefinedNetworks(), networks.length);
+        assertEquals("default", networks[0].getName());
+
+        assertEquals("interfaces", conn.numOfInterfaces(),
+                     conn.listAllInterfaces(Connect.ConnectListAllInterfacesFlags.CONNECT_LIST_INTERFACES_ACTIVE).length);
+        assertEquals("secrets", conn.numOfSecrets(), conn.listAllSecrets(0).length);
+        assertEquals("devices", conn.listDevices(null).length, conn.listAllNodeDevices(0).length);
+    }
+
     public void testDomainEvents() throws Exception {
         final List<DomainEventType> events = new ArrayList<DomainEventType>();
         final Thread t = new Thread() {
@@ -321,6 +375,507 @@ public final class TestJavaBindings extends TestCase {
         }
     }
 
+    public void testMetadataChangeListener() throws Exception {
+        long version = conn.getLibVersion();
+        // earlier test drivers do not emit the event
+        if (version < 5010000) {
+            System.err.format("testMetadataChangeListener skipped (libvirt version %d.%d.%d < 5.10.0)\n",
+                              version / 1000000, version / 1000 % 1000, version % 1000);
+            return;
+        }
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        final List<Integer> types = new ArrayList<Integer>();
+        MetadataChangeListener listener = new MetadataChangeListener() {
+            @Override
+            public void onMetadataChange(Domain d, int type, String nsuri) {
+                synchronized (types) {
+                    types.add(type);
+                }
+            }
+        };
+        try {
+            conn.addMetadataChangeListener(listener);
+
+            Domain dom = conn.domainLookupByName("test");
+            dom.setMetadata(Domain.MetadataType.TITLE, "a title", null, null, Domain.ModificationImpact.CURRENT);
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            synchronized (types) {
+                assertEquals(Arrays.asList(Domain.MetadataType.TITLE), types);
+            }
+        } finally {
+            conn.removeMetadataChangeListener(listener);
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testNetworkAndStoragePoolEvents() throws Exception {
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        final List<NetworkEventType> networkEvents = new ArrayList<NetworkEventType>();
+        final List<String> refreshed = new ArrayList<String>();
+        NetworkLifecycleListener networkListener = new NetworkLifecycleListener() {
+            @Override
+            public void onNetworkLifecycleChange(Network n, NetworkEventType e) {
+                synchronized (networkEvents) {
+                    networkEvents.add(e);
+                }
+            }
+        };
+        StoragePoolRefreshListener refreshListener = new StoragePoolRefreshListener() {
+            @Override
+            public void onStoragePoolRefresh(StoragePool p) {
+                synchronized (refreshed) {
+                    try {
+                        refreshed.add(p.getName());
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    }
+                }
+            }
+        };
+        try {
+            conn.addNetworkLifecycleListener(networkListener);
+            conn.addStoragePoolRefreshListener(refreshListener);
+
+            Network network = conn.networkDefineXML("<network>" + "  <name>eventtest</name>"
+                + "  <uuid>004b96e1-2d78-c30f-5aa5-f03c87d21e69</uuid>" + "  <bridge name='eventtest'/>"
+                + "</network>");
+            network.create();
+            network.destroy();
+            network.undefine();
+            conn.storagePoolLookupByName("default-pool").refresh(0);
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            synchronized (networkEvents) {
+                assertEquals(Arrays.asList(NetworkEventType.DEFINED,
+                                           NetworkEventType.STARTED,
+                                           NetworkEventType.STOPPED,
+                                           NetworkEventType.UNDEFINED),
+                             networkEvents);
+            }
+            synchronized (refreshed) {
+                assertEquals(Arrays.asList("default-pool"), refreshed);
+            }
+        } finally {
+            conn.removeNetworkLifecycleListener(networkListener);
+            conn.removeStoragePoolRefreshListener(refreshListener);
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testEventPublisher() throws Exception {
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        final List<DomainEventRecord> records = new ArrayList<DomainEventRecord>();
+        final Flow.Subscription[] subscription = new Flow.Subscription[1];
+        Flow.Subscriber<DomainEventRecord> subscriber = new Flow.Subscriber<DomainEventRecord>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(1);
+            }
+
+            @Override
+            public void onNext(DomainEventRecord record) {
+                synchronized (records) {
+                    records.add(record);
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                fail("onError was called: " + e);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+        EventPublisher publisher = conn.events(EnumSet.of(DomainEventRecord.Type.LIFECYCLE));
+        try {
+            publisher.subscribe(subscriber);
+            assertEquals(1, publisher.getSubscriberCount());
+
+            Domain dom = conn.domainLookupByName("test");
+            dom.suspend();
+            dom.resume();
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            // only one event was requested, the other one is buffered
+            synchronized (records) {
+                assertEquals(1, records.size());
+                DomainEventRecord.Lifecycle r = (DomainEventRecord.Lifecycle) records.get(0);
+                assertEquals(DomainEventType.SUSPENDED, r.getEvent().getType());
+                assertEquals(dom, r.getDomain());
+            }
+
+            subscription[0].request(1);
+            synchronized (records) {
+                assertEquals(2, records.size());
+                assertEquals(DomainEventType.RESUMED,
+                             ((DomainEventRecord.Lifecycle) records.get(1)).getEvent().getType());
+            }
+        } finally {
+            subscription[0].cancel();
+            assertEquals(0, publisher.getSubscriberCount());
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testFailingListener() throws Exception {
+        final List<Throwable> uncaught = new ArrayList<Throwable>();
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread th, Throwable e) {
+                    synchronized (uncaught) {
+                        uncaught.add(e);
+                    }
+                }
+            });
+        t.start();
+
+        final List<DomainEventType> events = new ArrayList<DomainEventType>();
+        LifecycleListener failing = new LifecycleListener() {
+            @Override
+            public int onLifecycleChange(Domain d, DomainEvent e) {
+                throw new IllegalStateException("failing listener");
+            }
+        };
+        LifecycleListener second = new LifecycleListener() {
+            @Override
+            public int onLifecycleChange(Domain d, DomainEvent e) {
+                synchronized (events) {
+                    events.add(e.getType());
+                }
+                return 0;
+            }
+        };
+        try {
+            conn.addLifecycleListener(failing);
+            conn.addLifecycleListener(second);
+
+            Domain dom = conn.domainLookupByName("test");
+            dom.suspend();
+            dom.resume();
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            synchronized (events) {
+                assertEquals(Arrays.asList(DomainEventType.SUSPENDED, DomainEventType.RESUMED), events);
+            }
+            synchronized (uncaught) {
+                assertEquals(2, uncaught.size());
+                assertTrue(uncaught.get(0) instanceof IllegalStateException);
+            }
+        } finally {
+            conn.removeLifecycleListener(failing);
+            conn.removeLifecycleListener(second);
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testLifecycleCoalescer() throws Exception {
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        final List<List<DomainEventRecord.Lifecycle>> batches =
+            new ArrayList<List<DomainEventRecord.Lifecycle>>();
+        LifecycleCoalescer coalescer = new LifecycleCoalescer(1, TimeUnit.HOURS,
+            new LifecycleBatchListener() {
+                @Override
+                public void onLifecycleBatch(List<DomainEventRecord.Lifecycle> events) {
+                    synchronized (batches) {
+                        batches.add(events);
+                    }
+                }
+            });
+        try {
+            conn.addLifecycleListener(coalescer);
+
+            Domain dom = conn.domainLookupByName("test");
+            dom.suspend();
+            dom.resume();
+            dom.suspend();
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            coalescer.flush();
+            synchronized (batches) {
+                assertEquals(1, batches.size());
+                assertEquals(1, batches.get(0).size());
+                assertEquals(DomainEventType.SUSPENDED, batches.get(0).get(0).getEvent().getType());
+            }
+            assertEquals(3, coalescer.getReceived());
+            assertEquals(2, coalescer.getCoalesced());
+        } finally {
+            conn.removeLifecycleListener(coalescer);
+            coalescer.close();
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testLifecycleCoalescerWindows() throws Exception {
+        final List<List<DomainEventRecord.Lifecycle>> batches =
+            new ArrayList<List<DomainEventRecord.Lifecycle>>();
+        LifecycleBatchListener batchListener = new LifecycleBatchListener() {
+                @Override
+                public void onLifecycleBatch(List<DomainEventRecord.Lifecycle> events) {
+                    synchronized (batches) {
+                        batches.add(events);
+                    }
+                }
+            };
+        Domain dom = conn.domainLookupByName("test");
+        DomainEvent suspended = new DomainEvent(DomainEventType.SUSPENDED, 0);
+        LifecycleCoalescer coalescer = new LifecycleCoalescer(300, TimeUnit.MILLISECONDS, batchListener);
+        try {
+            coalescer.onLifecycleChange(dom, suspended);
+            coalescer.flush();
+            Thread.sleep(150);
+            coalescer.onLifecycleChange(dom, suspended);
+            // the timer of the flushed window would have fired by now
+            Thread.sleep(200);
+            synchronized (batches) {
+                assertEquals(1, batches.size());
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (coalescer.getBatches() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, coalescer.getBatches());
+        } finally {
+            coalescer.close();
+        }
+
+        // an event racing the shutdown of the scheduler is delivered at once
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.shutdown();
+        coalescer = new LifecycleCoalescer(1, TimeUnit.HOURS, batchListener, scheduler);
+        coalescer.onLifecycleChange(dom, suspended);
+        assertEquals(1, coalescer.getBatches());
+        coalescer.close();
+    }
+
+    public void testEventDomainReuse() throws Exception {
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        final List<Domain> domains = new ArrayList<Domain>();
+        LifecycleListener listener = new LifecycleListener() {
+            @Override
+            public int onLifecycleChange(Domain d, DomainEvent e) {
+                synchronized (domains) {
+                    domains.add(d);
+                }
+                return 0;
+            }
+        };
+        try {
+            conn.addLifecycleListener(listener);
+
+            Domain dom = conn.domainLookupByName("test");
+            dom.suspend();
+            dom.resume();
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            synchronized (domains) {
+                assertEquals(2, domains.size());
+                assertSame(domains.get(0), domains.get(1));
+                assertEquals(dom, domains.get(0));
+            }
+            assertEquals(1, conn.eventDomains.getMisses());
+            assertEquals(1, conn.eventDomains.getHits());
+            assertEquals(1, conn.eventDomains.size());
+
+            // freeing the shared domain leaves it usable for other listeners
+            synchronized (domains) {
+                assertEquals(0, domains.get(0).free());
+                assertEquals("test", domains.get(0).getName());
+            }
+
+            // a stopped domain is dropped, its next run has another ID
+            dom.destroy();
+            Thread.sleep(300);
+            assertEquals(0, conn.eventDomains.size());
+            dom.create();
+        } finally {
+            conn.removeLifecycleListener(listener);
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testDomainInventory() throws Exception {
+        long version = conn.getLibVersion();
+        // earlier test drivers do not support the call
+        if (version < 5010000) {
+            System.err.format("testDomainInventory skipped (libvirt version %d.%d.%d < 5.10.0)\n",
+                              version / 1000000, version / 1000 % 1000, version % 1000);
+            return;
+        }
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        DomainInventory inventory = new DomainInventory(conn);
+        try {
+            assertEquals(1, inventory.size());
+            DomainInventory.Entry test = inventory.getByName("test");
+            assertNotNull(test);
+            assertEquals(DomainInfo.DomainState.VIR_DOMAIN_RUNNING, test.getState());
+            assertSame(test, inventory.getByID(test.getID()));
+            assertSame(test, inventory.get(test.getUUID()));
+
+            Domain dom = conn.domainDefineXML("<domain type='test' id='2'>" + "  <name>invtest</name>"
+                + "  <uuid>004b96e1-2d78-c30f-5aa5-f03c87d21e71</uuid>" + "  <memory>8388608</memory>"
+                + "  <vcpu>2</vcpu>" + "  <os><type arch='i686'>hvm</type></os>" + "</domain>");
+            dom.create();
+            dom.suspend();
+
+            // wait until (presumably) all events have been processed
+            Thread.sleep(300);
+
+            assertEquals(2, inventory.size());
+            assertEquals(DomainInfo.DomainState.VIR_DOMAIN_PAUSED, inventory.getByName("invtest").getState());
+            assertEquals(1, inventory.getAll(DomainInfo.DomainState.VIR_DOMAIN_PAUSED).size());
+
+            dom.destroy();
+            dom.undefine();
+            Thread.sleep(300);
+
+            assertNull(inventory.getByName("invtest"));
+            assertEquals(1, inventory.size());
+            assertFalse(inventory.isStale());
+
+            // loaded on first use, and again after a change
+            assertNull(inventory.getByName("test").getTitle());
+            conn.domainLookupByName("test").setMetadata(Domain.MetadataType.TITLE, "A title", null, null, 0);
+            Thread.sleep(300);
+            assertEquals("A title", inventory.getByName("test").getTitle());
+            assertNull(inventory.getByName("test").getDescription());
+        } finally {
+            inventory.close();
+            Library.stopEventLoop();
+        }
+    }
+
+    public void testDomainInventoryRebind() throws Exception {
+        long version = conn.getLibVersion();
+        // earlier test drivers do not support the call
+        if (version < 5010000) {
+            System.err.format("testDomainInventoryRebind skipped (libvirt version %d.%d.%d < 5.10.0)\n",
+                              version / 1000000, version / 1000 % 1000, version % 1000);
+            return;
+        }
+        Connect first = new Connect("test:///default", false);
+        DomainInventory inventory = new DomainInventory(first);
+        try {
+            assertFalse(inventory.isStale());
+            first.close();
+            assertTrue("stale once the connection is closed", inventory.isStale());
+            assertEquals("keeps the last known state", 1, inventory.size());
+
+            inventory.rebind(conn);
+            assertFalse(inventory.isStale());
+            DomainInventory.Entry test = inventory.getByName("test");
+            assertNotNull(test);
+            assertSame(conn, test.getDomain().getConnect());
+        } finally {
+            inventory.close();
+        }
+    }
+
     public void testDomainScreenshot() throws Exception {
         long version = Library.getVersion();
 
@@ -371,6 +926,141 @@ public final class TestJavaBindings extends TestCase {
         }
     }
 
+    public void testDomainScreenshotReceiveAll() throws Exception {
+        if (Library.getVersion() < 1000005) {
+            return;
+        }
+        Stream str = this.conn.streamNew(0);
+        Domain dom = this.conn.domainLookupByName("test");
+        try {
+            try {
+                dom.screenshot(str, 0);
+            } catch (LibvirtException ex) {
+                if (ex.getMessage().contains("test-screenshot.png': No such file or directory")) {
+                    return;
+                }
+                throw ex;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long n = str.receiveAll(Channels.newChannel(out));
+            assertEquals(out.size(), n);
+            byte[] png = out.toByteArray();
+            // binary data including NUL bytes must be preserved
+            assertEquals((byte) 0x89, png[0]);
+            assertEquals('P', png[1]);
+            assertEquals(0, png[8]);
+            assertEquals(-1, str.read(ByteBuffer.allocate(1)));
+        } finally {
+            str.free();
+        }
+    }
+
+    public void testDomainScreenshotReceiveAllFailure() throws Exception {
+        if (Library.getVersion() < 1000005) {
+            return;
+        }
+        Stream str = this.conn.streamNew(0);
+        Domain dom = this.conn.domainLookupByName("test");
+        try {
+            try {
+                dom.screenshot(str, 0);
+            } catch (LibvirtException ex) {
+                if (ex.getMessage().contains("test-screenshot.png': No such file or directory")) {
+                    return;
+                }
+                throw ex;
+            }
+            WritableByteChannel failing = new WritableByteChannel() {
+                    public int write(ByteBuffer src) {
+                        throw new IllegalStateException("sink failed");
+                    }
+                    public boolean isOpen() {
+                        return true;
+                    }
+                    public void close() {
+                    }
+                };
+            try {
+                str.receiveAll(failing);
+                fail("IllegalStateException expected from the sink");
+            } catch (IllegalStateException expected) {
+                assertEquals("sink failed", expected.getMessage());
+            }
+        } finally {
+            str.free();
+        }
+    }
+
+    public void testDomainScreenshotAsync() throws Exception {
+        if (Library.getVersion() < 1000005) {
+            return;
+        }
+        final Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Library.runEventLoop();
+                    } catch (LibvirtException e) {
+                        fail("LibvirtException was thrown: " + e);
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+        t.setDaemon(true);
+        t.start();
+
+        final Stream str = this.conn.streamNew(Stream.VIR_STREAM_NONBLOCK);
+        Domain dom = this.conn.domainLookupByName("test");
+        try {
+            try {
+                dom.screenshot(str, 0);
+            } catch (LibvirtException ex) {
+                if (ex.getMessage().contains("test-screenshot.png': No such file or directory")) {
+                    return;
+                }
+                throw ex;
+            }
+
+            // a stage depending on a read may start the next read from
+            // another thread and wait for it
+            final ByteBuffer bb = ByteBuffer.allocateDirect(8192);
+            final AtomicReference<CompletableFuture<Integer>> next =
+                new AtomicReference<CompletableFuture<Integer>>();
+            CompletableFuture<Integer> first = str.readAsync(ByteBuffer.allocateDirect(8192)).thenApply(
+                new Function<Integer, Integer>() {
+                    @Override
+                    public Integer apply(final Integer n) {
+                        Thread reader = new Thread() {
+                                @Override
+                                public void run() {
+                                    next.set(str.readAsync(bb));
+                                }
+                            };
+                        reader.start();
+                        try {
+                            reader.join(5000);
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        assertFalse("readAsync blocked by a dependent stage", reader.isAlive());
+                        return n;
+                    }
+                });
+            long total = first.get(5, TimeUnit.SECONDS);
+            int n = next.get().get(5, TimeUnit.SECONDS);
+            while (n != -1) {
+                total += n;
+                bb.clear();
+                n = str.readAsync(bb).get(5, TimeUnit.SECONDS);
+            }
+            assertTrue("screenshot should not be empty", total > 0);
+            assertEquals("Stream is at EOF", -1, str.read(bb));
+        } finally {
+            str.free();
+            Library.stopEventLoop();
+        }
+    }
+
     public void testDomainMetadata() throws LibvirtException {
         Domain dom = conn.domainDefineXML("<domain type='test' id='2'>" + "  <name>metatest</name>"
                 + "  <uuid>004b96e1-2d78-c30f-5aa5-f03c87d21e70</uuid>" + "  <memory>8388608</memory>"
@@ -447,6 +1137,99 @@ public final class TestJavaBindings extends TestCase {
         return domain;
     }
 
+    public void testDomainStats() throws LibvirtException {
+        long version = conn.getLibVersion();
+        // earlier test drivers do not support the call
+        if (version < 5010000) {
+            System.err.format("testDomainStats skipped (libvirt version %d.%d.%d < 5.10.0)\n",
+                              version / 1000000, version / 1000 % 1000, version % 1000);
+            return;
+        }
+        DomainStats[] stats = conn.getAllDomainStats(Connect.DomainStatsTypes.STATE, 0);
+        assertEquals(1, stats.length);
+        assertEquals("test", stats[0].domain.getName());
+        TypedParameter state = stats[0].get("state.state");
+        assertNotNull(state);
+        assertEquals(String.valueOf(DomainInfo.DomainState.VIR_DOMAIN_RUNNING.ordinal()), state.getValueAsString());
+
+        Domain dom = conn.domainLookupByName("test");
+        stats = conn.getDomainStats(new Domain[] { dom }, Connect.DomainStatsTypes.STATE, 0);
+        assertEquals(1, stats.length);
+        assertEquals(dom.getUUIDString(), stats[0].domain.getUUIDString());
+    }
+
+    public void testDomainStatsTable() throws LibvirtException {
+        long version = conn.getLibVersion();
+        // earlier test drivers do not support the call
+        if (version < 5010000) {
+            System.err.format("testDomainStatsTable skipped (libvirt version %d.%d.%d < 5.10.0)\n",
+                              version / 1000000, version / 1000 % 1000, version % 1000);
+            return;
+        }
+        DomainStatsTable table = new DomainStatsTable();
+        for (int poll = 0; poll < 2; poll++) {
+            assertEquals(1, conn.getAllDomainStats(Connect.DomainStatsTypes.STATE, 0, table));
+            assertEquals(1, table.getRowCount());
+            int row = table.getRow(UUID.fromString(conn.domainLookupByName("test").getUUIDString()));
+            assertEquals(0, row);
+            int col = table.getColumn("state.state");
+            assertTrue(col >= 0);
+            assertTrue(table.isPresent(row, col));
+            assertEquals(DomainInfo.DomainState.VIR_DOMAIN_RUNNING.ordinal(), table.getLong(row, col, -1));
+        }
+    }
+
+    public void testDomainIdentityMap() throws LibvirtException {
+        assertFalse(conn.isDomainIdentityMapEnabled());
+        assertNotSame(conn.domainLookupByName("test"), conn.domainLookupByName("test"));
+
+        conn.setDomainIdentityMapEnabled(true);
+        Domain dom = conn.domainLookupByName("test");
+        assertSame(dom, conn.domainLookupByName("test"));
+        assertSame(dom, conn.domainLookupByUUIDString(dom.getUUIDString()));
+        assertSame(dom, conn.listAllDomains(0)[0]);
+
+        dom.free();
+        Domain other = conn.domainLookupByName("test");
+        assertNotSame(dom, other);
+        assertEquals("test", other.getName());
+
+        conn.setDomainIdentityMapEnabled(false);
+        assertNotSame(other, conn.domainLookupByName("test"));
+        assertEquals(other, conn.domainLookupByName("test"));
+    }
+
+    public void testDomainIdentityMapConcurrentLookups() throws Exception {
+        conn.setDomainIdentityMapEnabled(true);
+        final int threads = 8;
+        final Domain[] found = new Domain[threads];
+        final CyclicBarrier start = new CyclicBarrier(threads);
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int n = i;
+            workers[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            found[n] = conn.domainLookupByName("test");
+                        } catch (Exception e) {
+                            Thread t = Thread.currentThread();
+                            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+                        }
+                    }
+                };
+            workers[i].start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        for (Domain d : found) {
+            assertSame(found[0], d);
+        }
+        conn.setDomainIdentityMapEnabled(false);
+    }
+
     /**
      * Check if throw an error when try to create a checkpoint in a inactive domain
      * @throws LibvirtException
@@ -642,4 +1425,69 @@ public final class TestJavaBindings extends TestCase {
         // domainCheckpoint.delete(DomainCheckpoint.CheckpointDeleteFlags.CHILDREN);
         // assertEquals("The checkpoint should be removed", 0, domain.listAllCheckpoints(0).length);
     }
+
+    private StorageVol createTransferVolume(final String name, final long capacity) throws LibvirtException {
+        StoragePool pool = conn.storagePoolLookupByName("default-pool");
+        return pool.storageVolCreateXML("<volume>"
+                + "  <name>" + name + "</name>"
+                + "  <capacity unit='bytes'>" + capacity + "</capacity>"
+                + "</volume>", 0);
+    }
+
+    public void testStorageVolTransfer() throws Exception {
+        final int size = 40000;
+        StorageVol vol = createTransferVolume("transfer.img", size);
+        Path in = Files.createTempFile("libvirt-upload", ".img");
+        Path out = Files.createTempFile("libvirt-download", ".img");
+        try {
+            byte[] data = new byte[size];
+            new Random(42).nextBytes(data);
+            Files.write(in, data);
+
+            StorageVolTransfer transfer = new StorageVolTransfer(vol);
+            transfer.setParallelism(4);
+            transfer.setRangeSize(4096);
+            try (FileChannel source = FileChannel.open(in, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(out, StandardOpenOption.WRITE)) {
+                try {
+                    assertEquals(size, transfer.upload(source, 0, 0));
+                } catch (LibvirtException e) {
+                    if (e.getError().getCode() == Error.ErrorNumber.VIR_ERR_NO_SUPPORT) {
+                        // the driver cannot transfer volumes
+                        return;
+                    }
+                    throw e;
+                }
+                assertEquals("position of the source", 0, source.position());
+                assertEquals(size, transfer.download(target, 0, size));
+                assertEquals("position of the target", 0, target.position());
+            }
+            assertTrue("downloaded content", Arrays.equals(data, Files.readAllBytes(out)));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+            vol.delete(0);
+        }
+    }
+
+    public void testStorageVolTransferFailure() throws Exception {
+        StorageVol vol = createTransferVolume("transfer-failure.img", 40000);
+        vol.delete(0);
+        Path out = Files.createTempFile("libvirt-download", ".img");
+        try (FileChannel target = FileChannel.open(out, StandardOpenOption.WRITE)) {
+            StorageVolTransfer transfer = new StorageVolTransfer(vol);
+            transfer.setParallelism(4);
+            transfer.setRangeSize(4096);
+            transfer.setRetries(1);
+            try {
+                transfer.download(target, 0, 40000);
+                fail("the download of a deleted volume should fail");
+            } catch (LibvirtException e) {
+                // expected
+            }
+            assertTrue("the file should stay open", target.isOpen());
+        } finally {
+            Files.delete(out);
+        }
+    }
 }
@@ -0,0 +1,141 @@
+package org.libvirt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.libvirt.jna.CLibrary;
+
+import com.sun.jna.Callback;
+import com.sun.jna.CallbackReference;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the {@link JavaEventLoop}, driven through its callbacks as
+ * libvirt would.
+ */
+public class TestJavaEventLoop extends TestCase {
+    interface HandleCallback extends Callback {
+        void invoke(int watch, int fd, int events, Pointer opaque);
+    }
+
+    interface TimeoutCallback extends Callback {
+        void invoke(int timer, Pointer opaque);
+    }
+
+    interface FreeCallback extends Callback {
+        void invoke(Pointer opaque);
+    }
+
+    public void testJavaEventLoop() throws Exception {
+        // not registered with libvirt, the callbacks are invoked as libvirt would
+        JavaEventLoop loop = new JavaEventLoop();
+        int wakeupFd = loop.getWakeupFileDescriptor();
+        assertTrue((CLibrary.INSTANCE.fcntl(wakeupFd, CLibrary.F_GETFD) & CLibrary.FD_CLOEXEC) != 0);
+        assertTrue((CLibrary.INSTANCE.fcntl(wakeupFd, CLibrary.F_GETFL) & CLibrary.O_NONBLOCK) != 0);
+        final List<Integer> handleEvents = new ArrayList<Integer>();
+        final AtomicInteger fired = new AtomicInteger();
+        final AtomicInteger freed = new AtomicInteger();
+        HandleCallback handleCb = (watch, fd, events, opaque) -> handleEvents.add(events);
+        TimeoutCallback timeoutCb = (timer, opaque) -> fired.incrementAndGet();
+        FreeCallback freeCb = opaque -> freed.incrementAndGet();
+        Pointer handleFn = CallbackReference.getFunctionPointer(handleCb);
+        Pointer timeoutFn = CallbackReference.getFunctionPointer(timeoutCb);
+        Pointer freeFn = CallbackReference.getFunctionPointer(freeCb);
+
+        int[] fds = new int[2];
+        assertEquals(0, CLibrary.INSTANCE.pipe(fds));
+        try {
+            int watch = loop.addHandle.addHandle(fds[0], 1, handleFn, null, freeFn);
+            assertEquals(1, loop.getHandleCount());
+            assertEquals(Integer.valueOf(CLibrary.POLLIN), loop.getWatchedFileDescriptors().get(fds[0]));
+            assertEquals("nothing to read yet", 0, loop.runOnce(0));
+
+            CLibrary.INSTANCE.write(fds[1], new byte[] {1}, new NativeLong(1));
+            assertEquals(1, loop.runOnce(1000));
+            assertEquals(Arrays.asList(1), handleEvents);
+
+            loop.updateHandle.updateHandle(watch, 0);
+            assertTrue(loop.getWatchedFileDescriptors().isEmpty());
+            assertEquals("no longer watched", 0, loop.runOnce(0));
+
+            assertEquals(0, loop.removeHandle.removeHandle(watch));
+            assertEquals(-1, loop.removeHandle.removeHandle(watch));
+            assertEquals(0, loop.getHandleCount());
+            assertEquals("freed by the loop, not on removal", 0, freed.get());
+            loop.runOnce(0);
+            assertEquals(1, freed.get());
+
+            int timer = loop.addTimeout.addTimeout(-1, timeoutFn, null, freeFn);
+            assertEquals(1, loop.getTimeoutCount());
+            assertEquals(-1, loop.getNextTimeout());
+            assertEquals("disabled", 0, loop.runOnce(0));
+
+            loop.updateTimeout.updateTimeout(timer, 0);
+            assertEquals(0, loop.getNextTimeout());
+            assertEquals(1, loop.runOnce(0));
+            assertEquals(1, fired.get());
+
+            loop.updateTimeout.updateTimeout(timer, 50);
+            assertTrue(loop.getNextTimeout() > 0);
+            long start = System.nanoTime();
+            while (fired.get() < 2) {
+                loop.runOnce(1000);
+            }
+            assertTrue("waited for the timer", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+
+            assertEquals(0, loop.removeTimeout.removeTimeout(timer));
+            assertEquals(-1, loop.removeTimeout.removeTimeout(timer));
+            assertEquals(0, loop.getTimeoutCount());
+            assertEquals(1, freed.get());
+            loop.runOnce(0);
+            assertEquals(2, freed.get());
+        } finally {
+            CLibrary.INSTANCE.close(fds[0]);
+            CLibrary.INSTANCE.close(fds[1]);
+        }
+    }
+
+    public void testJavaEventLoopWakeup() throws Exception {
+        final JavaEventLoop loop = new JavaEventLoop();
+        // drain what is ready, then wait without a limit until woken up
+        loop.runOnce(0);
+        final CountDownLatch woken = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+                try {
+                    loop.runOnce(-1);
+                    woken.countDown();
+                } catch (LibvirtException e) {
+                    Thread th = Thread.currentThread();
+                    th.getUncaughtExceptionHandler().uncaughtException(th, e);
+                }
+            });
+        t.start();
+        Thread.sleep(50);
+        loop.wakeup();
+        assertTrue(woken.await(5, TimeUnit.SECONDS));
+        t.join();
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        t = new Thread(() -> {
+                try {
+                    loop.run();
+                    stopped.countDown();
+                } catch (LibvirtException | InterruptedException e) {
+                    Thread th = Thread.currentThread();
+                    th.getUncaughtExceptionHandler().uncaughtException(th, e);
+                }
+            });
+        t.start();
+        Thread.sleep(50);
+        loop.stop();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        t.join();
+    }
+}
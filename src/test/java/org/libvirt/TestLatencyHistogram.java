@@ -0,0 +1,29 @@
+package org.libvirt;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the histogram of call latencies.
+ */
+public class TestLatencyHistogram extends TestCase {
+    public void testLatencyHistogram() throws Exception {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(99));
+        for (long v = 1; v <= 1000; v++) {
+            h.record(v * 1000);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000000, h.getMax());
+        assertEquals(500500.0, h.getMean(), 0.001);
+        long median = h.getValueAtPercentile(50);
+        assertTrue("median " + median, median >= 500000 && median <= 500000 * 1.125);
+        assertEquals(1000000, h.getValueAtPercentile(100));
+        for (long v : new long[] {0, 7, 8, 15, 16, 1000, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(LatencyHistogram.lowestValueOf(bucket) <= v);
+            assertTrue(LatencyHistogram.highestValueOf(bucket) >= v);
+        }
+        h.reset();
+        assertEquals(0, h.getCount());
+    }
+}
@@ -2,6 +2,10 @@ package org.libvirt;
 
 import java.util.UUID;
 
+import org.libvirt.jna.LibvirtDirect;
+import org.libvirt.jna.NativeBackend;
+import org.libvirt.jna.virDomainInfo;
+
 import junit.framework.TestCase;
 
 /**
@@ -22,4 +26,33 @@ public class TestLibvirtGlobals extends TestCase {
     public void testLibrary() throws Exception {
         assertTrue("Library.getVersion() > 6000", Library.getVersion() > 6000);
     }
+
+    public void testNativeBackend() throws Exception {
+        String backend = Library.getNativeBackend();
+        assertTrue("unknown backend " + backend,
+                   "panama".equals(backend) || "direct".equals(backend) || "jna".equals(backend));
+        if (System.getProperty("org.libvirt.jna.backend") == null
+                && System.getProperty("org.libvirt.jna.direct") == null) {
+            assertEquals(LibvirtDirect.ENABLED ? "direct" : "jna", backend);
+        }
+
+        Connect conn = new Connect("test:///default", true);
+        try {
+            Domain dom = conn.domainLookupByName("test");
+            for (String name : new String[] {"jna", "direct", "panama"}) {
+                NativeBackend b = NativeBackend.select(name, Library.libvirt);
+                assertEquals(name, 1, b.virConnectIsAlive(conn.vcp));
+                assertEquals(name, 1, b.virDomainIsActive(dom.vdp));
+                virDomainInfo info = new virDomainInfo();
+                assertEquals(name, 0, b.virDomainGetInfo(dom.vdp, info));
+                assertEquals(name, dom.getInfo().nrVirtCpu, info.nrVirtCpu);
+                int[] state = new int[1];
+                assertEquals(name, 0, b.virDomainGetState(dom.vdp, state, 0));
+                assertEquals(name, DomainInfo.DomainState.VIR_DOMAIN_RUNNING.ordinal(), state[0]);
+            }
+            dom.free();
+        } finally {
+            conn.close();
+        }
+    }
 }
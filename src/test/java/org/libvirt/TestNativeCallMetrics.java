@@ -0,0 +1,42 @@
+package org.libvirt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the metrics of native calls.
+ */
+public class TestNativeCallMetrics extends TestCase {
+    // a function name no libvirt call has
+    interface MetricsProbe {
+        int testNativeCallMetricsProbe();
+    }
+
+    public void testNativeCallMetrics() throws Exception {
+        final List<String> recorded = new ArrayList<String>();
+        NativeCallRecorder recorder = (function, nanos, error) -> recorded.add(function);
+        NativeCallMetrics.addRecorder(recorder);
+        try {
+            MetricsProbe calls = NativeCallMetrics.instrument(MetricsProbe.class, () -> 42);
+            assertEquals(42, calls.testNativeCallMetricsProbe());
+            assertEquals(42, calls.testNativeCallMetricsProbe());
+        } finally {
+            NativeCallMetrics.removeRecorder(recorder);
+        }
+        NativeCallMetrics.Stats stats = NativeCallMetrics.getStats("testNativeCallMetricsProbe");
+        try {
+            assertEquals(2, stats.getCalls());
+            assertEquals(0, stats.getErrors());
+            assertEquals(2, stats.getLatency().getCount());
+            assertTrue(NativeCallMetrics.getFunctions().contains("testNativeCallMetricsProbe"));
+            assertEquals(Arrays.asList("testNativeCallMetricsProbe", "testNativeCallMetricsProbe"), recorded);
+        } finally {
+            // a function without calls is not reported
+            stats.reset();
+        }
+        assertFalse(NativeCallMetrics.getFunctions().contains("testNativeCallMetricsProbe"));
+    }
+}
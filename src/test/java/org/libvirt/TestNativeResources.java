@@ -0,0 +1,37 @@
+package org.libvirt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the release of native handles.
+ */
+public class TestNativeResources extends TestCase {
+    // the type the handles of testNativeResources are counted as
+    private static final class Leaked {
+    }
+
+    public void testNativeResources() throws Exception {
+        final AtomicInteger released = new AtomicInteger();
+        Object owner = new Object();
+        NativeResources.Handle handle =
+            NativeResources.register(owner, Object.class, () -> released.incrementAndGet());
+        assertFalse(handle.isReleased());
+        assertEquals(1, handle.close());
+        assertTrue(handle.isReleased());
+        assertEquals(0, handle.close());
+        assertEquals(1, released.get());
+
+        // a handle whose owner is never freed is released by the cleaner thread
+        NativeResources.Handle leaked =
+            NativeResources.register(new Object(), Leaked.class, () -> released.incrementAndGet());
+        for (int i = 0; i < 100 && released.get() < 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(2, released.get());
+        assertTrue(leaked.isReleased());
+        assertEquals(1, NativeResources.getReclaimedHandles(Leaked.class));
+    }
+}
@@ -0,0 +1,106 @@
+package org.libvirt;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the sparse transfer loops of {@link StorageVol}, with stub streams.
+ */
+public class TestStorageVol extends TestCase {
+    public void testSparseReceive() throws Exception {
+        // data, a hole, data and a trailing hole
+        final Object[] script = {"abc", 4096L, "xyz", 100L};
+        StorageVol.SparseStream stream = new StorageVol.SparseStream() {
+                int next;
+
+                @Override
+                public int receive(final ByteBuffer buffer) {
+                    if (next == script.length) {
+                        return 0;
+                    }
+                    if (script[next] instanceof Long) {
+                        return -3;
+                    }
+                    byte[] data = ((String) script[next++]).getBytes();
+                    buffer.put(data);
+                    return data.length;
+                }
+
+                @Override
+                public long receiveHole() {
+                    return (Long) script[next++];
+                }
+
+                @Override
+                public int send(final ByteBuffer buffer) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void sendHole(final long length) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        Path file = Files.createTempFile("libvirt-sparse", ".img");
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            assertEquals(6, StorageVol.receiveSparse(stream, ByteBuffer.allocateDirect(16), target));
+            assertEquals(3 + 4096 + 3 + 100, target.position());
+            assertEquals(3 + 4096 + 3 + 100, target.size());
+        }
+        byte[] content = Files.readAllBytes(file);
+        Files.delete(file);
+        assertEquals("abc", new String(content, 0, 3));
+        assertEquals(0, content[3 + 4095]);
+        assertEquals("xyz", new String(content, 3 + 4096, 3));
+        assertEquals(0, content[content.length - 1]);
+    }
+
+    public void testSparseSend() throws Exception {
+        final List<String> sent = new ArrayList<String>();
+        StorageVol.SparseStream stream = new StorageVol.SparseStream() {
+                @Override
+                public int receive(final ByteBuffer buffer) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public long receiveHole() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int send(final ByteBuffer buffer) {
+                    int n = buffer.remaining();
+                    buffer.position(buffer.limit());
+                    sent.add("data " + n);
+                    return n;
+                }
+
+                @Override
+                public void sendHole(final long length) {
+                    sent.add("hole " + length);
+                }
+            };
+        // a block of data, two blocks of zeros and a partial block of data
+        byte[] content = new byte[16 * 3 + 5];
+        Arrays.fill(content, 0, 16, (byte) 1);
+        Arrays.fill(content, 48, content.length, (byte) 2);
+        Path file = Files.createTempFile("libvirt-sparse", ".img");
+        Files.write(file, content);
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            long n = StorageVol.sendSparse(stream, ByteBuffer.allocateDirect(16), source, -1, 0, content.length);
+            assertEquals(21, n);
+        } finally {
+            Files.delete(file);
+        }
+        assertEquals(Arrays.asList("data 16", "hole 16", "hole 16", "data 5"), sent);
+    }
+}
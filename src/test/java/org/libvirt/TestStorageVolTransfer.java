@@ -0,0 +1,193 @@
+package org.libvirt;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.libvirt.jna.virError;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the range splitting and retries of {@link StorageVolTransfer},
+ * with the volume held in memory.
+ */
+public class TestStorageVolTransfer extends TestCase {
+    private static final int RANGE = 1000;
+
+    /**
+     * A volume in memory. A transfer fails once the stream has passed one
+     * of the failure offsets; every offset fails once.
+     */
+    static final class MemoryVolume implements StorageVolTransfer.RangeSource {
+        final byte[] data;
+        final List<String> opened = Collections.synchronizedList(new ArrayList<String>());
+        final Set<Long> failures = Collections.synchronizedSet(new HashSet<Long>());
+
+        MemoryVolume(final int size) {
+            data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) (i * 31 + i / 256);
+            }
+        }
+
+        @Override
+        public StorageVolTransfer.RangeStream open(final long offset, final long length, final boolean upload) {
+            opened.add((upload ? "upload " : "download ") + offset + "+" + length);
+            return new StorageVolTransfer.RangeStream() {
+                long pos = offset;
+                final long end = offset + length;
+
+                private void checkFailure(final long next) throws LibvirtException {
+                    synchronized (failures) {
+                        for (Long at : failures) {
+                            if (pos <= at && at < next) {
+                                failures.remove(at);
+                                throw failure(at);
+                            }
+                        }
+                    }
+                }
+
+                @Override
+                public int receive(final ByteBuffer buffer) throws LibvirtException {
+                    // short reads, to exercise the resume offset
+                    int n = (int) Math.min(Math.min(buffer.remaining(), 300), end - pos);
+                    checkFailure(pos + n);
+                    buffer.put(data, (int) pos, n);
+                    pos += n;
+                    return n;
+                }
+
+                @Override
+                public int send(final ByteBuffer buffer) throws LibvirtException {
+                    int n = (int) Math.min(buffer.remaining(), 300);
+                    checkFailure(pos + n);
+                    buffer.get(data, (int) pos, n);
+                    pos += n;
+                    return n;
+                }
+
+                @Override
+                public void finish() {
+                    assertEquals("finished early", end, pos);
+                }
+
+                @Override
+                public void abort() {
+                }
+
+                @Override
+                public void free() {
+                }
+            };
+        }
+    }
+
+    static LibvirtException failure(final long offset) {
+        virError error = new virError();
+        error.code = Error.ErrorNumber.VIR_ERR_RPC.ordinal();
+        error.level = Error.ErrorLevel.VIR_ERR_ERROR.ordinal();
+        error.message = "failure at " + offset;
+        return new LibvirtException(new Error(error));
+    }
+
+    static StorageVolTransfer transfer(final MemoryVolume volume, final int parallelism) {
+        StorageVolTransfer transfer = new StorageVolTransfer(new StorageVol(null, null)) {
+                @Override
+                RangeSource source(final Connect conn) {
+                    return volume;
+                }
+            };
+        transfer.setParallelism(parallelism);
+        transfer.setRangeSize(RANGE);
+        return transfer;
+    }
+
+    public void testDownloadRanges() throws Exception {
+        MemoryVolume volume = new MemoryVolume(4500);
+        Path file = Files.createTempFile("libvirt-transfer", ".img");
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            target.position(10);
+            assertEquals(4000, transfer(volume, 3).download(target, 500, 4000));
+            assertEquals("the position is unchanged", 10, target.position());
+        }
+        byte[] content = Files.readAllBytes(file);
+        Files.delete(file);
+        assertEquals(4010, content.length);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(volume.data, 500, 4500),
+                                 Arrays.copyOfRange(content, 10, 4010)));
+
+        List<String> opened = new ArrayList<String>(volume.opened);
+        Collections.sort(opened);
+        assertEquals(Arrays.asList("download 1500+1000", "download 2500+1000",
+                                   "download 3500+1000", "download 500+1000"), opened);
+    }
+
+    public void testDownloadResumes() throws Exception {
+        MemoryVolume volume = new MemoryVolume(3000);
+        // fails in the middle of the second range, after three short reads
+        volume.failures.add(1950L);
+        Path file = Files.createTempFile("libvirt-transfer", ".img");
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            assertEquals(3000, transfer(volume, 1).download(target, 0, 3000));
+        }
+        byte[] content = Files.readAllBytes(file);
+        Files.delete(file);
+        assertTrue(Arrays.equals(volume.data, content));
+        assertEquals(Arrays.asList("download 0+1000", "download 1000+1000", "download 1900+100",
+                                   "download 2000+1000"), volume.opened);
+    }
+
+    public void testDownloadFails() throws Exception {
+        MemoryVolume volume = new MemoryVolume(3000);
+        volume.failures.addAll(Arrays.asList(100L, 400L, 700L));
+        StorageVolTransfer transfer = transfer(volume, 1);
+        transfer.setRetries(2);
+        Path file = Files.createTempFile("libvirt-transfer", ".img");
+        try (FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            try {
+                transfer.download(target, 0, 3000);
+                fail("LibvirtException expected after the retries");
+            } catch (LibvirtException expected) {
+                assertEquals("failure at 700", expected.getMessage());
+            }
+            assertTrue("the file of the caller stays open", target.isOpen());
+        } finally {
+            Files.delete(file);
+        }
+        assertEquals(Arrays.asList("download 0+1000", "download 0+1000", "download 300+700"), volume.opened);
+    }
+
+    public void testUploadRestartsRange() throws Exception {
+        MemoryVolume source = new MemoryVolume(2500);
+        MemoryVolume volume = new MemoryVolume(3000);
+        Arrays.fill(volume.data, (byte) 0);
+        volume.failures.add(1400L);
+        Path file = Files.createTempFile("libvirt-transfer", ".img");
+        Files.write(file, source.data);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            in.position(500);
+            assertEquals(2000, transfer(volume, 2).upload(in, 100, 0));
+            assertEquals("the position is unchanged", 500, in.position());
+        } finally {
+            Files.delete(file);
+        }
+        assertTrue(Arrays.equals(Arrays.copyOfRange(source.data, 500, 2500),
+                                 Arrays.copyOfRange(volume.data, 100, 2100)));
+        assertEquals(0, volume.data[99]);
+        assertEquals(0, volume.data[2100]);
+
+        List<String> opened = new ArrayList<String>(volume.opened);
+        Collections.sort(opened);
+        assertEquals(Arrays.asList("upload 100+1000", "upload 1100+1000", "upload 1100+1000"), opened);
+    }
+}
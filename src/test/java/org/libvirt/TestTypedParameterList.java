@@ -0,0 +1,37 @@
+package org.libvirt;
+
+import org.libvirt.jna.virTypedParameter;
+
+import com.sun.jna.Memory;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the decoding of typed parameters.
+ */
+public class TestTypedParameterList extends TestCase {
+    public void testTypedParameterList() throws Exception {
+        Memory params = new Memory(2L * virTypedParameter.SIZE);
+        params.clear();
+        params.setString(virTypedParameter.FIELD_OFFSET, "cputune.vcpu_period");
+        params.setInt(virTypedParameter.TYPE_OFFSET, virTypedParameter.TYPED_PARAM_ULONG);
+        params.setLong(virTypedParameter.VALUE_OFFSET, 100000L);
+        long second = virTypedParameter.SIZE;
+        params.setString(second + virTypedParameter.FIELD_OFFSET, "cputune.vcpu_quota");
+        params.setInt(second + virTypedParameter.TYPE_OFFSET, virTypedParameter.TYPED_PARAM_LONG);
+        params.setLong(second + virTypedParameter.VALUE_OFFSET, -1L);
+
+        TypedParameterList.FieldNames names = new TypedParameterList.FieldNames();
+        TypedParameterList list = TypedParameterList.decode(params, 2, names);
+        assertEquals(2, list.size());
+        assertEquals("cputune.vcpu_period", list.getField(0));
+        assertEquals(100000L, list.getLong("cputune.vcpu_period", 0));
+        assertEquals(-1L, list.getLong("cputune.vcpu_quota", 0));
+        assertEquals(42L, list.getLong("cputune.emulator_period", 42));
+        assertEquals(2, list.toArray().length);
+
+        // field names are decoded once per registration
+        TypedParameterList again = TypedParameterList.decode(params, 2, names);
+        assertSame(list.getField(1), again.getField(1));
+    }
+}